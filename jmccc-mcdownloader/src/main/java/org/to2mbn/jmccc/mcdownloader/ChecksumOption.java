@@ -11,6 +11,16 @@ public enum ChecksumOption implements MinecraftDownloadOption {
 	/**
 	 * Verify the checksums of assets.
 	 */
-	CHECK_ASSETS;
+	CHECK_ASSETS,
+
+	/**
+	 * Record the verified checksums in the checksum index of the minecraft
+	 * directory, so that the files which haven't been changed since the last
+	 * verification won't be hashed again (only available when
+	 * {@link #CHECK_LIBRARIES} or {@link #CHECK_ASSETS} is enabled).
+	 * 
+	 * @see org.to2mbn.jmccc.option.MinecraftDirectory#getChecksumIndex()
+	 */
+	USE_CHECKSUM_INDEX;
 
 }
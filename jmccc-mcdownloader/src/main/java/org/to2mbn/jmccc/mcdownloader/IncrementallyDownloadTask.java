@@ -3,22 +3,30 @@ package org.to2mbn.jmccc.mcdownloader;
 import java.io.File;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.to2mbn.jmccc.internal.org.json.JSONObject;
 import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloadContext;
 import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloadTask;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.CallbackAdapter;
 import org.to2mbn.jmccc.mcdownloader.provider.MinecraftDownloadProvider;
 import org.to2mbn.jmccc.option.MinecraftDirectory;
+import org.to2mbn.jmccc.util.ChecksumIndex;
 import org.to2mbn.jmccc.util.ChecksumUtils;
 import org.to2mbn.jmccc.util.IOUtils;
+import org.to2mbn.jmccc.util.VerifyRequest;
 import org.to2mbn.jmccc.version.Asset;
 import org.to2mbn.jmccc.version.DownloadInfo;
 import org.to2mbn.jmccc.version.Library;
@@ -27,18 +35,22 @@ import org.to2mbn.jmccc.version.parsing.Versions;
 
 class IncrementallyDownloadTask extends CombinedDownloadTask<Version> {
 
+	private static final Logger LOGGER = Logger.getLogger(IncrementallyDownloadTask.class.getCanonicalName());
+
 	private MinecraftDirectory mcdir;
 	private String version;
 	private MinecraftDownloadProvider provider;
 	private boolean checkLibrariesHash;
 	private boolean checkAssetsHash;
+	private boolean useChecksumIndex;
 	private boolean updateSnapshots;
 	private AssetOption assetOption;
 
 	private Set<String> handledVersions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 	private String resolvedVersion;
+	private volatile ChecksumIndex checksumIndex;
 
-	public IncrementallyDownloadTask(MinecraftDownloadProvider downloadProvider, MinecraftDirectory mcdir, String version, boolean checkLibrariesHash, boolean checkAssetsHash, boolean updateSnapshots, AssetOption assetOption) {
+	public IncrementallyDownloadTask(MinecraftDownloadProvider downloadProvider, MinecraftDirectory mcdir, String version, boolean checkLibrariesHash, boolean checkAssetsHash, boolean useChecksumIndex, boolean updateSnapshots, AssetOption assetOption) {
 		Objects.requireNonNull(mcdir);
 		Objects.requireNonNull(version);
 		Objects.requireNonNull(downloadProvider);
@@ -47,6 +59,7 @@ class IncrementallyDownloadTask extends CombinedDownloadTask<Version> {
 		this.provider = downloadProvider;
 		this.checkLibrariesHash = checkLibrariesHash;
 		this.checkAssetsHash = checkAssetsHash;
+		this.useChecksumIndex = useChecksumIndex;
 		this.updateSnapshots = updateSnapshots;
 		this.assetOption = assetOption;
 	}
@@ -55,6 +68,13 @@ class IncrementallyDownloadTask extends CombinedDownloadTask<Version> {
 	public void execute(final CombinedDownloadContext<Version> context) throws Exception {
 		handledVersions.clear();
 		resolvedVersion = null;
+		checksumIndex = null;
+
+		if (useChecksumIndex && (checkAssetsHash || checkLibrariesHash)) {
+			ChecksumIndex index = new ChecksumIndex(mcdir.getChecksumIndex());
+			index.load();
+			checksumIndex = index;
+		}
 
 		handleVersionJson(version, context, new Callable<Void>() {
 
@@ -101,6 +121,9 @@ class IncrementallyDownloadTask extends CombinedDownloadTask<Version> {
 
 					@Override
 					public Void call() throws Exception {
+						if (checksumIndex != null) {
+							checksumIndex.save();
+						}
 						context.done(versionModel);
 						return null;
 					}
@@ -165,42 +188,67 @@ class IncrementallyDownloadTask extends CombinedDownloadTask<Version> {
 
 		final boolean fatal = assetOption == AssetOption.FORCIBLY_DOWNLOAD;
 
-		if (checkAssetsHash)
-			for (final Asset asset : hashMapping.values())
-				context.submit(new Callable<Void>() {
+		if (checkAssetsHash) {
+			final Collection<Asset> assetsToCheck = hashMapping.values();
+			context.submit(new Callable<Void>() {
 
-					@Override
-					public Void call() throws Exception {
-						if (!asset.isValid(mcdir))
-							context.submit(provider.asset(mcdir, asset), null, fatal);
-
-						return null;
-					}
-				}, null, false);
+				@Override
+				public Void call() throws Exception {
+					Map<Asset, VerifyRequest> requests = new HashMap<>();
+					for (Asset asset : assetsToCheck)
+						requests.put(asset, new VerifyRequest(mcdir.getAsset(asset), asset.getHash(), "SHA-1", asset.getSize()));
+
+					Map<VerifyRequest, Boolean> results = verifyAll(requests.values());
+					saveChecksumIndex();
+					List<CombinedDownloadTask<Void>> tasks = new ArrayList<>();
+					for (Entry<Asset, VerifyRequest> entry : requests.entrySet())
+						if (!results.get(entry.getValue()))
+							tasks.add(provider.asset(mcdir, entry.getKey()));
+
+					context.submitAll(tasks, null, fatal);
+					return null;
+				}
+			}, null, false);
 
-		else
+		} else {
+			List<CombinedDownloadTask<Void>> tasks = new ArrayList<>();
 			for (Asset asset : hashMapping.values())
 				if (!mcdir.getAsset(asset).isFile())
-					context.submit(provider.asset(mcdir, asset), null, fatal);
+					tasks.add(provider.asset(mcdir, asset));
+
+			context.submitAll(tasks, null, fatal);
+		}
 	}
 
 	private void downloadLibraries(final CombinedDownloadContext<?> context, Version version) throws InterruptedException {
-		if (checkLibrariesHash)
-			for (final Library library : version.getLibraries())
-				context.submit(new Callable<Void>() {
+		if (checkLibrariesHash) {
+			final Set<Library> libraries = version.getLibraries();
+			context.submit(new Callable<Void>() {
 
-					@Override
-					public Void call() throws Exception {
-						if (needDownload(mcdir.getLibrary(library), library.getDownloadInfo()))
-							downloadLibrary(context, library, true);
+				@Override
+				public Void call() throws Exception {
+					Map<Library, VerifyRequest> requests = new HashMap<>();
+					for (Library library : libraries) {
+						DownloadInfo info = library.getDownloadInfo();
+						if (info == null)
+							requests.put(library, new VerifyRequest(mcdir.getLibrary(library), (byte[]) null, null, -1));
 						else
-							checkAndUpdate(context, library);
-
-						return null;
+							requests.put(library, new VerifyRequest(mcdir.getLibrary(library), info.getChecksum(), "SHA-1", info.getSize()));
 					}
-				}, null, true);
 
-		else {
+					Map<VerifyRequest, Boolean> results = verifyAll(requests.values());
+					saveChecksumIndex();
+					for (Entry<Library, VerifyRequest> entry : requests.entrySet())
+						if (results.get(entry.getValue()))
+							checkAndUpdate(context, entry.getKey());
+						else
+							downloadLibrary(context, entry.getKey(), true);
+
+					return null;
+				}
+			}, null, true);
+
+		} else {
 			Set<Library> missing = version.getMissingLibraries(mcdir);
 			for (Library library : missing)
 				downloadLibrary(context, library, true);
@@ -216,11 +264,35 @@ class IncrementallyDownloadTask extends CombinedDownloadTask<Version> {
 		context.submit(provider.library(mcdir, library), null, fatal);
 	}
 
-	private boolean needDownload(File target, DownloadInfo info) throws NoSuchAlgorithmException, IOException {
-		if (info == null)
-			return !target.isFile();
+	private Map<VerifyRequest, Boolean> verifyAll(Collection<VerifyRequest> requests) throws NoSuchAlgorithmException, InterruptedException {
+		ChecksumIndex index = checksumIndex;
+		if (index == null)
+			return ChecksumUtils.verifyAll(requests);
+		else
+			return index.verifyAll(requests);
+	}
+
+	/**
+	 * Saves the checksums computed so far, so they are kept even if the
+	 * download fails or is cancelled afterwards.
+	 */
+	private void saveChecksumIndex() {
+		ChecksumIndex index = checksumIndex;
+		if (index != null) {
+			try {
+				index.save();
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Couldn't save checksum index " + index.getIndexFile(), e);
+			}
+		}
+	}
+
+	private boolean verify(File target, String sha1, long size) throws NoSuchAlgorithmException, IOException {
+		ChecksumIndex index = checksumIndex;
+		if (index == null)
+			return ChecksumUtils.verify(target, sha1, "SHA-1", size);
 		else
-			return !ChecksumUtils.verify(target, info.getChecksum(), "SHA-1", info.getSize());
+			return index.verify(target, sha1, "SHA-1", size);
 	}
 
 	private void checkAndUpdate(final CombinedDownloadContext<?> context, final Library lib) throws InterruptedException {
@@ -236,7 +308,7 @@ class IncrementallyDownloadTask extends CombinedDownloadTask<Version> {
 							@Override
 							public Void call() throws Exception {
 								String sha1 = IOUtils.toString(mcdir.getLibrary(sha1lib)).trim();
-								if (!ChecksumUtils.verify(mcdir.getLibrary(lib), sha1, "SHA-1")) {
+								if (!verify(mcdir.getLibrary(lib), sha1, -1)) {
 									downloadLibrary(context, lib, false);
 								}
 								return null;
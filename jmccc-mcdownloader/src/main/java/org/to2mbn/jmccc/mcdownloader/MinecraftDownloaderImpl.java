@@ -56,6 +56,7 @@ class MinecraftDownloaderImpl implements MinecraftDownloader {
 	public Future<Version> downloadIncrementally(MinecraftDirectory dir, String version, CombinedDownloadCallback<Version> callback, MinecraftDownloadOption... options) {
 		boolean checkLibrariesHash = false;
 		boolean checkAssetsHash = false;
+		boolean useChecksumIndex = false;
 		boolean updateSnapshots = false;
 		AssetOption assetOption = null;
 		CacheOption cacheOption = null;
@@ -84,13 +85,16 @@ class MinecraftDownloaderImpl implements MinecraftDownloader {
 					case CHECK_LIBRARIES:
 						checkLibrariesHash = true;
 						break;
+					case USE_CHECKSUM_INDEX:
+						useChecksumIndex = true;
+						break;
 					default:
 						break;
 				}
 			}
 		}
 
-		CombinedDownloadTask<Version> task = new IncrementallyDownloadTask(downloadProvider, dir, version, checkLibrariesHash, checkAssetsHash, updateSnapshots, assetOption);
+		CombinedDownloadTask<Version> task = new IncrementallyDownloadTask(downloadProvider, dir, version, checkLibrariesHash, checkAssetsHash, useChecksumIndex, updateSnapshots, assetOption);
 
 		if (cacheOption != null) {
 			task = processCacheOption(task, cacheOption);
@@ -3,6 +3,7 @@ package org.to2mbn.jmccc.mcdownloader.download;
 import org.to2mbn.jmccc.mcdownloader.download.cache.CachedDownloaderBuilder;
 import org.to2mbn.jmccc.mcdownloader.download.io.JdkDownloaderBuilder;
 import org.to2mbn.jmccc.mcdownloader.download.io.async.HttpAsyncDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.io.http2.Http2DownloaderBuilder;
 import org.to2mbn.jmccc.util.Builder;
 
 public final class DownloaderBuilders {
@@ -15,6 +16,21 @@ public final class DownloaderBuilders {
 		}
 	}
 
+	/**
+	 * Returns a builder of the downloader which multiplexes the requests over
+	 * HTTP/2 connections if <code>java.net.http</code> is available (java 11
+	 * and higher), otherwise returns {@link #downloader()}.
+	 * 
+	 * @return the builder
+	 */
+	public static Builder<Downloader> http2Downloader() {
+		if (Http2DownloaderBuilder.isAvailable()) {
+			return Http2DownloaderBuilder.create();
+		} else {
+			return downloader();
+		}
+	}
+
 	public static Builder<Downloader> cacheableDownloader(Builder<Downloader> underlying) {
 		if (CachedDownloaderBuilder.isAvailable()){
 			return CachedDownloaderBuilder.create(underlying);
@@ -0,0 +1,131 @@
+package org.to2mbn.jmccc.mcdownloader.download.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the data to be cached.
+ * <p>
+ * If the length of the data is known, the data is written into an array of
+ * exactly that length, and the array is handed to the cache provider without
+ * copying. Otherwise, the data is written into a chain of chunks borrowed from
+ * a shared pool, and the chunks are copied into an array only once when the
+ * data is complete.
+ */
+class CacheBuffer {
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private static final int MAX_POOLED_CHUNKS = 64;
+
+	private static final Queue<byte[]> chunkPool = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger pooledChunks = new AtomicInteger();
+
+	private static byte[] borrowChunk() {
+		byte[] chunk = chunkPool.poll();
+		if (chunk == null) {
+			return new byte[CHUNK_SIZE];
+		}
+		pooledChunks.decrementAndGet();
+		return chunk;
+	}
+
+	private static void returnChunk(byte[] chunk) {
+		if (pooledChunks.incrementAndGet() <= MAX_POOLED_CHUNKS) {
+			chunkPool.offer(chunk);
+		} else {
+			pooledChunks.decrementAndGet();
+		}
+	}
+
+	private final long maxSize;
+	private byte[] array;
+	private List<byte[]> chunks;
+	private int size;
+
+	/**
+	 * Creates a CacheBuffer.
+	 * 
+	 * @param length the length of the data, -1 if unknown
+	 * @param maxSize the maximum size of the data, must not be less than
+	 *            <code>length</code>
+	 */
+	public CacheBuffer(long length, long maxSize) {
+		this.maxSize = Math.min(maxSize, Integer.MAX_VALUE);
+		if (length == -1) {
+			chunks = new ArrayList<>();
+		} else {
+			array = new byte[(int) length];
+		}
+	}
+
+	/**
+	 * Appends the remaining data in the given buffer.
+	 * 
+	 * @param data the data
+	 * @return false if the data exceeds the expected length or the maximum
+	 *         size, then the buffer should be released
+	 */
+	public boolean write(ByteBuffer data) {
+		int len = data.remaining();
+		if (array != null) {
+			if (len > array.length - size) {
+				return false;
+			}
+			data.get(array, size, len);
+			size += len;
+		} else {
+			if (len > maxSize - size) {
+				return false;
+			}
+			while (data.hasRemaining()) {
+				int offset = size % CHUNK_SIZE;
+				if (offset == 0 && size / CHUNK_SIZE == chunks.size()) {
+					chunks.add(borrowChunk());
+				}
+				int n = Math.min(data.remaining(), CHUNK_SIZE - offset);
+				data.get(chunks.get(size / CHUNK_SIZE), offset, n);
+				size += n;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the collected data and releases the buffer.
+	 * 
+	 * @return the collected data, null if the data is shorter than the
+	 *         expected length
+	 */
+	public byte[] toByteArray() {
+		byte[] result;
+		if (array != null) {
+			result = size == array.length ? array : null;
+		} else {
+			result = new byte[size];
+			for (int i = 0; i < chunks.size(); i++) {
+				int offset = i * CHUNK_SIZE;
+				System.arraycopy(chunks.get(i), 0, result, offset, Math.min(CHUNK_SIZE, size - offset));
+			}
+		}
+		release();
+		return result;
+	}
+
+	/**
+	 * Releases the buffer.
+	 */
+	public void release() {
+		array = null;
+		if (chunks != null) {
+			for (byte[] chunk : chunks) {
+				returnChunk(chunk);
+			}
+			chunks = null;
+		}
+	}
+
+}
@@ -29,6 +29,17 @@ public final class CacheNames {
 	// Maven
 	public static final String M2_METADATA = PREFIX_DYNAMIC + "m2.metadata";
 
+	/**
+	 * Returns true if the given cache pool holds resources which may change
+	 * over time, such as version lists.
+	 * 
+	 * @param cachePool the cache pool
+	 * @return true if the cache pool is dynamic
+	 */
+	public static boolean isDynamic(String cachePool) {
+		return cachePool != null && cachePool.startsWith(PREFIX_DYNAMIC);
+	}
+
 	private CacheNames() {}
 
 }
@@ -1,18 +1,22 @@
 package org.to2mbn.jmccc.mcdownloader.download.cache;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Objects;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.to2mbn.jmccc.mcdownloader.download.Downloader;
 import org.to2mbn.jmccc.mcdownloader.download.cache.provider.CacheProvider;
+import org.to2mbn.jmccc.mcdownloader.download.cache.provider.CacheValidators;
+import org.to2mbn.jmccc.mcdownloader.download.cache.provider.CacheWriter;
+import org.to2mbn.jmccc.mcdownloader.download.cache.provider.FileBackedCacheProvider;
+import org.to2mbn.jmccc.mcdownloader.download.cache.provider.RevalidatableCacheProvider;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.CompletedFuture;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.DownloadCallback;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.ConditionalDownloadTask;
 import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadSession;
 import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadTask;
 
@@ -20,50 +24,66 @@ class CachedDownloader implements Downloader {
 
 	private static final Logger LOGGER = Logger.getLogger(CachedDownloader.class.getCanonicalName());
 
-	private class CachingDownloadTask<T> extends DownloadTask<T> {
+	private static final int DIRECT_BUFFER_SIZE = 64 * 1024;
+
+	private class CachingDownloadTask<T> extends DownloadTask<T> implements ConditionalDownloadTask<T> {
 
 		private final DownloadTask<T> proxiedTask;
 
-		public CachingDownloadTask(DownloadTask<T> proxiedTask) {
+		// the validators of the expired cache, null if it cannot be revalidated
+		private volatile CacheValidators cachedValidators;
+		private volatile CacheValidators receivedValidators;
+
+		public CachingDownloadTask(DownloadTask<T> proxiedTask, CacheValidators cachedValidators) {
 			super(proxiedTask.getURI());
 			this.proxiedTask = proxiedTask;
+			this.cachedValidators = cachedValidators;
 		}
 
 		private class CachingDownloadSession implements DownloadSession<T> {
 
 			private final DownloadSession<T> proxiedSession;
-
-			// use SoftReference to prevent OOM
-			private SoftReference<ByteArrayOutputStream> bufRef;
+			private final long length;
+			private CacheBuffer buffer;
+			private CacheWriter writer;
+			private long written;
 
 			public CachingDownloadSession(DownloadSession<T> proxiedSession, long length) {
 				this.proxiedSession = proxiedSession;
-				if (length < Integer.MAX_VALUE) {
+				this.length = length;
+				if (fileCacheProvider == null) {
+					this.buffer = new CacheBuffer(length, maxCacheableSize);
+				} else {
+					// streams the data into the cache file instead of the heap
+					URI uri = proxiedTask.getURI();
+					String pool = resolveCachePool(proxiedTask.getCachePool());
 					try {
-						bufRef = new SoftReference<>(new ByteArrayOutputStream((int) length));
-					} catch (OutOfMemoryError e) {
-						dropCache();
+						this.writer = fileCacheProvider.createWriter(pool, uri);
+					} catch (IOException e) {
+						LOGGER.log(Level.WARNING, "Couldn't write cache [" + uri + "] into [" + pool + "]", e);
 					}
 				}
 			}
 
 			@Override
 			public void receiveData(ByteBuffer data) throws IOException {
-				byte[] copiedData = new byte[data.remaining()];
-				data.get(copiedData);
-
-				proxiedSession.receiveData(ByteBuffer.wrap(copiedData));
-
-				if (bufRef != null) {
-					try {
-						ByteArrayOutputStream buf = bufRef.get();
-						if (buf != null) {
-							buf.write(copiedData);
+				if (buffer != null && !buffer.write(data.duplicate())) {
+					skipCache();
+				}
+				if (writer != null) {
+					written += data.remaining();
+					if (written > maxCacheableSize || (length != -1 && written > length)) {
+						skipCache();
+					} else {
+						try {
+							writer.write(data.duplicate());
+						} catch (IOException e) {
+							LOGGER.log(Level.WARNING, "Couldn't write cache [" + proxiedTask.getURI() + "]", e);
+							dropCache();
 						}
-					} catch (OutOfMemoryError e) {
-						dropCache();
 					}
 				}
+				proxiedSession.receiveData(data);
 			}
 
 			@Override
@@ -85,28 +105,61 @@ class CachedDownloader implements Downloader {
 				proxiedSession.failed();
 			}
 
+			private void skipCache() {
+				if (LOGGER.isLoggable(Level.FINE))
+					LOGGER.fine(String.format("Skipped caching [%s], the data exceeds the expected length or the maximum cacheable size", proxiedTask.getURI()));
+				dropCache();
+			}
+
 			private void dropCache() {
-				if (bufRef != null) {
-					bufRef.clear();
-					bufRef = null;
+				if (buffer != null) {
+					buffer.release();
+					buffer = null;
 				}
+				if (writer != null) {
+					closeWriter();
+				}
+			}
+
+			private void closeWriter() {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					LOGGER.log(Level.FINE, "Couldn't close cache writer of [" + proxiedTask.getURI() + "]", e);
+				}
+				writer = null;
 			}
 
 			private void saveCache() {
-				if (bufRef != null) {
+				if (writer != null) {
+					URI uri = proxiedTask.getURI();
 					try {
-						ByteArrayOutputStream buf = bufRef.get();
-						if (buf != null) {
-							byte[] data = buf.toByteArray();
-							URI uri = proxiedTask.getURI();
-							String pool = resolveCachePool(proxiedTask.getCachePool());
-							cacheProvider.put(pool, uri, data);
+						if (length == -1 || written == length) {
+							writer.commit(revalidatableCacheProvider == null ? null : receivedValidators);
 
 							if (LOGGER.isLoggable(Level.FINE))
-								LOGGER.fine(String.format("Cached [%s] into [%s], length=%d", uri, pool, data.length));
+								LOGGER.fine(String.format("Cached [%s], length=%d", uri, written));
+						}
+					} catch (IOException e) {
+						LOGGER.log(Level.WARNING, "Couldn't write cache [" + uri + "]", e);
+					} finally {
+						closeWriter();
+					}
+				}
+				if (buffer != null) {
+					byte[] data = buffer.toByteArray();
+					buffer = null;
+					if (data != null) {
+						URI uri = proxiedTask.getURI();
+						String pool = resolveCachePool(proxiedTask.getCachePool());
+						if (revalidatableCacheProvider == null) {
+							cacheProvider.put(pool, uri, data);
+						} else {
+							revalidatableCacheProvider.put(pool, uri, data, receivedValidators);
 						}
-					} catch (OutOfMemoryError e) {
-						dropCache();
+
+						if (LOGGER.isLoggable(Level.FINE))
+							LOGGER.fine(String.format("Cached [%s] into [%s], length=%d", uri, pool, data.length));
 					}
 				}
 			}
@@ -115,22 +168,103 @@ class CachedDownloader implements Downloader {
 
 		@Override
 		public DownloadSession<T> createSession() throws IOException {
-			return new CachingDownloadSession(proxiedTask.createSession(), 8192);
+			return new CachingDownloadSession(proxiedTask.createSession(), -1);
 		}
 
 		@Override
 		public DownloadSession<T> createSession(long length) throws IOException {
+			if (length > maxCacheableSize) {
+				// too large to cache, skip caching up front
+				if (LOGGER.isLoggable(Level.FINE))
+					LOGGER.fine(String.format("Skipped caching [%s], length=%d exceeds the maximum cacheable size", proxiedTask.getURI(), length));
+				return proxiedTask.createSession(length);
+			}
 			return new CachingDownloadSession(proxiedTask.createSession(length), length);
 		}
 
+		@Override
+		public String getIfNoneMatch() {
+			CacheValidators validators = cachedValidators;
+			return validators == null ? null : validators.getETag();
+		}
+
+		@Override
+		public String getIfModifiedSince() {
+			CacheValidators validators = cachedValidators;
+			return validators == null ? null : validators.getLastModified();
+		}
+
+		@Override
+		public T notModified() throws Exception {
+			// if the cache cannot be applied, the next try will download the whole resource
+			cachedValidators = null;
+
+			URI uri = proxiedTask.getURI();
+			String pool = resolveCachePool(proxiedTask.getCachePool());
+			if (!revalidatableCacheProvider.revalidate(pool, uri)) {
+				throw new IOException("The cache of [" + uri + "] in [" + pool + "] has been removed");
+			}
+
+			T result;
+			try {
+				if (fileCacheProvider == null) {
+					byte[] cached = cacheProvider.get(pool, uri);
+					if (cached == null) {
+						throw new IOException("The cache of [" + uri + "] in [" + pool + "] has been removed");
+					}
+					result = processCache(proxiedTask, cached);
+				} else {
+					try (FileChannel cached = fileCacheProvider.open(pool, uri)) {
+						if (cached == null) {
+							throw new IOException("The cache of [" + uri + "] in [" + pool + "] has been removed");
+						}
+						result = processCache(proxiedTask, cached);
+					}
+				}
+			} catch (Throwable e) {
+				cacheProvider.remove(pool, uri);
+				throw e;
+			}
+
+			if (LOGGER.isLoggable(Level.FINE))
+				LOGGER.fine(String.format("Revalidated cache [%s] in [%s]", uri, pool));
+
+			return result;
+		}
+
+		@Override
+		public void validatorsReceived(String etag, String lastModified) {
+			receivedValidators = CacheValidators.of(etag, lastModified);
+		}
+
 	}
 
 	private Downloader upstream;
 	private CacheProvider<URI, byte[]> cacheProvider;
+	private FileBackedCacheProvider<URI> fileCacheProvider;
+	private RevalidatableCacheProvider<URI> revalidatableCacheProvider;
+	private long maxCacheableSize;
+
+	private final ThreadLocal<ByteBuffer> directBuffers = new ThreadLocal<ByteBuffer>() {
 
-	public CachedDownloader(Downloader upstream, CacheProvider<URI, byte[]> cacheProvider) {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+		}
+	};
+
+	@SuppressWarnings("unchecked")
+	public CachedDownloader(Downloader upstream, CacheProvider<URI, byte[]> cacheProvider, long maxCacheableSize) {
 		this.upstream = Objects.requireNonNull(upstream);
 		this.cacheProvider = Objects.requireNonNull(cacheProvider);
+		this.maxCacheableSize = maxCacheableSize;
+		if (cacheProvider instanceof FileBackedCacheProvider) {
+			// the keys of the provider are URIs, since it's a CacheProvider<URI, byte[]>
+			fileCacheProvider = (FileBackedCacheProvider<URI>) cacheProvider;
+		}
+		if (cacheProvider instanceof RevalidatableCacheProvider) {
+			revalidatableCacheProvider = (RevalidatableCacheProvider<URI>) cacheProvider;
+		}
 	}
 
 	@Override
@@ -169,36 +303,62 @@ class CachedDownloader implements Downloader {
 			if (LOGGER.isLoggable(Level.FINER))
 				LOGGER.finer(String.format("Resolved the cache pool of [%s]: [%s] -> [%s]", uri, task.getCachePool(), pool));
 
-			byte[] cached = cacheProvider.get(pool, uri);
-			if (cached == null) {
-				return submitToUpstream(new CachingDownloadTask<>(task), callback, tries);
-			} else {
-
-				T result;
+			T result;
+			long length;
+			if (fileCacheProvider == null) {
+				byte[] cached = cacheProvider.get(pool, uri);
+				if (cached == null) {
+					return submitToUpstream(createCachingTask(task, pool), callback, tries);
+				}
+				length = cached.length;
 				try {
 					result = processCache(task, cached);
 				} catch (Throwable e) {
-					cacheProvider.remove(pool, uri);
-
-					if (LOGGER.isLoggable(Level.FINE))
-						LOGGER.log(Level.FINE, String.format("Removed cache [%s] from [%s] because an exception has thrown when applying cache", uri, pool), e);
-
-					return submitToUpstream(new CachingDownloadTask<>(task), callback, tries);
+					return removeCacheAndSubmit(task, callback, tries, pool, e);
+				}
+			} else {
+				try (FileChannel cached = fileCacheProvider.open(pool, uri)) {
+					if (cached == null) {
+						return submitToUpstream(createCachingTask(task, pool), callback, tries);
+					}
+					length = cached.size();
+					result = processCache(task, cached);
+				} catch (Throwable e) {
+					return removeCacheAndSubmit(task, callback, tries, pool, e);
 				}
+			}
 
-				if (LOGGER.isLoggable(Level.FINE))
-					LOGGER.fine(String.format("Applied cache [%s] from [%s], length=%d", uri, pool, cached.length));
+			if (LOGGER.isLoggable(Level.FINE))
+				LOGGER.fine(String.format("Applied cache [%s] from [%s], length=%d", uri, pool, length));
 
-				if (callback != null) {
-					callback.done(result);
-				}
-				return new CompletedFuture<T>(result);
+			if (callback != null) {
+				callback.done(result);
 			}
+			return new CompletedFuture<T>(result);
 		} else {
 			return submitToUpstream(task, callback, tries);
 		}
 	}
 
+	private <T> Future<T> removeCacheAndSubmit(DownloadTask<T> task, DownloadCallback<T> callback, int tries, String pool, Throwable e) {
+		URI uri = task.getURI();
+		cacheProvider.remove(pool, uri);
+
+		if (LOGGER.isLoggable(Level.FINE))
+			LOGGER.log(Level.FINE, String.format("Removed cache [%s] from [%s] because an exception has thrown when applying cache", uri, pool), e);
+
+		return submitToUpstream(new CachingDownloadTask<>(task, null), callback, tries);
+	}
+
+	private <T> CachingDownloadTask<T> createCachingTask(DownloadTask<T> task, String pool) {
+		CacheValidators validators = null;
+		if (revalidatableCacheProvider != null && CacheNames.isDynamic(pool)) {
+			// the cache may have expired, revalidate it instead of downloading the whole resource
+			validators = revalidatableCacheProvider.getValidators(pool, task.getURI());
+		}
+		return new CachingDownloadTask<>(task, validators);
+	}
+
 	private <T> Future<T> submitToUpstream(DownloadTask<T> task, DownloadCallback<T> callback, int tries) {
 		if (tries == -1) {
 			return upstream.download(task, callback);
@@ -218,6 +378,28 @@ class CachedDownloader implements Downloader {
 		return session.completed();
 	}
 
+	private <T> T processCache(DownloadTask<T> task, FileChannel cached) throws Exception {
+		DownloadSession<T> session = task.createSession(cached.size());
+		try {
+			// read through a direct buffer, so the data isn't copied into the heap
+			ByteBuffer buf = directBuffers.get();
+			buf.clear();
+			while (cached.read(buf) != -1) {
+				buf.flip();
+				session.receiveData(buf);
+				buf.compact();
+			}
+			buf.flip();
+			if (buf.hasRemaining()) {
+				session.receiveData(buf);
+			}
+		} catch (Throwable e) {
+			session.failed();
+			throw e;
+		}
+		return session.completed();
+	}
+
 	private String resolveCachePool(String unresolved) {
 		if (unresolved == null) {
 			return CacheNames.DEFAULT;
@@ -236,7 +418,7 @@ class CachedDownloader implements Downloader {
 
 	@Override
 	public String toString() {
-		return String.format("CachedDownloader [upstream=%s, cacheProvider=%s]", upstream, cacheProvider);
+		return String.format("CachedDownloader [upstream=%s, cacheProvider=%s, maxCacheableSize=%d]", upstream, cacheProvider, maxCacheableSize);
 	}
 
 }
@@ -1,5 +1,6 @@
 package org.to2mbn.jmccc.mcdownloader.download.cache;
 
+import java.io.File;
 import java.net.URI;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
@@ -7,6 +8,8 @@ import java.util.logging.Logger;
 import org.to2mbn.jmccc.mcdownloader.download.Downloader;
 import org.to2mbn.jmccc.mcdownloader.download.cache.provider.CacheProvider;
 import org.to2mbn.jmccc.mcdownloader.download.cache.provider.EhcacheProvider;
+import org.to2mbn.jmccc.mcdownloader.download.cache.provider.FileBackedCacheProvider;
+import org.to2mbn.jmccc.mcdownloader.download.cache.provider.FileCacheProvider;
 import org.to2mbn.jmccc.mcdownloader.download.cache.provider.JCacheProvider;
 import org.to2mbn.jmccc.util.Builder;
 import org.to2mbn.jmccc.util.Builders;
@@ -32,10 +35,12 @@ public class CachedDownloaderBuilder implements Builder<Downloader> {
 	private static final TimeUnit DEFAULT_CACHE_TTL_UNIT = TimeUnit.HOURS;
 	private static final long DEFAULT_CACHE_HEAP = 32;
 	private static final String DEFAULT_CACHE_HEAP_UNIT = "MB";
+	private static final long DEFAULT_MAX_CACHEABLE_SIZE = 8 * 1024 * 1024;
 	// ===
 
 	protected final Builder<Downloader> underlying;
 	protected Builder<? extends CacheProvider<URI, byte[]>> cacheProvider;
+	protected long maxCacheableSize = -1; // -1 for default
 
 	protected CachedDownloaderBuilder(Builder<Downloader> underlying) {
 		this.underlying = Objects.requireNonNull(underlying);
@@ -46,6 +51,40 @@ public class CachedDownloaderBuilder implements Builder<Downloader> {
 		return this;
 	}
 
+	/**
+	 * Sets the maximum size of a resource to be cached.
+	 * <p>
+	 * A resource which is larger than this will be downloaded without being
+	 * buffered for caching. Default to 8 MiB, or unlimited if the cache
+	 * provider is a {@link FileBackedCacheProvider}, which streams the data
+	 * into its files instead of the heap.
+	 * 
+	 * @param maxCacheableSize the maximum size in bytes
+	 * @return the builder itself
+	 */
+	public CachedDownloaderBuilder maxCacheableSize(long maxCacheableSize) {
+		this.maxCacheableSize = maxCacheableSize;
+		return this;
+	}
+
+	/**
+	 * Uses a {@link FileCacheProvider} which stores the cached resources in
+	 * the given directory.
+	 * <p>
+	 * The directory can be shared by several downloaders, even if they are in
+	 * different processes.
+	 * 
+	 * @param dir the cache directory
+	 * @param maxSize the maximum total size of the cached resources in bytes
+	 * @return the builder itself
+	 * @throws NullPointerException if <code>dir == null</code>
+	 */
+	public CachedDownloaderBuilder fileCache(File dir, long maxSize) {
+		Objects.requireNonNull(dir);
+		this.cacheProvider = Builders.of(new FileCacheProvider(dir, maxSize));
+		return this;
+	}
+
 	// === Ehcache Supports
 
 	private static class EhcacheProviderBuilder implements Builder<CacheProvider<URI, byte[]>> {
@@ -215,7 +254,11 @@ public class CachedDownloaderBuilder implements Builder<Downloader> {
 			underlying = Objects.requireNonNull(this.underlying.build(), "Underlying downloader builder returns null");
 			cache = buildCacheProvider();
 			LOGGER.fine("Using cache provider: " + cache);
-			return new CachedDownloader(underlying, cache);
+			long maxCacheable = maxCacheableSize;
+			if (maxCacheable == -1) {
+				maxCacheable = cache instanceof FileBackedCacheProvider ? Long.MAX_VALUE : DEFAULT_MAX_CACHEABLE_SIZE;
+			}
+			return new CachedDownloader(underlying, cache, maxCacheable);
 
 		} catch (Throwable e) {
 			if (underlying != null) {
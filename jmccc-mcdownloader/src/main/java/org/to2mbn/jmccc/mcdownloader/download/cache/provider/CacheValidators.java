@@ -0,0 +1,74 @@
+package org.to2mbn.jmccc.mcdownloader.download.cache.provider;
+
+import java.util.Objects;
+
+/**
+ * The validators of a cached value, which are used to check whether the value
+ * is still up to date with a conditional request.
+ */
+public final class CacheValidators {
+
+	/**
+	 * Creates a CacheValidators.
+	 * 
+	 * @param etag the <code>ETag</code> header, can be null
+	 * @param lastModified the <code>Last-Modified</code> header, can be null
+	 * @return the validators, null if both <code>etag</code> and
+	 *         <code>lastModified</code> are null
+	 */
+	public static CacheValidators of(String etag, String lastModified) {
+		if (etag == null && lastModified == null) {
+			return null;
+		}
+		return new CacheValidators(etag, lastModified);
+	}
+
+	private final String etag;
+	private final String lastModified;
+
+	private CacheValidators(String etag, String lastModified) {
+		this.etag = etag;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Gets the entity tag.
+	 * 
+	 * @return the entity tag, null if absent
+	 */
+	public String getETag() {
+		return etag;
+	}
+
+	/**
+	 * Gets the last modified date in HTTP format.
+	 * 
+	 * @return the last modified date, null if absent
+	 */
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (obj instanceof CacheValidators) {
+			CacheValidators another = (CacheValidators) obj;
+			return Objects.equals(etag, another.etag) && Objects.equals(lastModified, another.lastModified);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(etag, lastModified);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CacheValidators [etag=%s, lastModified=%s]", etag, lastModified);
+	}
+
+}
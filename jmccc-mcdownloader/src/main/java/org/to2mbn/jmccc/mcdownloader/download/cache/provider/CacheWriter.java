@@ -0,0 +1,41 @@
+package org.to2mbn.jmccc.mcdownloader.download.cache.provider;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes a value into a {@link FileBackedCacheProvider} piece by piece, so
+ * the value is never held in the heap.
+ * <p>
+ * The value is stored only when {@link #commit(CacheValidators)} is called.
+ * Closing the writer without committing discards the written data.
+ */
+public interface CacheWriter extends Closeable {
+
+	/**
+	 * Appends the remaining data in the given buffer.
+	 * 
+	 * @param data the data
+	 * @throws IOException if an I/O error occurs
+	 */
+	void write(ByteBuffer data) throws IOException;
+
+	/**
+	 * Stores the written data as the value.
+	 * 
+	 * @param validators the validators, null if the value has no validators
+	 * @throws IOException if an I/O error occurs
+	 */
+	void commit(CacheValidators validators) throws IOException;
+
+	/**
+	 * Releases the writer, the written data is discarded if it hasn't been
+	 * committed.
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Override
+	void close() throws IOException;
+
+}
@@ -0,0 +1,39 @@
+package org.to2mbn.jmccc.mcdownloader.download.cache.provider;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A cache provider which stores the values in files, so the cached values can
+ * be read and written without being loaded into the heap.
+ * 
+ * @param <K> the type of keys
+ */
+public interface FileBackedCacheProvider<K> extends CacheProvider<K, byte[]> {
+
+	/**
+	 * Opens the file which contains the cached value.
+	 * <p>
+	 * The caller is responsible for closing the returned channel.
+	 * 
+	 * @param cachePool the cache pool
+	 * @param key the key
+	 * @return a channel to read the cached value, null if the value is not
+	 *         cached
+	 * @throws IOException if an I/O error occurs
+	 */
+	FileChannel open(String cachePool, K key) throws IOException;
+
+	/**
+	 * Creates a writer which streams a value into the cache.
+	 * <p>
+	 * The caller is responsible for closing the returned writer.
+	 * 
+	 * @param cachePool the cache pool
+	 * @param key the key
+	 * @return the writer
+	 * @throws IOException if an I/O error occurs
+	 */
+	CacheWriter createWriter(String cachePool, K key) throws IOException;
+
+}
@@ -0,0 +1,595 @@
+package org.to2mbn.jmccc.mcdownloader.download.cache.provider;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.to2mbn.jmccc.mcdownloader.download.cache.CacheNames;
+import org.to2mbn.jmccc.util.HexUtils;
+
+/**
+ * A cache provider which stores the values in a directory.
+ * <p>
+ * The values are stored by their SHA-1 checksums, so a value is stored only
+ * once even if it is cached with different keys. The directory can be shared
+ * by several processes, since all the files are written atomically. The
+ * values can be streamed from and into the files with
+ * {@link #open(String, URI)} and {@link #createWriter(String, URI)}.
+ * <p>
+ * When the total size of the values exceeds the limit, the least recently
+ * used values are evicted, along with the keys which refer to them. The values in dynamic cache pools (see
+ * {@link CacheNames#isDynamic(String)}) expire after the given time, an
+ * expired value is kept if it has validators, so that it can be revalidated.
+ * <p>
+ * All the cache pools are available in this provider.
+ */
+public class FileCacheProvider implements FileBackedCacheProvider<URI>, RevalidatableCacheProvider<URI> {
+
+	private static final Logger LOGGER = Logger.getLogger(FileCacheProvider.class.getCanonicalName());
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final Pattern SHA1_PATTERN = Pattern.compile("[0-9a-f]{40}");
+
+	private static final String OBJECTS_DIR = "objects";
+	private static final String KEYS_DIR = "keys";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private static final long DEFAULT_DYNAMIC_TTL = 2;
+	private static final TimeUnit DEFAULT_DYNAMIC_TTL_UNIT = TimeUnit.HOURS;
+
+	/**
+	 * The last access time of a value is updated at most once within this
+	 * period.
+	 */
+	private static final long ACCESS_TIME_PRECISION = 60 * 1000;
+
+	/**
+	 * Temporary files older than this are left by crashed processes.
+	 */
+	private static final long STALE_TEMP_FILE_AGE = 60 * 60 * 1000;
+
+	private static class BlobEntry {
+
+		final Path path;
+		final long lastAccess;
+		final long size;
+
+		BlobEntry(Path path, long lastAccess, long size) {
+			this.path = path;
+			this.lastAccess = lastAccess;
+			this.size = size;
+		}
+	}
+
+	private class FileCacheWriter implements CacheWriter {
+
+		private final String cachePool;
+		private final URI key;
+		private final Path temp;
+		private final FileChannel channel;
+		private final MessageDigest digest = sha1Digest();
+		private long size;
+
+		FileCacheWriter(String cachePool, URI key) throws IOException {
+			this.cachePool = cachePool;
+			this.key = key;
+			Files.createDirectories(objectsDir);
+			temp = Files.createTempFile(objectsDir, "value", TEMP_SUFFIX);
+			channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+		}
+
+		@Override
+		public void write(ByteBuffer data) throws IOException {
+			size += data.remaining();
+			if (size > maxSize) {
+				throw new IOException("The value is larger than the cache: " + size + " > " + maxSize);
+			}
+			digest.update(data.duplicate());
+			while (data.hasRemaining()) {
+				channel.write(data);
+			}
+		}
+
+		@Override
+		public void commit(CacheValidators validators) throws IOException {
+			channel.close();
+			ensureScanned();
+
+			Path blob = getBlobFile(HexUtils.bytesToHex(digest.digest()));
+			if (Files.exists(blob)) {
+				touch(blob);
+			} else {
+				Files.createDirectories(blob.getParent());
+				if (move(temp, blob, false)) {
+					usedSize.addAndGet(size);
+				}
+			}
+			putKey(cachePool, key, blob.getFileName().toString(), validators);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				channel.close();
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		}
+
+	}
+
+	private final Path objectsDir;
+	private final Path keysDir;
+	private final long maxSize;
+	private final long dynamicTtl;
+
+	// -1 if the directory hasn't been scanned
+	private final AtomicLong usedSize = new AtomicLong(-1);
+	private final Object evictLock = new Object();
+
+	/**
+	 * Constructs a FileCacheProvider whose dynamic values expire in 2 hours.
+	 * 
+	 * @param dir the cache directory
+	 * @param maxSize the maximum total size of the cached values in bytes
+	 * @throws NullPointerException if <code>dir == null</code>
+	 */
+	public FileCacheProvider(File dir, long maxSize) {
+		this(dir, maxSize, DEFAULT_DYNAMIC_TTL, DEFAULT_DYNAMIC_TTL_UNIT);
+	}
+
+	/**
+	 * Constructs a FileCacheProvider.
+	 * 
+	 * @param dir the cache directory
+	 * @param maxSize the maximum total size of the cached values in bytes
+	 * @param dynamicTtl the time to live of the values in dynamic cache pools
+	 * @param unit the unit of <code>dynamicTtl</code>
+	 * @throws NullPointerException if <code>dir == null || unit == null</code>
+	 */
+	public FileCacheProvider(File dir, long maxSize, long dynamicTtl, TimeUnit unit) {
+		Path root = dir.toPath();
+		this.objectsDir = root.resolve(OBJECTS_DIR);
+		this.keysDir = root.resolve(KEYS_DIR);
+		this.maxSize = maxSize;
+		this.dynamicTtl = unit.toMillis(dynamicTtl);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The whole value is read into the heap, use {@link #open(String, URI)} to
+	 * read a large value.
+	 */
+	@Override
+	public byte[] get(String cachePool, URI key) {
+		try (FileChannel channel = open(cachePool, key)) {
+			if (channel == null) {
+				return null;
+			}
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				return null;
+			}
+			ByteBuffer buf = ByteBuffer.allocate((int) size);
+			while (buf.hasRemaining()) {
+				if (channel.read(buf) == -1) {
+					// truncated by someone else
+					return null;
+				}
+			}
+			return buf.array();
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Couldn't read cache [" + key + "] from [" + cachePool + "]", e);
+			return null;
+		}
+	}
+
+	@Override
+	public FileChannel open(String cachePool, URI key) throws IOException {
+		Objects.requireNonNull(cachePool);
+		Objects.requireNonNull(key);
+
+		Path keyFile = getKeyFile(cachePool, key);
+		String[] keyContent;
+		try {
+			keyContent = readKeyFile(keyFile);
+			if (CacheNames.isDynamic(cachePool) && System.currentTimeMillis() - Files.getLastModifiedTime(keyFile).toMillis() > dynamicTtl) {
+				if (keyContent == null || parseValidators(keyContent) == null) {
+					Files.deleteIfExists(keyFile);
+				}
+				return null;
+			}
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		if (keyContent == null) {
+			Files.deleteIfExists(keyFile);
+			return null;
+		}
+		String hash = keyContent[0];
+
+		Path blob = getBlobFile(hash);
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(blob, StandardOpenOption.READ);
+		} catch (NoSuchFileException e) {
+			// the value has been evicted
+			Files.deleteIfExists(keyFile);
+			return null;
+		}
+		touch(blob);
+		return channel;
+	}
+
+	@Override
+	public CacheWriter createWriter(String cachePool, URI key) throws IOException {
+		Objects.requireNonNull(cachePool);
+		Objects.requireNonNull(key);
+		return new FileCacheWriter(cachePool, key);
+	}
+
+	@Override
+	public void put(String cachePool, URI key, byte[] value) {
+		put(cachePool, key, value, null);
+	}
+
+	@Override
+	public void put(String cachePool, URI key, byte[] value, CacheValidators validators) {
+		Objects.requireNonNull(cachePool);
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		try {
+			ensureScanned();
+
+			String hash = sha1(value);
+			Path blob = getBlobFile(hash);
+			if (Files.exists(blob)) {
+				touch(blob);
+			} else if (writeAtomically(blob, value, false)) {
+				usedSize.addAndGet(value.length);
+			}
+
+			putKey(cachePool, key, hash, validators);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Couldn't write cache [" + key + "] into [" + cachePool + "]", e);
+		}
+	}
+
+	@Override
+	public void remove(String cachePool, URI key) {
+		Objects.requireNonNull(cachePool);
+		Objects.requireNonNull(key);
+
+		// the value may be shared with other keys, it will be evicted when it's no longer used
+		try {
+			Files.deleteIfExists(getKeyFile(cachePool, key));
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Couldn't remove cache [" + key + "] from [" + cachePool + "]", e);
+		}
+	}
+
+	@Override
+	public CacheValidators getValidators(String cachePool, URI key) {
+		Objects.requireNonNull(cachePool);
+		Objects.requireNonNull(key);
+
+		try {
+			String[] keyContent = readKeyFile(getKeyFile(cachePool, key));
+			if (keyContent == null || !Files.exists(getBlobFile(keyContent[0]))) {
+				return null;
+			}
+			return parseValidators(keyContent);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Couldn't read the validators of cache [" + key + "] from [" + cachePool + "]", e);
+			return null;
+		}
+	}
+
+	@Override
+	public boolean revalidate(String cachePool, URI key) {
+		Objects.requireNonNull(cachePool);
+		Objects.requireNonNull(key);
+
+		Path keyFile = getKeyFile(cachePool, key);
+		try {
+			String[] keyContent = readKeyFile(keyFile);
+			if (keyContent == null || !Files.exists(getBlobFile(keyContent[0]))) {
+				return false;
+			}
+			// the ttl of a dynamic value starts from the last modified time of its key file
+			Files.setLastModifiedTime(keyFile, FileTime.fromMillis(System.currentTimeMillis()));
+			return true;
+		} catch (NoSuchFileException e) {
+			return false;
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Couldn't revalidate cache [" + key + "] in [" + cachePool + "]", e);
+			return false;
+		}
+	}
+
+	@Override
+	public boolean hasCache(String cachePool) {
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+	}
+
+	/**
+	 * Evicts the least recently used values until the total size is below
+	 * the limit.
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void evict() throws IOException {
+		synchronized (evictLock) {
+			List<BlobEntry> blobs = scan();
+			long total = 0;
+			for (BlobEntry blob : blobs) {
+				total += blob.size;
+			}
+
+			if (total > maxSize) {
+				Collections.sort(blobs, new Comparator<BlobEntry>() {
+
+					@Override
+					public int compare(BlobEntry o1, BlobEntry o2) {
+						return Long.compare(o1.lastAccess, o2.lastAccess);
+					}
+				});
+
+				// leave some room so that we don't evict on every put
+				long target = maxSize - maxSize / 10;
+				boolean evicted = false;
+				for (BlobEntry blob : blobs) {
+					if (total <= target) {
+						break;
+					}
+					try {
+						Files.deleteIfExists(blob.path);
+						total -= blob.size;
+						evicted = true;
+					} catch (IOException e) {
+						// the file may be in use on windows
+						LOGGER.log(Level.FINE, "Couldn't evict cache " + blob.path, e);
+					}
+				}
+				if (evicted) {
+					removeOrphanKeys();
+				}
+			}
+			usedSize.set(total);
+		}
+	}
+
+	private void putKey(String cachePool, URI key, String hash, CacheValidators validators) throws IOException {
+		String keyContent = hash + "\n" + cachePool + "\n" + key + "\n";
+		if (validators != null) {
+			keyContent += nullToEmpty(validators.getETag()) + "\n" + nullToEmpty(validators.getLastModified()) + "\n";
+		}
+		writeAtomically(getKeyFile(cachePool, key), keyContent.getBytes(UTF_8), true);
+
+		if (usedSize.get() > maxSize) {
+			evict();
+		}
+	}
+
+	/**
+	 * Removes the keys whose values have been evicted, including the ones
+	 * evicted by other processes. Otherwise a key which is never read again
+	 * would be left forever.
+	 */
+	private void removeOrphanKeys() throws IOException {
+		if (!Files.isDirectory(keysDir)) {
+			return;
+		}
+		final long now = System.currentTimeMillis();
+		Files.walkFileTree(keysDir, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				try {
+					if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+						if (now - attrs.lastModifiedTime().toMillis() > STALE_TEMP_FILE_AGE) {
+							Files.deleteIfExists(file);
+						}
+					} else {
+						String[] keyContent = readKeyFile(file);
+						if (keyContent == null || !Files.exists(getBlobFile(keyContent[0]))) {
+							Files.deleteIfExists(file);
+						}
+					}
+				} catch (NoSuchFileException e) {
+					// removed by someone else
+				} catch (IOException e) {
+					LOGGER.log(Level.FINE, "Couldn't check cache key " + file, e);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+				// the file has been removed by someone else
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private void ensureScanned() throws IOException {
+		if (usedSize.get() == -1) {
+			synchronized (evictLock) {
+				if (usedSize.get() == -1) {
+					long total = 0;
+					for (BlobEntry blob : scan()) {
+						total += blob.size;
+					}
+					usedSize.set(total);
+				}
+			}
+		}
+	}
+
+	private List<BlobEntry> scan() throws IOException {
+		final List<BlobEntry> blobs = new ArrayList<>();
+		if (!Files.isDirectory(objectsDir)) {
+			return blobs;
+		}
+		final long now = System.currentTimeMillis();
+		Files.walkFileTree(objectsDir, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+					if (now - attrs.lastModifiedTime().toMillis() > STALE_TEMP_FILE_AGE) {
+						Files.deleteIfExists(file);
+					}
+				} else {
+					blobs.add(new BlobEntry(file, attrs.lastModifiedTime().toMillis(), attrs.size()));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+				// the file has been removed by someone else
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return blobs;
+	}
+
+	private boolean writeAtomically(Path target, byte[] data, boolean replace) throws IOException {
+		Path dir = target.getParent();
+		Files.createDirectories(dir);
+		Path temp = Files.createTempFile(dir, target.getFileName().toString(), TEMP_SUFFIX);
+		try {
+			Files.write(temp, data);
+			return move(temp, target, replace);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static boolean move(Path temp, Path target, boolean replace) throws IOException {
+		try {
+			try {
+				if (replace) {
+					Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} else {
+					Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+				}
+			} catch (AtomicMoveNotSupportedException e) {
+				if (replace) {
+					Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+				} else {
+					Files.move(temp, target);
+				}
+			}
+			return true;
+		} catch (FileAlreadyExistsException e) {
+			// the same value has been written by someone else
+			return false;
+		}
+	}
+
+	/**
+	 * Reads a key file, whose lines are the hash of the value, the cache pool,
+	 * the key, and optionally the entity tag and the last modified date.
+	 * 
+	 * @param keyFile the key file
+	 * @return the lines of the key file, null if the key file is corrupted
+	 * @throws IOException if an I/O error occurs
+	 */
+	private String[] readKeyFile(Path keyFile) throws IOException {
+		String[] lines = new String(Files.readAllBytes(keyFile), UTF_8).split("\n");
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = lines[i].trim();
+		}
+		if (!SHA1_PATTERN.matcher(lines[0]).matches()) {
+			return null;
+		}
+		return lines;
+	}
+
+	private static CacheValidators parseValidators(String[] keyContent) {
+		String etag = keyContent.length > 3 ? emptyToNull(keyContent[3]) : null;
+		String lastModified = keyContent.length > 4 ? emptyToNull(keyContent[4]) : null;
+		return CacheValidators.of(etag, lastModified);
+	}
+
+	private static String nullToEmpty(String str) {
+		return str == null ? "" : str;
+	}
+
+	private static String emptyToNull(String str) {
+		return str.isEmpty() ? null : str;
+	}
+
+	private void touch(Path blob) {
+		try {
+			long now = System.currentTimeMillis();
+			if (now - Files.getLastModifiedTime(blob).toMillis() > ACCESS_TIME_PRECISION) {
+				Files.setLastModifiedTime(blob, FileTime.fromMillis(now));
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Couldn't update the access time of " + blob, e);
+		}
+	}
+
+	private Path getBlobFile(String hash) {
+		return objectsDir.resolve(hash.substring(0, 2)).resolve(hash);
+	}
+
+	private Path getKeyFile(String cachePool, URI key) {
+		String hash = sha1((cachePool + "\n" + key).getBytes(UTF_8));
+		return keysDir.resolve(hash.substring(0, 2)).resolve(hash);
+	}
+
+	private static String sha1(byte[] data) {
+		return HexUtils.bytesToHex(sha1Digest().digest(data));
+	}
+
+	private static MessageDigest sha1Digest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is not supported", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FileCacheProvider [objectsDir=%s, keysDir=%s, maxSize=%d, dynamicTtl=%d]", objectsDir, keysDir, maxSize, dynamicTtl);
+	}
+
+}
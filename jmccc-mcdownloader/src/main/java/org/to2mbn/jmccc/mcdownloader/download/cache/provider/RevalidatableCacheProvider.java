@@ -0,0 +1,42 @@
+package org.to2mbn.jmccc.mcdownloader.download.cache.provider;
+
+/**
+ * A cache provider which keeps the validators of the values, so that an
+ * expired value can be revalidated with a conditional request instead of
+ * being downloaded again.
+ * 
+ * @param <K> the type of keys
+ */
+public interface RevalidatableCacheProvider<K> extends CacheProvider<K, byte[]> {
+
+	/**
+	 * Stores a value along with its validators.
+	 * 
+	 * @param cachePool the cache pool
+	 * @param key the key
+	 * @param value the value
+	 * @param validators the validators, null if the value has no validators
+	 */
+	void put(String cachePool, K key, byte[] value, CacheValidators validators);
+
+	/**
+	 * Gets the validators of a value, even if the value has expired.
+	 * 
+	 * @param cachePool the cache pool
+	 * @param key the key
+	 * @return the validators, null if the value doesn't exist or it has no
+	 *         validators
+	 */
+	CacheValidators getValidators(String cachePool, K key);
+
+	/**
+	 * Marks an expired value as up to date, so it can be got again until it
+	 * expires next time.
+	 * 
+	 * @param cachePool the cache pool
+	 * @param key the key
+	 * @return false if the value doesn't exist
+	 */
+	boolean revalidate(String cachePool, K key);
+
+}
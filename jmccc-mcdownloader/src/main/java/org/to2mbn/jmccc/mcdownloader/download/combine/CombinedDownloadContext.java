@@ -1,5 +1,6 @@
 package org.to2mbn.jmccc.mcdownloader.download.combine;
 
+import java.util.Collection;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.Callback;
@@ -15,6 +16,47 @@ public interface CombinedDownloadContext<T> extends Callback<T> {
 
 	<R> Future<R> submit(CombinedDownloadTask<R> task, CombinedDownloadCallback<R> callback, boolean fatal) throws InterruptedException;
 
+	/**
+	 * Submits a batch of download tasks.
+	 * <p>
+	 * The batch is counted as a single subtask, and it terminates when all the
+	 * tasks in it terminate. Instead of the events of each task, the callback
+	 * receives the progress of the batch: <code>updateProgress(done, total)</code>
+	 * is called each time a task terminates, where <code>done</code> is the
+	 * number of the terminated tasks and <code>total</code> is the size of the
+	 * batch. If any task fails, the batch fails with the first exception after
+	 * all the tasks terminate.
+	 * 
+	 * @param tasks the tasks to submit
+	 * @param callback the callback of the batch, can be null
+	 * @param fatal if true, the failure of any task will make the whole
+	 *            combined task fail
+	 * @return the future of the batch
+	 * @throws InterruptedException if the combined task has been terminated
+	 * @throws NullPointerException if <code>tasks == null</code>
+	 */
+	Future<Void> submitAll(Collection<? extends DownloadTask<?>> tasks, DownloadCallback<Void> callback, boolean fatal) throws InterruptedException;
+
+	/**
+	 * Submits a batch of combined download tasks.
+	 * <p>
+	 * The batch is counted as a single subtask, and it terminates when all the
+	 * tasks in it terminate. The callback receives the sub download tasks of
+	 * all the tasks in the batch through
+	 * {@link CombinedDownloadCallback#taskStart(DownloadTask)}. If any task
+	 * fails, the batch fails with the first exception after all the tasks
+	 * terminate.
+	 * 
+	 * @param tasks the tasks to submit
+	 * @param callback the callback of the batch, can be null
+	 * @param fatal if true, the failure of any task will make the whole
+	 *            combined task fail
+	 * @return the future of the batch
+	 * @throws InterruptedException if the combined task has been terminated
+	 * @throws NullPointerException if <code>tasks == null</code>
+	 */
+	Future<Void> submitAll(Collection<? extends CombinedDownloadTask<?>> tasks, CombinedDownloadCallback<Void> callback, boolean fatal) throws InterruptedException;
+
 	void awaitAllTasks(Callable<Void> callback) throws InterruptedException;
 
 }
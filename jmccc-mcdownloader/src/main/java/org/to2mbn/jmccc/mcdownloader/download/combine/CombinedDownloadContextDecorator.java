@@ -1,5 +1,6 @@
 package org.to2mbn.jmccc.mcdownloader.download.combine;
 
+import java.util.Collection;
 import java.util.Objects;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
@@ -46,6 +47,16 @@ public class CombinedDownloadContextDecorator<T> implements CombinedDownloadCont
 		return delegated.submit(task, callback, fatal);
 	}
 
+	@Override
+	public Future<Void> submitAll(Collection<? extends DownloadTask<?>> tasks, DownloadCallback<Void> callback, boolean fatal) throws InterruptedException {
+		return delegated.submitAll(tasks, callback, fatal);
+	}
+
+	@Override
+	public Future<Void> submitAll(Collection<? extends CombinedDownloadTask<?>> tasks, CombinedDownloadCallback<Void> callback, boolean fatal) throws InterruptedException {
+		return delegated.submitAll(tasks, callback, fatal);
+	}
+
 	@Override
 	public void awaitAllTasks(Callable<Void> callback) throws InterruptedException {
 		delegated.awaitAllTasks(callback);
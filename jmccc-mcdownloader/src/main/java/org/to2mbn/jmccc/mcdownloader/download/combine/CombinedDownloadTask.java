@@ -1,8 +1,10 @@
 package org.to2mbn.jmccc.mcdownloader.download.combine;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.Objects;
 import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.MemoryDownloadTask;
 import org.to2mbn.jmccc.mcdownloader.download.tasks.ResultProcessor;
 
 /**
@@ -74,6 +76,108 @@ abstract public class CombinedDownloadTask<T> {
 		return new AnyCombinedTask<>(tasks, expectedExceptions);
 	}
 
+	/**
+	 * Creates a CombinedDownloadTask which downloads the same resource from
+	 * the fastest mirror.
+	 * <p>
+	 * The mirrors are keyed by their hosts, and their latencies are recorded
+	 * in {@link MirrorStats#getDefault()}. The requests are only hedged if all
+	 * the tasks are {@link MemoryDownloadTask}s, since the other tasks may
+	 * write to the same file.
+	 * 
+	 * @param tasks the tasks downloading the same resource from different
+	 *            mirrors
+	 * @param <T> the type of the DownloadTask
+	 * @return the CombinedDownloadTask
+	 * @throws NullPointerException if <code>tasks == null</code>
+	 * @throws IllegalArgumentException if <code>tasks</code> is empty
+	 * @see #fastest(MirrorStats, String[], CombinedDownloadTask[])
+	 */
+	@SafeVarargs
+	public static <T> CombinedDownloadTask<T> fastest(DownloadTask<T>... tasks) {
+		Objects.requireNonNull(tasks);
+
+		@SuppressWarnings("unchecked")
+		CombinedDownloadTask<T>[] combinedTasks = new CombinedDownloadTask[tasks.length];
+		String[] mirrors = new String[tasks.length];
+		boolean hedge = true;
+		for (int i = 0; i < tasks.length; i++) {
+			combinedTasks[i] = single(tasks[i]);
+			mirrors[i] = tasks[i].getURI().getHost() + ":" + tasks[i].getURI().getPort();
+			if (!(tasks[i] instanceof MemoryDownloadTask)) {
+				hedge = false;
+			}
+		}
+		return fastest(MirrorStats.getDefault(), hedge, mirrors, combinedTasks);
+	}
+
+	/**
+	 * Creates a CombinedDownloadTask which runs the task of the fastest
+	 * mirror.
+	 * <p>
+	 * The tasks are tried in the ascending order of the latencies of their
+	 * mirrors, the mirrors without statistics are tried first. Like
+	 * {@link #any(CombinedDownloadTask...)}, if a task fails with an
+	 * {@link IOException}, the next one will be tried. Besides, if the first
+	 * byte of a task doesn't arrive in the time that almost all the requests
+	 * to its mirror take ({@link MirrorStats#getHedgeDelay(String)}), the next
+	 * task will be started as well, and the first successful one wins.
+	 * <p>
+	 * Since several tasks may run at the same time, they mustn't write to the
+	 * same file. Use {@link #fastest(MirrorStats, boolean, String[], CombinedDownloadTask[])}
+	 * to disable hedging for such tasks.
+	 * 
+	 * @param stats the statistics of the mirrors
+	 * @param mirrors the keys of the mirrors, in the same order as the tasks
+	 * @param tasks the tasks doing the same thing on different mirrors
+	 * @param <T> the type of the tasks
+	 * @return the CombinedDownloadTask
+	 * @throws NullPointerException if any of the arguments is null
+	 * @throws IllegalArgumentException if <code>tasks</code> is empty, or
+	 *             <code>mirrors.length != tasks.length</code>
+	 */
+	@SafeVarargs
+	public static <T> CombinedDownloadTask<T> fastest(MirrorStats stats, String[] mirrors, CombinedDownloadTask<T>... tasks) {
+		return fastest(stats, true, mirrors, tasks);
+	}
+
+	/**
+	 * Creates a CombinedDownloadTask which runs the task of the fastest
+	 * mirror.
+	 * <p>
+	 * If <code>hedge</code> is false, only one task runs at a time: the next
+	 * task is only started after the previous one has failed. This is required
+	 * when the tasks write to the same file.
+	 * 
+	 * @param stats the statistics of the mirrors
+	 * @param hedge whether to start the next task when a mirror is slow
+	 * @param mirrors the keys of the mirrors, in the same order as the tasks
+	 * @param tasks the tasks doing the same thing on different mirrors
+	 * @param <T> the type of the tasks
+	 * @return the CombinedDownloadTask
+	 * @throws NullPointerException if any of the arguments is null
+	 * @throws IllegalArgumentException if <code>tasks</code> is empty, or
+	 *             <code>mirrors.length != tasks.length</code>
+	 * @see #fastest(MirrorStats, String[], CombinedDownloadTask[])
+	 */
+	@SuppressWarnings("unchecked")
+	@SafeVarargs
+	public static <T> CombinedDownloadTask<T> fastest(MirrorStats stats, boolean hedge, String[] mirrors, CombinedDownloadTask<T>... tasks) {
+		Objects.requireNonNull(stats);
+		Objects.requireNonNull(mirrors);
+		Objects.requireNonNull(tasks);
+		if (tasks.length == 0) {
+			throw new IllegalArgumentException("Tasks cannot be empty");
+		}
+		if (mirrors.length != tasks.length) {
+			throw new IllegalArgumentException("The number of mirrors doesn't match the number of tasks");
+		}
+		if (tasks.length == 1) {
+			return tasks[0];
+		}
+		return new FastestCombinedTask<>(tasks, mirrors, stats, hedge, new Class[] { IOException.class });
+	}
+
 	abstract public void execute(CombinedDownloadContext<T> context) throws Exception;
 
 	public CacheStrategy getCacheStrategy() {
@@ -99,6 +203,42 @@ abstract public class CombinedDownloadTask<T> {
 		return new CombinedTaskCachePoolDecorator<>(this, pool);
 	}
 
+	/**
+	 * Returns a task which keeps its result in
+	 * {@link ResultCache#getDefault()}.
+	 * 
+	 * @param cachePool the cache pool of the result
+	 * @param uri the uri of the result
+	 * @return the memoized task
+	 * @throws NullPointerException if <code>uri == null</code>
+	 * @see #memoized(ResultCache, String, URI)
+	 */
+	public final CombinedDownloadTask<T> memoized(String cachePool, URI uri) {
+		return memoized(ResultCache.getDefault(), cachePool, uri);
+	}
+
+	/**
+	 * Returns a task which keeps its result in the given cache.
+	 * <p>
+	 * If the cache has an unexpired result of the same cache pool and uri,
+	 * the result will be used instead of running this task. If the result is
+	 * being computed by another task, the returned task waits for it. So the
+	 * tasks memoized with the same key must produce the same result, and the
+	 * result must be immutable, since it's shared. If the task is run with
+	 * {@link CacheStrategy#NON_CACHEABLE}, the cached result is ignored, and
+	 * it's replaced by the new result.
+	 * 
+	 * @param cache the cache
+	 * @param cachePool the cache pool of the result
+	 * @param uri the uri of the result
+	 * @return the memoized task
+	 * @throws NullPointerException if <code>cache == null || uri == null</code>
+	 */
+	public final CombinedDownloadTask<T> memoized(ResultCache cache, String cachePool, URI uri) {
+		Objects.requireNonNull(cache);
+		return new MemoizedCombinedTask<>(this, cache, ResultCache.toKey(cachePool, uri));
+	}
+
 	public final <R> CombinedDownloadTask<R> andThen(ResultProcessor<T, R> processor) {
 		return new AndThenCombinedTask<>(this, processor);
 	}
@@ -31,6 +31,7 @@ public class CombinedDownloaderBuilder implements Builder<CombinedDownloader> {
 	protected long threadPoolKeepAliveTime = 10;
 	protected TimeUnit threadPoolKeepAliveTimeUnit = TimeUnit.SECONDS;
 	protected int defaultTries = 3;
+	protected boolean useVirtualThreads = false;
 
 	protected CombinedDownloaderBuilder(Builder<Downloader> underlying) {
 		this.underlying = Objects.requireNonNull(underlying);
@@ -52,12 +53,28 @@ public class CombinedDownloaderBuilder implements Builder<CombinedDownloader> {
 		return this;
 	}
 
+	/**
+	 * Sets whether to run each combined task in a virtual thread.
+	 * <p>
+	 * If true, each task runs in a new virtual thread, and the number of
+	 * concurrent tasks is still limited by <code>threadPoolSize</code>. If the
+	 * current JVM doesn't support virtual threads, a pool of platform threads
+	 * will be used instead. Default to false.
+	 * 
+	 * @param useVirtualThreads true to use virtual threads
+	 * @return the builder itself
+	 */
+	public CombinedDownloaderBuilder useVirtualThreads(boolean useVirtualThreads) {
+		this.useVirtualThreads = useVirtualThreads;
+		return this;
+	}
+
 	@Override
 	public CombinedDownloader build() {
 		ExecutorService pool = null;
 		Downloader downloader = null;
 		try {
-			pool = ThreadPoolUtils.createPool(threadPoolSize, threadPoolKeepAliveTime, threadPoolKeepAliveTimeUnit, "combinedDownloader");
+			pool = ThreadPoolUtils.createPool(threadPoolSize, threadPoolKeepAliveTime, threadPoolKeepAliveTimeUnit, "combinedDownloader", useVirtualThreads);
 			downloader = Objects.requireNonNull(this.underlying.build(), "Underlying downloader builder returns null");
 			return new CombinedDownloaderImpl(pool, downloader, defaultTries);
 		} catch (Throwable e) {
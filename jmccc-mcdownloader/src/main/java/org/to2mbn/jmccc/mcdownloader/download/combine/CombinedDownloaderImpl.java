@@ -1,29 +1,30 @@
 package org.to2mbn.jmccc.mcdownloader.download.combine;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
-import java.util.Vector;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.to2mbn.jmccc.mcdownloader.download.Downloader;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.AsyncFuture;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.Callback;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.CallbackAdapter;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.CallbackAsyncTask;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.CallbackFutureTask;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.Callbacks;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.Cancelable;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.CombinedDownloadCallback;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.CombinedDownloadCallbacks;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.DownloadCallback;
@@ -34,78 +35,246 @@ class CombinedDownloaderImpl implements CombinedDownloader {
 
 	private class CombinedAsyncTask<T> extends CallbackAsyncTask<T> implements CombinedDownloadContext<T> {
 
-		private class ExceptionCatcher implements InvocationHandler {
+		/**
+		 * Dispatches the events to a list of callbacks, the exceptions thrown
+		 * by the callbacks make the task fail.
+		 */
+		private class GuardedCallback<R> implements Callback<R> {
 
-			private Object target;
+			private final Callback<R>[] callbacks;
 
-			public ExceptionCatcher(Object target) {
-				Objects.requireNonNull(target);
-				this.target = target;
+			public GuardedCallback(Callback<R>[] callbacks) {
+				this.callbacks = callbacks;
 			}
 
 			@Override
-			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-				try {
-					return method.invoke(target, args);
-				} catch (Throwable e) {
-					Throwable exception = e;
-					if (e instanceof InvocationTargetException) {
-						exception = e.getCause();
-						if (exception == null)
-							exception = e;
+			public void done(R result) {
+				for (Callback<R> c : callbacks) {
+					try {
+						c.done(result);
+					} catch (Throwable e) {
+						lifecycle().failed(e);
+					}
+				}
+			}
+
+			@Override
+			public void failed(Throwable e) {
+				for (Callback<R> c : callbacks) {
+					try {
+						c.failed(e);
+					} catch (Throwable e1) {
+						lifecycle().failed(e1);
+					}
+				}
+			}
+
+			@Override
+			public void cancelled() {
+				for (Callback<R> c : callbacks) {
+					try {
+						c.cancelled();
+					} catch (Throwable e) {
+						lifecycle().failed(e);
 					}
-					lifecycle().failed(exception);
 				}
-				return null;
 			}
 
 		}
 
-		private class SubtaskCounter {
+		private class GuardedDownloadCallback<R> extends GuardedCallback<R> implements DownloadCallback<R> {
 
-			private final List<Callable<?>> taskWaitNodes = new Vector<>();
-			private volatile int count = 0;
+			private final DownloadCallback<R>[] callbacks;
 
-			public void countUp() {
-				synchronized (this) {
-					count++;
-					if (count < 1)
-						throw new IllegalStateException("Invalid task count: " + count);
+			public GuardedDownloadCallback(DownloadCallback<R>[] callbacks) {
+				super(callbacks);
+				this.callbacks = callbacks;
+			}
+
+			@Override
+			public void updateProgress(long done, long total) {
+				for (DownloadCallback<R> c : callbacks) {
+					try {
+						c.updateProgress(done, total);
+					} catch (Throwable e) {
+						lifecycle().failed(e);
+					}
 				}
 			}
 
-			public void countDown() {
-				List<Callable<?>> copiedWaitNodes = null;
-				synchronized (this) {
-					count--;
-					if (count == 0) {
-						copiedWaitNodes = new Vector<>(taskWaitNodes);
-						taskWaitNodes.clear();
-					} else if (count < 0) {
-						throw new IllegalStateException("Invalid task count: " + count);
+			@Override
+			public void retry(Throwable e, int current, int max) {
+				for (DownloadCallback<R> c : callbacks) {
+					try {
+						c.retry(e, current, max);
+					} catch (Throwable e1) {
+						lifecycle().failed(e1);
 					}
 				}
+			}
+
+		}
 
-				if (copiedWaitNodes != null)
-					for (Callable<?> waitNode : copiedWaitNodes)
-						doCallback(waitNode);
+		private class GuardedCombinedDownloadCallback<R> extends GuardedCallback<R> implements CombinedDownloadCallback<R> {
+
+			private final CombinedDownloadCallback<R>[] callbacks;
+
+			public GuardedCombinedDownloadCallback(CombinedDownloadCallback<R>[] callbacks) {
+				super(callbacks);
+				this.callbacks = callbacks;
 			}
 
-			public void awaitAllTasks(Callable<Void> callback) {
-				synchronized (this) {
-					if (count > 0) {
-						taskWaitNodes.add(callback);
-						return;
+			@Override
+			public <S> DownloadCallback<S> taskStart(DownloadTask<S> subtask) {
+				List<DownloadCallback<S>> listeners = null;
+				for (CombinedDownloadCallback<R> c : callbacks) {
+					DownloadCallback<S> listener = null;
+					try {
+						listener = c.taskStart(subtask);
+					} catch (Throwable e) {
+						lifecycle().failed(e);
+					}
+					if (listener != null) {
+						if (listeners == null)
+							listeners = new ArrayList<>(1);
+						listeners.add(listener);
 					}
 				}
-				doCallback(callback);
+				if (listeners == null)
+					return null;
+				if (listeners.size() == 1)
+					return listeners.get(0);
+				return DownloadCallbacks.group(listeners);
+			}
+
+		}
+
+		/**
+		 * Tracks a batch of subtasks. The batch is counted as one subtask, and
+		 * the same instance is registered as the callback of every task in it,
+		 * so submitting a batch costs no more than submitting a single task
+		 * besides the downloads themselves.
+		 */
+		private class SubtaskBatch implements Cancelable, DownloadCallback<Object>, CombinedDownloadCallback<Object> {
+
+			private final int total;
+			private final boolean fatal;
+			private final DownloadCallback<Void> progressCallback;
+			private final CombinedDownloadCallback<Object> taskStartCallback;
+			private final AsyncFuture<Void> future = new AsyncFuture<>(this);
+			private final Queue<Future<?>> subfutures = new ConcurrentLinkedQueue<>();
+			private final AtomicInteger terminated = new AtomicInteger();
+			private final AtomicReference<Throwable> exception = new AtomicReference<>();
+			private volatile boolean cancelled;
+
+			@SuppressWarnings("unchecked")
+			public SubtaskBatch(int total, boolean fatal, Callback<Void> batchCallback, DownloadCallback<Void> progressCallback, CombinedDownloadCallback<Void> combinedCallback) {
+				this.total = total;
+				this.fatal = fatal;
+				this.progressCallback = progressCallback;
+
+				CombinedDownloadCallback<Object> taskStartCallback = new SubDownloadTaskMapper<>();
+				if (combinedCallback != null)
+					taskStartCallback = new GuardedCombinedDownloadCallback<>(new CombinedDownloadCallback[] { taskStartCallback, combinedCallback });
+				this.taskStartCallback = taskStartCallback;
+
+				Callback<Void> terminateCallback = Callbacks.whatever(new Runnable() {
+
+					@Override
+					public void run() {
+						removeCancelable((Future<?>) future);
+						subtaskCounter.countDown();
+					}
+				});
+				if (batchCallback == null)
+					future.setCallback(terminateCallback);
+				else
+					future.setCallback(new GuardedCallback<>(new Callback[] { batchCallback, terminateCallback }));
+			}
+
+			public void start() {
+				subtaskCounter.countUp();
+				addCancelable((Future<?>) future);
+				if (total == 0)
+					future.done(null);
+			}
+
+			public void add(Future<?> subfuture) {
+				subfutures.add(subfuture);
+				if (future.isExceptional())
+					subfuture.cancel(true);
+			}
+
+			public void rejected(RejectedExecutionException e) throws InterruptedException {
+				future.failed(e);
+				if (shutdown) {
+					InterruptedException ex = new InterruptedException();
+					ex.initCause(e);
+					throw ex;
+				}
+			}
+
+			@Override
+			public void done(Object result) {
+				taskTerminated();
 			}
 
-			private void doCallback(Callable<?> callback) {
-				try {
-					callback.call();
-				} catch (Throwable e) {
+			@Override
+			public void failed(Throwable e) {
+				if (fatal)
 					lifecycle().failed(e);
+				exception.compareAndSet(null, e);
+				taskTerminated();
+			}
+
+			@Override
+			public void cancelled() {
+				if (fatal)
+					lifecycle().cancelled();
+				cancelled = true;
+				taskTerminated();
+			}
+
+			@Override
+			public void updateProgress(long done, long total) {
+				// only the progress of the batch is reported
+			}
+
+			@Override
+			public void retry(Throwable e, int current, int max) {
+			}
+
+			@Override
+			public <S> DownloadCallback<S> taskStart(DownloadTask<S> subtask) {
+				return taskStartCallback.taskStart(subtask);
+			}
+
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				Future<?> subfuture;
+				while ((subfuture = subfutures.poll()) != null)
+					subfuture.cancel(mayInterruptIfRunning);
+				return true;
+			}
+
+			private void taskTerminated() {
+				int current = terminated.incrementAndGet();
+				if (progressCallback != null) {
+					try {
+						progressCallback.updateProgress(current, total);
+					} catch (Throwable e) {
+						lifecycle().failed(e);
+					}
+				}
+
+				if (current == total) {
+					Throwable e = exception.get();
+					if (e != null)
+						future.failed(e);
+					else if (cancelled)
+						future.cancelled();
+					else
+						future.done(null);
 				}
 			}
 
@@ -146,7 +315,13 @@ class CombinedDownloaderImpl implements CombinedDownloader {
 		private final CombinedDownloadCallback<T> callback;
 		private final int tries;
 		private final SubtaskCountdownAction countdownAction = new SubtaskCountdownAction();
-		private final SubtaskCounter subtaskCounter = new SubtaskCounter();
+		private final SubtaskCounter subtaskCounter = new SubtaskCounter() {
+
+			@Override
+			protected void callbackFailed(Throwable e) {
+				lifecycle().failed(e);
+			}
+		};
 
 		public CombinedAsyncTask(CombinedDownloadTask<T> task, CombinedDownloadCallback<T> callback, int tries) {
 			Objects.requireNonNull(task);
@@ -164,31 +339,32 @@ class CombinedDownloaderImpl implements CombinedDownloader {
 			Objects.requireNonNull(task);
 
 			CallbackFutureTask<R> futureTask = new CallbackFutureTask<>(task);
-			List<Callback<R>> callbacks = new ArrayList<>();
+			List<Callback<R>> callbacks = new ArrayList<>(4);
 
 			FutureManager<R> futureManager = createFutureManager();
 			futureManager.setFuture(futureTask);
-			callbacks.add(wrapCallback(futureManager));
+			callbacks.add(futureManager);
 
 			if (injectedCallback != null)
-				callbacks.add(wrapCallback(injectedCallback));
+				callbacks.add(injectedCallback);
 
 			if (fatal)
-				callbacks.add(wrapCallback(new FatalSubtaskCallback<R>()));
+				callbacks.add(new FatalSubtaskCallback<R>());
 
-			callbacks.add(wrapCallback(Callbacks.<R> whatever(countdownAction)));
+			callbacks.add(Callbacks.<R> whatever(countdownAction));
 
-			futureTask.setCallback(Callbacks.group(callbacks));
+			@SuppressWarnings("unchecked")
+			Callback<R>[] callbacksArray = callbacks.toArray(new Callback[callbacks.size()]);
+			futureTask.setCallback(new GuardedCallback<>(callbacksArray));
 
-			Lock lock = globalRwlock.readLock();
-			lock.lock();
-			try {
-				checkInterrupted();
+			checkInterrupted();
 
-				subtaskCounter.countUp();
+			subtaskCounter.countUp();
+			try {
 				executor.execute(futureTask);
-			} finally {
-				lock.unlock();
+			} catch (RejectedExecutionException e) {
+				subtaskRejected(e);
+				throw e;
 			}
 
 			return futureTask;
@@ -198,36 +374,37 @@ class CombinedDownloaderImpl implements CombinedDownloader {
 		public <R> Future<R> submit(DownloadTask<R> task, DownloadCallback<R> injectedCallback, boolean fatal) throws InterruptedException {
 			Objects.requireNonNull(task);
 
-			List<DownloadCallback<R>> callbacks = new ArrayList<>();
+			List<DownloadCallback<R>> callbacks = new ArrayList<>(5);
 
 			FutureManager<R> futureManager = createFutureManager();
-			callbacks.add(wrapDownloadCallback(DownloadCallbacks.fromCallback(futureManager)));
+			callbacks.add(DownloadCallbacks.fromCallback(futureManager));
 
 			if (injectedCallback != null)
-				callbacks.add(wrapDownloadCallback(injectedCallback));
+				callbacks.add(injectedCallback);
 
 			DownloadCallback<R> foreignCallback = callback.taskStart(task);
 			if (foreignCallback != null)
-				callbacks.add(wrapDownloadCallback(foreignCallback));
+				callbacks.add(foreignCallback);
 
 			if (fatal)
-				callbacks.add(wrapDownloadCallback(DownloadCallbacks.fromCallback(new FatalSubtaskCallback<R>())));
+				callbacks.add(DownloadCallbacks.fromCallback(new FatalSubtaskCallback<R>()));
 
-			callbacks.add(wrapDownloadCallback(DownloadCallbacks.<R> whatever(countdownAction)));
+			callbacks.add(DownloadCallbacks.<R> whatever(countdownAction));
 
-			Future<R> future;
+			@SuppressWarnings("unchecked")
+			DownloadCallback<R>[] callbacksArray = callbacks.toArray(new DownloadCallback[callbacks.size()]);
 
-			Lock lock = globalRwlock.readLock();
-			lock.lock();
-			try {
-				checkInterrupted();
+			checkInterrupted();
 
-				subtaskCounter.countUp();
-				future = downloader.download(task, DownloadCallbacks.group(callbacks), tries);
-				futureManager.setFuture(future);
-			} finally {
-				lock.unlock();
+			subtaskCounter.countUp();
+			Future<R> future;
+			try {
+				future = downloadShared(task, new GuardedDownloadCallback<>(callbacksArray), tries);
+			} catch (RejectedExecutionException e) {
+				subtaskRejected(e);
+				throw e;
 			}
+			futureManager.setFuture(future);
 
 			return future;
 		}
@@ -236,36 +413,85 @@ class CombinedDownloaderImpl implements CombinedDownloader {
 		public <R> Future<R> submit(CombinedDownloadTask<R> task, CombinedDownloadCallback<R> injectedCallback, boolean fatal) throws InterruptedException {
 			Objects.requireNonNull(task);
 
-			List<CombinedDownloadCallback<R>> callbacks = new ArrayList<>();
+			List<CombinedDownloadCallback<R>> callbacks = new ArrayList<>(5);
 
 			FutureManager<R> futureManager = createFutureManager();
-			callbacks.add(wrapCombinedDownloadCallback(CombinedDownloadCallbacks.fromCallback(futureManager)));
+			callbacks.add(CombinedDownloadCallbacks.fromCallback(futureManager));
 
 			if (injectedCallback != null)
-				callbacks.add(wrapCombinedDownloadCallback(injectedCallback));
+				callbacks.add(injectedCallback);
 
-			callbacks.add(wrapCombinedDownloadCallback(new SubDownloadTaskMapper<R>()));
+			callbacks.add(new SubDownloadTaskMapper<R>());
 
 			if (fatal)
-				callbacks.add(wrapCombinedDownloadCallback(CombinedDownloadCallbacks.fromCallback(new FatalSubtaskCallback<R>())));
+				callbacks.add(CombinedDownloadCallbacks.fromCallback(new FatalSubtaskCallback<R>()));
+
+			callbacks.add(CombinedDownloadCallbacks.<R> whatever(countdownAction));
 
-			callbacks.add(wrapCombinedDownloadCallback(CombinedDownloadCallbacks.<R> whatever(countdownAction)));
+			@SuppressWarnings("unchecked")
+			CombinedDownloadCallback<R>[] callbacksArray = callbacks.toArray(new CombinedDownloadCallback[callbacks.size()]);
+
+			checkInterrupted();
 
+			subtaskCounter.countUp();
 			Future<R> future;
+			try {
+				future = CombinedDownloaderImpl.this.download(task, new GuardedCombinedDownloadCallback<>(callbacksArray), tries);
+			} catch (RejectedExecutionException e) {
+				subtaskRejected(e);
+				throw e;
+			}
+			futureManager.setFuture(future);
+
+			return future;
+		}
 
-			Lock lock = globalRwlock.readLock();
-			lock.lock();
+		@Override
+		public Future<Void> submitAll(Collection<? extends DownloadTask<?>> tasks, DownloadCallback<Void> callback, boolean fatal) throws InterruptedException {
+			Objects.requireNonNull(tasks);
+			checkInterrupted();
+
+			SubtaskBatch batch = new SubtaskBatch(tasks.size(), fatal, callback, callback, null);
+			batch.start();
 			try {
-				checkInterrupted();
+				for (DownloadTask<?> task : tasks)
+					batch.add(submitBatchTask(task, batch));
+			} catch (RejectedExecutionException e) {
+				batch.rejected(e);
+				throw e;
+			}
+			return batch.future;
+		}
 
-				subtaskCounter.countUp();
-				future = CombinedDownloaderImpl.this.download(task, CombinedDownloadCallbacks.group(callbacks), tries);
-				futureManager.setFuture(future);
-			} finally {
-				lock.unlock();
+		@Override
+		public Future<Void> submitAll(Collection<? extends CombinedDownloadTask<?>> tasks, CombinedDownloadCallback<Void> callback, boolean fatal) throws InterruptedException {
+			Objects.requireNonNull(tasks);
+			checkInterrupted();
+
+			SubtaskBatch batch = new SubtaskBatch(tasks.size(), fatal, callback, null, callback);
+			batch.start();
+			try {
+				for (CombinedDownloadTask<?> task : tasks)
+					batch.add(submitBatchTask(task, batch));
+			} catch (RejectedExecutionException e) {
+				batch.rejected(e);
+				throw e;
 			}
+			return batch.future;
+		}
 
-			return future;
+		@SuppressWarnings("unchecked")
+		private <R> Future<R> submitBatchTask(DownloadTask<R> task, SubtaskBatch batch) {
+			DownloadCallback<R> taskCallback = (DownloadCallback<R>) (DownloadCallback<?>) batch;
+			DownloadCallback<R> foreignCallback = callback.taskStart(task);
+			if (foreignCallback != null)
+				taskCallback = new GuardedDownloadCallback<>(new DownloadCallback[] { taskCallback, foreignCallback });
+			return downloadShared(task, taskCallback, tries);
+		}
+
+		@SuppressWarnings("unchecked")
+		private <R> Future<R> submitBatchTask(CombinedDownloadTask<R> task, SubtaskBatch batch) {
+			return CombinedDownloaderImpl.this.download(task, (CombinedDownloadCallback<R>) (CombinedDownloadCallback<?>) batch, tries);
 		}
 
 		@Override
@@ -300,22 +526,135 @@ class CombinedDownloaderImpl implements CombinedDownloader {
 			}
 		}
 
-		@SuppressWarnings("unchecked")
-		private <R> R wrapExceptionHandler(Class<?> clazz, R obj) {
-			InvocationHandler handler = new ExceptionCatcher(obj);
-			return (R) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { clazz }, handler);
+		/**
+		 * The subtask wasn't started, so its count is given back. If the
+		 * rejection is caused by the shutdown, it's reported as an
+		 * interruption, the same as {@link #checkInterrupted()}.
+		 */
+		private void subtaskRejected(RejectedExecutionException e) throws InterruptedException {
+			subtaskCounter.countDown();
+			if (shutdown) {
+				InterruptedException ex = new InterruptedException();
+				ex.initCause(e);
+				throw ex;
+			}
+		}
+
+	}
+
+	/**
+	 * A download which is shared by the equal subtasks submitted while it's
+	 * running. Each submitter gets its own future, cancelling it only detaches
+	 * the submitter, and the download is cancelled after all the submitters
+	 * have detached.
+	 */
+	private class SharedDownload<T> implements DownloadCallback<T> {
+
+		private class Subscriber implements Cancelable {
+
+			final DownloadCallback<T> callback;
+			final AsyncFuture<T> future = new AsyncFuture<>(this);
+
+			Subscriber(DownloadCallback<T> callback) {
+				this.callback = callback;
+				future.setCallback(callback);
+			}
+
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				detach(this);
+				return true;
+			}
+
+		}
+
+		private final DownloadTask<T> task;
+		private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+		private volatile Future<T> future;
+		private volatile boolean abandoned;
+		private boolean terminated; // guarded by this
+
+		public SharedDownload(DownloadTask<T> task) {
+			this.task = task;
 		}
 
-		private <R> Callback<R> wrapCallback(Callback<R> callback) {
-			return wrapExceptionHandler(Callback.class, callback);
+		/**
+		 * @return the subscriber, null if the download has terminated
+		 */
+		public synchronized Subscriber attach(DownloadCallback<T> callback) {
+			if (terminated || abandoned)
+				return null;
+			Subscriber subscriber = new Subscriber(callback);
+			subscribers.add(subscriber);
+			return subscriber;
 		}
 
-		private <R> DownloadCallback<R> wrapDownloadCallback(DownloadCallback<R> callback) {
-			return wrapExceptionHandler(DownloadCallback.class, callback);
+		public void start(Subscriber leader, int tries) {
+			try {
+				future = downloader.download(task, this, tries);
+			} catch (RejectedExecutionException e) {
+				// the leader handles the rejection, the others attached to a
+				// download which will never start
+				subscribers.remove(leader);
+				failed(e);
+				throw e;
+			}
+
+			if (abandoned)
+				future.cancel(true);
 		}
 
-		private <R> CombinedDownloadCallback<R> wrapCombinedDownloadCallback(CombinedDownloadCallback<R> callback) {
-			return wrapExceptionHandler(CombinedDownloadCallback.class, callback);
+		private void detach(Subscriber subscriber) {
+			synchronized (this) {
+				if (terminated || !subscribers.remove(subscriber) || !subscribers.isEmpty())
+					return;
+				abandoned = true;
+			}
+			sharedDownloads.remove(task, this);
+
+			Future<T> f = future;
+			if (f != null)
+				f.cancel(true);
+		}
+
+		@Override
+		public void done(T result) {
+			for (Subscriber subscriber : terminate())
+				subscriber.future.done(result);
+		}
+
+		@Override
+		public void failed(Throwable e) {
+			for (Subscriber subscriber : terminate())
+				subscriber.future.failed(e);
+		}
+
+		@Override
+		public void cancelled() {
+			for (Subscriber subscriber : terminate())
+				subscriber.future.cancelled();
+		}
+
+		@Override
+		public void updateProgress(long done, long total) {
+			for (Subscriber subscriber : subscribers)
+				subscriber.callback.updateProgress(done, total);
+		}
+
+		@Override
+		public void retry(Throwable e, int current, int max) {
+			for (Subscriber subscriber : subscribers)
+				subscriber.callback.retry(e, current, max);
+		}
+
+		private List<Subscriber> terminate() {
+			sharedDownloads.remove(task, this);
+			synchronized (this) {
+				if (terminated)
+					return Collections.emptyList();
+				terminated = true;
+			}
+			return subscribers;
 		}
 
 	}
@@ -336,13 +675,13 @@ class CombinedDownloaderImpl implements CombinedDownloader {
 
 	}
 
-	private ExecutorService executor;
-	private Downloader downloader;
-	private int defaultTries;
+	private final ExecutorService executor;
+	private final Downloader downloader;
+	private final int defaultTries;
 
 	private volatile boolean shutdown;
-	private final ReadWriteLock globalRwlock = new ReentrantReadWriteLock();
 	private final Set<Future<?>> tasks = Collections.newSetFromMap(new ConcurrentHashMap<Future<?>, Boolean>());
+	private final ConcurrentMap<DownloadTask<?>, SharedDownload<?>> sharedDownloads = new ConcurrentHashMap<>();
 
 	public CombinedDownloaderImpl(ExecutorService executor, Downloader downloader, int defaultTries) {
 		Objects.requireNonNull(executor);
@@ -368,32 +707,32 @@ class CombinedDownloaderImpl implements CombinedDownloader {
 		}
 		task.setCallback(callback);
 
-		Lock lock = globalRwlock.readLock();
-		lock.lock();
-		try {
-			ensureRunning();
+		ensureRunning();
 
-			tasks.add(task);
+		tasks.add(task);
+		try {
 			executor.execute(task);
-		} finally {
-			lock.unlock();
+		} catch (RejectedExecutionException e) {
+			tasks.remove(task);
+			throw e;
 		}
 
+		// shutdown() sets the flag before cancelling the tasks, so either it
+		// sees the task, or we see the flag
+		if (shutdown)
+			task.cancel(true);
+
 		return task;
 	}
 
 	@Override
 	public void shutdown() {
-		Lock lock = globalRwlock.writeLock();
-		lock.lock();
-		try {
+		synchronized (tasks) {
 			if (shutdown) {
 				return;
 			}
 
 			shutdown = true;
-		} finally {
-			lock.unlock();
 		}
 
 		for (Future<?> task : tasks)
@@ -401,8 +740,6 @@ class CombinedDownloaderImpl implements CombinedDownloader {
 
 		executor.shutdownNow();
 		downloader.shutdown();
-		executor = null;
-		downloader = null;
 	}
 
 	@Override
@@ -426,14 +763,37 @@ class CombinedDownloaderImpl implements CombinedDownloader {
 		if (tries < 1)
 			throw new IllegalArgumentException("tries < 1");
 
-		Lock lock = globalRwlock.readLock();
-		lock.lock();
-		try {
-			ensureRunning();
+		ensureRunning();
+
+		return downloader.download(task, callback, tries);
+	}
+
+	/**
+	 * Starts the given subtask, or attaches it to the running download of an
+	 * equal task, so the same resource isn't downloaded twice at the same
+	 * time.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Future<T> downloadShared(DownloadTask<T> task, DownloadCallback<T> callback, int tries) {
+		for (;;) {
+			SharedDownload<T> shared = (SharedDownload<T>) sharedDownloads.get(task);
+			if (shared == null) {
+				shared = new SharedDownload<>(task);
+				SharedDownload<T>.Subscriber leader = shared.attach(callback);
+				SharedDownload<?> existing = sharedDownloads.putIfAbsent(task, shared);
+				if (existing == null) {
+					shared.start(leader, tries);
+					return leader.future;
+				}
+				shared = (SharedDownload<T>) existing;
+			}
+
+			SharedDownload<T>.Subscriber subscriber = shared.attach(callback);
+			if (subscriber != null)
+				return subscriber.future;
 
-			return downloader.download(task, callback, tries);
-		} finally {
-			lock.unlock();
+			// it has terminated just now
+			sharedDownloads.remove(task, shared);
 		}
 	}
 
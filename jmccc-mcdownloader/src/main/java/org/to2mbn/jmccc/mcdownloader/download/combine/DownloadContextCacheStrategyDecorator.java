@@ -1,5 +1,8 @@
 package org.to2mbn.jmccc.mcdownloader.download.combine;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Future;
 import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloadTask.CacheStrategy;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.CombinedDownloadCallback;
@@ -15,8 +18,37 @@ class DownloadContextCacheStrategyDecorator<T> extends CombinedDownloadContextDe
 		this.strategy = strategy;
 	}
 
+	public CacheStrategy getStrategy() {
+		return strategy;
+	}
+
 	@Override
 	public <R> Future<R> submit(DownloadTask<R> task, DownloadCallback<R> callback, boolean fatal) throws InterruptedException {
+		return delegated.submit(process(task), callback, fatal);
+	}
+
+	@Override
+	public <R> Future<R> submit(CombinedDownloadTask<R> task, CombinedDownloadCallback<R> callback, boolean fatal) throws InterruptedException {
+		return delegated.submit(process(task), callback, fatal);
+	}
+
+	@Override
+	public Future<Void> submitAll(Collection<? extends DownloadTask<?>> tasks, DownloadCallback<Void> callback, boolean fatal) throws InterruptedException {
+		List<DownloadTask<?>> processed = new ArrayList<>(tasks.size());
+		for (DownloadTask<?> task : tasks)
+			processed.add(process(task));
+		return delegated.submitAll(processed, callback, fatal);
+	}
+
+	@Override
+	public Future<Void> submitAll(Collection<? extends CombinedDownloadTask<?>> tasks, CombinedDownloadCallback<Void> callback, boolean fatal) throws InterruptedException {
+		List<CombinedDownloadTask<?>> processed = new ArrayList<>(tasks.size());
+		for (CombinedDownloadTask<?> task : tasks)
+			processed.add(process(task));
+		return delegated.submitAll(processed, callback, fatal);
+	}
+
+	private <R> DownloadTask<R> process(DownloadTask<R> task) {
 		DownloadTask<R> processed;
 		switch (strategy) {
 			case CACHEABLE:
@@ -32,11 +64,10 @@ class DownloadContextCacheStrategyDecorator<T> extends CombinedDownloadContextDe
 				processed = task;
 				break;
 		}
-		return delegated.submit(processed, callback, fatal);
+		return processed;
 	}
 
-	@Override
-	public <R> Future<R> submit(CombinedDownloadTask<R> task, CombinedDownloadCallback<R> callback, boolean fatal) throws InterruptedException {
+	private <R> CombinedDownloadTask<R> process(CombinedDownloadTask<R> task) {
 		CombinedDownloadTask<R> processed;
 		switch (strategy) {
 			case CACHEABLE:
@@ -56,6 +87,6 @@ class DownloadContextCacheStrategyDecorator<T> extends CombinedDownloadContextDe
 				processed = task;
 				break;
 		}
-		return delegated.submit(processed, callback, fatal);
+		return processed;
 	}
 }
@@ -0,0 +1,228 @@
+package org.to2mbn.jmccc.mcdownloader.download.combine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.CallbackAdapter;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.DownloadCallback;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadTask;
+import org.to2mbn.jmccc.mcdownloader.util.ThreadPoolUtils;
+
+class FastestCombinedTask<T> extends CombinedDownloadTask<T> {
+
+	private static ScheduledThreadPoolExecutor hedgeTimer;
+
+	private static synchronized ScheduledThreadPoolExecutor getHedgeTimer() {
+		if (hedgeTimer == null) {
+			hedgeTimer = new ScheduledThreadPoolExecutor(1, ThreadPoolUtils.createNamedThreadFactory("fastestCombinedTask.hedge"));
+			hedgeTimer.setKeepAliveTime(10, TimeUnit.SECONDS);
+			hedgeTimer.allowCoreThreadTimeOut(true);
+			hedgeTimer.setRemoveOnCancelPolicy(true);
+		}
+		return hedgeTimer;
+	}
+
+	private class Race {
+
+		private class Candidate extends CallbackAdapter<T> {
+
+			private final int index;
+			private final long startTime = System.nanoTime();
+			private final AtomicBoolean firstByte = new AtomicBoolean();
+
+			public Candidate(int index) {
+				this.index = index;
+			}
+
+			@Override
+			public <R> DownloadCallback<R> taskStart(DownloadTask<R> task) {
+				return new CallbackAdapter<R>() {
+
+					@Override
+					public void updateProgress(long done, long total) {
+						if (done > 0 && firstByte.compareAndSet(false, true)) {
+							stats.recordLatency(mirrors[index], System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+						}
+					}
+				};
+			}
+
+			@Override
+			public void done(T result) {
+				Race.this.done(result);
+			}
+
+			@Override
+			public void failed(Throwable e) {
+				Race.this.failed(this, e);
+			}
+
+			@Override
+			public void cancelled() {
+				Race.this.cancelled();
+			}
+
+		}
+
+		private final CombinedDownloadContext<T> context;
+		private final Integer[] order;
+
+		// guarded by this
+		private int next;
+		private int running;
+		private boolean terminated;
+		private Throwable exception;
+		private final List<Future<T>> futures = new ArrayList<>();
+		private ScheduledFuture<?> hedge;
+
+		public Race(CombinedDownloadContext<T> context) {
+			this.context = context;
+
+			// the mirrors without statistics come first, so that each of them
+			// will be measured
+			order = new Integer[tasks.length];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+			Arrays.sort(order, new Comparator<Integer>() {
+
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return Long.compare(stats.getLatency(mirrors[o1]), stats.getLatency(mirrors[o2]));
+				}
+			});
+		}
+
+		public void startNext() throws InterruptedException {
+			final Candidate candidate;
+			synchronized (this) {
+				if (terminated || next >= order.length)
+					return;
+				candidate = new Candidate(order[next++]);
+				running++;
+			}
+
+			Future<T> future = context.submit(tasks[candidate.index], candidate, false);
+
+			synchronized (this) {
+				if (terminated) {
+					future.cancel(true);
+					return;
+				}
+				futures.add(future);
+
+				if (hedgeEnabled && next < order.length) {
+					long delay = stats.getHedgeDelay(mirrors[candidate.index]);
+					if (delay >= 0) {
+						if (hedge != null)
+							hedge.cancel(false);
+						hedge = getHedgeTimer().schedule(new Runnable() {
+
+							@Override
+							public void run() {
+								if (!candidate.firstByte.get()) {
+									try {
+										startNext();
+									} catch (InterruptedException e) {
+										// the combined task has been terminated
+									}
+								}
+							}
+						}, delay, TimeUnit.MILLISECONDS);
+					}
+				}
+			}
+		}
+
+		private void done(T result) {
+			if (terminate())
+				context.done(result);
+		}
+
+		private void failed(Candidate candidate, Throwable e) {
+			boolean startNext;
+			Throwable failure = null;
+			synchronized (this) {
+				if (terminated)
+					return;
+
+				running--;
+				if (exception != null)
+					e.addSuppressed(exception);
+				exception = e;
+
+				startNext = next < order.length && canContinue(e);
+				if (!startNext && running == 0)
+					failure = exception;
+			}
+
+			stats.recordFailure(mirrors[candidate.index]);
+
+			if (startNext) {
+				try {
+					startNext();
+				} catch (InterruptedException e1) {
+					Thread.currentThread().interrupt();
+				}
+			} else if (failure != null && terminate()) {
+				context.failed(failure);
+			}
+		}
+
+		private void cancelled() {
+			if (terminate())
+				context.cancelled();
+		}
+
+		private boolean terminate() {
+			List<Future<T>> toCancel;
+			synchronized (this) {
+				if (terminated)
+					return false;
+				terminated = true;
+				if (hedge != null)
+					hedge.cancel(false);
+				toCancel = new ArrayList<>(futures);
+			}
+			for (Future<T> future : toCancel)
+				if (!future.isDone())
+					future.cancel(true);
+			return true;
+		}
+
+	}
+
+	private final CombinedDownloadTask<T>[] tasks;
+	private final String[] mirrors;
+	private final MirrorStats stats;
+	private final boolean hedgeEnabled;
+	private final Class<? extends Throwable>[] expectedExceptions;
+
+	public FastestCombinedTask(CombinedDownloadTask<T>[] tasks, String[] mirrors, MirrorStats stats, boolean hedgeEnabled, Class<? extends Throwable>[] expectedExceptions) {
+		this.tasks = tasks;
+		this.mirrors = mirrors;
+		this.stats = stats;
+		this.hedgeEnabled = hedgeEnabled;
+		this.expectedExceptions = expectedExceptions;
+	}
+
+	@Override
+	public void execute(CombinedDownloadContext<T> context) throws Exception {
+		new Race(context).startNext();
+	}
+
+	private boolean canContinue(Throwable e) {
+		for (Class<? extends Throwable> expected : expectedExceptions) {
+			if (expected.isInstance(e)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
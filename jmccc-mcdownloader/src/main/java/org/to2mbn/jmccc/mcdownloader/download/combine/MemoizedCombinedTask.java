@@ -0,0 +1,100 @@
+package org.to2mbn.jmccc.mcdownloader.download.combine;
+
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.Callback;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.CallbackAdapter;
+
+class MemoizedCombinedTask<T> extends CombinedDownloadTaskDecorator<T> {
+
+	private final ResultCache cache;
+	private final String key;
+
+	public MemoizedCombinedTask(CombinedDownloadTask<T> delegated, ResultCache cache, String key) {
+		super(delegated);
+		this.cache = cache;
+		this.key = key;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void execute(final CombinedDownloadContext<T> context) throws Exception {
+		final ResultCache.Entry created = new ResultCache.Entry();
+		ResultCache.Entry entry;
+		if (getEffectiveStrategy(context) == CacheStrategy.NON_CACHEABLE) {
+			// the cached result mustn't be used, the new one replaces it
+			cache.replace(key, created);
+			entry = null;
+		} else {
+			entry = cache.acquire(key, created);
+		}
+
+		if (entry == null) {
+			// we are the first one, run the task and share the result
+			try {
+				context.submit(delegated, new CallbackAdapter<T>() {
+
+					@Override
+					public void done(T result) {
+						cache.done(created, result);
+						context.done(result);
+					}
+
+					@Override
+					public void failed(Throwable e) {
+						cache.failed(key, created, e);
+					}
+
+					@Override
+					public void cancelled() {
+						cache.cancelled(key, created);
+					}
+
+				}, true);
+			} catch (Throwable e) {
+				cache.failed(key, created, e);
+				throw e;
+			}
+			return;
+		}
+
+		boolean waiting = entry.await(new Callback<Object>() {
+
+			@Override
+			public void done(Object result) {
+				context.done((T) result);
+			}
+
+			@Override
+			public void failed(Throwable e) {
+				context.failed(e);
+			}
+
+			@Override
+			public void cancelled() {
+				// the task which was computing the result has been cancelled, try again
+				try {
+					execute(context);
+				} catch (Throwable e) {
+					context.failed(e);
+				}
+			}
+		});
+		if (!waiting) {
+			context.done((T) entry.getResult());
+		}
+	}
+
+	/**
+	 * The cache strategy is passed down by decorating the contexts, the
+	 * nearest decorator is the one in effect.
+	 */
+	private static CacheStrategy getEffectiveStrategy(CombinedDownloadContext<?> context) {
+		while (context instanceof CombinedDownloadContextDecorator) {
+			if (context instanceof DownloadContextCacheStrategyDecorator) {
+				return ((DownloadContextCacheStrategyDecorator<?>) context).getStrategy();
+			}
+			context = ((CombinedDownloadContextDecorator<?>) context).delegated;
+		}
+		return CacheStrategy.DEFAULT;
+	}
+
+}
@@ -0,0 +1,142 @@
+package org.to2mbn.jmccc.mcdownloader.download.combine;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the rolling latency statistics of mirrors.
+ * <p>
+ * The latency of a mirror is the time from the start of a request to the
+ * arrival of its first byte. It's smoothed in the same way as the TCP
+ * retransmission timer (RFC 6298): a moving average of the latency and a
+ * moving average of its deviation are maintained, so that
+ * <code>average + 4 * deviation</code> estimates a high percentile of the
+ * latency, which is used as the delay before hedging a request.
+ * <p>
+ * This class is thread-safe.
+ * 
+ * @see CombinedDownloadTask#fastest(MirrorStats, String[], CombinedDownloadTask[])
+ */
+public class MirrorStats {
+
+	private static class Entry {
+
+		double average;
+		double deviation;
+
+	}
+
+	/**
+	 * The latency recorded for a failure, in milliseconds.
+	 */
+	private static final double FAILURE_PENALTY = 10_000;
+
+	private static final MirrorStats DEFAULT = new MirrorStats();
+
+	/**
+	 * Returns the statistics shared by the providers which don't specify their
+	 * own.
+	 * 
+	 * @return the shared statistics
+	 */
+	public static MirrorStats getDefault() {
+		return DEFAULT;
+	}
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Records the latency of a request to the given mirror.
+	 * 
+	 * @param mirror the key of the mirror
+	 * @param latency the time from the start of the request to the first byte
+	 * @param unit the unit of <code>latency</code>
+	 * @throws NullPointerException if <code>mirror == null || unit == null</code>
+	 */
+	public void recordLatency(String mirror, long latency, TimeUnit unit) {
+		Objects.requireNonNull(unit);
+		update(mirror, unit.toMicros(latency) / 1000d);
+	}
+
+	/**
+	 * Records a failed request to the given mirror. A failure counts as a very
+	 * slow response, so the mirror will be chosen after the healthy ones.
+	 * 
+	 * @param mirror the key of the mirror
+	 * @throws NullPointerException if <code>mirror == null</code>
+	 */
+	public void recordFailure(String mirror) {
+		update(mirror, FAILURE_PENALTY);
+	}
+
+	/**
+	 * Gets the average latency of the given mirror.
+	 * 
+	 * @param mirror the key of the mirror
+	 * @return the average latency in milliseconds, -1 if the mirror has no
+	 *         statistics yet
+	 */
+	public long getLatency(String mirror) {
+		Entry entry = entries.get(mirror);
+		if (entry == null)
+			return -1;
+		synchronized (entry) {
+			return (long) entry.average;
+		}
+	}
+
+	/**
+	 * Gets the delay after which a request to the given mirror should be
+	 * hedged, that is, how long it takes for almost all the requests to the
+	 * mirror to receive their first byte.
+	 * 
+	 * @param mirror the key of the mirror
+	 * @return the delay in milliseconds, -1 if the mirror has no statistics
+	 *         yet
+	 */
+	public long getHedgeDelay(String mirror) {
+		Entry entry = entries.get(mirror);
+		if (entry == null)
+			return -1;
+		synchronized (entry) {
+			return (long) (entry.average + 4 * entry.deviation);
+		}
+	}
+
+	/**
+	 * Clears all the statistics.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	private void update(String mirror, double sample) {
+		Objects.requireNonNull(mirror);
+		Entry entry = entries.get(mirror);
+		if (entry == null) {
+			Entry newEntry = new Entry();
+			newEntry.average = -1;
+			entry = entries.putIfAbsent(mirror, newEntry);
+			if (entry == null)
+				entry = newEntry;
+		}
+
+		synchronized (entry) {
+			if (entry.average < 0) {
+				entry.average = sample;
+				entry.deviation = sample / 2;
+			} else {
+				entry.deviation = 0.75 * entry.deviation + 0.25 * Math.abs(entry.average - sample);
+				entry.average = 0.875 * entry.average + 0.125 * sample;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MirrorStats " + entries.keySet();
+	}
+
+}
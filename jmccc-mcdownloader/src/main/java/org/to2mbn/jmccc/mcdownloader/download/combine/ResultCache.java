@@ -0,0 +1,182 @@
+package org.to2mbn.jmccc.mcdownloader.download.combine;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.Callback;
+
+/**
+ * Keeps the decoded results of combined tasks in memory, such as version
+ * lists, so that they aren't downloaded and decoded again each time they are
+ * needed.
+ * <p>
+ * The results are keyed by cache pool and uri, and expire after the given
+ * time. If a result is requested while it's being computed, the requester
+ * waits for the running task instead of starting another one. Failures are
+ * not cached.
+ * <p>
+ * This class is thread-safe.
+ * 
+ * @see CombinedDownloadTask#memoized(ResultCache, String, URI)
+ */
+public class ResultCache {
+
+	static class Entry {
+
+		// guarded by this
+		private boolean completed;
+		private Object result;
+		private long expireTime;
+		private List<Callback<Object>> waiters = new ArrayList<>();
+
+		/**
+		 * Adds a waiter if the entry is being computed.
+		 * 
+		 * @param waiter the waiter
+		 * @return true if the waiter has been added, false if the entry has
+		 *         completed
+		 */
+		synchronized boolean await(Callback<Object> waiter) {
+			if (completed) {
+				return false;
+			}
+			waiters.add(waiter);
+			return true;
+		}
+
+		synchronized boolean isExpired() {
+			return completed && System.nanoTime() - expireTime > 0;
+		}
+
+		synchronized Object getResult() {
+			return result;
+		}
+
+		private List<Callback<Object>> complete(Object result, long expireTime) {
+			synchronized (this) {
+				if (completed) {
+					return new ArrayList<>();
+				}
+				completed = true;
+				this.result = result;
+				this.expireTime = expireTime;
+				List<Callback<Object>> toNotify = waiters;
+				waiters = null;
+				return toNotify;
+			}
+		}
+
+	}
+
+	private static final ResultCache DEFAULT = new ResultCache(10, TimeUnit.MINUTES);
+
+	/**
+	 * Returns the cache shared by the download providers, whose results
+	 * expire in 10 minutes.
+	 * 
+	 * @return the shared cache
+	 */
+	public static ResultCache getDefault() {
+		return DEFAULT;
+	}
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final long ttl;
+
+	/**
+	 * Constructs a ResultCache.
+	 * 
+	 * @param ttl the time to live of the results
+	 * @param unit the unit of <code>ttl</code>
+	 * @throws NullPointerException if <code>unit == null</code>
+	 */
+	public ResultCache(long ttl, TimeUnit unit) {
+		this.ttl = unit.toNanos(ttl);
+	}
+
+	/**
+	 * Removes the result of the given key, the next request will run the task
+	 * again.
+	 * 
+	 * @param cachePool the cache pool
+	 * @param uri the uri
+	 * @throws NullPointerException if <code>uri == null</code>
+	 */
+	public void invalidate(String cachePool, URI uri) {
+		entries.remove(toKey(cachePool, uri));
+	}
+
+	/**
+	 * Removes all the results.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Gets the entry of the given key, or creates one if absent or expired.
+	 * 
+	 * @param key the key
+	 * @param created receives the new entry, which the caller is responsible
+	 *            for computing
+	 * @return the existing entry, null if a new entry has been created
+	 */
+	Entry acquire(String key, Entry created) {
+		for (;;) {
+			Entry entry = entries.putIfAbsent(key, created);
+			if (entry == null) {
+				return null;
+			}
+			if (!entry.isExpired()) {
+				return entry;
+			}
+			entries.remove(key, entry);
+		}
+	}
+
+	/**
+	 * Replaces the entry of the given key, whether or not it has expired.
+	 * 
+	 * @param key the key
+	 * @param created the new entry, which the caller is responsible for
+	 *            computing
+	 */
+	void replace(String key, Entry created) {
+		entries.put(key, created);
+	}
+
+	void done(Entry entry, Object result) {
+		for (Callback<Object> waiter : entry.complete(result, System.nanoTime() + ttl)) {
+			waiter.done(result);
+		}
+	}
+
+	void failed(String key, Entry entry, Throwable e) {
+		entries.remove(key, entry);
+		for (Callback<Object> waiter : entry.complete(null, System.nanoTime())) {
+			waiter.failed(e);
+		}
+	}
+
+	void cancelled(String key, Entry entry) {
+		entries.remove(key, entry);
+		for (Callback<Object> waiter : entry.complete(null, System.nanoTime())) {
+			waiter.cancelled();
+		}
+	}
+
+	static String toKey(String cachePool, URI uri) {
+		Objects.requireNonNull(uri);
+		return cachePool + "\n" + uri;
+	}
+
+	@Override
+	public String toString() {
+		return "ResultCache " + entries.keySet();
+	}
+
+}
@@ -0,0 +1,80 @@
+package org.to2mbn.jmccc.mcdownloader.download.combine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the running subtasks of a combined task, and calls back when all of
+ * them have terminated.
+ * <p>
+ * Counting up and down doesn't lock. The lock is taken only when the count
+ * reaches zero and when a callback is registered, and the count is checked
+ * again under it, so a callback never fires while a subtask submitted before
+ * its registration is still running.
+ */
+abstract class SubtaskCounter {
+
+	private final AtomicInteger count = new AtomicInteger();
+	private List<Callable<?>> waitNodes = new ArrayList<>(); // guarded by this
+
+	public void countUp() {
+		int current = count.incrementAndGet();
+		if (current < 1)
+			throw new IllegalStateException("Invalid task count: " + current);
+	}
+
+	public void countDown() {
+		int current = count.decrementAndGet();
+		if (current == 0) {
+			fireWaitNodes();
+		} else if (current < 0) {
+			throw new IllegalStateException("Invalid task count: " + current);
+		}
+	}
+
+	public void awaitAllTasks(Callable<Void> callback) {
+		synchronized (this) {
+			if (count.get() > 0) {
+				waitNodes.add(callback);
+				return;
+			}
+		}
+		doCallback(callback);
+	}
+
+	/**
+	 * Fires the waiting callbacks if there is still no running subtask. A
+	 * subtask may have been submitted since the count reached zero, and the
+	 * callbacks registered after it must wait for it.
+	 */
+	void fireWaitNodes() {
+		List<Callable<?>> copiedWaitNodes;
+		synchronized (this) {
+			if (count.get() != 0 || waitNodes.isEmpty())
+				return;
+			copiedWaitNodes = waitNodes;
+			waitNodes = new ArrayList<>();
+		}
+
+		for (Callable<?> waitNode : copiedWaitNodes)
+			doCallback(waitNode);
+	}
+
+	/**
+	 * Called when a callback throws an exception.
+	 * 
+	 * @param e the exception
+	 */
+	protected abstract void callbackFailed(Throwable e);
+
+	private void doCallback(Callable<?> callback) {
+		try {
+			callback.call();
+		} catch (Throwable e) {
+			callbackFailed(e);
+		}
+	}
+
+}
@@ -8,6 +8,7 @@ import org.to2mbn.jmccc.util.Builder;
 abstract public class AbstractDownloaderBuilder implements Builder<Downloader> {
 
 	protected int maxConnections = 20;
+	protected int maxConnectionsPerHost = 0;
 	protected int connectTimeout = 10000;
 	protected int readTimeout = 20000;
 	protected Proxy proxy = Proxy.NO_PROXY;
@@ -22,6 +23,21 @@ abstract public class AbstractDownloaderBuilder implements Builder<Downloader> {
 		return this;
 	}
 
+	/**
+	 * Sets the maximum number of connections to a single host.
+	 * <p>
+	 * A slow host cannot hold more connections than this, so the other hosts
+	 * can still use the rest of <code>maxConnections</code>. Default to 0,
+	 * which means no limit besides <code>maxConnections</code>.
+	 * 
+	 * @param maxConnectionsPerHost the maximum number of connections per host
+	 * @return the builder itself
+	 */
+	public AbstractDownloaderBuilder maxConnectionsPerHost(int maxConnectionsPerHost) {
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+		return this;
+	}
+
 	public AbstractDownloaderBuilder connectTimeout(int connectTimeout) {
 		this.connectTimeout = connectTimeout;
 		return this;
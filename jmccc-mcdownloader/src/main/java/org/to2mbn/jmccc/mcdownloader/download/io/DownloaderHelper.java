@@ -1,6 +1,8 @@
 package org.to2mbn.jmccc.mcdownloader.download.io;
 
 import java.io.IOException;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.ConditionalDownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadTask;
 
 public final class DownloaderHelper {
 
@@ -38,4 +40,54 @@ public final class DownloaderHelper {
 		}
 	}
 
+	/**
+	 * Chooses the validator to send in the <code>If-Range</code> header of a
+	 * range request.
+	 * <p>
+	 * <code>If-Range</code> only accepts a strong ETag or a date, so weak
+	 * ETags are ignored.
+	 * 
+	 * @param etag the <code>ETag</code> header
+	 * @param lastModified the <code>Last-Modified</code> header
+	 * @return the validator, null if no validator is available
+	 */
+	public static String getRangeValidator(String etag, String lastModified) {
+		if (etag != null && etag.startsWith("\"")) {
+			return etag;
+		}
+		return lastModified;
+	}
+
+	/**
+	 * Gets the task as a {@link ConditionalDownloadTask} if it has
+	 * validators to send.
+	 * 
+	 * @param task the task
+	 * @return the task, null if a conditional request cannot be sent
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> ConditionalDownloadTask<T> getConditionalTask(DownloadTask<T> task) {
+		if (task instanceof ConditionalDownloadTask) {
+			ConditionalDownloadTask<T> conditional = (ConditionalDownloadTask<T>) task;
+			if (conditional.getIfNoneMatch() != null || conditional.getIfModifiedSince() != null) {
+				return conditional;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Passes the validators of a response to the task if it's a
+	 * {@link ConditionalDownloadTask}.
+	 * 
+	 * @param task the task
+	 * @param etag the <code>ETag</code> header
+	 * @param lastModified the <code>Last-Modified</code> header
+	 */
+	public static void validatorsReceived(DownloadTask<?> task, String etag, String lastModified) {
+		if (task instanceof ConditionalDownloadTask) {
+			((ConditionalDownloadTask<?>) task).validatorsReceived(etag, lastModified);
+		}
+	}
+
 }
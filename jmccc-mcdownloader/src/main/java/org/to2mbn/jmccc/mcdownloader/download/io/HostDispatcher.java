@@ -0,0 +1,191 @@
+package org.to2mbn.jmccc.mcdownloader.download.io;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Dispatches tasks to an executor, limiting the number of tasks running for
+ * each host.
+ * <p>
+ * The tasks are queued per host, and the hosts which have pending tasks are
+ * served in round-robin order, so a host with a long queue cannot delay the
+ * other hosts. A task is handed to the executor only when a slot is
+ * available, so the slots held by a slow host are never more than the
+ * per-host limit, and the remaining slots are kept busy by the other hosts.
+ */
+class HostDispatcher {
+
+	private static class HostQueue {
+
+		final String host;
+		final Queue<Runnable> pending = new ArrayDeque<>();
+		int running;
+		boolean ready;
+
+		HostQueue(String host) {
+			this.host = host;
+		}
+
+	}
+
+	private class DispatchedTask implements Runnable {
+
+		private final HostQueue queue;
+		private final Runnable task;
+
+		DispatchedTask(HostQueue queue, Runnable task) {
+			this.queue = queue;
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			try {
+				task.run();
+			} finally {
+				finished(queue);
+			}
+		}
+
+	}
+
+	private final Executor executor;
+	private final int maxRunning;
+	private final int maxRunningPerHost;
+
+	// guarded by this
+	private final Map<String, HostQueue> hosts = new HashMap<>();
+	private final Queue<HostQueue> readyHosts = new ArrayDeque<>();
+	private int running;
+
+	/**
+	 * Constructor of HostDispatcher.
+	 * 
+	 * @param executor the executor to run the tasks
+	 * @param maxRunning the maximum number of running tasks
+	 * @param maxRunningPerHost the maximum number of running tasks for each
+	 *            host, non-positive value means no limit besides
+	 *            <code>maxRunning</code>
+	 * @throws NullPointerException if <code>executor == null</code>
+	 * @throws IllegalArgumentException if <code>maxRunning &lt; 1</code>
+	 */
+	public HostDispatcher(Executor executor, int maxRunning, int maxRunningPerHost) {
+		Objects.requireNonNull(executor);
+		if (maxRunning < 1)
+			throw new IllegalArgumentException("maxRunning < 1");
+
+		this.executor = executor;
+		this.maxRunning = maxRunning;
+		this.maxRunningPerHost = maxRunningPerHost < 1 ? maxRunning : Math.min(maxRunningPerHost, maxRunning);
+	}
+
+	/**
+	 * Queues a task for the host of the given uri.
+	 * 
+	 * @param uri the uri the task connects to
+	 * @param task the task
+	 * @throws NullPointerException if <code>uri == null || task == null</code>
+	 */
+	public void execute(URI uri, Runnable task) {
+		Objects.requireNonNull(task);
+		String host = hostOf(uri);
+
+		List<DispatchedTask> toRun;
+		synchronized (this) {
+			HostQueue queue = hosts.get(host);
+			if (queue == null) {
+				queue = new HostQueue(host);
+				hosts.put(host, queue);
+			}
+			queue.pending.add(task);
+			markReady(queue);
+			toRun = dispatch();
+		}
+		run(toRun);
+	}
+
+	/**
+	 * Returns the number of tasks which are queued but not running.
+	 * 
+	 * @return the number of pending tasks
+	 */
+	public synchronized int getPendingCount() {
+		int count = 0;
+		for (HostQueue queue : hosts.values())
+			count += queue.pending.size();
+		return count;
+	}
+
+	static String hostOf(URI uri) {
+		return uri.getHost() + ":" + uri.getPort();
+	}
+
+	private void finished(HostQueue queue) {
+		List<DispatchedTask> toRun;
+		synchronized (this) {
+			queue.running--;
+			running--;
+			if (queue.pending.isEmpty()) {
+				if (queue.running == 0)
+					hosts.remove(queue.host);
+			} else {
+				markReady(queue);
+			}
+			toRun = dispatch();
+		}
+		run(toRun);
+	}
+
+	private void markReady(HostQueue queue) {
+		if (!queue.ready && !queue.pending.isEmpty() && queue.running < maxRunningPerHost) {
+			queue.ready = true;
+			readyHosts.add(queue);
+		}
+	}
+
+	private List<DispatchedTask> dispatch() {
+		List<DispatchedTask> toRun = null;
+		while (running < maxRunning && !readyHosts.isEmpty()) {
+			HostQueue queue = readyHosts.poll();
+			queue.ready = false;
+			Runnable task = queue.pending.poll();
+			queue.running++;
+			running++;
+
+			// put it back to the tail, so that the next task comes from another host
+			markReady(queue);
+
+			if (toRun == null)
+				toRun = new ArrayList<>();
+			toRun.add(new DispatchedTask(queue, task));
+		}
+		return toRun;
+	}
+
+	private void run(List<DispatchedTask> toRun) {
+		if (toRun == null)
+			return;
+
+		for (DispatchedTask task : toRun) {
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				// the executor has been shut down, give the slot back without
+				// dispatching more tasks
+				synchronized (this) {
+					task.queue.running--;
+					running--;
+				}
+			}
+		}
+	}
+
+}
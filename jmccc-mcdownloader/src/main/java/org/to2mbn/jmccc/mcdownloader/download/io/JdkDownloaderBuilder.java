@@ -4,6 +4,11 @@ import org.to2mbn.jmccc.mcdownloader.download.Downloader;
 
 public class JdkDownloaderBuilder extends AbstractDownloaderBuilder {
 
+	protected int maxSegments = 1;
+	protected long segmentThreshold = 4 * 1024 * 1024;
+	protected int maxSegmentConnectionsPerHost = 4;
+	protected boolean useVirtualThreads = false;
+
 	public static JdkDownloaderBuilder create() {
 		return new JdkDownloaderBuilder();
 	}
@@ -12,9 +17,71 @@ public class JdkDownloaderBuilder extends AbstractDownloaderBuilder {
 		return create().build();
 	}
 
+	/**
+	 * Sets the maximum number of segments a resource can be split into.
+	 * <p>
+	 * If the server supports range requests, a resource whose length is not
+	 * less than the segment threshold will be downloaded in several segments
+	 * concurrently. Only the tasks which support segmented download (such as
+	 * {@link org.to2mbn.jmccc.mcdownloader.download.tasks.FileDownloadTask})
+	 * are affected. Default to 1, which means segmented download is disabled.
+	 * 
+	 * @param maxSegments the maximum number of segments
+	 * @return the builder itself
+	 */
+	public JdkDownloaderBuilder maxSegments(int maxSegments) {
+		this.maxSegments = maxSegments;
+		return this;
+	}
+
+	/**
+	 * Sets the minimum length of a resource to be downloaded in segments.
+	 * Default to 4 MiB.
+	 * 
+	 * @param segmentThreshold the minimum length in bytes
+	 * @return the builder itself
+	 */
+	public JdkDownloaderBuilder segmentThreshold(long segmentThreshold) {
+		this.segmentThreshold = segmentThreshold;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of additional connections opened to a host for
+	 * segmented download. Default to 4.
+	 * <p>
+	 * These connections are counted in <code>maxConnectionsPerHost</code>, so
+	 * the segments only use the connections which are not used by the other
+	 * downloads from the same host.
+	 * 
+	 * @param maxSegmentConnectionsPerHost the maximum number of additional
+	 *            connections per host
+	 * @return the builder itself
+	 */
+	public JdkDownloaderBuilder maxSegmentConnectionsPerHost(int maxSegmentConnectionsPerHost) {
+		this.maxSegmentConnectionsPerHost = maxSegmentConnectionsPerHost;
+		return this;
+	}
+
+	/**
+	 * Sets whether to run each download in a virtual thread.
+	 * <p>
+	 * If true, each download runs in a new virtual thread, and the number of
+	 * concurrent downloads is still limited by <code>maxConnections</code>.
+	 * If the current JVM doesn't support virtual threads, a pool of platform
+	 * threads will be used instead. Default to false.
+	 * 
+	 * @param useVirtualThreads true to use virtual threads
+	 * @return the builder itself
+	 */
+	public JdkDownloaderBuilder useVirtualThreads(boolean useVirtualThreads) {
+		this.useVirtualThreads = useVirtualThreads;
+		return this;
+	}
+
 	@Override
 	public Downloader build() {
-		return new JdkHttpDownloader(maxConnections, connectTimeout, readTimeout, downloadPoolKeepAliveTime, downloadPoolKeepAliveTimeUnit, proxy);
+		return new JdkHttpDownloader(maxConnections, maxConnectionsPerHost, connectTimeout, readTimeout, downloadPoolKeepAliveTime, downloadPoolKeepAliveTimeUnit, proxy, maxSegments, segmentThreshold, maxSegmentConnectionsPerHost, useVirtualThreads);
 	}
 
 }
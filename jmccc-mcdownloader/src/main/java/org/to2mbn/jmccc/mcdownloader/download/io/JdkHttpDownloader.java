@@ -4,17 +4,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.Proxy;
+import java.net.URI;
 import java.net.URLConnection;
 import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -25,8 +31,10 @@ import org.to2mbn.jmccc.mcdownloader.download.concurrent.CallbackFutureTask;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.Callbacks;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.DownloadCallback;
 import org.to2mbn.jmccc.mcdownloader.download.concurrent.DownloadCallbacks;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.ConditionalDownloadTask;
 import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadSession;
 import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.SegmentedDownloadSession;
 import org.to2mbn.jmccc.mcdownloader.util.ThreadPoolUtils;
 
 class JdkHttpDownloader implements Downloader {
@@ -41,6 +49,8 @@ class JdkHttpDownloader implements Downloader {
 		private final DownloadCallback<T> callback;
 		private final int maxTries;
 
+		private final ResumeState<T> resumeState = new ResumeState<>();
+
 		private boolean skipRetry = false;
 
 		public CallableDownloadTask(DownloadTask<T> task, DownloadCallback<T> callback, int maxTries) {
@@ -57,84 +67,152 @@ class JdkHttpDownloader implements Downloader {
 		@Override
 		public T call() throws Exception {
 			int currentTries = 0;
-			for (;;) {
-				try {
-					return download();
-				} catch (IOException e) {
-					checkInterrupted();
-					currentTries++;
-					if (currentTries < maxTries && !skipRetry && DownloaderHelper.shouldRetry(e)) {
-						callback.retry(e, currentTries, maxTries);
-					} else {
-						throw e;
+			try {
+				for (;;) {
+					try {
+						return download();
+					} catch (IOException e) {
+						checkInterrupted();
+						currentTries++;
+						if (currentTries < maxTries && !skipRetry && DownloaderHelper.shouldRetry(e)) {
+							callback.retry(e, currentTries, maxTries);
+						} else {
+							throw e;
+						}
 					}
 				}
+			} catch (Throwable e) {
+				resumeState.discard(e);
+				throw e;
 			}
 		}
 
 		private T download() throws Exception {
-			URLConnection connection = task.getURI().toURL().openConnection(proxy);
-			connection.setReadTimeout(readTimeout);
-			connection.setConnectTimeout(connectTimeout);
-			connection.setRequestProperty("Accept", "*/*");
-			connection.setRequestProperty("Connection", "keep-alive");
-			connection.setRequestProperty("Accept-Encoding", "gzip");
-			if (connection instanceof HttpURLConnection) {
-				((HttpURLConnection) connection).setRequestMethod("GET");
+			boolean resuming = resumeState.isResumable();
+			if (!resuming) {
+				resumeState.discard();
+			}
+
+			ConditionalDownloadTask<T> conditional = resuming ? null : DownloaderHelper.getConditionalTask(task);
+
+			URLConnection connection = openConnection(task.getURI());
+			if (resuming) {
+				connection.setRequestProperty("Accept-Encoding", "identity");
+				connection.setRequestProperty("Range", "bytes=" + resumeState.getReceived() + "-");
+				connection.setRequestProperty("If-Range", resumeState.getValidator());
+			} else {
+				connection.setRequestProperty("Accept-Encoding", "gzip");
+				if (conditional != null) {
+					String ifNoneMatch = conditional.getIfNoneMatch();
+					String ifModifiedSince = conditional.getIfModifiedSince();
+					if (ifNoneMatch != null)
+						connection.setRequestProperty("If-None-Match", ifNoneMatch);
+					if (ifModifiedSince != null)
+						connection.setRequestProperty("If-Modified-Since", ifModifiedSince);
+				}
 			}
 			connection.connect();
 
 			try {
+				int responseCode = -1;
 				if (connection instanceof HttpURLConnection) {
-					int responseCode = ((HttpURLConnection) connection).getResponseCode();
+					responseCode = ((HttpURLConnection) connection).getResponseCode();
+					if (conditional != null && responseCode == 304) {
+						// Not Modified, the copy of the task is up to date
+						return conditional.notModified();
+					}
+					if (resuming && responseCode == 416) {
+						// Range Not Satisfiable, start over
+						resumeState.discard();
+						throw new IOException("Cannot resume: " + ((HttpURLConnection) connection).getHeaderField(0));
+					}
 					if (responseCode < 200 || responseCode > 299) {
 						// non-2xx response code
 						throw new IllegalHttpResponseCodeException(((HttpURLConnection) connection).getHeaderField(0), responseCode);
 					}
 				}
 
-				String contentLengthStr = connection.getHeaderField("Content-Length");
-				long contentLength = -1;
-				if (contentLengthStr != null) {
-					try {
-						contentLength = Long.parseLong(contentLengthStr);
-						if (contentLength < 0) {
-							LOGGER.warning("Invalid Content-Length: " + contentLengthStr + ", ignoring");
-							contentLength = -1;
-						}
-					} catch (NumberFormatException e) {
-						LOGGER.warning("Invalid Content-Length: " + contentLengthStr + ", ignoring: " + e);
+				if (resuming && !resumeState.accept(responseCode, connection.getHeaderField("Content-Range"), connection.getHeaderField("Content-Encoding"))) {
+					// the server ignored the range, or the resource has been changed
+					resumeState.discard();
+					if (responseCode == 206) {
+						throw new IOException("Unexpected partial response: " + connection.getHeaderField("Content-Range"));
 					}
 				}
 
-				checkInterrupted();
-
-				DownloadSession<T> session = (contentLength == -1)
-						? task.createSession()
-						: task.createSession(contentLength);
+				if (!resumeState.hasSession()) {
+					DownloaderHelper.validatorsReceived(task, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+				}
 
-				if (connection instanceof HttpURLConnection && "gzip".equals(connection.getHeaderField("Content-Encoding"))) {
-					session = new GzipDownloadSession<>(session);
+				if (!resuming && responseCode == 200 && isSegmentable(connection)) {
+					long contentLength = Long.parseLong(connection.getHeaderField("Content-Length"));
+					SegmentedDownloadSession<T> session = task.createSegmentedSession(contentLength);
+					if (session != null) {
+						String validator = DownloaderHelper.getRangeValidator(connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+						return new SegmentedDownload<>(task.getURI(), validator, contentLength, session, callback).download(connection.getInputStream());
+					}
 				}
 
-				long downloaded = 0;
+				if (!resumeState.hasSession()) {
+					String contentLengthStr = connection.getHeaderField("Content-Length");
+					long contentLength = -1;
+					if (contentLengthStr != null) {
+						try {
+							contentLength = Long.parseLong(contentLengthStr);
+							if (contentLength < 0) {
+								LOGGER.warning("Invalid Content-Length: " + contentLengthStr + ", ignoring");
+								contentLength = -1;
+							}
+						} catch (NumberFormatException e) {
+							LOGGER.warning("Invalid Content-Length: " + contentLengthStr + ", ignoring: " + e);
+						}
+					}
+
+					checkInterrupted();
+
+					boolean gzip = connection instanceof HttpURLConnection && "gzip".equals(connection.getHeaderField("Content-Encoding"));
+
+					// the Content-Length of a gzipped response isn't the length of the resource
+					DownloadSession<T> session = (contentLength == -1 || gzip)
+							? task.createSession()
+							: task.createSession(contentLength);
+
+					String validator = null;
+					if (gzip) {
+						session = new GzipDownloadSession<>(session);
+					} else {
+						validator = DownloaderHelper.getRangeValidator(connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+					}
+
+					resumeState.begin(session, contentLength, validator);
+				}
 
+				DownloadSession<T> session = resumeState.getSession();
+				boolean readingResponse = true;
 				try (InputStream in = connection.getInputStream()) {
 					byte[] buf = new byte[BUFFER_SIZE];
 					int read;
 					while ((read = in.read(buf)) != -1) {
+						readingResponse = false;
 						checkInterrupted();
-						downloaded += read;
 						session.receiveData(ByteBuffer.wrap(buf, 0, read));
+						resumeState.received(read);
 						skipRetry = true;
-						callback.updateProgress(downloaded, contentLength);
+						callback.updateProgress(resumeState.getReceived(), resumeState.getLength());
 						skipRetry = false;
+						readingResponse = true;
+					}
+					if (resumeState.getLength() != -1 && resumeState.getReceived() < resumeState.getLength()) {
+						throw new IOException("Premature end of stream: received " + resumeState.getReceived() + " bytes, expected " + resumeState.getLength());
 					}
 				} catch (Throwable e) {
-					session.failed();
+					// only the data lost on the network can be fetched again
+					if (!(readingResponse && e instanceof IOException && resumeState.isResumable())) {
+						resumeState.discard(e);
+					}
 					throw e;
 				}
-				return session.completed();
+				return resumeState.finish().completed();
 			} finally {
 				if (connection instanceof HttpURLConnection) {
 					((HttpURLConnection) connection).disconnect();
@@ -150,6 +228,199 @@ class JdkHttpDownloader implements Downloader {
 
 	}
 
+	/**
+	 * Downloads a resource in several segments concurrently.
+	 * <p>
+	 * The first segment is read from the connection which has been opened, and
+	 * the rest segments are fetched with range requests. The segments are
+	 * taken from a queue by the current thread and some helpers running on
+	 * the pool, so a segment is never waited for if no helper can be started.
+	 * <p>
+	 * The helpers are queued on the dispatcher like the other tasks, so the
+	 * connections of a host, including the segment requests, never exceed
+	 * <code>maxConnectionsPerHost</code>. Of those connections, at most
+	 * <code>maxSegmentConnectionsPerHost</code> are used by the helpers. A
+	 * helper which starts after the download has finished does nothing.
+	 */
+	private class SegmentedDownload<T> {
+
+		private class Helper implements Runnable {
+
+			@Override
+			public void run() {
+				if (!hostPermits.tryAcquire()) {
+					return;
+				}
+				try {
+					synchronized (lock) {
+						if (finished) {
+							return;
+						}
+						activeHelpers++;
+					}
+					try {
+						downloadQueuedSegments();
+					} catch (Throwable e) {
+						fail(e);
+					} finally {
+						synchronized (lock) {
+							activeHelpers--;
+							lock.notifyAll();
+						}
+					}
+				} finally {
+					hostPermits.release();
+				}
+			}
+
+		}
+
+		private final URI uri;
+		private final String validator;
+		private final long length;
+		private final SegmentedDownloadSession<T> session;
+		private final DownloadCallback<T> callback;
+		private final Semaphore hostPermits;
+
+		private final Queue<long[]> segments = new ConcurrentLinkedQueue<>();
+		private final Object lock = new Object();
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+		private boolean finished; // lock
+		private int activeHelpers; // lock
+		private long received; // callback
+
+		public SegmentedDownload(URI uri, String validator, long length, SegmentedDownloadSession<T> session, DownloadCallback<T> callback) {
+			this.uri = uri;
+			this.validator = validator;
+			this.length = length;
+			this.session = session;
+			this.callback = callback;
+			this.hostPermits = getSegmentPermits(uri);
+		}
+
+		public T download(InputStream in) throws Exception {
+			try {
+				long segmentLength = (length + maxSegments - 1) / maxSegments;
+				for (long start = segmentLength; start < length; start += segmentLength) {
+					segments.add(new long[] { start, Math.min(start + segmentLength, length) });
+				}
+
+				for (int i = Math.min(segments.size(), maxSegmentConnectionsPerHost); i > 0; i--) {
+					dispatcher.execute(uri, new Helper());
+				}
+
+				try {
+					receive(in, 0, segmentLength);
+				} finally {
+					in.close();
+				}
+				downloadQueuedSegments();
+
+				synchronized (lock) {
+					finished = true;
+					while (activeHelpers > 0) {
+						lock.wait();
+					}
+				}
+
+				Throwable e = failure.get();
+				if (e instanceof Exception) {
+					throw (Exception) e;
+				} else if (e instanceof Error) {
+					throw (Error) e;
+				} else if (e != null) {
+					throw new IllegalStateException(e);
+				}
+			} catch (Throwable e) {
+				fail(e);
+				boolean interrupted = false;
+				synchronized (lock) {
+					finished = true;
+					// the helpers will stop soon because of the failure
+					while (activeHelpers > 0) {
+						try {
+							lock.wait();
+						} catch (InterruptedException e1) {
+							interrupted = true;
+						}
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+				try {
+					session.failed();
+				} catch (Throwable e1) {
+					e.addSuppressed(e1);
+				}
+				throw e;
+			}
+			return session.completed();
+		}
+
+		private void downloadQueuedSegments() throws Exception {
+			long[] segment;
+			while (failure.get() == null && (segment = segments.poll()) != null) {
+				downloadSegment(segment[0], segment[1]);
+			}
+		}
+
+		private void downloadSegment(long start, long end) throws Exception {
+			URLConnection connection = openConnection(uri);
+			connection.setRequestProperty("Accept-Encoding", "identity");
+			connection.setRequestProperty("Range", "bytes=" + start + "-" + (end - 1));
+			connection.setRequestProperty("If-Range", validator);
+			connection.connect();
+			try {
+				if (connection instanceof HttpURLConnection) {
+					int responseCode = ((HttpURLConnection) connection).getResponseCode();
+					if (responseCode != 206) {
+						throw new IllegalHttpResponseCodeException("Unexpected response of segment request: " + ((HttpURLConnection) connection).getHeaderField(0), responseCode);
+					}
+				}
+				String contentRange = connection.getHeaderField("Content-Range");
+				if (contentRange == null || !contentRange.trim().equals("bytes " + start + "-" + (end - 1) + "/" + length)) {
+					throw new IOException("Unexpected Content-Range of segment request: " + contentRange);
+				}
+				try (InputStream in = connection.getInputStream()) {
+					receive(in, start, end);
+				}
+			} finally {
+				if (connection instanceof HttpURLConnection) {
+					((HttpURLConnection) connection).disconnect();
+				}
+			}
+		}
+
+		private void receive(InputStream in, long position, long end) throws Exception {
+			byte[] buf = new byte[BUFFER_SIZE];
+			while (position < end) {
+				if (failure.get() != null) {
+					// another segment has failed
+					return;
+				}
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				int read = in.read(buf, 0, (int) Math.min(buf.length, end - position));
+				if (read == -1) {
+					throw new IOException("Premature end of segment: " + position + "/" + end);
+				}
+				session.receiveData(ByteBuffer.wrap(buf, 0, read), position);
+				position += read;
+				synchronized (this) {
+					received += read;
+					callback.updateProgress(received, length);
+				}
+			}
+		}
+
+		private void fail(Throwable e) {
+			failure.compareAndSet(null, e);
+		}
+
+	}
+
 	private class TaskInactiver implements Runnable {
 
 		private final Future<?> future;
@@ -167,22 +438,32 @@ class JdkHttpDownloader implements Downloader {
 	}
 
 	private ExecutorService executor;
+	private final HostDispatcher dispatcher;
 
 	private int connectTimeout;
 	private int readTimeout;
 	private Proxy proxy;
 
+	private int maxSegments;
+	private long segmentThreshold;
+	private int maxSegmentConnectionsPerHost;
+	private final ConcurrentMap<String, Semaphore> segmentPermits = new ConcurrentHashMap<>();
+
 	private volatile boolean shutdown;
 	private final ReadWriteLock rwlock = new ReentrantReadWriteLock();
 	private final Set<Future<?>> tasks = Collections.newSetFromMap(new ConcurrentHashMap<Future<?>, Boolean>());
 
-	public JdkHttpDownloader(int maxConns, int connectTimeout, int readTimeout, long poolThreadLivingTime, TimeUnit poolThreadLivingTimeUnit, Proxy proxy) {
+	public JdkHttpDownloader(int maxConns, int maxConnsPerHost, int connectTimeout, int readTimeout, long poolThreadLivingTime, TimeUnit poolThreadLivingTimeUnit, Proxy proxy, int maxSegments, long segmentThreshold, int maxSegmentConnectionsPerHost, boolean useVirtualThreads) {
 		Objects.requireNonNull(proxy);
 
 		this.connectTimeout = connectTimeout;
 		this.readTimeout = readTimeout;
 		this.proxy = proxy;
-		executor = ThreadPoolUtils.createPool(maxConns, poolThreadLivingTime, poolThreadLivingTimeUnit, "jdkDownloader.io");
+		this.maxSegments = maxSegments;
+		this.segmentThreshold = segmentThreshold;
+		this.maxSegmentConnectionsPerHost = maxSegmentConnectionsPerHost;
+		executor = ThreadPoolUtils.createPool(maxConns, poolThreadLivingTime, poolThreadLivingTimeUnit, "jdkDownloader.io", useVirtualThreads);
+		dispatcher = new HostDispatcher(executor, maxConns, maxConnsPerHost);
 	}
 
 	@Override
@@ -201,7 +482,7 @@ class JdkHttpDownloader implements Downloader {
 		 * 
 		 * 	2. Create a task handler, store it in tasks. ......................................... write tasks
 		 * 
-		 * 	3. Start the task handler. ........................................................... read executor
+		 * 	3. Queue the task handler for its host. .............................................. read dispatcher
 		 * ---- read unlock
 		 */
 
@@ -227,7 +508,7 @@ class JdkHttpDownloader implements Downloader {
 				throw new RejectedExecutionException("The downloader has been shutdown.");
 
 			tasks.add(task);
-			executor.execute(task);
+			dispatcher.execute(downloadTask.getURI(), task);
 		} finally {
 			lock.unlock();
 		}
@@ -235,6 +516,54 @@ class JdkHttpDownloader implements Downloader {
 		return task;
 	}
 
+	private URLConnection openConnection(URI uri) throws IOException {
+		URLConnection connection = uri.toURL().openConnection(proxy);
+		connection.setReadTimeout(readTimeout);
+		connection.setConnectTimeout(connectTimeout);
+		connection.setRequestProperty("Accept", "*/*");
+		connection.setRequestProperty("Connection", "keep-alive");
+		if (connection instanceof HttpURLConnection) {
+			((HttpURLConnection) connection).setRequestMethod("GET");
+		}
+		return connection;
+	}
+
+	private boolean isSegmentable(URLConnection connection) {
+		if (maxSegments < 2 || maxSegmentConnectionsPerHost < 1) {
+			return false;
+		}
+		if (!"bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"))) {
+			return false;
+		}
+		String contentEncoding = connection.getHeaderField("Content-Encoding");
+		if (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding)) {
+			return false;
+		}
+		// the segments must come from the same version of the resource
+		if (DownloaderHelper.getRangeValidator(connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified")) == null) {
+			return false;
+		}
+		String contentLength = connection.getHeaderField("Content-Length");
+		try {
+			return contentLength != null && Long.parseLong(contentLength) >= segmentThreshold;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private Semaphore getSegmentPermits(URI uri) {
+		String host = HostDispatcher.hostOf(uri);
+		Semaphore permits = segmentPermits.get(host);
+		if (permits == null) {
+			permits = new Semaphore(maxSegmentConnectionsPerHost);
+			Semaphore existing = segmentPermits.putIfAbsent(host, permits);
+			if (existing != null) {
+				permits = existing;
+			}
+		}
+		return permits;
+	}
+
 	@Override
 	public void shutdown() {
 		/*
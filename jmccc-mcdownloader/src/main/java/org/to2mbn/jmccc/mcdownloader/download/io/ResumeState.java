@@ -0,0 +1,192 @@
+package org.to2mbn.jmccc.mcdownloader.download.io;
+
+import java.util.Objects;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadSession;
+
+/**
+ * Keeps the session of an interrupted download, so that the next try can
+ * continue it with a range request instead of starting over.
+ * <p>
+ * A session can be continued only if the response which created it has a
+ * validator (a strong ETag or a Last-Modified date), and it wasn't
+ * compressed. The validator is sent in the <code>If-Range</code> header, so
+ * the server will send the whole resource again if it has been changed.
+ * 
+ * @param <T> the type of the task
+ */
+public class ResumeState<T> {
+
+	private volatile DownloadSession<T> session;
+	private volatile long received;
+	private volatile long length = -1;
+	private volatile String validator;
+
+	/**
+	 * Starts tracking a new session.
+	 * 
+	 * @param session the session
+	 * @param length the length of the resource, -1 if unknown
+	 * @param validator the validator of the resource, null if the session
+	 *            cannot be resumed
+	 * @throws NullPointerException if <code>session == null</code>
+	 */
+	public void begin(DownloadSession<T> session, long length, String validator) {
+		this.session = Objects.requireNonNull(session);
+		this.length = length;
+		this.validator = validator;
+		this.received = 0;
+	}
+
+	/**
+	 * Gets the session being tracked.
+	 * 
+	 * @return the session, null if no session is being tracked
+	 */
+	public DownloadSession<T> getSession() {
+		return session;
+	}
+
+	/**
+	 * Returns true if a session is being tracked.
+	 * 
+	 * @return true if a session is being tracked
+	 */
+	public boolean hasSession() {
+		return session != null;
+	}
+
+	/**
+	 * Returns true if the tracked session can be continued with a range
+	 * request.
+	 * 
+	 * @return true if the tracked session can be continued
+	 */
+	public boolean isResumable() {
+		return session != null && validator != null && received > 0;
+	}
+
+	/**
+	 * Gets the number of bytes the session has received.
+	 * 
+	 * @return the number of bytes received
+	 */
+	public long getReceived() {
+		return received;
+	}
+
+	/**
+	 * Gets the length of the resource.
+	 * 
+	 * @return the length of the resource, -1 if unknown
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Gets the validator to send in the <code>If-Range</code> header.
+	 * 
+	 * @return the validator, null if the session cannot be resumed
+	 */
+	public String getValidator() {
+		return validator;
+	}
+
+	/**
+	 * Records the data the session has received.
+	 * 
+	 * @param count the number of bytes
+	 */
+	public void received(long count) {
+		received += count;
+	}
+
+	/**
+	 * Checks the response of a range request.
+	 * <p>
+	 * If the response continues the tracked session, the length of the
+	 * resource will be updated and this method will return true.
+	 * 
+	 * @param responseCode the response code
+	 * @param contentRange the <code>Content-Range</code> header
+	 * @param contentEncoding the <code>Content-Encoding</code> header
+	 * @return true if the response continues the tracked session
+	 */
+	public boolean accept(int responseCode, String contentRange, String contentEncoding) {
+		if (responseCode != 206 || contentRange == null || (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding)))
+			return false;
+
+		// Content-Range: bytes <first>-<last>/<length or *>
+		contentRange = contentRange.trim();
+		if (!contentRange.startsWith("bytes "))
+			return false;
+		int dash = contentRange.indexOf('-');
+		int slash = contentRange.indexOf('/');
+		if (dash == -1 || slash < dash)
+			return false;
+
+		try {
+			long first = Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+			if (first != received)
+				return false;
+
+			String lengthStr = contentRange.substring(slash + 1).trim();
+			if (!"*".equals(lengthStr)) {
+				long newLength = Long.parseLong(lengthStr);
+				if (length != -1 && length != newLength)
+					return false;
+				length = newLength;
+			}
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Stops tracking the session and returns it, the caller should complete
+	 * the returned session.
+	 * 
+	 * @return the session, null if no session is being tracked
+	 */
+	public DownloadSession<T> finish() {
+		DownloadSession<T> s = session;
+		reset();
+		return s;
+	}
+
+	/**
+	 * Stops tracking the session and marks it as failed.
+	 * 
+	 * @throws Exception if the session fails to clean up
+	 */
+	public void discard() throws Exception {
+		DownloadSession<T> s = finish();
+		if (s != null)
+			s.failed();
+	}
+
+	/**
+	 * Stops tracking the session and marks it as failed. Any exception thrown
+	 * during cleanup will be added to <code>cause</code> as a suppressed
+	 * exception.
+	 * 
+	 * @param cause the reason why the session failed
+	 */
+	public void discard(Throwable cause) {
+		try {
+			discard();
+		} catch (Throwable e) {
+			if (e != cause)
+				cause.addSuppressed(e);
+		}
+	}
+
+	private void reset() {
+		session = null;
+		validator = null;
+		received = 0;
+		length = -1;
+	}
+
+}
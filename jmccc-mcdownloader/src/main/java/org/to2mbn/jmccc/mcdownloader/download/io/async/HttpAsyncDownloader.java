@@ -19,6 +19,7 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.nio.IOControl;
@@ -35,6 +36,8 @@ import org.to2mbn.jmccc.mcdownloader.download.concurrent.DownloadCallbacks;
 import org.to2mbn.jmccc.mcdownloader.download.io.DownloaderHelper;
 import org.to2mbn.jmccc.mcdownloader.download.io.GzipDownloadSession;
 import org.to2mbn.jmccc.mcdownloader.download.io.IllegalHttpResponseCodeException;
+import org.to2mbn.jmccc.mcdownloader.download.io.ResumeState;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.ConditionalDownloadTask;
 import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadSession;
 import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadTask;
 
@@ -50,51 +53,82 @@ class HttpAsyncDownloader implements Downloader {
 
 		private class DataConsumer extends AsyncByteConsumer<T> {
 
-			private volatile long contextLength = -1;
-			private volatile long received = 0;
-
 			@Override
 			protected void onByteReceived(ByteBuffer buf, IOControl ioctrl) throws IOException {
+				if (notModified)
+					// a 304 response has no body
+					return;
+
+				DownloadSession<T> session = resumeState.getSession();
 				if (session == null)
-					session = task.createSession();
+					throw new IllegalStateException("Download session is not active");
 
-				received += buf.remaining();
-				session.receiveData(buf);
-				downloadCallback.updateProgress(received, contextLength);
+				int length = buf.remaining();
+				try {
+					session.receiveData(buf);
+				} catch (Throwable e) {
+					// the session is broken, it cannot be resumed
+					resumeState.discard(e);
+					throw e;
+				}
+				resumeState.received(length);
+				downloadCallback.updateProgress(resumeState.getReceived(), resumeState.getLength());
 			}
 
 			@Override
 			protected void onResponseReceived(HttpResponse response) throws HttpException, IOException {
+				int statusCode = -1;
 				StatusLine statusLine = response.getStatusLine();
 				if (statusLine != null) {
-					int statusCode = statusLine.getStatusCode();
+					statusCode = statusLine.getStatusCode();
+					if (conditional != null && statusCode == 304) {
+						// Not Modified, the result will be built from the copy of the task
+						notModified = true;
+						return;
+					}
+					if (resuming && statusCode == 416) {
+						// Range Not Satisfiable, start over
+						discardSession();
+						throw new IOException("Cannot resume: " + statusLine);
+					}
 					if (statusCode < 200 || statusCode > 299)
 						// non-2xx response code
 						throw new IllegalHttpResponseCodeException(statusLine.toString(), statusCode);
 				}
 
-				if (session == null) {
-					boolean gzipOn = false;
-					HttpEntity httpEntity = response.getEntity();
-					if (httpEntity != null) {
-						long contextLength = httpEntity.getContentLength();
-						if (contextLength >= 0) {
-							this.contextLength = contextLength;
-						}
-
-						Header contentEncodingHeader = httpEntity.getContentEncoding();
-						if (contentEncodingHeader != null && "gzip".equals(contentEncodingHeader.getValue())) {
-							gzipOn = true;
-						}
+				HttpEntity httpEntity = response.getEntity();
+				Header contentEncodingHeader = httpEntity == null ? null : httpEntity.getContentEncoding();
+				String contentEncoding = contentEncodingHeader == null ? null : contentEncodingHeader.getValue();
+
+				if (resuming && !resumeState.accept(statusCode, getHeader(response, "Content-Range"), contentEncoding)) {
+					// the server ignored the range, or the resource has been changed
+					discardSession();
+					if (statusCode == 206) {
+						throw new IOException("Unexpected partial response: " + getHeader(response, "Content-Range"));
+					}
+				}
+
+				if (!resumeState.hasSession()) {
+					DownloaderHelper.validatorsReceived(task, getHeader(response, "ETag"), getHeader(response, "Last-Modified"));
+
+					long contextLength = -1;
+					if (httpEntity != null && httpEntity.getContentLength() >= 0) {
+						contextLength = httpEntity.getContentLength();
 					}
 
-					session = contextLength > 0
+					// the Content-Length of a gzipped response isn't the length of the resource
+					DownloadSession<T> session = contextLength > 0 && !"gzip".equals(contentEncoding)
 							? task.createSession(contextLength)
 							: task.createSession();
 
-					if (gzipOn) {
+					String validator = null;
+					if ("gzip".equals(contentEncoding)) {
 						session = new GzipDownloadSession<>(session);
+					} else {
+						validator = DownloaderHelper.getRangeValidator(getHeader(response, "ETag"), getHeader(response, "Last-Modified"));
 					}
+
+					resumeState.begin(session, contextLength, validator);
 				}
 			}
 
@@ -102,6 +136,13 @@ class HttpAsyncDownloader implements Downloader {
 			protected T buildResult(HttpContext context) throws Exception {
 				T result = null;
 				try {
+					if (notModified) {
+						result = conditional.notModified();
+						resultBuildingEx = null;
+						return result;
+					}
+
+					DownloadSession<T> session = resumeState.finish();
 					if (session == null) {
 						throw new IllegalStateException("Download session is not active");
 					}
@@ -114,6 +155,21 @@ class HttpAsyncDownloader implements Downloader {
 				return result;
 			}
 
+			private void discardSession() throws IOException {
+				try {
+					resumeState.discard();
+				} catch (IOException | RuntimeException | Error e) {
+					throw e;
+				} catch (Exception e) {
+					throw new IOException(e);
+				}
+			}
+
+			private String getHeader(HttpResponse response, String name) {
+				Header header = response.getFirstHeader(name);
+				return header == null ? null : header.getValue();
+			}
+
 		}
 
 		private class DownloadCallbackAdapter implements FutureCallback<T> {
@@ -135,26 +191,18 @@ class HttpAsyncDownloader implements Downloader {
 
 			@Override
 			public void failed(Exception ex) {
-				if (session != null) {
-					try {
-						session.failed();
-					} catch (Throwable e) {
-						if (e != ex)
-							ex.addSuppressed(e);
-					}
-				}
+				// the session is kept for the next try
+				// it will be discarded if the task doesn't retry
 				adapted.failed(ex);
 			}
 
 			@Override
 			public void cancelled() {
-				if (session != null) {
-					try {
-						session.failed();
-					} catch (Throwable e) {
-						adapted.failed(e);
-						return;
-					}
+				try {
+					resumeState.discard();
+				} catch (Throwable e) {
+					adapted.failed(e);
+					return;
 				}
 				adapted.cancelled();
 			}
@@ -163,18 +211,25 @@ class HttpAsyncDownloader implements Downloader {
 
 		private final DownloadTask<T> task;
 		private final DownloadCallback<T> downloadCallback;
+		private final ResumeState<T> resumeState;
+		private final boolean resuming;
+		private final ConditionalDownloadTask<T> conditional;
 
-		private volatile DownloadSession<T> session;
 		private volatile Throwable resultBuildingEx;
+		private volatile boolean notModified;
 
 		public final HttpAsyncResponseConsumer<T> consumer;
 		public final FutureCallback<T> callback;
 
-		public DownloadSessionHandler(DownloadTask<T> task, DownloadCallback<T> downloadCallback) {
+		public DownloadSessionHandler(DownloadTask<T> task, DownloadCallback<T> downloadCallback, ResumeState<T> resumeState, boolean resuming, ConditionalDownloadTask<T> conditional) {
 			Objects.requireNonNull(task);
 			Objects.requireNonNull(downloadCallback);
+			Objects.requireNonNull(resumeState);
 			this.task = task;
 			this.downloadCallback = downloadCallback;
+			this.resumeState = resumeState;
+			this.resuming = resuming;
+			this.conditional = conditional;
 
 			consumer = new DataConsumer();
 			callback = new DownloadCallbackAdapter(downloadCallback);
@@ -204,6 +259,7 @@ class HttpAsyncDownloader implements Downloader {
 					skipRetry = false;
 					download();
 				} else {
+					resumeState.discard(e);
 					skipRetry = true;
 					lifecycle().failed(e);
 					skipRetry = false;
@@ -235,6 +291,8 @@ class HttpAsyncDownloader implements Downloader {
 		private final DownloadCallback<T> callback;
 		private final int maxTries;
 
+		private final ResumeState<T> resumeState = new ResumeState<>();
+
 		private volatile int currentTries;
 
 		public AsyncDownloadTask(DownloadTask<T> task, DownloadCallback<T> callback, int maxTries) {
@@ -255,14 +313,45 @@ class HttpAsyncDownloader implements Downloader {
 
 		private void download() {
 			if (Thread.interrupted() || isExceptional()) {
+				try {
+					resumeState.discard();
+				} catch (Throwable e) {
+					LOGGER.log(Level.WARNING, "Couldn't discard the download session of " + task, e);
+				}
 				lifecycle().cancelled();
 				return;
 			}
 
+			boolean resuming = resumeState.isResumable();
+			if (!resuming) {
+				try {
+					resumeState.discard();
+				} catch (Throwable e) {
+					lifecycle().failed(e);
+					return;
+				}
+			}
+
+			ConditionalDownloadTask<T> conditional = resuming ? null : DownloaderHelper.getConditionalTask(task);
+
+			HttpGet request = new HttpGet(task.getURI());
+			if (resuming) {
+				request.setHeader("Accept-Encoding", "identity");
+				request.setHeader("Range", "bytes=" + resumeState.getReceived() + "-");
+				request.setHeader("If-Range", resumeState.getValidator());
+			} else if (conditional != null) {
+				String ifNoneMatch = conditional.getIfNoneMatch();
+				String ifModifiedSince = conditional.getIfModifiedSince();
+				if (ifNoneMatch != null)
+					request.setHeader("If-None-Match", ifNoneMatch);
+				if (ifModifiedSince != null)
+					request.setHeader("If-Modified-Since", ifModifiedSince);
+			}
+
 			FutureManager<T> manager = createFutureManager();
 			DownloadRetryHandler retryHandler = new DownloadRetryHandler();
-			DownloadSessionHandler<T> handler = new DownloadSessionHandler<>(task, DownloadCallbacks.group(DownloadCallbacks.fromCallback(manager), retryHandler));
-			Future<T> downloadFuture = httpClient.execute(HttpAsyncMethods.createGet(task.getURI()), handler.consumer, handler.callback);
+			DownloadSessionHandler<T> handler = new DownloadSessionHandler<>(task, DownloadCallbacks.group(DownloadCallbacks.fromCallback(manager), retryHandler), resumeState, resuming, conditional);
+			Future<T> downloadFuture = httpClient.execute(HttpAsyncMethods.create(request), handler.consumer, handler.callback);
 			manager.setFuture(downloadFuture);
 		}
 
@@ -104,7 +104,7 @@ public class HttpAsyncDownloaderBuilder extends AbstractDownloaderBuilder {
 		HttpHost httpProxy = resolveProxy(proxy);
 		return HttpAsyncClientBuilder.create()
 				.setMaxConnTotal(maxConnections)
-				.setMaxConnPerRoute(maxConnections)
+				.setMaxConnPerRoute(maxConnectionsPerHost > 0 ? Math.min(maxConnectionsPerHost, maxConnections) : maxConnections)
 				.setProxy(httpProxy)
 				.setDefaultIOReactorConfig(IOReactorConfig.custom()
 						.setConnectTimeout(connectTimeout)
@@ -0,0 +1,575 @@
+package org.to2mbn.jmccc.mcdownloader.download.io.http2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.to2mbn.jmccc.mcdownloader.download.Downloader;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.Callback;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.CallbackAsyncTask;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.Callbacks;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.Cancelable;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.DownloadCallback;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.DownloadCallbacks;
+import org.to2mbn.jmccc.mcdownloader.download.io.DownloaderHelper;
+import org.to2mbn.jmccc.mcdownloader.download.io.GzipDownloadSession;
+import org.to2mbn.jmccc.mcdownloader.download.io.IllegalHttpResponseCodeException;
+import org.to2mbn.jmccc.mcdownloader.download.io.ResumeState;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.ConditionalDownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadSession;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadTask;
+
+class Http2Downloader implements Downloader {
+
+	private static final Logger LOGGER = Logger.getLogger(Http2Downloader.class.getCanonicalName());
+
+	private static final int RUNNING = 0;
+	private static final int SHUTTING_DOWN = 1;
+	private static final int TERMINATED = 2;
+
+	private class AsyncDownloadTask<T> extends CallbackAsyncTask<T> {
+
+		/**
+		 * Handles a single request of the task, the response body is passed to
+		 * the download session buffer by buffer as the HttpClient receives it.
+		 */
+		private class Exchange implements JavaNetHttp.ExchangeListener, Cancelable {
+
+			private final boolean resuming;
+			private final ConditionalDownloadTask<T> conditional;
+			private final AtomicBoolean terminated = new AtomicBoolean();
+
+			private volatile Object subscription;
+			private volatile Future<?> future;
+			private volatile boolean cancelled;
+			private volatile boolean completed;
+			private volatile boolean notModified;
+			private volatile T result;
+			private volatile Throwable failure;
+
+			public Exchange(boolean resuming, ConditionalDownloadTask<T> conditional) {
+				this.resuming = resuming;
+				this.conditional = conditional;
+			}
+
+			@Override
+			public void onResponse(int statusCode, Map<String, List<String>> headers) throws IOException {
+				try {
+					if (conditional != null && statusCode == 304) {
+						// Not Modified, the result will be built from the copy of the task
+						notModified = true;
+						return;
+					}
+					if (resuming && statusCode == 416) {
+						// Range Not Satisfiable, start over
+						discardSession();
+						throw new IOException("Cannot resume: " + statusCode);
+					}
+					if (statusCode < 200 || statusCode > 299)
+						// non-2xx response code
+						throw new IllegalHttpResponseCodeException("HTTP " + statusCode, statusCode);
+
+					String contentEncoding = getHeader(headers, "Content-Encoding");
+
+					if (resuming && !resumeState.accept(statusCode, getHeader(headers, "Content-Range"), contentEncoding)) {
+						// the server ignored the range, or the resource has been changed
+						discardSession();
+						if (statusCode == 206) {
+							throw new IOException("Unexpected partial response: " + getHeader(headers, "Content-Range"));
+						}
+					}
+
+					if (!resumeState.hasSession()) {
+						DownloaderHelper.validatorsReceived(task, getHeader(headers, "ETag"), getHeader(headers, "Last-Modified"));
+
+						long contextLength = -1;
+						String contentLengthHeader = getHeader(headers, "Content-Length");
+						if (contentLengthHeader != null) {
+							try {
+								contextLength = Long.parseLong(contentLengthHeader.trim());
+							} catch (NumberFormatException e) {
+								LOGGER.log(Level.FINE, "Illegal Content-Length: " + contentLengthHeader, e);
+							}
+						}
+
+						// the Content-Length of a gzipped response isn't the length of the resource
+						DownloadSession<T> session = contextLength > 0 && !"gzip".equals(contentEncoding)
+								? task.createSession(contextLength)
+								: task.createSession();
+
+						String validator = null;
+						if ("gzip".equals(contentEncoding)) {
+							session = new GzipDownloadSession<>(session);
+						} else {
+							validator = DownloaderHelper.getRangeValidator(getHeader(headers, "ETag"), getHeader(headers, "Last-Modified"));
+						}
+
+						resumeState.begin(session, contextLength, validator);
+					}
+				} catch (IOException | RuntimeException | Error e) {
+					failure = e;
+					throw e;
+				}
+			}
+
+			@Override
+			public void onSubscribe(Object subscription) {
+				this.subscription = subscription;
+				if (cancelled) {
+					JavaNetHttp.cancel(subscription);
+				} else {
+					JavaNetHttp.request(subscription, 1);
+				}
+			}
+
+			@Override
+			public void onNext(List<?> buffers) {
+				if (notModified) {
+					// a 304 response has no body
+					JavaNetHttp.request(subscription, 1);
+					return;
+				}
+				try {
+					DownloadSession<T> session = resumeState.getSession();
+					if (session == null)
+						throw new IllegalStateException("Download session is not active");
+
+					for (Object buffer : buffers) {
+						ByteBuffer buf = (ByteBuffer) buffer;
+						int length = buf.remaining();
+						try {
+							session.receiveData(buf);
+						} catch (Throwable e) {
+							// the session is broken, it cannot be resumed
+							resumeState.discard(e);
+							throw e;
+						}
+						resumeState.received(length);
+					}
+				} catch (Throwable e) {
+					// the subscriber mustn't throw, and the exchange won't
+					// complete after the subscription is cancelled
+					failure = e;
+					JavaNetHttp.cancel(subscription);
+					terminate();
+					return;
+				}
+				retryHandler.updateProgress(resumeState.getReceived(), resumeState.getLength());
+				JavaNetHttp.request(subscription, 1);
+			}
+
+			@Override
+			public void onError(Throwable e) {
+				if (failure == null)
+					failure = e;
+			}
+
+			@Override
+			public void onComplete() {
+				try {
+					if (notModified) {
+						result = conditional.notModified();
+						completed = true;
+						return;
+					}
+
+					DownloadSession<T> session = resumeState.finish();
+					if (session == null) {
+						throw new IllegalStateException("Download session is not active");
+					}
+
+					result = session.completed();
+					completed = true;
+				} catch (Throwable e) {
+					failure = e;
+				}
+			}
+
+			@Override
+			public void onExchangeCompleted(Throwable e) {
+				if (e != null && failure == null)
+					failure = unwrap(e);
+				terminate();
+			}
+
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				cancelled = true;
+				Object s = subscription;
+				if (s != null)
+					JavaNetHttp.cancel(s);
+				Future<?> f = future;
+				if (f != null)
+					f.cancel(mayInterruptIfRunning);
+				return true;
+			}
+
+			public void setFuture(Future<?> future) {
+				this.future = future;
+				if (cancelled)
+					future.cancel(true);
+			}
+
+			private void terminate() {
+				if (!terminated.compareAndSet(false, true))
+					return;
+
+				removeCancelable(this);
+				Future<?> f = future;
+				if (f != null && !f.isDone())
+					f.cancel(true);
+
+				if (cancelled || failure instanceof CancellationException) {
+					try {
+						resumeState.discard();
+					} catch (Throwable e) {
+						retryHandler.failed(e);
+						return;
+					}
+					retryHandler.cancelled();
+				} else if (failure != null) {
+					// the session is kept for the next try
+					// it will be discarded if the task doesn't retry
+					retryHandler.failed(failure);
+				} else if (completed) {
+					retryHandler.done(result);
+				} else {
+					retryHandler.failed(new IOException("The exchange terminated without a response body"));
+				}
+			}
+
+			private void discardSession() throws IOException {
+				try {
+					resumeState.discard();
+				} catch (IOException | RuntimeException | Error e) {
+					throw e;
+				} catch (Exception e) {
+					throw new IOException(e);
+				}
+			}
+
+		}
+
+		private class DownloadRetryHandler implements DownloadCallback<T> {
+
+			private volatile boolean skipRetry;
+
+			@Override
+			public void done(T result) {
+				skipRetry = true;
+				lifecycle().done(result);
+				skipRetry = false;
+			}
+
+			@Override
+			public void failed(Throwable e) {
+				currentTries++;
+				if (currentTries < maxTries && !skipRetry && DownloaderHelper.shouldRetry(e)) {
+					skipRetry = true;
+					callback.retry(e, currentTries, maxTries);
+					skipRetry = false;
+					download();
+				} else {
+					resumeState.discard(e);
+					skipRetry = true;
+					lifecycle().failed(e);
+					skipRetry = false;
+				}
+			}
+
+			@Override
+			public void cancelled() {
+				skipRetry = true;
+				lifecycle().cancelled();
+				skipRetry = false;
+			}
+
+			@Override
+			public void updateProgress(long done, long total) {
+				skipRetry = true;
+				callback.updateProgress(done, total);
+				skipRetry = false;
+			}
+
+			@Override
+			public void retry(Throwable e, int current, int max) {
+				throw new AssertionError("This method shouldn't be invoked.");
+			}
+
+		}
+
+		private static final int PERMIT_NONE = 0;
+		private static final int PERMIT_HELD = 1;
+		private static final int PERMIT_RELEASED = 2;
+
+		private final DownloadTask<T> task;
+		private final DownloadCallback<T> callback;
+		private final int maxTries;
+
+		private final ResumeState<T> resumeState = new ResumeState<>();
+		private final DownloadRetryHandler retryHandler = new DownloadRetryHandler();
+		private final AtomicInteger permit = new AtomicInteger(PERMIT_NONE);
+
+		private volatile int currentTries;
+
+		public AsyncDownloadTask(DownloadTask<T> task, DownloadCallback<T> callback, int maxTries) {
+			Objects.requireNonNull(task);
+			Objects.requireNonNull(callback);
+			if (maxTries < 1)
+				throw new IllegalArgumentException(String.valueOf(maxTries));
+
+			this.task = task;
+			this.callback = callback;
+			this.maxTries = maxTries;
+		}
+
+		@Override
+		protected void execute() throws Exception {
+			// the permit is kept during retries, and released when the task terminates
+			streams.acquire();
+			if (!permit.compareAndSet(PERMIT_NONE, PERMIT_HELD)) {
+				streams.release();
+				return;
+			}
+			download();
+		}
+
+		public void releasePermit() {
+			if (permit.getAndSet(PERMIT_RELEASED) == PERMIT_HELD)
+				streams.release();
+		}
+
+		private void download() {
+			if (Thread.interrupted() || isExceptional()) {
+				try {
+					resumeState.discard();
+				} catch (Throwable e) {
+					LOGGER.log(Level.WARNING, "Couldn't discard the download session of " + task, e);
+				}
+				lifecycle().cancelled();
+				return;
+			}
+
+			boolean resuming = resumeState.isResumable();
+			if (!resuming) {
+				try {
+					resumeState.discard();
+				} catch (Throwable e) {
+					lifecycle().failed(e);
+					return;
+				}
+			}
+
+			ConditionalDownloadTask<T> conditional = resuming ? null : DownloaderHelper.getConditionalTask(task);
+
+			List<String> headers = new ArrayList<>();
+			if (resuming) {
+				Collections.addAll(headers,
+						"Accept-Encoding", "identity",
+						"Range", "bytes=" + resumeState.getReceived() + "-",
+						"If-Range", resumeState.getValidator());
+			} else {
+				Collections.addAll(headers, "Accept-Encoding", "gzip");
+				if (conditional != null) {
+					String ifNoneMatch = conditional.getIfNoneMatch();
+					String ifModifiedSince = conditional.getIfModifiedSince();
+					if (ifNoneMatch != null)
+						Collections.addAll(headers, "If-None-Match", ifNoneMatch);
+					if (ifModifiedSince != null)
+						Collections.addAll(headers, "If-Modified-Since", ifModifiedSince);
+				}
+			}
+			Object request = JavaNetHttp.newRequest(task.getURI(), readTimeout, headers.toArray(new String[headers.size()]));
+
+			Exchange exchange = new Exchange(resuming, conditional);
+			addCancelable(exchange);
+			exchange.setFuture(JavaNetHttp.sendAsync(httpClient, request, exchange));
+		}
+
+	}
+
+	private class TaskInactiver implements Runnable {
+
+		private final AsyncDownloadTask<?> task;
+
+		public TaskInactiver(AsyncDownloadTask<?> task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			task.releasePermit();
+
+			// see HttpAsyncDownloader.TaskInactiver
+			Lock rlock = rwlock.readLock();
+			rlock.lock();
+			try {
+				tasks.remove(task);
+			} finally {
+				rlock.unlock();
+			}
+
+			if (status == SHUTTING_DOWN) {
+				boolean doCleanup = false;
+				Lock wlock = rwlock.writeLock();
+				wlock.lock();
+				try {
+					if (status == SHUTTING_DOWN && tasks.isEmpty()) {
+						status = TERMINATED;
+						doCleanup = true;
+					}
+				} finally {
+					wlock.unlock();
+				}
+				if (doCleanup) {
+					completeShutdown();
+				}
+			}
+		}
+
+	}
+
+	private static String getHeader(Map<String, List<String>> headers, String name) {
+		List<String> values = headers.get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+
+	private static Throwable unwrap(Throwable e) {
+		// CompletionException is not available in java 7
+		while ((e instanceof ExecutionException || "java.util.concurrent.CompletionException".equals(e.getClass().getName())) && e.getCause() != null) {
+			e = e.getCause();
+		}
+		return e;
+	}
+
+	private final Object httpClient;
+	private final ExecutorService bootstrapPool;
+	private final ExecutorService ioPool;
+	private final Semaphore streams;
+	private final int readTimeout;
+
+	private volatile int status = RUNNING;
+	private final ReadWriteLock rwlock = new ReentrantReadWriteLock();
+	private final Set<Future<?>> tasks = Collections.newSetFromMap(new ConcurrentHashMap<Future<?>, Boolean>());
+
+	/**
+	 * Constructor of Http2Downloader.
+	 * 
+	 * @param httpClient the <code>java.net.http.HttpClient</code>, whose
+	 *            executor is <code>ioPool</code>
+	 * @param bootstrapPool the pool to start the tasks
+	 * @param ioPool the pool to handle the responses
+	 * @param maxStreams the maximum number of concurrent requests
+	 * @param readTimeout the time to wait for the response headers in
+	 *            milliseconds
+	 */
+	public Http2Downloader(Object httpClient, ExecutorService bootstrapPool, ExecutorService ioPool, int maxStreams, int readTimeout) {
+		Objects.requireNonNull(httpClient);
+		Objects.requireNonNull(bootstrapPool);
+		Objects.requireNonNull(ioPool);
+		if (maxStreams < 1)
+			throw new IllegalArgumentException("maxStreams < 1");
+		this.httpClient = httpClient;
+		this.bootstrapPool = bootstrapPool;
+		this.ioPool = ioPool;
+		this.streams = new Semaphore(maxStreams);
+		this.readTimeout = readTimeout;
+	}
+
+	@Override
+	public <T> Future<T> download(DownloadTask<T> downloadTask, DownloadCallback<T> callback, int tries) {
+		Objects.requireNonNull(downloadTask);
+		if (tries < 1)
+			throw new IllegalArgumentException("tries < 1");
+
+		AsyncDownloadTask<T> task = new AsyncDownloadTask<T>(downloadTask, callback == null ? DownloadCallbacks.<T> empty() : callback, tries);
+		Callback<T> statusCallback = Callbacks.whatever(new TaskInactiver(task));
+		if (callback != null)
+			statusCallback = Callbacks.group(statusCallback, callback);
+		task.setCallback(statusCallback);
+
+		Lock lock = rwlock.readLock();
+		lock.lock();
+		try {
+			if (isShutdown())
+				throw new RejectedExecutionException("The downloader has been shutdown.");
+
+			bootstrapPool.execute(task);
+
+			tasks.add(task);
+		} finally {
+			lock.unlock();
+		}
+
+		return task;
+	}
+
+	@Override
+	public void shutdown() {
+		// see HttpAsyncDownloader.shutdown()
+		boolean isTasksEmpty;
+
+		Lock lock = rwlock.writeLock();
+		lock.lock();
+		try {
+			if (isShutdown()) {
+				return;
+			}
+
+			status = SHUTTING_DOWN;
+			isTasksEmpty = tasks.isEmpty();
+			if (isTasksEmpty) {
+				status = TERMINATED;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		bootstrapPool.shutdownNow();
+
+		if (isTasksEmpty) {
+			completeShutdown();
+		} else {
+			for (Future<?> task : tasks)
+				task.cancel(true);
+		}
+	}
+
+	@Override
+	public <T> Future<T> download(DownloadTask<T> task, DownloadCallback<T> callback) {
+		return download(task, callback, 1);
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return status != RUNNING;
+	}
+
+	private void completeShutdown() {
+		try {
+			JavaNetHttp.shutdown(httpClient);
+		} catch (Throwable e) {
+			LOGGER.log(Level.WARNING, "Couldn't shutdown http client", e);
+		}
+		ioPool.shutdown();
+	}
+
+}
@@ -0,0 +1,95 @@
+package org.to2mbn.jmccc.mcdownloader.download.io.http2;
+
+import java.util.concurrent.ExecutorService;
+import org.to2mbn.jmccc.mcdownloader.download.Downloader;
+import org.to2mbn.jmccc.mcdownloader.download.io.AbstractDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.util.ThreadPoolUtils;
+
+/**
+ * Builds a downloader on <code>java.net.http.HttpClient</code> (java 11 and
+ * higher).
+ * <p>
+ * The requests to the same host are multiplexed over a few HTTP/2
+ * connections, which is much cheaper than opening a connection for each
+ * request when downloading lots of small files, such as assets. If the server
+ * doesn't support HTTP/2, HTTP/1.1 is used.
+ * <p>
+ * <code>maxConnections</code> limits the number of concurrent requests, and
+ * <code>readTimeout</code> limits the time to wait for the response headers.
+ * <code>maxConnectionsPerHost</code> is ignored, the number of concurrent
+ * streams on a connection is limited by the server.
+ */
+public class Http2DownloaderBuilder extends AbstractDownloaderBuilder {
+
+	public static boolean isAvailable() {
+		return JavaNetHttp.isAvailable();
+	}
+
+	public static Http2DownloaderBuilder create() {
+		return new Http2DownloaderBuilder();
+	}
+
+	public static Downloader buildDefault() {
+		return create().build();
+	}
+
+	protected int bootstrapPoolSize = Runtime.getRuntime().availableProcessors();
+	protected int ioPoolSize = Runtime.getRuntime().availableProcessors();
+
+	public Http2DownloaderBuilder bootstrapPoolSize(int bootstrapPoolSize) {
+		this.bootstrapPoolSize = bootstrapPoolSize;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads which handle the responses, the data is
+	 * passed to the download sessions in these threads. Default to the number
+	 * of processors.
+	 * 
+	 * @param ioPoolSize the number of threads
+	 * @return the builder itself
+	 */
+	public Http2DownloaderBuilder ioPoolSize(int ioPoolSize) {
+		this.ioPoolSize = ioPoolSize;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws UnsupportedOperationException if <code>java.net.http</code> is
+	 *             not available
+	 * @throws IllegalArgumentException if the proxy is not supported
+	 */
+	@Override
+	public Downloader build() {
+		if (!isAvailable())
+			throw new UnsupportedOperationException("java.net.http is not available");
+
+		ExecutorService bootstrapPool = null;
+		ExecutorService ioPool = null;
+		try {
+			bootstrapPool = ThreadPoolUtils.createPool(bootstrapPoolSize, downloadPoolKeepAliveTime, downloadPoolKeepAliveTimeUnit, "http2Downloader.bootstrap");
+			ioPool = ThreadPoolUtils.createPool(ioPoolSize, downloadPoolKeepAliveTime, downloadPoolKeepAliveTimeUnit, "http2Downloader.io");
+			Object client = JavaNetHttp.newClient(connectTimeout, proxy, ioPool);
+			return new Http2Downloader(client, bootstrapPool, ioPool, maxConnections, readTimeout);
+		} catch (Throwable e) {
+			if (bootstrapPool != null) {
+				try {
+					bootstrapPool.shutdownNow();
+				} catch (Throwable e1) {
+					e.addSuppressed(e1);
+				}
+			}
+			if (ioPool != null) {
+				try {
+					ioPool.shutdownNow();
+				} catch (Throwable e1) {
+					e.addSuppressed(e1);
+				}
+			}
+			throw e;
+		}
+	}
+
+}
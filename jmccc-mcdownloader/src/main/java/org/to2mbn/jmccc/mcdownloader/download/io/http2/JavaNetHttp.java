@@ -0,0 +1,323 @@
+package org.to2mbn.jmccc.mcdownloader.download.io.http2;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * Accesses <code>java.net.http</code> through reflection, so that this module
+ * can still be compiled and run on the JVMs without it (java 10 and lower).
+ * <p>
+ * The interfaces which have to be implemented (<code>BodyHandler</code>,
+ * <code>Flow.Subscriber</code> and <code>BiConsumer</code>) are implemented
+ * by dynamic proxies which dispatch the calls to {@link ExchangeListener}.
+ */
+final class JavaNetHttp {
+
+	/**
+	 * Receives the events of an exchange.
+	 */
+	interface ExchangeListener {
+
+		/**
+		 * Calls when the response headers are received.
+		 * 
+		 * @param statusCode the status code
+		 * @param headers the response headers, the keys are case-insensitive
+		 */
+		void onResponse(int statusCode, Map<String, List<String>> headers) throws IOException;
+
+		void onSubscribe(Object subscription);
+
+		void onNext(List<?> buffers);
+
+		void onError(Throwable e);
+
+		void onComplete();
+
+		/**
+		 * Calls when the future returned by <code>sendAsync</code> completes.
+		 * 
+		 * @param e the exception, null if the exchange completed normally
+		 */
+		void onExchangeCompleted(Throwable e);
+
+	}
+
+	private static final boolean AVAILABLE;
+
+	private static Class<?> bodyHandlerClass;
+	private static Class<?> subscriberClass;
+	private static Class<?> biConsumerClass;
+
+	private static Method clientNewBuilder;
+	private static Method clientBuilderVersion;
+	private static Method clientBuilderFollowRedirects;
+	private static Method clientBuilderConnectTimeout;
+	private static Method clientBuilderProxy;
+	private static Method clientBuilderExecutor;
+	private static Method clientBuilderBuild;
+	private static Object versionHttp2;
+	private static Object redirectNormal;
+	private static Object noProxy;
+	private static Method proxySelectorOf;
+
+	private static Method requestNewBuilder;
+	private static Method requestBuilderTimeout;
+	private static Method requestBuilderHeader;
+	private static Method requestBuilderGet;
+	private static Method requestBuilderBuild;
+
+	private static Method clientSendAsync;
+	private static Method futureWhenComplete;
+
+	private static Method responseInfoStatusCode;
+	private static Method responseInfoHeaders;
+	private static Method headersMap;
+	private static Method bodySubscribersFromSubscriber;
+
+	private static Method subscriptionRequest;
+	private static Method subscriptionCancel;
+
+	private static Method durationOfMillis;
+
+	// HttpClient.shutdownNow() is available since java 21
+	private static Method clientShutdownNow;
+
+	static {
+		boolean available;
+		try {
+			Class<?> clientClass = Class.forName("java.net.http.HttpClient");
+			Class<?> clientBuilderClass = Class.forName("java.net.http.HttpClient$Builder");
+			Class<?> versionClass = Class.forName("java.net.http.HttpClient$Version");
+			Class<?> redirectClass = Class.forName("java.net.http.HttpClient$Redirect");
+			Class<?> requestClass = Class.forName("java.net.http.HttpRequest");
+			Class<?> requestBuilderClass = Class.forName("java.net.http.HttpRequest$Builder");
+			Class<?> responseInfoClass = Class.forName("java.net.http.HttpResponse$ResponseInfo");
+			Class<?> headersClass = Class.forName("java.net.http.HttpHeaders");
+			Class<?> bodySubscribersClass = Class.forName("java.net.http.HttpResponse$BodySubscribers");
+			Class<?> subscriptionClass = Class.forName("java.util.concurrent.Flow$Subscription");
+			Class<?> durationClass = Class.forName("java.time.Duration");
+			Class<?> completableFutureClass = Class.forName("java.util.concurrent.CompletableFuture");
+			bodyHandlerClass = Class.forName("java.net.http.HttpResponse$BodyHandler");
+			subscriberClass = Class.forName("java.util.concurrent.Flow$Subscriber");
+			biConsumerClass = Class.forName("java.util.function.BiConsumer");
+
+			clientNewBuilder = clientClass.getMethod("newBuilder");
+			clientBuilderVersion = clientBuilderClass.getMethod("version", versionClass);
+			clientBuilderFollowRedirects = clientBuilderClass.getMethod("followRedirects", redirectClass);
+			clientBuilderConnectTimeout = clientBuilderClass.getMethod("connectTimeout", durationClass);
+			clientBuilderProxy = clientBuilderClass.getMethod("proxy", ProxySelector.class);
+			clientBuilderExecutor = clientBuilderClass.getMethod("executor", Executor.class);
+			clientBuilderBuild = clientBuilderClass.getMethod("build");
+			versionHttp2 = versionClass.getField("HTTP_2").get(null);
+			redirectNormal = redirectClass.getField("NORMAL").get(null);
+			noProxy = clientBuilderClass.getField("NO_PROXY").get(null);
+			proxySelectorOf = ProxySelector.class.getMethod("of", InetSocketAddress.class);
+
+			requestNewBuilder = requestClass.getMethod("newBuilder", URI.class);
+			requestBuilderTimeout = requestBuilderClass.getMethod("timeout", durationClass);
+			requestBuilderHeader = requestBuilderClass.getMethod("header", String.class, String.class);
+			requestBuilderGet = requestBuilderClass.getMethod("GET");
+			requestBuilderBuild = requestBuilderClass.getMethod("build");
+
+			clientSendAsync = clientClass.getMethod("sendAsync", requestClass, bodyHandlerClass);
+			futureWhenComplete = completableFutureClass.getMethod("whenComplete", biConsumerClass);
+
+			responseInfoStatusCode = responseInfoClass.getMethod("statusCode");
+			responseInfoHeaders = responseInfoClass.getMethod("headers");
+			headersMap = headersClass.getMethod("map");
+			bodySubscribersFromSubscriber = bodySubscribersClass.getMethod("fromSubscriber", subscriberClass);
+
+			subscriptionRequest = subscriptionClass.getMethod("request", long.class);
+			subscriptionCancel = subscriptionClass.getMethod("cancel");
+
+			durationOfMillis = durationClass.getMethod("ofMillis", long.class);
+
+			try {
+				clientShutdownNow = clientClass.getMethod("shutdownNow");
+			} catch (NoSuchMethodException e) {
+				clientShutdownNow = null;
+			}
+			available = true;
+		} catch (ReflectiveOperationException e) {
+			available = false;
+		}
+		AVAILABLE = available;
+	}
+
+	private static class ListenerHandler implements InvocationHandler {
+
+		private final ExchangeListener listener;
+
+		ListenerHandler(ExchangeListener listener) {
+			this.listener = listener;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "apply":
+					if (args.length == 1) {
+						// BodyHandler.apply(ResponseInfo)
+						Object headers = responseInfoHeaders.invoke(args[0]);
+						listener.onResponse((Integer) responseInfoStatusCode.invoke(args[0]), (Map<String, List<String>>) headersMap.invoke(headers));
+						return bodySubscribersFromSubscriber.invoke(null, Proxy.newProxyInstance(JavaNetHttp.class.getClassLoader(), new Class<?>[] { subscriberClass }, this));
+					}
+					break;
+
+				case "accept":
+					// BiConsumer.accept(result, exception)
+					listener.onExchangeCompleted((Throwable) args[1]);
+					return null;
+
+				case "onSubscribe":
+					listener.onSubscribe(args[0]);
+					return null;
+
+				case "onNext":
+					listener.onNext((List<?>) args[0]);
+					return null;
+
+				case "onError":
+					listener.onError((Throwable) args[0]);
+					return null;
+
+				case "onComplete":
+					listener.onComplete();
+					return null;
+
+				case "hashCode":
+					return System.identityHashCode(proxy);
+
+				case "equals":
+					return proxy == args[0];
+
+				case "toString":
+					return "ExchangeListener[" + listener + "]";
+			}
+			throw new UnsupportedOperationException(method.toString());
+		}
+
+	}
+
+	static boolean isAvailable() {
+		return AVAILABLE;
+	}
+
+	/**
+	 * Creates a new <code>HttpClient</code> preferring HTTP/2.
+	 * 
+	 * @param connectTimeout the connect timeout in milliseconds
+	 * @param proxy the proxy
+	 * @param executor the executor to run the handlers
+	 * @return the <code>HttpClient</code>
+	 * @throws IllegalArgumentException if the proxy is not supported
+	 */
+	static Object newClient(int connectTimeout, java.net.Proxy proxy, Executor executor) {
+		Object proxySelector;
+		if (proxy.type() == java.net.Proxy.Type.DIRECT) {
+			proxySelector = noProxy;
+		} else if (proxy.type() == java.net.Proxy.Type.HTTP && proxy.address() instanceof InetSocketAddress) {
+			proxySelector = invoke(proxySelectorOf, null, proxy.address());
+		} else {
+			throw new IllegalArgumentException("Proxy '" + proxy + "' is not supported");
+		}
+
+		Object builder = invoke(clientNewBuilder, null);
+		invoke(clientBuilderVersion, builder, versionHttp2);
+		invoke(clientBuilderFollowRedirects, builder, redirectNormal);
+		if (connectTimeout > 0)
+			invoke(clientBuilderConnectTimeout, builder, invoke(durationOfMillis, null, (long) connectTimeout));
+		invoke(clientBuilderProxy, builder, proxySelector);
+		invoke(clientBuilderExecutor, builder, executor);
+		return invoke(clientBuilderBuild, builder);
+	}
+
+	/**
+	 * Creates a GET request.
+	 * 
+	 * @param uri the uri
+	 * @param timeout the time to wait for the response headers in
+	 *            milliseconds, non-positive value means no timeout
+	 * @param headers the headers, in the form of name, value, name, value...
+	 * @return the <code>HttpRequest</code>
+	 */
+	static Object newRequest(URI uri, int timeout, String... headers) {
+		Object builder = invoke(requestNewBuilder, null, uri);
+		if (timeout > 0)
+			invoke(requestBuilderTimeout, builder, invoke(durationOfMillis, null, (long) timeout));
+		for (int i = 0; i < headers.length; i += 2)
+			invoke(requestBuilderHeader, builder, headers[i], headers[i + 1]);
+		invoke(requestBuilderGet, builder);
+		return invoke(requestBuilderBuild, builder);
+	}
+
+	/**
+	 * Sends a request asynchronously, the body of the response will be
+	 * streamed to the listener.
+	 * 
+	 * @param client the <code>HttpClient</code>
+	 * @param request the <code>HttpRequest</code>
+	 * @param listener the listener
+	 * @return the future of the exchange
+	 */
+	static Future<?> sendAsync(Object client, Object request, ExchangeListener listener) {
+		ListenerHandler handler = new ListenerHandler(listener);
+		Object bodyHandler = Proxy.newProxyInstance(JavaNetHttp.class.getClassLoader(), new Class<?>[] { bodyHandlerClass }, handler);
+		Object future = invoke(clientSendAsync, client, request, bodyHandler);
+		invoke(futureWhenComplete, future, Proxy.newProxyInstance(JavaNetHttp.class.getClassLoader(), new Class<?>[] { biConsumerClass }, handler));
+		return (Future<?>) future;
+	}
+
+	static void request(Object subscription, long n) {
+		invoke(subscriptionRequest, subscription, n);
+	}
+
+	static void cancel(Object subscription) {
+		invoke(subscriptionCancel, subscription);
+	}
+
+	/**
+	 * Closes the connections of the <code>HttpClient</code> if the current JVM
+	 * supports it, otherwise they will be closed when the client is garbage
+	 * collected.
+	 * 
+	 * @param client the <code>HttpClient</code>
+	 */
+	static void shutdown(Object client) {
+		if (clientShutdownNow != null)
+			invoke(clientShutdownNow, client);
+	}
+
+	private static Object invoke(Method method, Object obj, Object... args) {
+		try {
+			return method.invoke(obj, args);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new IllegalStateException(cause);
+			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private JavaNetHttp() {
+	}
+
+}
@@ -1,5 +1,9 @@
 package org.to2mbn.jmccc.mcdownloader.download.tasks;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
 class AndThenDownloadTask<SRC, DEST> extends DownloadTaskDecorator<SRC, DEST> {
 
 	private ResultProcessor<SRC, DEST> processor;
@@ -14,4 +18,47 @@ class AndThenDownloadTask<SRC, DEST> extends DownloadTaskDecorator<SRC, DEST> {
 		return new AndThenDownloadSession<>(processor, toDelegate);
 	}
 
-}
\ No newline at end of file
+	@Override
+	public SegmentedDownloadSession<DEST> createSegmentedSession(long length) throws IOException {
+		final SegmentedDownloadSession<SRC> session = delegated.createSegmentedSession(length);
+		if (session == null) {
+			return null;
+		}
+		return new SegmentedDownloadSession<DEST>() {
+
+			@Override
+			public void receiveData(ByteBuffer data, long position) throws IOException {
+				session.receiveData(data, position);
+			}
+
+			@Override
+			public DEST completed() throws Exception {
+				return processor.process(session.completed());
+			}
+
+			@Override
+			public void failed() throws Exception {
+				session.failed();
+			}
+		};
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(delegated, processor);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (obj instanceof AndThenDownloadTask) {
+			AndThenDownloadTask<?, ?> another = (AndThenDownloadTask<?, ?>) obj;
+			return delegated.equals(another.delegated)
+					&& processor.equals(another.processor);
+		}
+		return false;
+	}
+
+}
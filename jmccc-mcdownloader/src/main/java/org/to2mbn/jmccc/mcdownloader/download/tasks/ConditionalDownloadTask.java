@@ -0,0 +1,52 @@
+package org.to2mbn.jmccc.mcdownloader.download.tasks;
+
+/**
+ * Implemented by the download tasks which keep a copy of the resource, such
+ * as a cached copy, so that the downloader can send a conditional request and
+ * skip the response body if the copy is still up to date.
+ * <p>
+ * The downloader checks whether a {@link DownloadTask} implements this
+ * interface. If the task has validators, they are sent in the
+ * <code>If-None-Match</code> and <code>If-Modified-Since</code> headers, and
+ * {@link #notModified()} is called instead of creating a session if the
+ * server responds with <code>304 Not Modified</code>.
+ * 
+ * @param <T> the type of result
+ */
+public interface ConditionalDownloadTask<T> {
+
+	/**
+	 * Gets the entity tag of the copy, which will be sent in the
+	 * <code>If-None-Match</code> header.
+	 * 
+	 * @return the entity tag, null if the copy has no entity tag
+	 */
+	String getIfNoneMatch();
+
+	/**
+	 * Gets the last modified date of the copy, which will be sent in the
+	 * <code>If-Modified-Since</code> header.
+	 * 
+	 * @return the date in HTTP format, null if the copy has no date
+	 */
+	String getIfModifiedSince();
+
+	/**
+	 * Calls when the server responds with <code>304 Not Modified</code>.
+	 * 
+	 * @return the result, built from the copy
+	 * @throws Exception if the copy cannot be used
+	 */
+	T notModified() throws Exception;
+
+	/**
+	 * Calls when the server sends the resource, before the session is
+	 * created.
+	 * 
+	 * @param etag the <code>ETag</code> header, null if absent
+	 * @param lastModified the <code>Last-Modified</code> header, null if
+	 *            absent
+	 */
+	void validatorsReceived(String etag, String lastModified);
+
+}
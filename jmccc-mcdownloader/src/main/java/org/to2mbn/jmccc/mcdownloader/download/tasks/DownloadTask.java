@@ -9,6 +9,11 @@ import java.util.Objects;
  * <p>
  * A download task has the uri of resource to download, and the location to save, such as file, memory. The save location
  * is handled by subclasses.
+ * <p>
+ * If two tasks are equal, they download the same resource to the same location
+ * and produce the same result. The subtasks of a combined task which are equal
+ * to a running one share the running download. By default a task is only equal
+ * to itself.
  * 
  * @param <T> the type of result
  * @author yushijinhun
@@ -80,6 +85,23 @@ abstract public class DownloadTask<T> {
 		return createSession();
 	}
 
+	/**
+	 * Calls when the download task begins, and the resource can be downloaded
+	 * in several segments concurrently.
+	 * <p>
+	 * The default implementation returns null, which means the task doesn't
+	 * support segmented download, and {@link #createSession(long)} will be
+	 * used instead.
+	 * 
+	 * @param length the length of data
+	 * @return a new segmented download session, null if the task doesn't
+	 *         support segmented download
+	 * @throws IOException if an I/O error occurs
+	 */
+	public SegmentedDownloadSession<T> createSegmentedSession(long length) throws IOException {
+		return null;
+	}
+
 	public final <R> DownloadTask<R> andThen(ResultProcessor<T, R> processor) {
 		Objects.requireNonNull(processor);
 		return new AndThenDownloadTask<>(processor, this);
@@ -1,5 +1,6 @@
 package org.to2mbn.jmccc.mcdownloader.download.tasks;
 
+import java.io.IOException;
 import java.util.Objects;
 
 class DownloadTaskCachePoolDecorator<T> extends SimpleDownloadTaskDecorator<T> {
@@ -15,4 +16,28 @@ class DownloadTaskCachePoolDecorator<T> extends SimpleDownloadTaskDecorator<T> {
 	public String getCachePool() {
 		return pool;
 	}
+
+	@Override
+	public SegmentedDownloadSession<T> createSegmentedSession(long length) throws IOException {
+		return delegated.createSegmentedSession(length);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(delegated, pool);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (obj instanceof DownloadTaskCachePoolDecorator) {
+			DownloadTaskCachePoolDecorator<?> another = (DownloadTaskCachePoolDecorator<?>) obj;
+			return delegated.equals(another.delegated)
+					&& pool.equals(another.pool);
+		}
+		return false;
+	}
+
 }
@@ -1,5 +1,8 @@
 package org.to2mbn.jmccc.mcdownloader.download.tasks;
 
+import java.io.IOException;
+import java.util.Objects;
+
 class DownloadTaskCacheableDecorator<T> extends SimpleDownloadTaskDecorator<T> {
 
 	private boolean cachable;
@@ -14,4 +17,27 @@ class DownloadTaskCacheableDecorator<T> extends SimpleDownloadTaskDecorator<T> {
 		return cachable;
 	}
 
+	@Override
+	public SegmentedDownloadSession<T> createSegmentedSession(long length) throws IOException {
+		return delegated.createSegmentedSession(length);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(delegated, cachable);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (obj instanceof DownloadTaskCacheableDecorator) {
+			DownloadTaskCacheableDecorator<?> another = (DownloadTaskCacheableDecorator<?>) obj;
+			return delegated.equals(another.delegated)
+					&& cachable == another.cachable;
+		}
+		return false;
+	}
+
 }
@@ -3,6 +3,7 @@ package org.to2mbn.jmccc.mcdownloader.download.tasks;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
@@ -57,7 +58,7 @@ public class FileDownloadTask extends DownloadTask<Void> {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(super.hashCode(), target);
+		return Objects.hash(getURI(), target);
 	}
 
 	@Override
@@ -65,16 +66,17 @@ public class FileDownloadTask extends DownloadTask<Void> {
 		if (obj == this) {
 			return true;
 		}
-		if (super.equals(obj)) {
+		if (obj != null && obj.getClass() == getClass()) {
 			FileDownloadTask another = (FileDownloadTask) obj;
-			return target.equals(another.target);
+			return getURI().equals(another.getURI())
+					&& target.equals(another.target);
 		}
 		return false;
 	}
 
 	@Override
 	public DownloadSession<Void> createSession() throws IOException {
-		final File partFile = new File(target.getParentFile(), target.getName() + ".part");
+		final File partFile = getPartFile();
 
 		FileUtils.prepareWrite(partFile);
 		
@@ -90,31 +92,83 @@ public class FileDownloadTask extends DownloadTask<Void> {
 
 			@Override
 			public void failed() throws IOException {
-				close();
-				if (!partFile.delete()) {
-					throw new IOException("Failed to delete " + partFile);
-				}
+				out.close();
+				deletePartFile(partFile);
 			}
 
 			@Override
 			public Void completed() throws IOException {
-				close();
-				FileUtils.prepareWrite(target);
-				if (target.exists()) {
-					if (!target.delete()) {
-						throw new IOException("Failed to delete " + target);
-					}
-				}
-				if (!partFile.renameTo(target)) {
-					throw new IOException("Failed to rename " + partFile + " to " + target);
-				}
+				out.close();
+				renamePartFile(partFile);
 				return null;
 			}
+		};
+	}
+
+	@Override
+	public SegmentedDownloadSession<Void> createSegmentedSession(long length) throws IOException {
+		final File partFile = getPartFile();
+
+		FileUtils.prepareWrite(partFile);
 
-			private void close() throws IOException {
+		final RandomAccessFile out = new RandomAccessFile(partFile, "rw");
+		try {
+			// preallocate the space
+			out.setLength(length);
+		} catch (Throwable e) {
+			try {
 				out.close();
+			} catch (Throwable e1) {
+				e.addSuppressed(e1);
+			}
+			throw e;
+		}
+		final FileChannel channel = out.getChannel();
+
+		return new SegmentedDownloadSession<Void>() {
+
+			@Override
+			public void receiveData(ByteBuffer data, long position) throws IOException {
+				while (data.hasRemaining()) {
+					position += channel.write(data, position);
+				}
+			}
+
+			@Override
+			public void failed() throws IOException {
+				out.close();
+				deletePartFile(partFile);
+			}
+
+			@Override
+			public Void completed() throws IOException {
+				out.close();
+				renamePartFile(partFile);
+				return null;
 			}
 		};
 	}
 
+	private File getPartFile() {
+		return new File(target.getParentFile(), target.getName() + ".part");
+	}
+
+	private void deletePartFile(File partFile) throws IOException {
+		if (!partFile.delete()) {
+			throw new IOException("Failed to delete " + partFile);
+		}
+	}
+
+	private void renamePartFile(File partFile) throws IOException {
+		FileUtils.prepareWrite(target);
+		if (target.exists()) {
+			if (!target.delete()) {
+				throw new IOException("Failed to delete " + target);
+			}
+		}
+		if (!partFile.renameTo(target)) {
+			throw new IOException("Failed to rename " + partFile + " to " + target);
+		}
+	}
+
 }
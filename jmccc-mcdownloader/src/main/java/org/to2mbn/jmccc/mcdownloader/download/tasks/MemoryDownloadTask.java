@@ -72,4 +72,21 @@ public class MemoryDownloadTask extends DownloadTask<byte[]> {
 		return createSession(8192);
 	}
 
+	@Override
+	public int hashCode() {
+		return getURI().hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (obj != null && obj.getClass() == getClass()) {
+			MemoryDownloadTask another = (MemoryDownloadTask) obj;
+			return getURI().equals(another.getURI());
+		}
+		return false;
+	}
+
 }
@@ -0,0 +1,50 @@
+package org.to2mbn.jmccc.mcdownloader.download.tasks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A download session which accepts data at any position, so that a resource
+ * can be downloaded in several segments concurrently.
+ * <p>
+ * Like {@link DownloadSession}, once the session is created, one of the
+ * following methods {@link #completed()}, {@link #failed()} must be invoked.
+ * 
+ * @param <T> the type of result
+ * @see DownloadTask#createSegmentedSession(long)
+ */
+public interface SegmentedDownloadSession<T> {
+
+	/**
+	 * Calls when receives a part of data.
+	 * <p>
+	 * This method may be called by several threads concurrently.
+	 * 
+	 * @param data the data
+	 * @param position the position of the data in the resource
+	 * @throws IOException if an I/O error occurs
+	 */
+	void receiveData(ByteBuffer data, long position) throws IOException;
+
+	/**
+	 * Calls when all the data has been received successfully.
+	 * <p>
+	 * Notes for implementation: In this method you should close the opened
+	 * resources.
+	 * 
+	 * @return the result
+	 * @throws Exception if an I/O error occurs
+	 */
+	T completed() throws Exception;
+
+	/**
+	 * Calls when an error occurs during downloading.
+	 * <p>
+	 * Notes for implementation: In this method you should close the opened
+	 * resources.
+	 * 
+	 * @throws Exception if an I/O error occurs
+	 */
+	void failed() throws Exception;
+
+}
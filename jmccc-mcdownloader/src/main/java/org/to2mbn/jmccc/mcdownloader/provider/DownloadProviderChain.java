@@ -3,6 +3,8 @@ package org.to2mbn.jmccc.mcdownloader.provider;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.combine.MirrorStats;
 import org.to2mbn.jmccc.util.Builder;
 
 public class DownloadProviderChain implements Builder<MinecraftDownloadProvider> {
@@ -89,6 +91,8 @@ public class DownloadProviderChain implements Builder<MinecraftDownloadProvider>
 	protected List<Builder<MinecraftDownloadProvider>> aheadProviders = new ArrayList<>();
 	protected boolean useDownloadInfo = true;
 	protected List<DownloadInfoProcessor> downloadInfoProcessor = new ArrayList<>();
+	protected boolean latencyAware = false;
+	protected MirrorStats mirrorStats = MirrorStats.getDefault();
 
 	protected DownloadProviderChain() {}
 
@@ -117,9 +121,45 @@ public class DownloadProviderChain implements Builder<MinecraftDownloadProvider>
 		return this;
 	}
 
+	/**
+	 * Sets whether to choose among the providers by their latencies.
+	 * <p>
+	 * If true, the base provider and the providers added by
+	 * {@link #addProvider(MinecraftDownloadProvider)} (except
+	 * {@link ExtendedDownloadProvider}s) are treated as mirrors. Each task
+	 * goes to the mirror whose first byte arrives the earliest recently. If a
+	 * mirror doesn't respond in time, the next mirror is started as well for
+	 * the version list, the tasks writing files only fall back on failures.
+	 * If false, the provider added last is always used. Default to false.
+	 * 
+	 * @param latencyAware true to choose the providers by their latencies
+	 * @return the builder itself
+	 * @see CombinedDownloadTask#fastest(MirrorStats, String[], CombinedDownloadTask[])
+	 */
+	public DownloadProviderChain latencyAware(boolean latencyAware) {
+		this.latencyAware = latencyAware;
+		return this;
+	}
+
+	/**
+	 * Sets the statistics used to choose among the providers. Default to
+	 * {@link MirrorStats#getDefault()}.
+	 * 
+	 * @param mirrorStats the statistics of the providers
+	 * @return the builder itself
+	 * @see #latencyAware(boolean)
+	 */
+	public DownloadProviderChain mirrorStats(MirrorStats mirrorStats) {
+		this.mirrorStats = Objects.requireNonNull(mirrorStats);
+		return this;
+	}
+
 	@Override
 	public MinecraftDownloadProvider build() {
 		MinecraftDownloadProvider right = this.baseProvider == null ? new MojangDownloadProvider() : this.baseProvider;
+		if (latencyAware) {
+			return buildLatencyAware(right);
+		}
 		for (MinecraftDownloadProvider left : providers) {
 			if (left instanceof ExtendedDownloadProvider) {
 				((ExtendedDownloadProvider) left).setUpstreamProvider(withAheadProvider(right));
@@ -130,6 +170,27 @@ public class DownloadProviderChain implements Builder<MinecraftDownloadProvider>
 		return right;
 	}
 
+	protected MinecraftDownloadProvider buildLatencyAware(MinecraftDownloadProvider baseProvider) {
+		// the provider added last comes first, as it does in the chain
+		List<MinecraftDownloadProvider> mirrors = new ArrayList<>();
+		List<MinecraftDownloadProvider> extended = new ArrayList<>();
+		for (MinecraftDownloadProvider provider : providers) {
+			if (provider instanceof ExtendedDownloadProvider) {
+				extended.add(provider);
+			} else {
+				mirrors.add(0, provider);
+			}
+		}
+		mirrors.add(baseProvider);
+
+		MinecraftDownloadProvider right = new MirrorDownloadProvider(mirrors, mirrorStats);
+		for (MinecraftDownloadProvider left : extended) {
+			((ExtendedDownloadProvider) left).setUpstreamProvider(withAheadProvider(right));
+			right = new DownloadProviderTree(left, right);
+		}
+		return withAheadProvider(right);
+	}
+
 	protected MinecraftDownloadProvider withAheadProvider(MinecraftDownloadProvider right) {
 		List<MinecraftDownloadProvider> ahead = new ArrayList<>();
 		for (Builder<MinecraftDownloadProvider> builder : aheadProviders) {
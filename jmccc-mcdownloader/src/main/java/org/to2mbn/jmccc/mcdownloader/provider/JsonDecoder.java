@@ -11,4 +11,15 @@ public class JsonDecoder implements ResultProcessor<byte[], JSONObject> {
 		return IOUtils.toJson(data);
 	}
 
+	@Override
+	public int hashCode() {
+		return getClass().hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		// stateless, so the download tasks decoding the same resource are equal
+		return obj != null && obj.getClass() == getClass();
+	}
+
 }
@@ -0,0 +1,144 @@
+package org.to2mbn.jmccc.mcdownloader.provider;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.to2mbn.jmccc.mcdownloader.RemoteVersionList;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.combine.MirrorStats;
+import org.to2mbn.jmccc.option.MinecraftDirectory;
+import org.to2mbn.jmccc.version.Asset;
+import org.to2mbn.jmccc.version.Library;
+import org.to2mbn.jmccc.version.Version;
+
+/**
+ * Treats a list of providers as mirrors, and runs each task on the fastest
+ * mirror which can provide it.
+ * <p>
+ * Only the version list is hedged. The other tasks write to the minecraft
+ * directory, so the mirrors are tried one by one.
+ * 
+ * @see CombinedDownloadTask#fastest(MirrorStats, boolean, String[], CombinedDownloadTask[])
+ */
+class MirrorDownloadProvider implements MinecraftDownloadProvider {
+
+	private static abstract class TaskResolver<T> {
+
+		abstract CombinedDownloadTask<T> resolve(MinecraftDownloadProvider provider);
+	}
+
+	private final MinecraftDownloadProvider[] providers;
+	private final String[] mirrors;
+	private final MirrorStats stats;
+
+	/**
+	 * Constructor of MirrorDownloadProvider.
+	 * 
+	 * @param providers the providers, the former is preferred if there are no
+	 *            statistics
+	 * @param stats the statistics of the providers
+	 */
+	public MirrorDownloadProvider(List<MinecraftDownloadProvider> providers, MirrorStats stats) {
+		this.providers = providers.toArray(new MinecraftDownloadProvider[providers.size()]);
+		this.stats = stats;
+
+		mirrors = new String[this.providers.length];
+		Set<String> used = new HashSet<>();
+		for (int i = 0; i < mirrors.length; i++) {
+			String mirror = this.providers[i].getClass().getName();
+			if (!used.add(mirror)) {
+				mirror = mirror + "#" + i;
+				used.add(mirror);
+			}
+			mirrors[i] = mirror;
+		}
+	}
+
+	@Override
+	public CombinedDownloadTask<RemoteVersionList> versionList() {
+		return resolve(true, new TaskResolver<RemoteVersionList>() {
+
+			@Override
+			CombinedDownloadTask<RemoteVersionList> resolve(MinecraftDownloadProvider provider) {
+				return provider.versionList();
+			}
+		});
+	}
+
+	@Override
+	public CombinedDownloadTask<Set<Asset>> assetsIndex(final MinecraftDirectory mcdir, final Version version) {
+		return resolve(false, new TaskResolver<Set<Asset>>() {
+
+			@Override
+			CombinedDownloadTask<Set<Asset>> resolve(MinecraftDownloadProvider provider) {
+				return provider.assetsIndex(mcdir, version);
+			}
+		});
+	}
+
+	@Override
+	public CombinedDownloadTask<Void> gameJar(final MinecraftDirectory mcdir, final Version version) {
+		return resolve(false, new TaskResolver<Void>() {
+
+			@Override
+			CombinedDownloadTask<Void> resolve(MinecraftDownloadProvider provider) {
+				return provider.gameJar(mcdir, version);
+			}
+		});
+	}
+
+	@Override
+	public CombinedDownloadTask<String> gameVersionJson(final MinecraftDirectory mcdir, final String version) {
+		return resolve(false, new TaskResolver<String>() {
+
+			@Override
+			CombinedDownloadTask<String> resolve(MinecraftDownloadProvider provider) {
+				return provider.gameVersionJson(mcdir, version);
+			}
+		});
+	}
+
+	@Override
+	public CombinedDownloadTask<Void> library(final MinecraftDirectory mcdir, final Library library) {
+		return resolve(false, new TaskResolver<Void>() {
+
+			@Override
+			CombinedDownloadTask<Void> resolve(MinecraftDownloadProvider provider) {
+				return provider.library(mcdir, library);
+			}
+		});
+	}
+
+	@Override
+	public CombinedDownloadTask<Void> asset(final MinecraftDirectory mcdir, final Asset asset) {
+		return resolve(false, new TaskResolver<Void>() {
+
+			@Override
+			CombinedDownloadTask<Void> resolve(MinecraftDownloadProvider provider) {
+				return provider.asset(mcdir, asset);
+			}
+		});
+	}
+
+	private <T> CombinedDownloadTask<T> resolve(boolean hedge, TaskResolver<T> resolver) {
+		List<CombinedDownloadTask<T>> tasks = new ArrayList<>(providers.length);
+		List<String> taskMirrors = new ArrayList<>(providers.length);
+		for (int i = 0; i < providers.length; i++) {
+			CombinedDownloadTask<T> task = resolver.resolve(providers[i]);
+			if (task != null) {
+				tasks.add(task);
+				taskMirrors.add(mirrors[i]);
+			}
+		}
+
+		if (tasks.isEmpty()) {
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		CombinedDownloadTask<T>[] tasksArray = tasks.toArray(new CombinedDownloadTask[tasks.size()]);
+		return CombinedDownloadTask.fastest(stats, hedge, taskMirrors.toArray(new String[taskMirrors.size()]), tasksArray);
+	}
+
+}
@@ -24,6 +24,26 @@ import org.to2mbn.jmccc.version.parsing.Versions;
 
 abstract public class URIDownloadProvider implements MinecraftDownloadProvider {
 
+	private static class RemoteVersionListDecoder implements ResultProcessor<JSONObject, RemoteVersionList> {
+
+		@Override
+		public RemoteVersionList process(JSONObject json) throws Exception {
+			return RemoteVersionList.fromJson(json);
+		}
+
+		@Override
+		public int hashCode() {
+			return getClass().hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			// stateless, so the version list downloads of the same uri are equal
+			return obj != null && obj.getClass() == getClass();
+		}
+
+	}
+
 	private Map<String, LibraryDownloadHandler> libraryHandlers = new ConcurrentSkipListMap<>(new Comparator<String>() {
 
 		@Override
@@ -60,15 +80,10 @@ abstract public class URIDownloadProvider implements MinecraftDownloadProvider {
 		return CombinedDownloadTask.single(
 				new MemoryDownloadTask(uri)
 						.andThen(new JsonDecoder())
-						.andThen(new ResultProcessor<JSONObject, RemoteVersionList>() {
-
-							@Override
-							public RemoteVersionList process(JSONObject json) throws Exception {
-								return RemoteVersionList.fromJson(json);
-							}
-						})
+						.andThen(new RemoteVersionListDecoder())
 						.cacheable()
-						.cachePool(CacheNames.VERSION_LIST));
+						.cachePool(CacheNames.VERSION_LIST))
+				.memoized(CacheNames.VERSION_LIST, uri);
 	}
 
 	@Override
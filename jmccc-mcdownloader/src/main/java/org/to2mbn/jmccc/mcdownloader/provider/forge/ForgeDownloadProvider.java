@@ -4,10 +4,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.URI;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 import org.to2mbn.jmccc.internal.org.json.JSONException;
@@ -31,6 +35,101 @@ import org.to2mbn.jmccc.version.parsing.Versions;
 
 public class ForgeDownloadProvider extends AbstractMinecraftDownloadProvider implements ExtendedDownloadProvider {
 
+	// the processors are equal by value, so are the tasks using them
+
+	private static class ForgeVersionListDecoder implements ResultProcessor<JSONObject, ForgeVersionList> {
+
+		@Override
+		public ForgeVersionList process(JSONObject json) throws IOException {
+			return ForgeVersionList.fromJson(json);
+		}
+
+		@Override
+		public int hashCode() {
+			return getClass().hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj != null && obj.getClass() == getClass();
+		}
+
+	}
+
+	private static class ForgeVersionLookup implements ResultProcessor<ForgeVersionList, ForgeVersion> {
+
+		private final String forgeVersion;
+
+		public ForgeVersionLookup(String forgeVersion) {
+			this.forgeVersion = forgeVersion;
+		}
+
+		@Override
+		public ForgeVersion process(ForgeVersionList versionList) throws Exception {
+			ForgeVersion forge = versionList.get(forgeVersion);
+			if (forge == null) {
+				throw new IllegalArgumentException("Forge version not found: " + forgeVersion);
+			}
+			return forge;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(forgeVersion);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (obj instanceof ForgeVersionLookup) {
+				return Objects.equals(forgeVersion, ((ForgeVersionLookup) obj).forgeVersion);
+			}
+			return false;
+		}
+
+	}
+
+	private static class ForgeVersionJsonCreator implements ResultProcessor<String, JSONObject> {
+
+		private final ForgeDownloadProvider provider;
+		private final MinecraftDirectory mcdir;
+		private final ForgeVersion forge;
+
+		public ForgeVersionJsonCreator(ForgeDownloadProvider provider, MinecraftDirectory mcdir, ForgeVersion forge) {
+			this.provider = provider;
+			this.mcdir = mcdir;
+			this.forge = forge;
+		}
+
+		@Override
+		public JSONObject process(String superversion) throws Exception {
+			return provider.createForgeVersionJson(mcdir, forge);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(mcdir, forge);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (obj instanceof ForgeVersionJsonCreator) {
+				ForgeVersionJsonCreator another = (ForgeVersionJsonCreator) obj;
+				// createForgeVersionJson may be overridden
+				return provider == another.provider
+						&& mcdir.equals(another.mcdir)
+						&& forge.equals(another.forge);
+			}
+			return false;
+		}
+
+	}
+
 	public static final String FORGE_GROUP_ID = "net.minecraftforge";
 	public static final String FORGE_ARTIFACT_ID = "forge";
 	public static final String FORGE_OLD_ARTIFACT_ID = "minecraftforge";
@@ -38,7 +137,10 @@ public class ForgeDownloadProvider extends AbstractMinecraftDownloadProvider imp
 	public static final String CLASSIFIER_UNIVERSAL = "universal";
 	public static final String MINECRAFT_MAINCLASS = "net.minecraft.client.Minecraft";
 
+	private static final Logger LOGGER = Logger.getLogger(ForgeDownloadProvider.class.getCanonicalName());
+
 	private static final String[] UNIVERSAL_TYPES = new String[] { "jar", "zip" };
+	private static final String META_INF = "META-INF/";
 
 	private ForgeDownloadSource source;
 
@@ -53,18 +155,15 @@ public class ForgeDownloadProvider extends AbstractMinecraftDownloadProvider imp
 	}
 
 	public CombinedDownloadTask<ForgeVersionList> forgeVersionList() {
+		String url = source.getForgeVersionListUrl();
 		return CombinedDownloadTask.single(
-				new MemoryDownloadTask(source.getForgeVersionListUrl())
+				new MemoryDownloadTask(url)
 						.andThen(new JsonDecoder())
-						.andThen(new ResultProcessor<JSONObject, ForgeVersionList>() {
-
-							@Override
-							public ForgeVersionList process(JSONObject json) throws IOException {
-								return ForgeVersionList.fromJson(json);
-							}
-						})
+						.andThen(new ForgeVersionListDecoder())
 						.cacheable()
-						.cachePool(CacheNames.FORGE_VERSION_LIST));
+						.cachePool(CacheNames.FORGE_VERSION_LIST))
+				// the list is requested several times during an installation
+				.memoized(CacheNames.FORGE_VERSION_LIST, URI.create(url));
 	}
 
 	@Override
@@ -80,15 +179,9 @@ public class ForgeDownloadProvider extends AbstractMinecraftDownloadProvider imp
 							return CombinedDownloadTask.any(
 									installerTask(forge.getMavenVersion())
 											.andThen(new InstallProfileProcessor(mcdir)),
+									// for old forge versions
 									upstreamProvider.gameVersionJson(mcdir, forge.getMinecraftVersion())
-											.andThen(new ResultProcessor<String, JSONObject>() {
-
-												// for old forge versions
-												@Override
-												public JSONObject process(String superversion) throws Exception {
-													return createForgeVersionJson(mcdir, forge);
-												}
-											})
+											.andThen(new ForgeVersionJsonCreator(ForgeDownloadProvider.this, mcdir, forge))
 											.andThen(new VersionJsonInstaller(mcdir)));
 						}
 					});
@@ -238,6 +331,16 @@ public class ForgeDownloadProvider extends AbstractMinecraftDownloadProvider imp
 
 	protected void mergeJar(File parent, File universal, File target) throws IOException {
 		FileUtils.prepareWrite(target);
+		try (RawZipWriter out = new RawZipWriter(target)) {
+			// the entries of the universal override the parent's
+			out.copyEntries(universal, null);
+			out.copyEntries(parent, META_INF);
+			out.finish();
+			return;
+		} catch (ZipException e) {
+			LOGGER.log(Level.FINE, "Couldn't copy the entries of " + parent + " and " + universal + " raw, recompressing them", e);
+		}
+
 		try (ZipInputStream in = new ZipInputStream(new FileInputStream(parent));
 				ZipInputStream universalIn = new ZipInputStream(new FileInputStream(universal));
 				ZipOutputStream out = new ZipOutputStream(new FileOutputStream(target));) {
@@ -272,6 +375,14 @@ public class ForgeDownloadProvider extends AbstractMinecraftDownloadProvider imp
 
 	protected void purgeMetaInf(File src, File target) throws IOException {
 		FileUtils.prepareWrite(target);
+		try (RawZipWriter out = new RawZipWriter(target)) {
+			out.copyEntries(src, META_INF);
+			out.finish();
+			return;
+		} catch (ZipException e) {
+			LOGGER.log(Level.FINE, "Couldn't copy the entries of " + src + " raw, recompressing them", e);
+		}
+
 		try (ZipInputStream in = new ZipInputStream(new FileInputStream(src));
 				ZipOutputStream out = new ZipOutputStream(new FileOutputStream(target));) {
 			ZipEntry entry;
@@ -290,23 +401,13 @@ public class ForgeDownloadProvider extends AbstractMinecraftDownloadProvider imp
 		}
 	}
 
-	private CombinedDownloadTask<ForgeVersion> forgeVersion(final String forgeVersion) {
+	private CombinedDownloadTask<ForgeVersion> forgeVersion(String forgeVersion) {
 		return forgeVersionList()
-				.andThen(new ResultProcessor<ForgeVersionList, ForgeVersion>() {
-
-					@Override
-					public ForgeVersion process(ForgeVersionList versionList) throws Exception {
-						ForgeVersion forge = versionList.get(forgeVersion);
-						if (forge == null) {
-							throw new IllegalArgumentException("Forge version not found: " + forgeVersion);
-						}
-						return forge;
-					}
-				});
+				.andThen(new ForgeVersionLookup(forgeVersion));
 	}
 
 	private boolean isMetaInfEntry(ZipEntry entry) {
-		return entry.getName().startsWith("META-INF/");
+		return entry.getName().startsWith(META_INF);
 	}
 
 	private CombinedDownloadTask<Version> downloadSuperVersion(final MinecraftDirectory mcdir, String version) {
@@ -0,0 +1,214 @@
+package org.to2mbn.jmccc.mcdownloader.provider.forge;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a zip file by copying the entries of other zip files as they are
+ * stored, without inflating and deflating them.
+ * <p>
+ * The entries are located with the central directory of the source file, the
+ * local header is rewritten with the sizes and the crc from the central
+ * directory, and the compressed data is transferred between the channels.
+ * When several entries have the same name, only the first one is written.
+ * <p>
+ * Zip64 files and files which are not plain zip files are not supported, a
+ * {@link ZipException} is thrown in that case.
+ */
+class RawZipWriter implements Closeable {
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+
+	private static final int LOCAL_HEADER_LENGTH = 30;
+	private static final int CENTRAL_HEADER_LENGTH = 46;
+	private static final int END_LENGTH = 22;
+
+	// bit 3: the sizes and the crc follow the data
+	private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+
+	private final FileOutputStream out;
+	private final FileChannel channel;
+	private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+	private final Set<String> names = new HashSet<>();
+	private long position;
+
+	public RawZipWriter(File target) throws IOException {
+		out = new FileOutputStream(target);
+		channel = out.getChannel();
+	}
+
+	/**
+	 * Copies the entries of the given zip file.
+	 * 
+	 * @param src the zip file
+	 * @param excludedPrefix the entries whose names start with it are skipped,
+	 *            null if no entry is skipped
+	 * @throws ZipException if <code>src</code> is not a plain zip file
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void copyEntries(File src, String excludedPrefix) throws IOException {
+		try (FileInputStream in = new FileInputStream(src);
+				FileChannel srcChannel = in.getChannel()) {
+			ByteBuffer end = readEnd(srcChannel);
+			int entries = end.getShort(10) & 0xffff;
+			long cdLength = end.getInt(12) & 0xffffffffL;
+			long cdOffset = end.getInt(16) & 0xffffffffL;
+			if (entries == 0xffff || cdLength == 0xffffffffL || cdOffset == 0xffffffffL)
+				throw new ZipException("Zip64 is not supported: " + src);
+
+			ByteBuffer cd = read(srcChannel, cdOffset, (int) cdLength);
+			for (int i = 0; i < entries; i++) {
+				if (cd.remaining() < CENTRAL_HEADER_LENGTH || cd.getInt(cd.position()) != CENTRAL_HEADER_SIGNATURE)
+					throw new ZipException("Invalid central directory: " + src);
+
+				int start = cd.position();
+				int nameLength = cd.getShort(start + 28) & 0xffff;
+				int extraLength = cd.getShort(start + 30) & 0xffff;
+				int commentLength = cd.getShort(start + 32) & 0xffff;
+				int length = CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+				if (cd.remaining() < length)
+					throw new ZipException("Invalid central directory: " + src);
+
+				byte[] header = new byte[length];
+				cd.get(header);
+
+				byte[] nameBytes = new byte[nameLength];
+				System.arraycopy(header, CENTRAL_HEADER_LENGTH, nameBytes, 0, nameLength);
+				String name = new String(nameBytes, StandardCharsets.UTF_8);
+				if ((excludedPrefix != null && name.startsWith(excludedPrefix)) || !names.add(name))
+					continue;
+
+				copyEntry(srcChannel, ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN), nameBytes, src);
+			}
+		}
+	}
+
+	/**
+	 * Writes the central directory. The writer cannot be used after calling
+	 * this.
+	 * 
+	 * @throws ZipException if there are too many entries for a plain zip file
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void finish() throws IOException {
+		if (names.size() > 0xffff || position > 0xffffffffL || centralDirectory.size() > 0xffffffffL)
+			throw new ZipException("Zip64 is not supported");
+
+		long cdOffset = position;
+		write(ByteBuffer.wrap(centralDirectory.toByteArray()));
+
+		ByteBuffer end = ByteBuffer.allocate(END_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		end.putInt(END_SIGNATURE);
+		end.putShort((short) 0); // number of this disk
+		end.putShort((short) 0); // disk where the central directory starts
+		end.putShort((short) names.size());
+		end.putShort((short) names.size());
+		end.putInt(centralDirectory.size());
+		end.putInt((int) cdOffset);
+		end.putShort((short) 0); // comment length
+		end.flip();
+		write(end);
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void copyEntry(FileChannel src, ByteBuffer header, byte[] name, File srcFile) throws IOException {
+		int flags = header.getShort(8) & 0xffff;
+		long compressedSize = header.getInt(20) & 0xffffffffL;
+		long localOffset = header.getInt(42) & 0xffffffffL;
+		if (compressedSize == 0xffffffffL || localOffset == 0xffffffffL)
+			throw new ZipException("Zip64 is not supported: " + srcFile);
+
+		ByteBuffer local = read(src, localOffset, LOCAL_HEADER_LENGTH);
+		if (local.getInt(0) != LOCAL_HEADER_SIGNATURE)
+			throw new ZipException("Invalid local header: " + srcFile);
+		int localNameLength = local.getShort(26) & 0xffff;
+		int localExtraLength = local.getShort(28) & 0xffff;
+		ByteBuffer localExtra = read(src, localOffset + LOCAL_HEADER_LENGTH + localNameLength, localExtraLength);
+		long dataOffset = localOffset + LOCAL_HEADER_LENGTH + localNameLength + localExtraLength;
+
+		// the sizes and the crc are known, so the data descriptor is dropped
+		int newFlags = flags & ~FLAG_DATA_DESCRIPTOR;
+		long newOffset = position;
+		if (newOffset > 0xffffffffL)
+			throw new ZipException("Zip64 is not supported");
+
+		ByteBuffer newLocal = ByteBuffer.allocate(LOCAL_HEADER_LENGTH + name.length + localExtraLength).order(ByteOrder.LITTLE_ENDIAN);
+		newLocal.putInt(LOCAL_HEADER_SIGNATURE);
+		newLocal.putShort(header.getShort(6)); // version needed to extract
+		newLocal.putShort((short) newFlags);
+		newLocal.putShort(header.getShort(10)); // compression method
+		newLocal.putInt(header.getInt(12)); // last modified time & date
+		newLocal.putInt(header.getInt(16)); // crc
+		newLocal.putInt(header.getInt(20)); // compressed size
+		newLocal.putInt(header.getInt(24)); // uncompressed size
+		newLocal.putShort((short) name.length);
+		newLocal.putShort((short) localExtraLength);
+		newLocal.put(name);
+		newLocal.put(localExtra);
+		newLocal.flip();
+		write(newLocal);
+
+		long transferred = 0;
+		while (transferred < compressedSize) {
+			long count = src.transferTo(dataOffset + transferred, compressedSize - transferred, channel);
+			if (count <= 0)
+				throw new ZipException("Unexpected end of entry data: " + srcFile);
+			transferred += count;
+		}
+		position += compressedSize;
+
+		header.putShort(8, (short) newFlags);
+		header.putInt(42, (int) newOffset);
+		centralDirectory.write(header.array(), 0, header.capacity());
+	}
+
+	private ByteBuffer readEnd(FileChannel src) throws IOException {
+		long size = src.size();
+		if (size < END_LENGTH)
+			throw new ZipException("Not a zip file");
+
+		// the end record is followed by a comment of at most 65535 bytes
+		int tailLength = (int) Math.min(size, END_LENGTH + 0xffff);
+		ByteBuffer tail = read(src, size - tailLength, tailLength);
+		for (int i = tailLength - END_LENGTH; i >= 0; i--) {
+			if (tail.getInt(i) == END_SIGNATURE) {
+				tail.position(i);
+				return tail.slice().order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+		throw new ZipException("End of central directory not found");
+	}
+
+	private ByteBuffer read(FileChannel src, long offset, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buf.hasRemaining()) {
+			if (src.read(buf, offset + buf.position()) == -1)
+				throw new ZipException("Unexpected end of zip file");
+		}
+		buf.flip();
+		return buf;
+	}
+
+	private void write(ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining())
+			position += channel.write(buf);
+	}
+
+}
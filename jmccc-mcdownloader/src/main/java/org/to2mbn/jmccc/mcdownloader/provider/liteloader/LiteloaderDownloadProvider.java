@@ -1,6 +1,7 @@
 package org.to2mbn.jmccc.mcdownloader.provider.liteloader;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.Objects;
 import java.util.Set;
 import org.to2mbn.jmccc.internal.org.json.JSONArray;
@@ -49,7 +50,8 @@ public class LiteloaderDownloadProvider extends AbstractMinecraftDownloadProvide
 	}
 
 	public CombinedDownloadTask<LiteloaderVersionList> liteloaderVersionList() {
-		return CombinedDownloadTask.single(new MemoryDownloadTask(source.getLiteloaderManifestUrl())
+		String url = source.getLiteloaderManifestUrl();
+		return CombinedDownloadTask.single(new MemoryDownloadTask(url)
 				.andThen(new JsonDecoder())
 				.andThen(new ResultProcessor<JSONObject, LiteloaderVersionList>() {
 
@@ -59,7 +61,8 @@ public class LiteloaderDownloadProvider extends AbstractMinecraftDownloadProvide
 					}
 				})
 				.cacheable()
-				.cachePool(CacheNames.LITELOADER_VERSION_LIST));
+				.cachePool(CacheNames.LITELOADER_VERSION_LIST))
+				.memoized(CacheNames.LITELOADER_VERSION_LIST, URI.create(url));
 	}
 
 	@Override
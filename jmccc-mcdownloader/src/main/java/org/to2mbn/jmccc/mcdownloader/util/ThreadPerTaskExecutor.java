@@ -0,0 +1,150 @@
+package org.to2mbn.jmccc.mcdownloader.util;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts a new thread for each task, and limits the number of running tasks
+ * with a semaphore.
+ * <p>
+ * A task waits for a permit in its own thread, so {@link #execute(Runnable)}
+ * never blocks. The tasks which are still waiting for permits will be
+ * discarded when the executor is shutdown.
+ */
+class ThreadPerTaskExecutor extends AbstractExecutorService {
+
+	private class Worker implements Runnable {
+
+		private final Runnable task;
+
+		public Worker(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			try {
+				permits.acquire();
+				try {
+					if (!shutdownNow) {
+						task.run();
+					}
+				} finally {
+					permits.release();
+				}
+			} catch (InterruptedException e) {
+				// the executor has been shutdown
+			} finally {
+				threads.remove(Thread.currentThread());
+				synchronized (lock) {
+					running--;
+					lock.notifyAll();
+				}
+			}
+		}
+
+	}
+
+	private final ThreadFactory threadFactory;
+	private final Semaphore permits;
+	private final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+	private final Object lock = new Object();
+	private int running; // lock
+	private volatile boolean shutdown;
+	private volatile boolean shutdownNow;
+
+	public ThreadPerTaskExecutor(ThreadFactory threadFactory, int maxConcurrency) {
+		Objects.requireNonNull(threadFactory);
+		if (maxConcurrency < 1)
+			throw new IllegalArgumentException("maxConcurrency < 1");
+
+		this.threadFactory = threadFactory;
+		this.permits = new Semaphore(maxConcurrency, true);
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		Objects.requireNonNull(command);
+		Thread thread;
+		synchronized (lock) {
+			if (shutdown)
+				throw new RejectedExecutionException("The executor has been shutdown");
+
+			thread = threadFactory.newThread(new Worker(command));
+			if (thread == null)
+				throw new RejectedExecutionException("Thread factory returns null");
+			running++;
+			threads.add(thread);
+		}
+		try {
+			thread.start();
+		} catch (Throwable e) {
+			threads.remove(thread);
+			synchronized (lock) {
+				running--;
+				lock.notifyAll();
+			}
+			throw new RejectedExecutionException(e);
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		synchronized (lock) {
+			shutdown = true;
+		}
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		synchronized (lock) {
+			shutdown = true;
+			shutdownNow = true;
+		}
+		for (Thread thread : threads) {
+			thread.interrupt();
+		}
+		return Collections.emptyList();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return shutdown;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		synchronized (lock) {
+			return shutdown && running == 0;
+		}
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (lock) {
+			while (!(shutdown && running == 0)) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0)
+					return false;
+				TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+			}
+			return true;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ThreadPerTaskExecutor [threadFactory=%s, availablePermits=%d, shutdown=%s]", threadFactory, permits.availablePermits(), shutdown);
+	}
+
+}
@@ -1,14 +1,42 @@
 package org.to2mbn.jmccc.mcdownloader.util;
 
+import java.lang.reflect.Method;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public final class ThreadPoolUtils {
 
+	private static final Logger LOGGER = Logger.getLogger(ThreadPoolUtils.class.getCanonicalName());
+
+	private static final Method VIRTUAL_BUILDER;
+	private static final Method VIRTUAL_BUILDER_NAME;
+	private static final Method VIRTUAL_BUILDER_FACTORY;
+
+	static {
+		// Thread.ofVirtual() is available since java 21
+		Method builder = null;
+		Method name = null;
+		Method factory = null;
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = Thread.class.getMethod("ofVirtual");
+			name = builderClass.getMethod("name", String.class, long.class);
+			factory = builderClass.getMethod("factory");
+		} catch (ReflectiveOperationException e) {
+			builder = null;
+		}
+		VIRTUAL_BUILDER = builder;
+		VIRTUAL_BUILDER_NAME = name;
+		VIRTUAL_BUILDER_FACTORY = factory;
+	}
+
 	private static class NamedThreadFactory implements ThreadFactory {
 
 		private static final AtomicInteger poolNumber = new AtomicInteger(1);
@@ -40,5 +68,73 @@ public final class ThreadPoolUtils {
 		return pool;
 	}
 
+	/**
+	 * Returns true if the current JVM supports virtual threads.
+	 * 
+	 * @return true if the current JVM supports virtual threads
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return VIRTUAL_BUILDER != null;
+	}
+
+	/**
+	 * Creates a thread factory which creates virtual threads.
+	 * 
+	 * @param name the name of the threads
+	 * @return the thread factory
+	 * @throws UnsupportedOperationException if the current JVM doesn't support
+	 *             virtual threads
+	 * @throws NullPointerException if <code>name == null</code>
+	 */
+	public static ThreadFactory createVirtualThreadFactory(String name) {
+		Objects.requireNonNull(name);
+		if (!isVirtualThreadSupported())
+			throw new UnsupportedOperationException("Virtual threads are not supported");
+
+		try {
+			Object builder = VIRTUAL_BUILDER.invoke(null);
+			builder = VIRTUAL_BUILDER_NAME.invoke(builder, name + "-virtual-", 1L);
+			return (ThreadFactory) VIRTUAL_BUILDER_FACTORY.invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Couldn't create virtual thread factory", e);
+		}
+	}
+
+	/**
+	 * Creates an executor which starts a new thread for each task, the number
+	 * of tasks running at the same time is limited by a semaphore.
+	 * 
+	 * @param maxConcurrency the maximum number of running tasks
+	 * @param threadFactory the factory to create threads
+	 * @return the executor
+	 * @throws IllegalArgumentException if <code>maxConcurrency &lt; 1</code>
+	 * @throws NullPointerException if <code>threadFactory == null</code>
+	 */
+	public static ExecutorService createThreadPerTaskPool(int maxConcurrency, ThreadFactory threadFactory) {
+		return new ThreadPerTaskExecutor(threadFactory, maxConcurrency);
+	}
+
+	/**
+	 * Creates an executor which runs each task in a new virtual thread if
+	 * <code>useVirtualThreads</code> is true and the current JVM supports
+	 * virtual threads, otherwise creates a pool of platform threads.
+	 * 
+	 * @param threads the maximum number of running tasks
+	 * @param keepAliveTime the keep alive time of the platform threads
+	 * @param unit the unit of <code>keepAliveTime</code>
+	 * @param poolName the name of the pool
+	 * @param useVirtualThreads true to use virtual threads
+	 * @return the executor
+	 */
+	public static ExecutorService createPool(int threads, long keepAliveTime, TimeUnit unit, String poolName, boolean useVirtualThreads) {
+		if (useVirtualThreads) {
+			if (isVirtualThreadSupported()) {
+				return createThreadPerTaskPool(threads, createVirtualThreadFactory(poolName));
+			}
+			LOGGER.log(Level.FINE, "Virtual threads are not supported, fallback to platform threads: " + poolName);
+		}
+		return createPool(threads, keepAliveTime, unit, poolName);
+	}
+
 	private ThreadPoolUtils() {}
 }
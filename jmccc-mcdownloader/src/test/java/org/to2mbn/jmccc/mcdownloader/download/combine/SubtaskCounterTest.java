@@ -0,0 +1,242 @@
+package org.to2mbn.jmccc.mcdownloader.download.combine;
+
+import static org.junit.Assert.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.to2mbn.jmccc.mcdownloader.download.io.JdkDownloaderBuilder;
+
+public class SubtaskCounterTest {
+
+	private static final int ROUNDS = 20;
+	private static final int WIDTH = 64;
+	private static final int OPERATIONS = 1 << 20;
+
+	/**
+	 * Stops the first thread which sees the count reaching zero before it
+	 * fires the callbacks.
+	 */
+	private static class PausingCounter extends SubtaskCounter {
+
+		final CountDownLatch reachedZero = new CountDownLatch(1);
+		final CountDownLatch resume = new CountDownLatch(1);
+		final AtomicBoolean paused = new AtomicBoolean();
+
+		@Override
+		void fireWaitNodes() {
+			if (paused.compareAndSet(false, true)) {
+				reachedZero.countDown();
+				try {
+					resume.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			super.fireWaitNodes();
+		}
+
+		@Override
+		protected void callbackFailed(Throwable e) {
+			throw new AssertionError(e);
+		}
+
+	}
+
+	private static class CountingCallback implements Callable<Void> {
+
+		final AtomicInteger fired = new AtomicInteger();
+
+		@Override
+		public Void call() {
+			fired.incrementAndGet();
+			return null;
+		}
+
+	}
+
+	private CombinedDownloader downloader;
+
+	@Before
+	public void setup() {
+		downloader = CombinedDownloaderBuilder.create(JdkDownloaderBuilder.create())
+				.threadPoolSize(8)
+				.build();
+	}
+
+	@After
+	public void cleanup() {
+		downloader.shutdown();
+	}
+
+	@Test
+	public void testConcurrentSubmits() throws Exception {
+		for (int round = 0; round < ROUNDS; round++) {
+			int result = downloader.download(new CombinedDownloadTask<Integer>() {
+
+				@Override
+				public void execute(final CombinedDownloadContext<Integer> context) throws Exception {
+					final AtomicInteger executed = new AtomicInteger();
+					for (int i = 0; i < WIDTH; i++) {
+						context.submit(new Callable<Void>() {
+
+							@Override
+							public Void call() throws Exception {
+								executed.incrementAndGet();
+								// submitted from the pool threads concurrently
+								for (int j = 0; j < WIDTH; j++) {
+									context.submit(new Callable<Void>() {
+
+										@Override
+										public Void call() throws Exception {
+											executed.incrementAndGet();
+											return null;
+										}
+									}, null, true);
+								}
+								return null;
+							}
+						}, null, true);
+					}
+					context.awaitAllTasks(new Callable<Void>() {
+
+						@Override
+						public Void call() throws Exception {
+							context.done(executed.get());
+							return null;
+						}
+					});
+				}
+			}, null).get(30, TimeUnit.SECONDS);
+			assertEquals(WIDTH + WIDTH * WIDTH, result);
+		}
+	}
+
+	@Test
+	public void testConcurrentAwaits() throws Exception {
+		for (int round = 0; round < ROUNDS; round++) {
+			final AtomicInteger fired = new AtomicInteger();
+			downloader.download(new CombinedDownloadTask<Void>() {
+
+				@Override
+				public void execute(final CombinedDownloadContext<Void> context) throws Exception {
+					for (int i = 0; i < WIDTH; i++) {
+						context.submit(new Callable<Void>() {
+
+							@Override
+							public Void call() throws Exception {
+								// registered while the other subtasks are finishing
+								context.awaitAllTasks(new Callable<Void>() {
+
+									@Override
+									public Void call() throws Exception {
+										if (fired.incrementAndGet() == WIDTH)
+											context.done(null);
+										return null;
+									}
+								});
+								return null;
+							}
+						}, null, true);
+					}
+				}
+			}, null).get(30, TimeUnit.SECONDS);
+			Thread.sleep(10);
+			assertEquals(WIDTH, fired.get());
+		}
+	}
+
+	@Test
+	public void testCallbackWaitsForSubtaskSubmittedAfterZero() throws Exception {
+		final PausingCounter counter = new PausingCounter();
+		counter.countUp();
+		Thread finisher = new Thread() {
+
+			@Override
+			public void run() {
+				counter.countDown();
+			}
+		};
+		finisher.start();
+		assertTrue(counter.reachedZero.await(10, TimeUnit.SECONDS));
+
+		// the finisher has seen zero but hasn't fired the callbacks yet
+		CountingCallback callback = new CountingCallback();
+		counter.countUp();
+		counter.awaitAllTasks(callback);
+		counter.resume.countDown();
+		finisher.join(10000);
+		assertFalse(finisher.isAlive());
+		assertEquals(0, callback.fired.get());
+
+		counter.countDown();
+		assertEquals(1, callback.fired.get());
+	}
+
+	@Test
+	public void testThroughputScalesWithThreads() throws Exception {
+		long singleThreaded = measureThroughput(1);
+		for (int threads = 2; threads <= 8; threads *= 2) {
+			long throughput = measureThroughput(threads);
+			// the counter must not serialize the threads the way a shared lock does
+			assertTrue(threads + " threads: " + throughput + " ops/ms, 1 thread: " + singleThreaded + " ops/ms", throughput * 4 >= singleThreaded);
+		}
+	}
+
+	/**
+	 * Counts up and down from the given number of threads, registering a
+	 * callback now and then, and checks that every callback has fired.
+	 * 
+	 * @return the operations per millisecond
+	 */
+	private long measureThroughput(int threads) throws InterruptedException {
+		final SubtaskCounter counter = new SubtaskCounter() {
+
+			@Override
+			protected void callbackFailed(Throwable e) {
+				throw new AssertionError(e);
+			}
+		};
+		final CountingCallback callback = new CountingCallback();
+		final AtomicInteger registered = new AtomicInteger();
+		final int operations = OPERATIONS / threads;
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < operations; j++) {
+						counter.countUp();
+						if ((j & 255) == 0) {
+							registered.incrementAndGet();
+							counter.awaitAllTasks(callback);
+						}
+						counter.countDown();
+					}
+				}
+			};
+			workers[i].start();
+		}
+
+		long startTime = System.nanoTime();
+		start.countDown();
+		for (Thread worker : workers)
+			worker.join();
+		long elapsed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+		assertEquals(registered.get(), callback.fired.get());
+		return (long) operations * threads / elapsed;
+	}
+
+}
@@ -0,0 +1,205 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.to2mbn.jmccc.mcdownloader.download.Downloader;
+import org.to2mbn.jmccc.mcdownloader.download.cache.CacheNames;
+import org.to2mbn.jmccc.mcdownloader.download.cache.CachedDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.cache.provider.CacheProvider;
+import org.to2mbn.jmccc.mcdownloader.download.cache.provider.FileCacheProvider;
+import org.to2mbn.jmccc.mcdownloader.download.io.JdkDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.MemoryDownloadTask;
+import org.to2mbn.jmccc.util.Builders;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class CachedDownloaderTest {
+
+	private static class MapCacheProvider implements CacheProvider<URI, byte[]> {
+
+		final Map<URI, byte[]> cache = new ConcurrentHashMap<>();
+
+		@Override
+		public byte[] get(String cachePool, URI key) {
+			return cache.get(key);
+		}
+
+		@Override
+		public void put(String cachePool, URI key, byte[] value) {
+			cache.put(key, value);
+		}
+
+		@Override
+		public void remove(String cachePool, URI key) {
+			cache.remove(key);
+		}
+
+		@Override
+		public boolean hasCache(String cachePool) {
+			return true;
+		}
+
+		@Override
+		public void close() {}
+
+	}
+
+	private static final byte[] SMALL = new byte[200 * 1024 + 3];
+	private static final byte[] LARGE = new byte[600 * 1024];
+
+	static {
+		Random random = new Random(0);
+		random.nextBytes(SMALL);
+		random.nextBytes(LARGE);
+	}
+
+	private LocalHttpServer server;
+	private Downloader downloader;
+	private MapCacheProvider cache = new MapCacheProvider();
+	private volatile int requests;
+	private volatile int notModified;
+
+	@Before
+	public void setup() throws IOException {
+		server = new LocalHttpServer();
+		server.handle("/", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				requests++;
+				String path = exchange.getRequestURI().getPath();
+				if (path.startsWith("/etag")) {
+					exchange.getResponseHeaders().set("ETag", "\"small\"");
+					if ("\"small\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+						notModified++;
+						exchange.sendResponseHeaders(304, -1);
+						exchange.close();
+						return;
+					}
+				}
+				byte[] data = path.startsWith("/large") ? LARGE : SMALL;
+				// responses of /chunked have no Content-Length
+				exchange.sendResponseHeaders(200, path.endsWith("chunked") ? 0 : data.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(data);
+				}
+			}
+		});
+		downloader = CachedDownloaderBuilder.create(JdkDownloaderBuilder.create())
+				.cacheProvider(Builders.of(cache))
+				.maxCacheableSize(512 * 1024)
+				.build();
+	}
+
+	@After
+	public void cleanup() {
+		downloader.shutdown();
+		server.close();
+	}
+
+	@Test
+	public void testCacheKnownLength() throws Exception {
+		testCached("/small", SMALL);
+	}
+
+	@Test
+	public void testCacheUnknownLength() throws Exception {
+		testCached("/small-chunked", SMALL);
+	}
+
+	@Test
+	public void testSkipLargeKnownLength() throws Exception {
+		testNotCached("/large", LARGE);
+	}
+
+	@Test
+	public void testSkipLargeUnknownLength() throws Exception {
+		testNotCached("/large-chunked", LARGE);
+	}
+
+	@Test
+	public void testFileCache() throws Exception {
+		File dir = Files.createTempDirectory("jmccc-filecache").toFile();
+		Downloader fileCached = CachedDownloaderBuilder.create(JdkDownloaderBuilder.create())
+				.fileCache(dir, 1024 * 1024)
+				.build();
+		try {
+			for (int i = 0; i < 2; i++) {
+				assertArrayEquals(SMALL, fileCached.download(new MemoryDownloadTask(uri("/small")).cacheable(), null).get());
+			}
+			assertEquals(1, requests);
+		} finally {
+			fileCached.shutdown();
+			FileCacheProviderTest.delete(dir);
+		}
+	}
+
+	@Test
+	public void testFileCacheLarge() throws Exception {
+		// streamed into the files, so it's not limited by the default maximum cacheable size
+		File dir = Files.createTempDirectory("jmccc-filecache").toFile();
+		Downloader fileCached = CachedDownloaderBuilder.create(JdkDownloaderBuilder.create())
+				.fileCache(dir, 4 * 1024 * 1024)
+				.build();
+		try {
+			for (int i = 0; i < 2; i++) {
+				assertArrayEquals(LARGE, fileCached.download(new MemoryDownloadTask(uri("/large")).cacheable(), null).get());
+				assertArrayEquals(LARGE, fileCached.download(new MemoryDownloadTask(uri("/large-chunked")).cacheable(), null).get());
+			}
+			assertEquals(2, requests);
+		} finally {
+			fileCached.shutdown();
+			FileCacheProviderTest.delete(dir);
+		}
+	}
+
+	@Test
+	public void testRevalidate() throws Exception {
+		File dir = Files.createTempDirectory("jmccc-filecache").toFile();
+		Downloader fileCached = CachedDownloaderBuilder.create(JdkDownloaderBuilder.create())
+				.cacheProvider(Builders.of(new FileCacheProvider(dir, 1024 * 1024, 200, TimeUnit.MILLISECONDS)))
+				.build();
+		try {
+			for (int i = 0; i < 3; i++) {
+				assertArrayEquals(SMALL, fileCached.download(new MemoryDownloadTask(uri("/etag")).cacheable().cachePool(CacheNames.VERSION_LIST), null).get());
+				// let the cache expire
+				Thread.sleep(300);
+			}
+			assertEquals(3, requests);
+			assertEquals(2, notModified);
+		} finally {
+			fileCached.shutdown();
+			FileCacheProviderTest.delete(dir);
+		}
+	}
+
+	private void testCached(String path, byte[] expected) throws Exception {
+		assertArrayEquals(expected, downloader.download(new MemoryDownloadTask(uri(path)).cacheable(), null).get());
+		assertArrayEquals(expected, cache.cache.get(new URI(uri(path))));
+		assertArrayEquals(expected, downloader.download(new MemoryDownloadTask(uri(path)).cacheable(), null).get());
+		assertEquals(1, requests);
+	}
+
+	private void testNotCached(String path, byte[] expected) throws Exception {
+		assertArrayEquals(expected, downloader.download(new MemoryDownloadTask(uri(path)).cacheable(), null).get());
+		assertTrue(cache.cache.isEmpty());
+		assertArrayEquals(expected, downloader.download(new MemoryDownloadTask(uri(path)).cacheable(), null).get());
+		assertEquals(2, requests);
+	}
+
+	private String uri(String path) {
+		return server.uri(path);
+	}
+
+}
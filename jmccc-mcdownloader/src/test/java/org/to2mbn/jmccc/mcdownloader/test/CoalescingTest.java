@@ -0,0 +1,179 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.to2mbn.jmccc.mcdownloader.RemoteVersionList;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloadTask.CacheStrategy;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloader;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.io.JdkDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.MemoryDownloadTask;
+import org.to2mbn.jmccc.mcdownloader.provider.DefaultLayoutProvider;
+import org.to2mbn.jmccc.mcdownloader.provider.JsonDecoder;
+import org.to2mbn.jmccc.mcdownloader.provider.MinecraftDownloadProvider;
+import org.to2mbn.jmccc.mcdownloader.provider.forge.ForgeDownloadProvider;
+import org.to2mbn.jmccc.mcdownloader.provider.forge.ForgeDownloadSource;
+import org.to2mbn.jmccc.mcdownloader.provider.forge.ForgeVersionList;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class CoalescingTest {
+
+	private static final String FORGE_VERSION_LIST = "{\"number\":{\"1\":{\"mcversion\":\"1.8\",\"version\":\"11.14.0.1\",\"build\":1}},\"promos\":{}}";
+
+	private static class DelayedHandler implements HttpHandler {
+
+		private final byte[] data;
+		private final AtomicInteger requests;
+
+		DelayedHandler(String data, AtomicInteger requests) {
+			this.data = data.getBytes();
+			this.requests = requests;
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			requests.incrementAndGet();
+			try {
+				// let the concurrent requesters arrive
+				Thread.sleep(500);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.sendResponseHeaders(200, data.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(data);
+			}
+		}
+
+	}
+
+	private LocalHttpServer server;
+	private CombinedDownloader downloader;
+	private AtomicInteger requests = new AtomicInteger();
+	private AtomicInteger forgeRequests = new AtomicInteger();
+	private AtomicInteger versionListRequests = new AtomicInteger();
+
+	@Before
+	public void setup() throws IOException {
+		server = new LocalHttpServer();
+		server.handle("/data", new DelayedHandler("{}", requests));
+		server.handle("/forge", new DelayedHandler(FORGE_VERSION_LIST, forgeRequests));
+		server.handle("/versions", new DelayedHandler("{\"versions\":[]}", versionListRequests));
+		downloader = CombinedDownloaderBuilder.create(JdkDownloaderBuilder.create()).build();
+	}
+
+	@After
+	public void cleanup() {
+		downloader.shutdown();
+		server.close();
+	}
+
+	@Test
+	public void testTaskEquality() {
+		assertEquals(task(), task());
+		assertEquals(task().hashCode(), task().hashCode());
+		assertEquals(new MemoryDownloadTask(uri()).andThen(new JsonDecoder()), new MemoryDownloadTask(uri()).andThen(new JsonDecoder()));
+		assertNotEquals(task(), new MemoryDownloadTask(uri()));
+		assertNotEquals(task(), new MemoryDownloadTask(uri() + "?another").cacheable().cachePool("test"));
+	}
+
+	@Test
+	public void testCoalesce() throws Exception {
+		List<Future<byte[]>> futures = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+			futures.add(downloader.download(CombinedDownloadTask.single(task()), null));
+		for (Future<byte[]> future : futures)
+			assertArrayEquals("{}".getBytes(), future.get(30, TimeUnit.SECONDS));
+		assertEquals(1, requests.get());
+
+		// the finished download isn't reused
+		assertArrayEquals("{}".getBytes(), downloader.download(CombinedDownloadTask.single(task()), null).get(30, TimeUnit.SECONDS));
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void testCancelOneSubmitter() throws Exception {
+		Future<byte[]> cancelled = downloader.download(CombinedDownloadTask.single(task()), null);
+		Future<byte[]> other = downloader.download(CombinedDownloadTask.single(task()), null);
+		Thread.sleep(100);
+		cancelled.cancel(true);
+
+		assertArrayEquals("{}".getBytes(), other.get(30, TimeUnit.SECONDS));
+		try {
+			cancelled.get(30, TimeUnit.SECONDS);
+			fail();
+		} catch (CancellationException e) {
+			// expected
+		}
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testForgeVersionList() throws Exception {
+		ForgeDownloadProvider provider = new ForgeDownloadProvider(new ForgeDownloadSource() {
+
+			@Override
+			public String getForgeVersionListUrl() {
+				return server.uri("/forge");
+			}
+
+			@Override
+			public String getForgeMavenRepositoryUrl() {
+				return server.uri("/maven/");
+			}
+		});
+
+		// bypasses the memoization, so only the coalescing shares the request
+		List<Future<ForgeVersionList>> futures = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+			futures.add(downloader.download(provider.forgeVersionList().cacheable(CacheStrategy.NON_CACHEABLE), null));
+		for (Future<ForgeVersionList> future : futures)
+			assertEquals("1.8", future.get(30, TimeUnit.SECONDS).get("11.14.0.1").getMinecraftVersion());
+		assertEquals(1, forgeRequests.get());
+	}
+
+	@Test
+	public void testVersionList() throws Exception {
+		MinecraftDownloadProvider provider = new DefaultLayoutProvider() {
+
+			@Override
+			protected String getVersionListURL() {
+				return server.uri("/versions");
+			}
+
+			@Override
+			protected String getAssetBaseURL() {
+				return server.uri("/assets/");
+			}
+		};
+
+		List<Future<RemoteVersionList>> futures = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+			futures.add(downloader.download(provider.versionList().cacheable(CacheStrategy.NON_CACHEABLE), null));
+		for (Future<RemoteVersionList> future : futures)
+			assertTrue(future.get(30, TimeUnit.SECONDS).getVersions().isEmpty());
+		assertEquals(1, versionListRequests.get());
+	}
+
+	private DownloadTask<byte[]> task() {
+		return new MemoryDownloadTask(uri()).cacheable().cachePool("test");
+	}
+
+	private String uri() {
+		return server.uri("/data");
+	}
+
+}
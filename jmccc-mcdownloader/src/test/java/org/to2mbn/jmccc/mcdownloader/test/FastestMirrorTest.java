@@ -0,0 +1,166 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloader;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.combine.MirrorStats;
+import org.to2mbn.jmccc.mcdownloader.download.io.JdkDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.FileDownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.MemoryDownloadTask;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class FastestMirrorTest {
+
+	private static class MirrorHandler implements HttpHandler {
+
+		final byte[] data;
+		final AtomicInteger requests = new AtomicInteger();
+		volatile long delay;
+		volatile int responseCode = 200;
+
+		MirrorHandler(String data) {
+			this.data = data.getBytes();
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			requests.incrementAndGet();
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (responseCode != 200) {
+				exchange.sendResponseHeaders(responseCode, -1);
+				exchange.close();
+				return;
+			}
+			exchange.sendResponseHeaders(200, data.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(data);
+			}
+		}
+	}
+
+	private LocalHttpServer serverA;
+	private LocalHttpServer serverB;
+	private MirrorHandler mirrorA = new MirrorHandler("a");
+	private MirrorHandler mirrorB = new MirrorHandler("b");
+	private MirrorStats stats = new MirrorStats();
+	private CombinedDownloader downloader;
+
+	@Before
+	public void setup() throws IOException {
+		serverA = new LocalHttpServer("/data", mirrorA);
+		serverB = new LocalHttpServer("/data", mirrorB);
+		downloader = CombinedDownloaderBuilder.create(JdkDownloaderBuilder.create()).build();
+	}
+
+	@After
+	public void cleanup() {
+		downloader.shutdown();
+		serverA.close();
+		serverB.close();
+		// the default stats are shared by the whole jvm
+		MirrorStats.getDefault().clear();
+	}
+
+	@Test
+	public void testFastestFirst() throws Exception {
+		stats.recordLatency("a", 500, TimeUnit.MILLISECONDS);
+		stats.recordLatency("b", 20, TimeUnit.MILLISECONDS);
+
+		assertEquals("b", new String(downloader.download(task(), null).get(30, TimeUnit.SECONDS)));
+		assertEquals(0, mirrorA.requests.get());
+		assertEquals(1, mirrorB.requests.get());
+	}
+
+	@Test
+	public void testHedge() throws Exception {
+		// a is expected to be fast, but it stalls
+		for (int i = 0; i < 5; i++)
+			stats.recordLatency("a", 20, TimeUnit.MILLISECONDS);
+		stats.recordLatency("b", 500, TimeUnit.MILLISECONDS);
+		mirrorA.delay = 5000;
+
+		long start = System.currentTimeMillis();
+		assertEquals("b", new String(downloader.download(task(), null).get(30, TimeUnit.SECONDS)));
+		assertTrue(System.currentTimeMillis() - start < 4000);
+		assertEquals(1, mirrorB.requests.get());
+	}
+
+	@Test
+	public void testFallback() throws Exception {
+		mirrorA.responseCode = 404;
+
+		assertEquals("b", new String(downloader.download(task(), null).get(30, TimeUnit.SECONDS)));
+		assertEquals(1, mirrorA.requests.get());
+		assertTrue(stats.getLatency("a") > stats.getLatency("b"));
+	}
+
+	@Test
+	public void testFileTasksNotHedged() throws Exception {
+		for (int i = 0; i < 5; i++)
+			stats.recordLatency("a", 20, TimeUnit.MILLISECONDS);
+		stats.recordLatency("b", 500, TimeUnit.MILLISECONDS);
+		mirrorA.delay = 1500;
+
+		File target = File.createTempFile("fastest", ".txt");
+		try {
+			downloader.download(CombinedDownloadTask.fastest(stats, false, new String[] { "a", "b" },
+					CombinedDownloadTask.single(new FileDownloadTask(uri(serverA), target)),
+					CombinedDownloadTask.single(new FileDownloadTask(uri(serverB), target))), null).get(30, TimeUnit.SECONDS);
+			assertFileTaskNotHedged(target);
+		} finally {
+			target.delete();
+		}
+	}
+
+	@Test
+	public void testFileDownloadTasksNotHedgedByDefault() throws Exception {
+		for (int i = 0; i < 5; i++)
+			MirrorStats.getDefault().recordLatency("127.0.0.1:" + serverA.getPort(), 20, TimeUnit.MILLISECONDS);
+		MirrorStats.getDefault().recordLatency("127.0.0.1:" + serverB.getPort(), 500, TimeUnit.MILLISECONDS);
+		mirrorA.delay = 1500;
+
+		File target = File.createTempFile("fastest", ".txt");
+		try {
+			downloader.download(CombinedDownloadTask.fastest(
+					new FileDownloadTask(uri(serverA), target),
+					new FileDownloadTask(uri(serverB), target)), null).get(30, TimeUnit.SECONDS);
+			assertFileTaskNotHedged(target);
+		} finally {
+			target.delete();
+		}
+	}
+
+	private void assertFileTaskNotHedged(File target) throws IOException {
+		// only one session has written the target
+		assertEquals("a", new String(Files.readAllBytes(target.toPath())));
+		assertEquals(1, mirrorA.requests.get());
+		assertEquals(0, mirrorB.requests.get());
+		assertFalse(new File(target.getParentFile(), target.getName() + ".part").exists());
+	}
+
+	private CombinedDownloadTask<byte[]> task() {
+		return CombinedDownloadTask.fastest(stats, new String[] { "a", "b" },
+				CombinedDownloadTask.single(new MemoryDownloadTask(uri(serverA))),
+				CombinedDownloadTask.single(new MemoryDownloadTask(uri(serverB))));
+	}
+
+	private static String uri(LocalHttpServer server) {
+		return server.uri("/data");
+	}
+
+}
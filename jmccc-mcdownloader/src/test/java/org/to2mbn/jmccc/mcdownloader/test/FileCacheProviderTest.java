@@ -0,0 +1,217 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.to2mbn.jmccc.mcdownloader.download.cache.CacheNames;
+import org.to2mbn.jmccc.mcdownloader.download.cache.provider.CacheValidators;
+import org.to2mbn.jmccc.mcdownloader.download.cache.provider.CacheWriter;
+import org.to2mbn.jmccc.mcdownloader.download.cache.provider.FileCacheProvider;
+
+public class FileCacheProviderTest {
+
+	private File dir;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("jmccc-filecache").toFile();
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		delete(dir);
+	}
+
+	static void delete(File dir) throws IOException {
+		Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+				Files.delete(d);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Test
+	public void testPutGet() throws IOException {
+		FileCacheProvider cache = new FileCacheProvider(dir, 1024 * 1024);
+		URI a = URI.create("http://localhost/a");
+		URI b = URI.create("http://localhost/b");
+		byte[] data = "hello".getBytes("UTF-8");
+
+		assertNull(cache.get(CacheNames.LIBRARY, a));
+		cache.put(CacheNames.LIBRARY, a, data);
+		cache.put(CacheNames.LIBRARY, b, data);
+		assertArrayEquals(data, cache.get(CacheNames.LIBRARY, a));
+		assertArrayEquals(data, cache.get(CacheNames.LIBRARY, b));
+		try (FileChannel channel = cache.open(CacheNames.LIBRARY, a)) {
+			assertEquals(data.length, channel.size());
+		}
+		// the same value is stored only once
+		assertEquals(1, countBlobs());
+
+		cache.remove(CacheNames.LIBRARY, a);
+		assertNull(cache.get(CacheNames.LIBRARY, a));
+		assertArrayEquals(data, cache.get(CacheNames.LIBRARY, b));
+
+		// another provider on the same directory sees the cached value
+		assertArrayEquals(data, new FileCacheProvider(dir, 1024 * 1024).get(CacheNames.LIBRARY, b));
+	}
+
+	@Test
+	public void testEvict() throws IOException {
+		FileCacheProvider cache = new FileCacheProvider(dir, 210);
+		URI[] uris = new URI[3];
+		for (int i = 0; i < uris.length; i++) {
+			uris[i] = URI.create("http://localhost/" + i);
+			cache.put(CacheNames.ASSET, uris[i], new byte[100 + i]);
+			// make the access time distinguishable
+			File blob = findBlob(100 + i);
+			blob.setLastModified(System.currentTimeMillis() - (uris.length - i) * 3600_000L);
+		}
+		cache.evict();
+		assertNull(cache.get(CacheNames.ASSET, uris[0]));
+		assertNull(cache.get(CacheNames.ASSET, uris[1]));
+		assertNotNull(cache.get(CacheNames.ASSET, uris[2]));
+	}
+
+	@Test
+	public void testWriter() throws IOException {
+		FileCacheProvider cache = new FileCacheProvider(dir, 1024 * 1024);
+		URI a = URI.create("http://localhost/a");
+		URI b = URI.create("http://localhost/b");
+		byte[] data = new byte[300 * 1024];
+		new Random(0).nextBytes(data);
+
+		try (CacheWriter writer = cache.createWriter(CacheNames.LIBRARY, a)) {
+			for (int i = 0; i < data.length; i += 1000) {
+				writer.write(ByteBuffer.wrap(data, i, Math.min(1000, data.length - i)));
+			}
+			writer.commit(CacheValidators.of("\"a\"", null));
+		}
+		assertArrayEquals(data, cache.get(CacheNames.LIBRARY, a));
+		assertEquals("\"a\"", cache.getValidators(CacheNames.LIBRARY, a).getETag());
+
+		// the same value is stored only once
+		try (CacheWriter writer = cache.createWriter(CacheNames.LIBRARY, b)) {
+			writer.write(ByteBuffer.wrap(data));
+			writer.commit(null);
+		}
+		assertArrayEquals(data, cache.get(CacheNames.LIBRARY, b));
+		assertEquals(1, countBlobs());
+		assertEquals(0, countTempFiles());
+	}
+
+	@Test
+	public void testWriterNotCommitted() throws IOException {
+		FileCacheProvider cache = new FileCacheProvider(dir, 1024);
+		URI a = URI.create("http://localhost/a");
+		try (CacheWriter writer = cache.createWriter(CacheNames.LIBRARY, a)) {
+			writer.write(ByteBuffer.wrap(new byte[100]));
+		}
+		try (CacheWriter writer = cache.createWriter(CacheNames.LIBRARY, a)) {
+			writer.write(ByteBuffer.wrap(new byte[1000]));
+			try {
+				// larger than the whole cache
+				writer.write(ByteBuffer.wrap(new byte[100]));
+				fail();
+			} catch (IOException e) {
+				// expected
+			}
+		}
+		assertNull(cache.get(CacheNames.LIBRARY, a));
+		assertEquals(0, countTempFiles());
+	}
+
+	@Test
+	public void testEvictRemovesKeys() throws IOException {
+		FileCacheProvider cache = new FileCacheProvider(dir, 210);
+		// evicted by another process
+		cache.put(CacheNames.ASSET, URI.create("http://localhost/other"), new byte[1]);
+		assertTrue(findBlob(1).delete());
+
+		// the third value makes the first two evicted
+		for (int i = 0; i < 3; i++) {
+			cache.put(CacheNames.ASSET, URI.create("http://localhost/" + i), new byte[100 + i]);
+			File blob = findBlob(100 + i);
+			blob.setLastModified(System.currentTimeMillis() - (3 - i) * 3600_000L);
+		}
+		// only the key of the remaining value is left
+		assertEquals(1, countKeys());
+		assertNotNull(cache.get(CacheNames.ASSET, URI.create("http://localhost/2")));
+	}
+
+	@Test
+	public void testDynamicExpiry() throws Exception {
+		FileCacheProvider cache = new FileCacheProvider(dir, 1024 * 1024, 0, TimeUnit.MILLISECONDS);
+		URI uri = URI.create("http://localhost/versions.json");
+		cache.put(CacheNames.VERSION_LIST, uri, new byte[10]);
+		cache.put(CacheNames.LIBRARY, uri, new byte[10]);
+		Thread.sleep(20);
+		assertNull(cache.get(CacheNames.VERSION_LIST, uri));
+		assertNotNull(cache.get(CacheNames.LIBRARY, uri));
+	}
+
+	private int countBlobs() {
+		int count = 0;
+		for (File sub : new File(dir, "objects").listFiles()) {
+			count += sub.listFiles().length;
+		}
+		return count;
+	}
+
+	private int countKeys() {
+		int count = 0;
+		for (File sub : new File(dir, "keys").listFiles()) {
+			count += sub.listFiles().length;
+		}
+		return count;
+	}
+
+	private int countTempFiles() throws IOException {
+		final int[] count = new int[1];
+		Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (file.getFileName().toString().endsWith(".tmp")) {
+					count[0]++;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return count[0];
+	}
+
+	private File findBlob(long size) {
+		for (File sub : new File(dir, "objects").listFiles()) {
+			for (File blob : sub.listFiles()) {
+				if (blob.length() == size) {
+					return blob;
+				}
+			}
+		}
+		throw new AssertionError("blob not found: " + size);
+	}
+
+}
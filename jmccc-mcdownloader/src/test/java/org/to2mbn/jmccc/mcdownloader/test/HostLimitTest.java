@@ -0,0 +1,100 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.to2mbn.jmccc.mcdownloader.download.Downloader;
+import org.to2mbn.jmccc.mcdownloader.download.io.JdkDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.MemoryDownloadTask;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class HostLimitTest {
+
+	private static final byte[] DATA = new byte[1024];
+
+	private static class CountingHandler implements HttpHandler {
+
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final AtomicInteger completed = new AtomicInteger();
+		final long delay;
+
+		CountingHandler(long delay) {
+			this.delay = delay;
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			int current = running.incrementAndGet();
+			int max;
+			while ((max = maxRunning.get()) < current && !maxRunning.compareAndSet(max, current));
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+			exchange.sendResponseHeaders(200, DATA.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(DATA);
+			}
+			completed.incrementAndGet();
+		}
+	}
+
+	private LocalHttpServer slowServer;
+	private LocalHttpServer fastServer;
+	private CountingHandler slow = new CountingHandler(300);
+	private CountingHandler fast = new CountingHandler(0);
+	private Downloader downloader;
+
+	@Before
+	public void setup() throws IOException {
+		slowServer = new LocalHttpServer("/data", slow);
+		fastServer = new LocalHttpServer("/data", fast);
+		downloader = JdkDownloaderBuilder.create()
+				.maxConnections(4)
+				.maxConnectionsPerHost(2)
+				.build();
+	}
+
+	@After
+	public void cleanup() {
+		downloader.shutdown();
+		slowServer.close();
+		fastServer.close();
+	}
+
+	@Test
+	public void testSlowHostCapped() throws Exception {
+		List<Future<byte[]>> slowFutures = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+			slowFutures.add(downloader.download(new MemoryDownloadTask(uri(slowServer, i)), null));
+		List<Future<byte[]>> fastFutures = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+			fastFutures.add(downloader.download(new MemoryDownloadTask(uri(fastServer, i)), null));
+
+		for (Future<byte[]> future : fastFutures)
+			assertArrayEquals(DATA, future.get(30, TimeUnit.SECONDS));
+		// the fast host isn't queued behind the slow one
+		assertTrue(slow.completed.get() < 10);
+
+		for (Future<byte[]> future : slowFutures)
+			assertArrayEquals(DATA, future.get(30, TimeUnit.SECONDS));
+		assertTrue(slow.maxRunning.get() <= 2);
+	}
+
+	private static String uri(LocalHttpServer server, int i) {
+		return server.uri("/data?" + i);
+	}
+
+}
@@ -0,0 +1,114 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.to2mbn.jmccc.mcdownloader.download.Downloader;
+import org.to2mbn.jmccc.mcdownloader.download.io.IllegalHttpResponseCodeException;
+import org.to2mbn.jmccc.mcdownloader.download.io.http2.Http2DownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.MemoryDownloadTask;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class Http2DownloaderTest {
+
+	private static final byte[] DATA = new byte[256 * 1024];
+
+	static {
+		new Random(0).nextBytes(DATA);
+	}
+
+	private LocalHttpServer server;
+	private Downloader downloader;
+
+	@Before
+	public void setup() throws IOException {
+		assumeTrue(Http2DownloaderBuilder.isAvailable());
+
+		server = new LocalHttpServer();
+		server.handle("/data", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(200, DATA.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(DATA);
+				}
+			}
+		});
+		server.handle("/gzip", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				exchange.sendResponseHeaders(200, 0);
+				try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+					out.write(DATA);
+				}
+			}
+		});
+		server.handle("/missing", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(404, -1);
+				exchange.close();
+			}
+		});
+		downloader = Http2DownloaderBuilder.create().maxConnections(4).readTimeout(5000).build();
+	}
+
+	@After
+	public void cleanup() {
+		if (downloader != null)
+			downloader.shutdown();
+		if (server != null)
+			server.close();
+	}
+
+	@Test
+	public void testDownload() throws Exception {
+		assertArrayEquals(DATA, downloader.download(new MemoryDownloadTask(uri("/data")), null).get(30, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testGzip() throws Exception {
+		assertArrayEquals(DATA, downloader.download(new MemoryDownloadTask(uri("/gzip")), null).get(30, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testConcurrentDownloads() throws Exception {
+		List<Future<byte[]>> futures = new ArrayList<>();
+		for (int i = 0; i < 32; i++)
+			futures.add(downloader.download(new MemoryDownloadTask(uri("/data")), null));
+		for (Future<byte[]> future : futures)
+			assertArrayEquals(DATA, future.get(30, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testIllegalResponseCode() throws Exception {
+		try {
+			downloader.download(new MemoryDownloadTask(uri("/missing")), null, 3).get(30, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalHttpResponseCodeException);
+			assertEquals(404, ((IllegalHttpResponseCodeException) e.getCause()).getResponseCode());
+		}
+	}
+
+	private String uri(String path) {
+		return server.uri(path);
+	}
+
+}
@@ -0,0 +1,144 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.to2mbn.jmccc.mcdownloader.provider.forge.ForgeDownloadProvider;
+
+public class JarMergeTest {
+
+	private static class TestForgeDownloadProvider extends ForgeDownloadProvider {
+
+		@Override
+		public void mergeJar(File parent, File universal, File target) throws IOException {
+			super.mergeJar(parent, universal, target);
+		}
+
+		@Override
+		public void purgeMetaInf(File src, File target) throws IOException {
+			super.purgeMetaInf(src, target);
+		}
+
+	}
+
+	private static final int REPEAT = 100;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private TestForgeDownloadProvider provider = new TestForgeDownloadProvider();
+
+	@Test
+	public void testMergeJar() throws IOException {
+		File parent = zip("parent.jar",
+				"META-INF/MANIFEST.MF", "manifest",
+				"a.class", "parent a",
+				"b.class", "parent b");
+		File universal = zip("universal.jar",
+				"b.class", "universal b",
+				"c.class", "universal c");
+		File target = folder.newFile("target.jar");
+
+		provider.mergeJar(parent, universal, target);
+
+		Map<String, String> expected = new HashMap<>();
+		expected.put("a.class", "parent a");
+		expected.put("b.class", "universal b");
+		expected.put("c.class", "universal c");
+		assertEquals(expected, read(target));
+	}
+
+	@Test
+	public void testPurgeMetaInf() throws IOException {
+		File src = zip("src.jar",
+				"META-INF/MANIFEST.MF", "manifest",
+				"META-INF/MOJANG.SF", "signature",
+				"a.class", "a",
+				"assets/lang/en_US.lang", "lang");
+		File target = folder.newFile("target.jar");
+
+		provider.purgeMetaInf(src, target);
+
+		Map<String, String> expected = new HashMap<>();
+		expected.put("a.class", "a");
+		expected.put("assets/lang/en_US.lang", "lang");
+		assertEquals(expected, read(target));
+	}
+
+	@Test
+	public void testStoredEntries() throws IOException {
+		File src = folder.newFile("stored.jar");
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(src))) {
+			out.setMethod(ZipOutputStream.STORED);
+			byte[] data = "stored".getBytes("UTF-8");
+			ZipEntry entry = new ZipEntry("a.class");
+			entry.setSize(data.length);
+			CRC32 crc = new CRC32();
+			crc.update(data);
+			entry.setCrc(crc.getValue());
+			out.putNextEntry(entry);
+			out.write(data);
+			out.closeEntry();
+		}
+		File target = folder.newFile("target.jar");
+
+		provider.purgeMetaInf(src, target);
+
+		assertEquals(Collections.singletonMap("a.class", "stored"), read(target));
+	}
+
+	private File zip(String name, String... entries) throws IOException {
+		File file = folder.newFile(name);
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+			// if the entries were recompressed, they would become much smaller
+			out.setLevel(Deflater.NO_COMPRESSION);
+			for (int i = 0; i < entries.length; i += 2) {
+				out.putNextEntry(new ZipEntry(entries[i]));
+				for (int j = 0; j < REPEAT; j++)
+					out.write(entries[i + 1].getBytes("UTF-8"));
+				out.closeEntry();
+			}
+		}
+		return file;
+	}
+
+	private Map<String, String> read(File file) throws IOException {
+		Map<String, String> result = new HashMap<>();
+		try (ZipFile zip = new ZipFile(file)) {
+			List<? extends ZipEntry> entries = new ArrayList<>(Collections.list(zip.entries()));
+			for (ZipEntry entry : entries) {
+				if (entry.getMethod() == ZipEntry.DEFLATED)
+					assertTrue(entry.getCompressedSize() >= entry.getSize());
+				try (InputStream in = zip.getInputStream(entry)) {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					byte[] buf = new byte[8192];
+					int read;
+					while ((read = in.read(buf)) != -1)
+						out.write(buf, 0, read);
+					String content = new String(out.toByteArray(), "UTF-8");
+					if (entry.getMethod() == ZipEntry.DEFLATED)
+						content = content.substring(0, content.length() / REPEAT);
+					assertNull(result.put(entry.getName(), content));
+				}
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,55 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A http server on a random port of the loopback address, which handles the
+ * requests concurrently.
+ */
+public class LocalHttpServer implements Closeable {
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	public LocalHttpServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public LocalHttpServer(String path, HttpHandler handler) throws IOException {
+		this();
+		handle(path, handler);
+	}
+
+	public LocalHttpServer handle(String path, HttpHandler handler) {
+		server.createContext(path, handler);
+		return this;
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public String uri(String path) {
+		return "http://127.0.0.1:" + getPort() + path;
+	}
+
+	public URI toURI(String path) {
+		return URI.create(uri(path));
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,92 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.to2mbn.jmccc.mcdownloader.download.Downloader;
+import org.to2mbn.jmccc.mcdownloader.download.io.JdkDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.MemoryDownloadTask;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class RangeResumeTest {
+
+	private static final byte[] DATA = new byte[256 * 1024];
+
+	static {
+		new Random(0).nextBytes(DATA);
+	}
+
+	private LocalHttpServer server;
+	private Downloader downloader;
+	private List<String> ranges = new CopyOnWriteArrayList<>();
+	private volatile boolean supportRanges;
+
+	@Before
+	public void setup() throws IOException {
+		server = new LocalHttpServer();
+		server.handle("/data", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String range = exchange.getRequestHeaders().getFirst("Range");
+				ranges.add(String.valueOf(range));
+				exchange.getResponseHeaders().set("ETag", "\"data\"");
+
+				int start = 0;
+				if (supportRanges && range != null && "\"data\"".equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+					start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+					exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (DATA.length - 1) + "/" + DATA.length);
+					exchange.sendResponseHeaders(206, DATA.length - start);
+				} else {
+					exchange.sendResponseHeaders(200, DATA.length);
+				}
+
+				try (OutputStream out = exchange.getResponseBody()) {
+					if (ranges.size() == 1) {
+						// the first response is broken in the middle
+						out.write(DATA, 0, DATA.length / 2);
+						out.flush();
+					} else {
+						out.write(DATA, start, DATA.length - start);
+					}
+				}
+			}
+		});
+		downloader = JdkDownloaderBuilder.create().readTimeout(5000).build();
+	}
+
+	@After
+	public void cleanup() {
+		downloader.shutdown();
+		server.close();
+	}
+
+	@Test
+	public void testResume() throws Exception {
+		supportRanges = true;
+		byte[] result = downloader.download(new MemoryDownloadTask(uri()), null, 3).get();
+		assertArrayEquals(DATA, result);
+		assertEquals(2, ranges.size());
+		assertEquals("bytes=" + DATA.length / 2 + "-", ranges.get(1));
+	}
+
+	@Test
+	public void testRangeIgnored() throws Exception {
+		supportRanges = false;
+		byte[] result = downloader.download(new MemoryDownloadTask(uri()), null, 3).get();
+		assertArrayEquals(DATA, result);
+		assertEquals(2, ranges.size());
+	}
+
+	private String uri() {
+		return server.uri("/data");
+	}
+
+}
@@ -0,0 +1,140 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.to2mbn.jmccc.mcdownloader.download.cache.CacheNames;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloadTask.CacheStrategy;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloader;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.combine.ResultCache;
+import org.to2mbn.jmccc.mcdownloader.download.io.JdkDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.MemoryDownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.ResultProcessor;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class ResultCacheTest {
+
+	private LocalHttpServer server;
+	private CombinedDownloader downloader;
+	private ResultCache cache = new ResultCache(1, TimeUnit.MINUTES);
+	private AtomicInteger requests = new AtomicInteger();
+	private AtomicInteger decodes = new AtomicInteger();
+	private volatile int responseCode = 200;
+
+	@Before
+	public void setup() throws IOException {
+		server = new LocalHttpServer();
+		server.handle("/list", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				requests.incrementAndGet();
+				try {
+					// let the concurrent requesters arrive
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if (responseCode != 200) {
+					exchange.sendResponseHeaders(responseCode, -1);
+					exchange.close();
+					return;
+				}
+				byte[] data = "list".getBytes();
+				exchange.sendResponseHeaders(200, data.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(data);
+				}
+			}
+		});
+		downloader = CombinedDownloaderBuilder.create(JdkDownloaderBuilder.create()).build();
+	}
+
+	@After
+	public void cleanup() {
+		downloader.shutdown();
+		server.close();
+	}
+
+	@Test
+	public void testSingleFlight() throws Exception {
+		List<Future<String>> futures = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+			futures.add(downloader.download(task(), null));
+		for (Future<String> future : futures)
+			assertEquals("LIST", future.get(30, TimeUnit.SECONDS));
+		assertEquals(1, requests.get());
+		assertEquals(1, decodes.get());
+
+		// the result is cached
+		assertEquals("LIST", downloader.download(task(), null).get(30, TimeUnit.SECONDS));
+		assertEquals(1, requests.get());
+
+		cache.invalidate(CacheNames.VERSION_LIST, uri());
+		assertEquals("LIST", downloader.download(task(), null).get(30, TimeUnit.SECONDS));
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void testFailureNotCached() throws Exception {
+		responseCode = 404;
+		try {
+			downloader.download(task(), null).get(30, TimeUnit.SECONDS);
+			fail();
+		} catch (Exception e) {
+			// expected
+		}
+
+		responseCode = 200;
+		assertEquals("LIST", downloader.download(task(), null).get(30, TimeUnit.SECONDS));
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void testNonCacheableAfterCached() throws Exception {
+		assertEquals("LIST", downloader.download(task(), null).get(30, TimeUnit.SECONDS));
+		assertEquals(1, requests.get());
+
+		// like CacheOption.NO_CACHE
+		assertEquals("LIST", downloader.download(task().cacheable(CacheStrategy.NON_CACHEABLE), null).get(30, TimeUnit.SECONDS));
+		assertEquals(2, requests.get());
+
+		// the strategy is passed down to the nested tasks
+		assertEquals("LIST", downloader.download(CombinedDownloadTask.any(task()).cacheable(CacheStrategy.NON_CACHEABLE), null).get(30, TimeUnit.SECONDS));
+		assertEquals(3, requests.get());
+
+		// the new result is cached
+		assertEquals("LIST", downloader.download(task(), null).get(30, TimeUnit.SECONDS));
+		assertEquals(3, requests.get());
+	}
+
+	private CombinedDownloadTask<String> task() {
+		return CombinedDownloadTask.single(new MemoryDownloadTask(uri())
+				.andThen(new ResultProcessor<byte[], String>() {
+
+					@Override
+					public String process(byte[] arg) throws Exception {
+						decodes.incrementAndGet();
+						return new String(arg).toUpperCase();
+					}
+				}))
+				.memoized(cache, CacheNames.VERSION_LIST, uri());
+	}
+
+	private URI uri() {
+		return server.toURI("/list");
+	}
+
+}
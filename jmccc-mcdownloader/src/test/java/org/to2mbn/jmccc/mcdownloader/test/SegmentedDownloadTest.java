@@ -0,0 +1,132 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.to2mbn.jmccc.mcdownloader.download.Downloader;
+import org.to2mbn.jmccc.mcdownloader.download.io.JdkDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.FileDownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.MemoryDownloadTask;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class SegmentedDownloadTest {
+
+	private static final byte[] DATA = new byte[1024 * 1024 + 17];
+
+	static {
+		new Random(0).nextBytes(DATA);
+	}
+
+	private LocalHttpServer server;
+	private Downloader downloader;
+	private File target;
+	private List<String> ranges = new CopyOnWriteArrayList<>();
+	private AtomicInteger running = new AtomicInteger();
+	private AtomicInteger maxRunning = new AtomicInteger();
+	private volatile long delay;
+
+	@Before
+	public void setup() throws IOException {
+		server = new LocalHttpServer();
+		server.handle("/data", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String range = exchange.getRequestHeaders().getFirst("Range");
+				ranges.add(String.valueOf(range));
+				int current = running.incrementAndGet();
+				int max;
+				while ((max = maxRunning.get()) < current && !maxRunning.compareAndSet(max, current));
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+				exchange.getResponseHeaders().set("ETag", "\"data\"");
+				exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+
+				int start = 0;
+				int end = DATA.length;
+				if (range != null && "\"data\"".equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+					String[] bounds = range.substring("bytes=".length()).split("-");
+					start = Integer.parseInt(bounds[0]);
+					end = Integer.parseInt(bounds[1]) + 1;
+					exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + DATA.length);
+					exchange.sendResponseHeaders(206, end - start);
+				} else {
+					exchange.sendResponseHeaders(200, DATA.length);
+				}
+
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(DATA, start, end - start);
+				} catch (IOException e) {
+					// the client may close the connection after reading the first segment
+				}
+			}
+		});
+		downloader = JdkDownloaderBuilder.create()
+				.maxSegments(4)
+				.segmentThreshold(DATA.length / 2)
+				.readTimeout(5000)
+				.build();
+		target = File.createTempFile("jmccc-segmented", ".bin");
+		target.delete();
+	}
+
+	@After
+	public void cleanup() {
+		downloader.shutdown();
+		server.close();
+		target.delete();
+	}
+
+	@Test
+	public void testSegmentedDownload() throws Exception {
+		downloader.download(new FileDownloadTask(uri(), target), null, 1).get();
+		assertArrayEquals(DATA, Files.readAllBytes(target.toPath()));
+		assertEquals(4, ranges.size());
+		assertEquals("null", ranges.get(0));
+		assertTrue(ranges.contains("bytes=786447-1048592"));
+	}
+
+	@Test
+	public void testNotSegmentable() throws Exception {
+		byte[] result = downloader.download(new MemoryDownloadTask(uri()), null, 1).get();
+		assertArrayEquals(DATA, result);
+		assertEquals(1, ranges.size());
+	}
+
+	@Test
+	public void testSegmentsWithinHostLimit() throws Exception {
+		delay = 100;
+		Downloader limited = JdkDownloaderBuilder.create()
+				.maxSegments(4)
+				.segmentThreshold(DATA.length / 2)
+				.maxConnectionsPerHost(2)
+				.readTimeout(5000)
+				.build();
+		try {
+			limited.download(new FileDownloadTask(uri(), target), null, 1).get();
+		} finally {
+			limited.shutdown();
+		}
+		assertArrayEquals(DATA, Files.readAllBytes(target.toPath()));
+		assertTrue("max connections: " + maxRunning.get(), maxRunning.get() <= 2);
+	}
+
+	private String uri() {
+		return server.uri("/data");
+	}
+
+}
@@ -0,0 +1,192 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloadContext;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloader;
+import org.to2mbn.jmccc.mcdownloader.download.combine.CombinedDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.concurrent.CallbackAdapter;
+import org.to2mbn.jmccc.mcdownloader.download.io.JdkDownloaderBuilder;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.DownloadTask;
+import org.to2mbn.jmccc.mcdownloader.download.tasks.MemoryDownloadTask;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class SubmitAllTest {
+
+	private static final byte[] DATA = new byte[1024];
+
+	private LocalHttpServer server;
+	private CombinedDownloader downloader;
+
+	@Before
+	public void setup() throws IOException {
+		server = new LocalHttpServer();
+		server.handle("/data", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(200, DATA.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(DATA);
+				}
+			}
+		});
+		downloader = CombinedDownloaderBuilder.create(JdkDownloaderBuilder.create())
+				.threadPoolSize(4)
+				.build();
+	}
+
+	@After
+	public void cleanup() {
+		downloader.shutdown();
+		server.close();
+	}
+
+	@Test
+	public void testDownloadTasks() throws Exception {
+		final AtomicLong progress = new AtomicLong();
+		final AtomicInteger batchDone = new AtomicInteger();
+		final List<DownloadTask<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < 20; i++)
+			tasks.add(new MemoryDownloadTask(server.uri("/data?" + i)));
+
+		int result = downloader.download(new CombinedDownloadTask<Integer>() {
+
+			@Override
+			public void execute(final CombinedDownloadContext<Integer> context) throws Exception {
+				context.submitAll(tasks, new CallbackAdapter<Void>() {
+
+					@Override
+					public void done(Void result) {
+						batchDone.incrementAndGet();
+					}
+
+					@Override
+					public void updateProgress(long done, long total) {
+						assertEquals(20, total);
+						progress.incrementAndGet();
+					}
+				}, true);
+				context.awaitAllTasks(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						context.done(batchDone.get());
+						return null;
+					}
+				});
+			}
+		}, null).get(30, TimeUnit.SECONDS);
+		assertEquals(1, result);
+		assertEquals(20, progress.get());
+	}
+
+	@Test
+	public void testCombinedTasks() throws Exception {
+		final AtomicInteger executed = new AtomicInteger();
+		final List<CombinedDownloadTask<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			tasks.add(new CombinedDownloadTask<Void>() {
+
+				@Override
+				public void execute(CombinedDownloadContext<Void> context) throws Exception {
+					executed.incrementAndGet();
+					context.done(null);
+				}
+			});
+		}
+
+		int result = downloader.download(new CombinedDownloadTask<Integer>() {
+
+			@Override
+			public void execute(final CombinedDownloadContext<Integer> context) throws Exception {
+				context.submitAll(tasks, null, true);
+				context.awaitAllTasks(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						context.done(executed.get());
+						return null;
+					}
+				});
+			}
+		}, null).get(30, TimeUnit.SECONDS);
+		assertEquals(500, result);
+	}
+
+	@Test
+	public void testNonFatalFailure() throws Exception {
+		final IOException exception = new IOException("expected");
+		final List<CombinedDownloadTask<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			final boolean fail = i == 5;
+			tasks.add(new CombinedDownloadTask<Void>() {
+
+				@Override
+				public void execute(CombinedDownloadContext<Void> context) throws Exception {
+					if (fail)
+						throw exception;
+					context.done(null);
+				}
+			});
+		}
+
+		final List<Future<Void>> batch = new ArrayList<>();
+		downloader.download(new CombinedDownloadTask<Void>() {
+
+			@Override
+			public void execute(final CombinedDownloadContext<Void> context) throws Exception {
+				batch.add(context.submitAll(tasks, null, false));
+				context.awaitAllTasks(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						context.done(null);
+						return null;
+					}
+				});
+			}
+		}, null).get(30, TimeUnit.SECONDS);
+
+		try {
+			batch.get(0).get(30, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertSame(exception, e.getCause());
+		}
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		downloader.download(new CombinedDownloadTask<Void>() {
+
+			@Override
+			public void execute(final CombinedDownloadContext<Void> context) throws Exception {
+				assertNull(context.submitAll(new ArrayList<DownloadTask<?>>(), null, true).get());
+				context.awaitAllTasks(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						context.done(null);
+						return null;
+					}
+				});
+			}
+		}, null).get(30, TimeUnit.SECONDS);
+	}
+
+}
@@ -0,0 +1,65 @@
+package org.to2mbn.jmccc.mcdownloader.test;
+
+import static org.junit.Assert.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.to2mbn.jmccc.mcdownloader.util.ThreadPoolUtils;
+
+public class ThreadPerTaskPoolTest {
+
+	@Test
+	public void testConcurrencyLimit() throws Exception {
+		final int maxConcurrency = 4;
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(100);
+		ExecutorService pool = ThreadPoolUtils.createThreadPerTaskPool(maxConcurrency, ThreadPoolUtils.createNamedThreadFactory("test"));
+		try {
+			for (int i = 0; i < 100; i++) {
+				pool.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						int current = running.incrementAndGet();
+						int max;
+						while ((max = maxRunning.get()) < current && !maxRunning.compareAndSet(max, current));
+						try {
+							Thread.sleep(2);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						running.decrementAndGet();
+						done.countDown();
+					}
+				});
+			}
+			assertTrue(done.await(30, TimeUnit.SECONDS));
+			assertTrue(maxRunning.get() <= maxConcurrency);
+		} finally {
+			pool.shutdown();
+		}
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+		assertTrue(pool.isTerminated());
+	}
+
+	@Test
+	public void testFallback() throws Exception {
+		ExecutorService pool = ThreadPoolUtils.createPool(2, 1, TimeUnit.SECONDS, "test", true);
+		try {
+			assertEquals("ok", pool.submit(new Callable<String>() {
+
+				@Override
+				public String call() {
+					return "ok";
+				}
+			}).get());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+}
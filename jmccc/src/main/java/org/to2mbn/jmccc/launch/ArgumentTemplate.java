@@ -0,0 +1,115 @@
+package org.to2mbn.jmccc.launch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A compiled launch argument template, such as
+ * <code>--username ${auth_player_name} --version ${version_name}</code>.
+ * <p>
+ * The template is split into arguments once, and each argument is split into
+ * the literal parts and the variable slots, so formatting it only looks up the
+ * variables, instead of searching every argument for every variable. A
+ * variable without a value is kept as it is. The compiled templates are
+ * cached, since the same versions are usually launched again and again.
+ */
+class ArgumentTemplate {
+
+	private static final int CACHE_SIZE = 32;
+
+	private static final Map<String, ArgumentTemplate> cache = new LinkedHashMap<String, ArgumentTemplate>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ArgumentTemplate> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * Gets the compiled template of the given string.
+	 * 
+	 * @param template the template string
+	 * @return the compiled template
+	 * @throws NullPointerException if <code>template==null</code>
+	 */
+	public static ArgumentTemplate of(String template) {
+		Objects.requireNonNull(template);
+		synchronized (cache) {
+			ArgumentTemplate compiled = cache.get(template);
+			if (compiled == null) {
+				compiled = new ArgumentTemplate(template);
+				cache.put(template, compiled);
+			}
+			return compiled;
+		}
+	}
+
+	/**
+	 * The parts of each argument. The even indexes are the literal parts, and
+	 * the odd indexes are the names of the variables.
+	 */
+	private final String[][] arguments;
+
+	private ArgumentTemplate(String template) {
+		String[] splited = template.split(" ");
+		arguments = new String[splited.length][];
+		for (int i = 0; i < splited.length; i++) {
+			arguments[i] = compile(splited[i]);
+		}
+	}
+
+	/**
+	 * Replaces the variables and returns the arguments.
+	 * 
+	 * @param variables the values of the variables
+	 * @return the arguments
+	 */
+	public List<String> format(Map<String, String> variables) {
+		List<String> result = new ArrayList<>(arguments.length);
+		for (String[] parts : arguments) {
+			if (parts.length == 1) {
+				result.add(parts[0]);
+				continue;
+			}
+
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < parts.length; i++) {
+				if (i % 2 == 0) {
+					sb.append(parts[i]);
+				} else {
+					String value = variables.get(parts[i]);
+					if (value == null) {
+						sb.append("${").append(parts[i]).append('}');
+					} else {
+						sb.append(value);
+					}
+				}
+			}
+			result.add(sb.toString());
+		}
+		return result;
+	}
+
+	private static String[] compile(String argument) {
+		List<String> parts = new ArrayList<>();
+		int literalStart = 0;
+		int varStart;
+		while ((varStart = argument.indexOf("${", literalStart)) != -1) {
+			int varEnd = argument.indexOf('}', varStart + 2);
+			if (varEnd == -1) {
+				break;
+			}
+			parts.add(argument.substring(literalStart, varStart));
+			parts.add(argument.substring(varStart + 2, varEnd));
+			literalStart = varEnd + 1;
+		}
+		parts.add(argument.substring(literalStart));
+		return parts.toArray(new String[parts.size()]);
+	}
+
+}
@@ -0,0 +1,308 @@
+package org.to2mbn.jmccc.launch;
+
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A <code>ProcessListener</code> which passes the events to another listener
+ * on its own thread.
+ * <p>
+ * The launcher already delivers the logs of each process through its own
+ * queue, but when a listener can't keep up, that queue fills and the output of
+ * the process is no longer read, until the game blocks on the full pipe. This
+ * adapter puts the logs into a ring buffer of the given capacity and returns
+ * at once, so the listener runs on its own thread instead of a shared delivery
+ * thread. A consumer thread takes all the buffered logs in one batch and
+ * passes them to the underlying listener in order. When the buffer is full,
+ * the {@link OverflowPolicy} decides whether logs are dropped or the caller
+ * waits, and the dropped logs are counted.
+ * <p>
+ * {@link #onExit(int)} is always delivered, after all the buffered logs. The
+ * consumer thread is a daemon thread, it's started when the first event
+ * arrives and exits after delivering {@link #onExit(int)}. So an instance can
+ * only be used for one process.
+ */
+public class AsyncProcessListener implements ProcessListener {
+
+	public static enum OverflowPolicy {
+
+		/**
+		 * Drops the new log.
+		 */
+		DROP_NEWEST,
+
+		/**
+		 * Drops the oldest log in the buffer to make room for the new one.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Waits until there is room in the buffer, no log is dropped.
+		 * <p>
+		 * The waiting happens on the thread which passes the logs to this
+		 * listener. When this listener is given to the launcher, that's one of
+		 * the few delivery threads shared by all the launched processes. A
+		 * blocked thread stops the reading of this process's output once its
+		 * queue fills up, and it isn't available to the other processes in
+		 * the meantime, so their logs are delayed as well if several listeners
+		 * block at the same time. Prefer {@link #DROP_OLDEST} or
+		 * {@link #DROP_NEWEST} unless every log is needed.
+		 */
+		BLOCK;
+	}
+
+	private class Consumer implements Runnable {
+
+		private final String[] batchLogs = new String[logs.length];
+		private final boolean[] batchErrors = new boolean[logs.length];
+
+		@Override
+		public void run() {
+			for (;;) {
+				int batchSize;
+				boolean exit;
+				int code;
+				lock.lock();
+				try {
+					while (size == 0 && !exited) {
+						try {
+							notEmpty.await();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+
+					// takes all the buffered logs at once
+					batchSize = size;
+					for (int i = 0; i < batchSize; i++) {
+						int index = (head + i) % logs.length;
+						batchLogs[i] = logs[index];
+						batchErrors[i] = errors[index];
+						logs[index] = null;
+					}
+					head = (head + batchSize) % logs.length;
+					size = 0;
+					exit = exited;
+					code = exitCode;
+					notFull.signalAll();
+				} finally {
+					lock.unlock();
+				}
+
+				for (int i = 0; i < batchSize; i++) {
+					try {
+						if (batchErrors[i]) {
+							listener.onErrorLog(batchLogs[i]);
+						} else {
+							listener.onLog(batchLogs[i]);
+						}
+					} catch (RuntimeException e) {
+						e.printStackTrace();
+					}
+					batchLogs[i] = null;
+				}
+
+				if (exit) {
+					listener.onExit(code);
+					return;
+				}
+			}
+		}
+
+	}
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private final ProcessListener listener;
+	private final OverflowPolicy overflowPolicy;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	// guarded by lock
+	private final String[] logs;
+	private final boolean[] errors;
+	private int head;
+	private int size;
+	private int maxSize;
+	private long dropped;
+	private boolean exited;
+	private int exitCode;
+	private Thread consumer;
+
+	/**
+	 * Constructs an AsyncProcessListener with a buffer of
+	 * {@link #DEFAULT_CAPACITY} logs, which drops the oldest log when it's
+	 * full.
+	 * 
+	 * @param listener the underlying listener
+	 * @throws NullPointerException if <code>listener==null</code>
+	 */
+	public AsyncProcessListener(ProcessListener listener) {
+		this(listener, DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST);
+	}
+
+	/**
+	 * Constructs an AsyncProcessListener.
+	 * 
+	 * @param listener the underlying listener
+	 * @param capacity the max number of logs in the buffer
+	 * @param overflowPolicy what to do when the buffer is full
+	 * @throws NullPointerException if
+	 *             <code>listener==null || overflowPolicy==null</code>
+	 * @throws IllegalArgumentException if <code>capacity &lt; 1</code>
+	 */
+	public AsyncProcessListener(ProcessListener listener, int capacity, OverflowPolicy overflowPolicy) {
+		Objects.requireNonNull(listener);
+		Objects.requireNonNull(overflowPolicy);
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity < 1");
+
+		this.listener = listener;
+		this.overflowPolicy = overflowPolicy;
+		this.logs = new String[capacity];
+		this.errors = new boolean[capacity];
+	}
+
+	@Override
+	public void onLog(String log) {
+		offer(log, false);
+	}
+
+	@Override
+	public void onErrorLog(String log) {
+		offer(log, true);
+	}
+
+	@Override
+	public void onExit(int code) {
+		lock.lock();
+		try {
+			if (exited)
+				return;
+			exited = true;
+			exitCode = code;
+			ensureConsumer();
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of logs in the buffer.
+	 * 
+	 * @return the number of logs waiting to be delivered
+	 */
+	public int getQueueDepth() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the max number of logs which have been in the buffer at the same
+	 * time.
+	 * 
+	 * @return the max queue depth
+	 */
+	public int getMaxQueueDepth() {
+		lock.lock();
+		try {
+			return maxSize;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the capacity of the buffer.
+	 * 
+	 * @return the max number of logs in the buffer
+	 */
+	public int getCapacity() {
+		return logs.length;
+	}
+
+	/**
+	 * Gets the number of logs which have been dropped because the buffer was
+	 * full.
+	 * 
+	 * @return the number of dropped logs
+	 */
+	public long getDroppedLogs() {
+		lock.lock();
+		try {
+			return dropped;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	private void offer(String log, boolean isErr) {
+		lock.lock();
+		try {
+			if (exited)
+				return;
+
+			if (size == logs.length) {
+				switch (overflowPolicy) {
+					case DROP_NEWEST:
+						dropped++;
+						return;
+
+					case DROP_OLDEST:
+						logs[head] = null;
+						head = (head + 1) % logs.length;
+						size--;
+						dropped++;
+						break;
+
+					case BLOCK:
+						while (size == logs.length) {
+							try {
+								notFull.await();
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+								dropped++;
+								return;
+							}
+						}
+						break;
+				}
+			}
+
+			int tail = (head + size) % logs.length;
+			logs[tail] = log;
+			errors[tail] = isErr;
+			size++;
+			if (size > maxSize)
+				maxSize = size;
+
+			ensureConsumer();
+			if (size == 1)
+				notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void ensureConsumer() {
+		if (consumer == null) {
+			consumer = new Thread(new Consumer());
+			consumer.setName("async-process-listener");
+			consumer.setDaemon(true);
+			consumer.start();
+		}
+	}
+
+}
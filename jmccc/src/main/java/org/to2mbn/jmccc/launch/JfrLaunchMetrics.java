@@ -0,0 +1,167 @@
+package org.to2mbn.jmccc.launch;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.to2mbn.jmccc.option.LaunchOption;
+
+/**
+ * Records the launches as JDK Flight Recorder events (java 9 and higher).
+ * <p>
+ * Two event types are registered: <code>org.to2mbn.jmccc.LaunchPhase</code>
+ * for each phase and <code>org.to2mbn.jmccc.Launch</code> for the whole
+ * launch. The events begin when the phase starts and end when it completes, so
+ * they are placed on the timeline by their start time and duration. Both have
+ * the version, the phase events also have the phase, the files and the bytes.
+ * The events are only committed when a recording has enabled them, so this is
+ * cheap to keep in production.
+ * <p>
+ * The events are created with <code>jdk.jfr.EventFactory</code> by
+ * reflection, because jmccc is built for java 7.
+ */
+public class JfrLaunchMetrics implements LaunchMetrics {
+
+	private static final String PHASE_EVENT = "org.to2mbn.jmccc.LaunchPhase";
+	private static final String LAUNCH_EVENT = "org.to2mbn.jmccc.Launch";
+	private static final String CATEGORY = "jmccc";
+
+	public static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.EventFactory");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	private final Object phaseEventFactory;
+	private final Object launchEventFactory;
+	private final Method newEvent;
+	private final Method set;
+	private final Method begin;
+	private final Method end;
+	private final Method shouldCommit;
+	private final Method commit;
+
+	// the launches run on the calling threads, the events are kept per thread
+	private final ThreadLocal<Object> phaseEvent = new ThreadLocal<>();
+	private final ThreadLocal<Object> launchEvent = new ThreadLocal<>();
+
+	/**
+	 * Constructs a JfrLaunchMetrics, and registers the event types.
+	 * 
+	 * @throws UnsupportedOperationException if JFR is not available
+	 */
+	public JfrLaunchMetrics() {
+		if (!isAvailable())
+			throw new UnsupportedOperationException("jdk.jfr is not available");
+
+		try {
+			Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+			Class<?> eventClass = Class.forName("jdk.jfr.Event");
+			Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement");
+			Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+			Constructor<?> newAnnotation = annotationClass.getConstructor(Class.class, Object.class);
+			Constructor<?> newValueDescriptor = valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+			Method create = eventFactoryClass.getMethod("create", List.class, List.class);
+
+			Object dataAmount = newAnnotation.newInstance(Class.forName("jdk.jfr.DataAmount"), "BYTES");
+			Object version = newValueDescriptor.newInstance(String.class, "version", Collections.emptyList());
+
+			phaseEventFactory = create.invoke(null,
+					eventAnnotations(newAnnotation, PHASE_EVENT, "Launch Phase"),
+					Arrays.asList(
+							version,
+							newValueDescriptor.newInstance(String.class, "phase", Collections.emptyList()),
+							newValueDescriptor.newInstance(int.class, "files", Collections.emptyList()),
+							newValueDescriptor.newInstance(long.class, "bytes", Collections.singletonList(dataAmount))));
+			launchEventFactory = create.invoke(null,
+					eventAnnotations(newAnnotation, LAUNCH_EVENT, "Launch"),
+					Arrays.asList(version));
+
+			newEvent = eventFactoryClass.getMethod("newEvent");
+			set = eventClass.getMethod("set", int.class, Object.class);
+			begin = eventClass.getMethod("begin");
+			end = eventClass.getMethod("end");
+			shouldCommit = eventClass.getMethod("shouldCommit");
+			commit = eventClass.getMethod("commit");
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Couldn't register the JFR events", e);
+		}
+	}
+
+	@Override
+	public void launchStarted(LaunchOption option) {
+		launchEvent.set(begin(launchEventFactory));
+	}
+
+	@Override
+	public void phaseStarted(LaunchOption option, LaunchPhase phase) {
+		phaseEvent.set(begin(phaseEventFactory));
+	}
+
+	@Override
+	public void phaseCompleted(LaunchOption option, LaunchPhase phase, long duration, int files, long bytes) {
+		commit(phaseEvent, phaseEventFactory, option.getVersion().getVersion(), phase.name(), files, bytes);
+	}
+
+	@Override
+	public void launchCompleted(LaunchOption option, long duration) {
+		commit(launchEvent, launchEventFactory, option.getVersion().getVersion());
+	}
+
+	private Object begin(Object eventFactory) {
+		try {
+			Object event = newEvent.invoke(eventFactory);
+			begin.invoke(event);
+			return event;
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		} catch (InvocationTargetException e) {
+			throw rethrow(e);
+		}
+	}
+
+	private void commit(ThreadLocal<Object> started, Object eventFactory, Object... values) {
+		Object event = started.get();
+		started.remove();
+		try {
+			if (event == null) {
+				// not started on this thread, it's committed as an instant event
+				event = newEvent.invoke(eventFactory);
+			}
+			end.invoke(event);
+			if (!(Boolean) shouldCommit.invoke(event))
+				return;
+			for (int i = 0; i < values.length; i++)
+				set.invoke(event, i, values[i]);
+			commit.invoke(event);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		} catch (InvocationTargetException e) {
+			throw rethrow(e);
+		}
+	}
+
+	private static RuntimeException rethrow(InvocationTargetException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof RuntimeException)
+			return (RuntimeException) cause;
+		if (cause instanceof Error)
+			throw (Error) cause;
+		return new IllegalStateException(cause);
+	}
+
+	private static List<Object> eventAnnotations(Constructor<?> newAnnotation, String name, String label) throws ReflectiveOperationException {
+		List<Object> annotations = new ArrayList<>();
+		annotations.add(newAnnotation.newInstance(Class.forName("jdk.jfr.Name"), name));
+		annotations.add(newAnnotation.newInstance(Class.forName("jdk.jfr.Label"), label));
+		annotations.add(newAnnotation.newInstance(Class.forName("jdk.jfr.Category"), new String[] { CATEGORY }));
+		return annotations;
+	}
+
+}
@@ -5,7 +5,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import org.to2mbn.jmccc.option.LaunchOption;
 import org.to2mbn.jmccc.util.Platform;
@@ -120,20 +119,7 @@ class LaunchArgument {
 		Map<String, String> variables = new HashMap<>();
 		variables.putAll(defaultVariables);
 		variables.putAll(launchOption.commandlineVariables());
-
-		String templete = launchOption.getVersion().getLaunchArgs();
-		List<String> args = new ArrayList<>();
-		for (String arg : templete.split(" ")) {
-			for (Entry<String, String> var : variables.entrySet()) {
-				String k = var.getKey();
-				String v = var.getValue();
-				if (k != null && v != null) {
-					arg = arg.replace("${" + k + "}", v);
-				}
-			}
-			args.add(arg);
-		}
-		return args;
+		return ArgumentTemplate.of(launchOption.getVersion().getLaunchArgs()).format(variables);
 	}
 
 	// Getters
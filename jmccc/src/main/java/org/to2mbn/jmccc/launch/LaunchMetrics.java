@@ -0,0 +1,56 @@
+package org.to2mbn.jmccc.launch;
+
+import org.to2mbn.jmccc.option.LaunchOption;
+
+/**
+ * Receives how long each phase of a launch takes.
+ * <p>
+ * The methods are called on the thread calling
+ * {@link Launcher#launch(LaunchOption, ProcessListener)}, right before a phase
+ * starts and right after it completes. If a phase fails, its completion is not
+ * reported, and neither is the completion of the launch. The implementations
+ * should be thread-safe if the launcher is used by several threads, and should
+ * return quickly.
+ * 
+ * @see LauncherBuilder#launchMetrics(LaunchMetrics)
+ * @see JfrLaunchMetrics
+ */
+public interface LaunchMetrics {
+
+	/**
+	 * Calls when a launch starts, before its first phase.
+	 * 
+	 * @param option the launch option
+	 */
+	void launchStarted(LaunchOption option);
+
+	/**
+	 * Calls when a phase starts.
+	 * 
+	 * @param option the launch option
+	 * @param phase the phase
+	 */
+	void phaseStarted(LaunchOption option, LaunchPhase phase);
+
+	/**
+	 * Calls when a phase completes.
+	 * 
+	 * @param option the launch option
+	 * @param phase the phase
+	 * @param duration the wall time of the phase, in nanoseconds
+	 * @param files the number of files the phase touched, see
+	 *            {@link LaunchPhase}
+	 * @param bytes the number of bytes the phase wrote, see
+	 *            {@link LaunchPhase}
+	 */
+	void phaseCompleted(LaunchOption option, LaunchPhase phase, long duration, int files, long bytes);
+
+	/**
+	 * Calls when the process has been started.
+	 * 
+	 * @param option the launch option
+	 * @param duration the wall time of the whole launch, in nanoseconds
+	 */
+	void launchCompleted(LaunchOption option, long duration);
+
+}
@@ -0,0 +1,44 @@
+package org.to2mbn.jmccc.launch;
+
+/**
+ * The phases of a launch, in the order they run.
+ * 
+ * @see LaunchMetrics
+ */
+public enum LaunchPhase {
+
+	/**
+	 * Checks whether the libraries exist. The files are the libraries
+	 * checked.
+	 */
+	CHECK_LIBRARIES,
+
+	/**
+	 * Extracts the natives. The files and the bytes are those written to the
+	 * natives directory, nothing is written if the natives are up to date.
+	 */
+	EXTRACT_NATIVES,
+
+	/**
+	 * Links or copies the assets into the virtual directory, only for legacy
+	 * versions. The files are the assets linked or copied, and the bytes are the
+	 * assets copied.
+	 */
+	BUILD_LEGACY_ASSETS,
+
+	/**
+	 * Calls the authenticator.
+	 */
+	AUTHENTICATE,
+
+	/**
+	 * Generates the commandline. The files are the entries of the classpath.
+	 */
+	GENERATE_COMMANDLINE,
+
+	/**
+	 * Starts the process.
+	 */
+	START_PROCESS;
+
+}
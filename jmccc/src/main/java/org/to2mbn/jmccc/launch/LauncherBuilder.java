@@ -30,20 +30,22 @@ public class LauncherBuilder implements Builder<Launcher> {
 	private boolean nativeFastCheck = false;
 	private boolean printDebugCommandline = false;
 	private boolean useDaemonThreads = false;
+	private LaunchMetrics launchMetrics;
 
 	protected LauncherBuilder() {}
 
 	/**
 	 * Sets whether to do a fast check on natives.
 	 * <p>
-	 * By default, this feature is off. In this case, when decompressing
-	 * natives, the jmccc will fully compare the existing natives and the
-	 * natives in jars. If, and only if, a existing native is modified, jmccc
-	 * will replace it. Because replacing a native in use may cause the running
-	 * JVM to be crashed.<br>
-	 * If the feature is on, the jmccc won't compare the full content of
-	 * natives. Jmccc only compares the sizes. This can improve the launching
-	 * speed. But we cannot ensure the contents of the natives are correct.
+	 * Jmccc keeps a manifest in the natives directory, and a native jar is
+	 * skipped if neither the jar nor the natives extracted from it have
+	 * changed since the last launch. Otherwise, by default, jmccc compares the
+	 * CRC of the existing natives with the CRC recorded in the jar. If, and
+	 * only if, a existing native is modified, jmccc will replace it. Because
+	 * replacing a native in use may cause the running JVM to be crashed.<br>
+	 * If the feature is on, the jmccc won't compare the content of natives.
+	 * Jmccc only compares the sizes. This can improve the launching speed. But
+	 * we cannot ensure the contents of the natives are correct.
 	 * 
 	 * @param nativeFastCheck true to let jmccc do a fast check on natives
 	 * @return the builder itself
@@ -89,6 +91,19 @@ public class LauncherBuilder implements Builder<Launcher> {
 		return this;
 	}
 
+	/**
+	 * Sets the metrics receiving how long each phase of a launch takes.
+	 * Default to null, which records nothing.
+	 * 
+	 * @param launchMetrics the metrics, null to record nothing
+	 * @return the builder itself
+	 * @see JfrLaunchMetrics
+	 */
+	public LauncherBuilder launchMetrics(LaunchMetrics launchMetrics) {
+		this.launchMetrics = launchMetrics;
+		return this;
+	}
+
 	/**
 	 * Creates a new <code>Launcher</code> instance according to the
 	 * configurations.
@@ -101,6 +116,7 @@ public class LauncherBuilder implements Builder<Launcher> {
 		launcher.setNativeFastCheck(nativeFastCheck);
 		launcher.setPrintDebugCommandline(printDebugCommandline);
 		launcher.setUseDaemonThreads(useDaemonThreads);
+		launcher.setLaunchMetrics(launchMetrics);
 		return launcher;
 	}
 
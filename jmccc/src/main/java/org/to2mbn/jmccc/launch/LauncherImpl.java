@@ -1,24 +1,17 @@
 package org.to2mbn.jmccc.launch;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 import org.to2mbn.jmccc.auth.AuthInfo;
 import org.to2mbn.jmccc.internal.org.json.JSONObject;
 import org.to2mbn.jmccc.option.LaunchOption;
 import org.to2mbn.jmccc.option.MinecraftDirectory;
-import org.to2mbn.jmccc.util.FileUtils;
 import org.to2mbn.jmccc.util.UUIDUtils;
 import org.to2mbn.jmccc.version.Asset;
 import org.to2mbn.jmccc.version.Library;
@@ -28,9 +21,29 @@ import org.to2mbn.jmccc.version.parsing.Versions;
 
 class LauncherImpl implements Launcher {
 
+	private static final LaunchMetrics NO_METRICS = new LaunchMetrics() {
+
+		@Override
+		public void launchStarted(LaunchOption option) {
+		}
+
+		@Override
+		public void phaseStarted(LaunchOption option, LaunchPhase phase) {
+		}
+
+		@Override
+		public void phaseCompleted(LaunchOption option, LaunchPhase phase, long duration, int files, long bytes) {
+		}
+
+		@Override
+		public void launchCompleted(LaunchOption option, long duration) {
+		}
+	};
+
 	private boolean nativeFastCheck = false;
 	private boolean printDebugCommandline = false;
 	private boolean useDaemonThreads = false;
+	private LaunchMetrics launchMetrics = NO_METRICS;
 
 	public LauncherImpl() {
 	}
@@ -42,7 +55,11 @@ class LauncherImpl implements Launcher {
 
 	@Override
 	public Process launch(LaunchOption option, ProcessListener listener) throws LaunchException {
-		return launch(generateLaunchArgs(option), listener);
+		launchMetrics.launchStarted(option);
+		long start = System.nanoTime();
+		Process process = launch(generateLaunchArgs(option), listener);
+		launchMetrics.launchCompleted(option, System.nanoTime() - start);
+		return process;
 	}
 
 	public void setNativeFastCheck(boolean nativeFastCheck) {
@@ -57,8 +74,16 @@ class LauncherImpl implements Launcher {
 		this.useDaemonThreads = useDaemonThreads;
 	}
 
+	public void setLaunchMetrics(LaunchMetrics launchMetrics) {
+		this.launchMetrics = launchMetrics == null ? NO_METRICS : launchMetrics;
+	}
+
 	private Process launch(LaunchArgument arg, ProcessListener listener) throws LaunchException {
+		LaunchOption option = arg.getLaunchOption();
+		launchMetrics.phaseStarted(option, LaunchPhase.GENERATE_COMMANDLINE);
+		long start = System.nanoTime();
 		String[] commandline = arg.generateCommandline();
+		launchMetrics.phaseCompleted(option, LaunchPhase.GENERATE_COMMANDLINE, System.nanoTime() - start, arg.getLibraries().size(), 0);
 		if (printDebugCommandline) {
 			printDebugCommandline(commandline);
 		}
@@ -67,16 +92,20 @@ class LauncherImpl implements Launcher {
 		processBuilder.directory(arg.getLaunchOption().getRuntimeDirectory().getRoot());
 
 		Process process;
+		launchMetrics.phaseStarted(option, LaunchPhase.START_PROCESS);
+		start = System.nanoTime();
 		try {
 			process = processBuilder.start();
 		} catch (SecurityException | IOException e) {
 			throw new LaunchException("Couldn't start process", e);
 		}
+		launchMetrics.phaseCompleted(option, LaunchPhase.START_PROCESS, System.nanoTime() - start, 0, 0);
 
 		if (listener == null) {
-			startStreamPumps(process);
+			// the output has to be drained, or the process may be blocked
+			LogPump.get(true).register(process, null);
 		} else {
-			startStreamLoggers(process, listener, useDaemonThreads);
+			LogPump.get(useDaemonThreads).register(process, listener);
 		}
 
 		return process;
@@ -93,37 +122,53 @@ class LauncherImpl implements Launcher {
 		Version version = option.getVersion();
 
 		// check libraries
+		launchMetrics.phaseStarted(option, LaunchPhase.CHECK_LIBRARIES);
+		long start = System.nanoTime();
 		Set<Library> missing = version.getMissingLibraries(mcdir);
 		if (!missing.isEmpty()) {
 			throw new MissingDependenciesException(missing);
 		}
+		launchMetrics.phaseCompleted(option, LaunchPhase.CHECK_LIBRARIES, System.nanoTime() - start, version.getLibraries().size(), 0);
 
 		Set<File> javaLibraries = new LinkedHashSet<>();
+		Map<File, Set<String>> natives = new LinkedHashMap<>();
 		File nativesDir = mcdir.getNatives(version);
 		for (Library library : version.getLibraries()) {
 			File libraryFile = mcdir.getLibrary(library);
 			if (library instanceof Native) {
-				try {
-					decompressZipWithExcludes(libraryFile, nativesDir, ((Native) library).getExtractExcludes());
-				} catch (IOException e) {
-					throw new LaunchException("Couldn't uncompress " + libraryFile, e);
-				}
+				natives.put(libraryFile, ((Native) library).getExtractExcludes());
 			} else {
 				javaLibraries.add(libraryFile);
 			}
 		}
+		launchMetrics.phaseStarted(option, LaunchPhase.EXTRACT_NATIVES);
+		start = System.nanoTime();
+		NativesExtractor nativesExtractor = new NativesExtractor(nativesDir, nativeFastCheck);
+		try {
+			nativesExtractor.extract(natives);
+		} catch (IOException e) {
+			throw new LaunchException("Couldn't uncompress natives", e);
+		}
+		launchMetrics.phaseCompleted(option, LaunchPhase.EXTRACT_NATIVES, System.nanoTime() - start, nativesExtractor.getWrittenFiles(), nativesExtractor.getWrittenBytes());
 		javaLibraries.add(mcdir.getVersionJar(version));
 		javaLibraries.addAll(option.extraClasspath());
 
 		if (version.isLegacy()) {
+			launchMetrics.phaseStarted(option, LaunchPhase.BUILD_LEGACY_ASSETS);
+			start = System.nanoTime();
+			LegacyAssetsBuilder legacyAssetsBuilder = new LegacyAssetsBuilder(mcdir);
 			try {
-				buildLegacyAssets(mcdir, version);
+				buildLegacyAssets(legacyAssetsBuilder, mcdir, version);
 			} catch (IOException e) {
 				throw new LaunchException("Couldn't build virtual assets", e);
 			}
+			launchMetrics.phaseCompleted(option, LaunchPhase.BUILD_LEGACY_ASSETS, System.nanoTime() - start, legacyAssetsBuilder.getWrittenFiles(), legacyAssetsBuilder.getWrittenBytes());
 		}
 
+		launchMetrics.phaseStarted(option, LaunchPhase.AUTHENTICATE);
+		start = System.nanoTime();
 		AuthInfo auth = option.getAuthenticator().auth();
+		launchMetrics.phaseCompleted(option, LaunchPhase.AUTHENTICATE, System.nanoTime() - start, 0, 0);
 
 		Map<String, String> tokens = new HashMap<>();
 		String token = auth.getToken();
@@ -148,83 +193,10 @@ class LauncherImpl implements Launcher {
 		return new LaunchArgument(option, tokens, javaLibraries, nativesDir);
 	}
 
-	private void buildLegacyAssets(MinecraftDirectory mcdir, Version version) throws IOException {
+	private void buildLegacyAssets(LegacyAssetsBuilder builder, MinecraftDirectory mcdir, Version version) throws IOException {
 		Set<Asset> assets = Versions.resolveAssets(mcdir, version);
 		if (assets != null)
-			for (Asset asset : assets)
-				FileUtils.copyFile(mcdir.getAsset(asset), mcdir.getVirtualAsset(asset));
-	}
-
-	private void decompressZipWithExcludes(File zip, File outputDir, Set<String> excludes) throws IOException {
-		if (!outputDir.exists())
-			outputDir.mkdirs();
-
-		try (ZipInputStream in = new ZipInputStream(new FileInputStream(zip))) {
-			ZipEntry entry;
-			byte[] buf = null;
-
-			while ((entry = in.getNextEntry()) != null) {
-				boolean excluded = false; // true if the file is in excludes list
-				if (excludes != null) {
-					for (String exclude : excludes) {
-						if (entry.getName().startsWith(exclude)) {
-							excluded = true;
-							break;
-						}
-					}
-				}
-
-				if (!excluded) {
-					// 1 unused byte for sentinel
-					if (buf == null || buf.length < entry.getSize() - 1) {
-						buf = new byte[(int) entry.getSize() + 1];
-					}
-					int len = 0;
-					int read;
-					// read the zipped data fully
-					while ((read = in.read(buf, len, buf.length - len)) != -1) {
-						if (read == 0) {
-							// reach the sentinel
-							throw new IOException("actual length and entry length mismatch");
-						}
-						len += read;
-					}
-
-					File outFile = new File(outputDir, entry.getName());
-					boolean match; // true if two files are the same
-					if (outFile.isFile() && outFile.length() == entry.getSize()) {
-						// same length, check the content
-						match = true;
-						if (!nativeFastCheck) {
-							try (InputStream targetin = new BufferedInputStream(new FileInputStream(outFile))) {
-								for (int i = 0; i < len; i++) {
-									if (buf[i] != (byte) targetin.read()) {
-										match = false;
-										break;
-									}
-								}
-							}
-						}
-					} else {
-						// different length
-						match = false;
-					}
-
-					if (!match) {
-						if(entry.isDirectory()) {
-							outFile.mkdir();//Fix extract directory as file
-						} else {
-							try (OutputStream out = new FileOutputStream(outFile)) {
-								out.write(buf, 0, len);
-							}
-						}
-					}
-				}
-
-				in.closeEntry();
-			}
-		}
-
+			builder.build(assets);
 	}
 
 	private void printDebugCommandline(String[] commandline) {
@@ -236,22 +208,4 @@ class LauncherImpl implements Launcher {
 		System.err.println(sb.toString());
 	}
 
-	private void startStreamPumps(Process process) {
-		startThread("stdout-pump", true, new StreamPump(process.getInputStream()));
-		startThread("stderr-pump", true, new StreamPump(process.getErrorStream()));
-	}
-
-	private void startStreamLoggers(Process process, ProcessListener listener, boolean daemon) {
-		startThread("stdout-logger", daemon, new StreamLogger(listener, false, process.getInputStream()));
-		startThread("stderr-logger", daemon, new StreamLogger(listener, true, process.getErrorStream()));
-		startThread("exit-waiter", daemon, new ExitWaiter(process, listener));
-	}
-
-	private void startThread(String name, boolean daemon, Runnable runnable) {
-		Thread t = new Thread(runnable);
-		t.setName(name);
-		t.setDaemon(daemon);
-		t.start();
-	}
-
 }
@@ -0,0 +1,264 @@
+package org.to2mbn.jmccc.launch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.to2mbn.jmccc.option.MinecraftDirectory;
+import org.to2mbn.jmccc.version.Asset;
+
+/**
+ * Builds the virtual assets directory of the legacy versions.
+ * <p>
+ * Instead of copying every asset, a hard link to the asset is created. If the
+ * file system doesn't support hard links, a symbolic link is created, and if
+ * that fails too, the asset is copied to a temporary file which is then moved
+ * over the target. An existing virtual asset is skipped if it's the same file
+ * as the asset, or a regular file of the expected size. Several launchers may
+ * build the same directory at the same time, the asset objects are never
+ * written. The assets are processed in parallel.
+ */
+class LegacyAssetsBuilder {
+
+	/**
+	 * The assets are split into batches, so that a few threads can handle
+	 * thousands of small files without a task for each of them.
+	 */
+	private static final int MIN_BATCH_SIZE = 64;
+
+	private static final int MAX_TRIES = 3;
+
+	private final MinecraftDirectory mcdir;
+	private final AtomicInteger writtenFiles = new AtomicInteger();
+	private final AtomicLong writtenBytes = new AtomicLong();
+
+	// once the file system refuses a way, it's not tried on the other files
+	private volatile boolean hardLinkSupported = true;
+	private volatile boolean symbolicLinkSupported = true;
+
+	public LegacyAssetsBuilder(MinecraftDirectory mcdir) {
+		this.mcdir = mcdir;
+	}
+
+	/**
+	 * Links or copies the given assets into the virtual assets directory.
+	 * 
+	 * @param assets the assets
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void build(Collection<Asset> assets) throws IOException {
+		final List<Asset> list = new ArrayList<>(assets);
+		int threads = Math.min(Runtime.getRuntime().availableProcessors(), (list.size() + MIN_BATCH_SIZE - 1) / MIN_BATCH_SIZE);
+		if (threads <= 1) {
+			build(list, 0, list.size());
+			return;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "legacy-assets-builder");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			List<Future<?>> futures = new ArrayList<>(threads);
+			int batchSize = (list.size() + threads - 1) / threads;
+			for (int i = 0; i < list.size(); i += batchSize) {
+				final int from = i;
+				final int to = Math.min(i + batchSize, list.size());
+				futures.add(pool.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						build(list, from, to);
+						return null;
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while building virtual assets");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new IOException(cause);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the number of files linked or copied by
+	 *         {@link #build(Collection)}
+	 */
+	public int getWrittenFiles() {
+		return writtenFiles.get();
+	}
+
+	/**
+	 * @return the number of bytes copied by {@link #build(Collection)}, the
+	 *         links are not counted
+	 */
+	public long getWrittenBytes() {
+		return writtenBytes.get();
+	}
+
+	private void build(List<Asset> assets, int from, int to) throws IOException {
+		for (int i = from; i < to; i++) {
+			if (Thread.interrupted()) {
+				throw new InterruptedIOException("Interrupted while building virtual assets");
+			}
+			Asset asset = assets.get(i);
+			buildAsset(mcdir.getAsset(asset), mcdir.getVirtualAsset(asset), asset.getSize());
+		}
+	}
+
+	private void buildAsset(File src, File target, long size) throws IOException {
+		Path srcPath = src.toPath();
+		Path targetPath = target.toPath();
+
+		// a link to a missing asset would only fail when the game reads it
+		if (!Files.isRegularFile(srcPath)) {
+			throw new NoSuchFileException(src.toString(), null, "Asset not found");
+		}
+
+		for (int tries = 1;; tries++) {
+			if (isUpToDate(srcPath, targetPath, size)) {
+				return;
+			}
+			Files.createDirectories(targetPath.getParent());
+			// only the link itself is removed, the asset is not touched
+			Files.deleteIfExists(targetPath);
+			try {
+				link(srcPath, targetPath, size);
+				return;
+			} catch (FileAlreadyExistsException e) {
+				// another launcher is building the same directory, checks
+				// what it has created
+				if (tries >= MAX_TRIES) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	private void link(Path src, Path target, long size) throws IOException {
+		if (hardLinkSupported) {
+			try {
+				createLink(target, src);
+				writtenFiles.incrementAndGet();
+				return;
+			} catch (FileAlreadyExistsException e) {
+				throw e;
+			} catch (UnsupportedOperationException e) {
+				hardLinkSupported = false;
+			} catch (IOException e) {
+				if (isUnsupported(e)) {
+					hardLinkSupported = false;
+				}
+			}
+		}
+
+		if (symbolicLinkSupported) {
+			try {
+				createSymbolicLink(target, src.toAbsolutePath());
+				writtenFiles.incrementAndGet();
+				return;
+			} catch (FileAlreadyExistsException e) {
+				throw e;
+			} catch (UnsupportedOperationException | SecurityException e) {
+				symbolicLinkSupported = false;
+			} catch (IOException e) {
+				if (isUnsupported(e)) {
+					symbolicLinkSupported = false;
+				}
+			}
+		}
+
+		copy(src, target);
+		writtenFiles.incrementAndGet();
+		writtenBytes.addAndGet(size);
+	}
+
+	/**
+	 * Copies the asset to a temporary file, and moves it over the target. The
+	 * target is never opened for writing, since it may be a link to the asset.
+	 */
+	private void copy(Path src, Path target) throws IOException {
+		Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		try {
+			Files.copy(src, tmp, StandardCopyOption.REPLACE_EXISTING);
+			try {
+				Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	// overridden by the tests
+	void createLink(Path link, Path existing) throws IOException {
+		Files.createLink(link, existing);
+	}
+
+	// overridden by the tests
+	void createSymbolicLink(Path link, Path target) throws IOException {
+		Files.createSymbolicLink(link, target);
+	}
+
+	private static boolean isUpToDate(Path src, Path target, long size) throws IOException {
+		try {
+			if (Files.isSameFile(src, target)) {
+				return true;
+			}
+			// a link to another file is rebuilt even if the size matches
+			return !Files.isSymbolicLink(target) && Files.size(target) == size;
+		} catch (NoSuchFileException e) {
+			// not built yet, or a dangling link
+			return false;
+		}
+	}
+
+	/**
+	 * The failures such as a missing file or a denied access have their own
+	 * subclasses, a plain <code>FileSystemException</code> means that the file
+	 * system refuses the operation itself, e.g. a hard link across devices, or
+	 * a symbolic link without the privilege on Windows. Other failures only
+	 * make the current asset fall back to the next way.
+	 */
+	private static boolean isUnsupported(IOException e) {
+		return e.getClass() == FileSystemException.class;
+	}
+
+}
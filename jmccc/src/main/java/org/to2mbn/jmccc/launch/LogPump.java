@@ -0,0 +1,410 @@
+package org.to2mbn.jmccc.launch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.to2mbn.jmccc.util.Platform;
+
+/**
+ * Drains the output of the launched processes and reports their logs and exit
+ * codes.
+ * <p>
+ * Instead of blocking a thread on every pipe, one shared thread polls all the
+ * registered processes. It only reads the bytes which are available, in bulk,
+ * so a quiet process never blocks the others. When none of them has output,
+ * the thread sleeps, longer and longer up to {@link #MAX_IDLE_INTERVAL}, and
+ * it exits when no process is left.
+ * <p>
+ * The logs are passed to the listeners on a small pool, each process has its
+ * own queue, and its events are delivered in order, the exit code last. So a
+ * slow listener doesn't delay the reading of the other processes. If the queue
+ * of a process is full, its pipes are not read until the listener catches up,
+ * which only blocks that process.
+ */
+class LogPump implements Runnable {
+
+	private static final LogPump DAEMON = new LogPump(true, Platform.getLineSeparator(), Charset.forName(Platform.getEncoding()));
+	private static final LogPump NON_DAEMON = new LogPump(false, Platform.getLineSeparator(), Charset.forName(Platform.getEncoding()));
+
+	private static final long MIN_IDLE_INTERVAL = 1; // ms
+	private static final long MAX_IDLE_INTERVAL = 50; // ms
+	private static final int BUFFER_SIZE = 8192;
+	private static final int MAX_BACKLOG = 4096; // logs
+	private static final int DELIVERY_THREADS = 4;
+
+	/**
+	 * After the process has exited, its pipes are drained for at most this
+	 * time, since they may be kept open by the processes it has forked.
+	 */
+	private static final long EXIT_DRAIN_TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * Gets the shared pump.
+	 * 
+	 * @param daemon whether the pumping thread is a daemon thread
+	 * @return the shared pump
+	 */
+	public static LogPump get(boolean daemon) {
+		return daemon ? DAEMON : NON_DAEMON;
+	}
+
+	private class Pipe {
+
+		private final InputStream in;
+		private final boolean isErr;
+		private final Delivery delivery;
+		private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+		private CharsetDecoder decoder;
+		private CharBuffer chars;
+		private StringBuilder line;
+		private boolean closed;
+
+		public Pipe(InputStream in, boolean isErr, Delivery delivery) {
+			this.in = in;
+			this.isErr = isErr;
+			this.delivery = delivery;
+			if (delivery != null) {
+				decoder = charset.newDecoder()
+						.onMalformedInput(CodingErrorAction.REPLACE)
+						.onUnmappableCharacter(CodingErrorAction.REPLACE);
+				chars = CharBuffer.allocate(BUFFER_SIZE);
+				line = new StringBuilder();
+			}
+		}
+
+		/**
+		 * Reads the available bytes without blocking.
+		 * 
+		 * @return true if anything is read
+		 */
+		public boolean poll() {
+			if (closed)
+				return false;
+
+			try {
+				int available = in.available();
+				if (available <= 0)
+					return false;
+
+				int read = in.read(bytes.array(), bytes.position(), Math.min(available, bytes.remaining()));
+				if (read == -1) {
+					closed = true;
+					return false;
+				}
+
+				// nobody listens, the data is just discarded
+				if (delivery != null) {
+					bytes.position(bytes.position() + read);
+					decode();
+				}
+				return true;
+			} catch (IOException e) {
+				// the pipe is closed by Process.destroy(), which is the same
+				// as the end of the stream
+				closed = true;
+				return false;
+			}
+		}
+
+		public void close() {
+			closed = true;
+			if (delivery != null && line.length() > 0) {
+				delivery.offer(line.toString(), isErr);
+				line.setLength(0);
+			}
+		}
+
+		private void decode() {
+			bytes.flip();
+			CoderResult result;
+			do {
+				result = decoder.decode(bytes, chars, false);
+				chars.flip();
+				int scanFrom = Math.max(0, line.length() - eol.length() + 1);
+				line.append(chars);
+				chars.clear();
+				splitLines(scanFrom);
+			} while (result.isOverflow());
+			// keeps the incomplete character for the next read
+			bytes.compact();
+		}
+
+		private void splitLines(int scanFrom) {
+			int start = 0;
+			int end;
+			while ((end = line.indexOf(eol, scanFrom)) != -1) {
+				delivery.offer(line.substring(start, end), isErr);
+				start = scanFrom = end + eol.length();
+			}
+			line.delete(0, start);
+		}
+
+	}
+
+	/**
+	 * Passes the events of a process to its listener on the delivery pool, one
+	 * batch at a time.
+	 */
+	private class Delivery implements Runnable {
+
+		private final ProcessListener listener;
+
+		// guarded by this
+		private Queue<String> logs = new ArrayDeque<>();
+		private Queue<Boolean> errors = new ArrayDeque<>();
+		private boolean exited;
+		private int exitCode;
+		private boolean scheduled;
+
+		public Delivery(ProcessListener listener) {
+			this.listener = listener;
+		}
+
+		public synchronized void offer(String log, boolean isErr) {
+			logs.add(log);
+			errors.add(isErr);
+			schedule();
+		}
+
+		public synchronized void exit(int code) {
+			exited = true;
+			exitCode = code;
+			schedule();
+		}
+
+		public synchronized boolean isBacklogged() {
+			return logs.size() >= MAX_BACKLOG;
+		}
+
+		@Override
+		public void run() {
+			Queue<String> batchLogs;
+			Queue<Boolean> batchErrors;
+			boolean exit;
+			int code;
+			synchronized (this) {
+				batchLogs = logs;
+				batchErrors = errors;
+				logs = new ArrayDeque<>();
+				errors = new ArrayDeque<>();
+				// the exit is offered after all the logs, so all of them are
+				// in this batch
+				exit = exited;
+				code = exitCode;
+			}
+
+			String log;
+			while ((log = batchLogs.poll()) != null) {
+				try {
+					if (batchErrors.poll()) {
+						listener.onErrorLog(log);
+					} else {
+						listener.onLog(log);
+					}
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+
+			if (exit) {
+				try {
+					listener.onExit(code);
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+				return;
+			}
+
+			synchronized (this) {
+				scheduled = false;
+				// gives the other processes a chance before the next batch
+				if (!logs.isEmpty() || exited)
+					schedule();
+			}
+		}
+
+		// guarded by this
+		private void schedule() {
+			if (!scheduled) {
+				scheduled = true;
+				deliveryPool.execute(this);
+			}
+		}
+
+	}
+
+	private class Monitor {
+
+		private final Process process;
+		private final Delivery delivery;
+		private final Pipe stdout;
+		private final Pipe stderr;
+		private boolean exited;
+		private int exitCode;
+		private long exitTime;
+
+		public Monitor(Process process, ProcessListener listener) {
+			this.process = process;
+			this.delivery = listener == null ? null : new Delivery(listener);
+			stdout = new Pipe(process.getInputStream(), false, delivery);
+			stderr = new Pipe(process.getErrorStream(), true, delivery);
+		}
+
+		/**
+		 * @return true if the listener is too slow, and the pipes should not
+		 *         be read for now
+		 */
+		public boolean isBacklogged() {
+			return delivery != null && delivery.isBacklogged();
+		}
+
+		/**
+		 * @return true if anything is read
+		 */
+		public boolean poll() {
+			boolean out = stdout.poll();
+			boolean err = stderr.poll();
+			return out | err;
+		}
+
+		/**
+		 * Checks whether the process has terminated and its output has been
+		 * drained. If so, the listener is notified.
+		 * 
+		 * @param read whether anything has been read in this round
+		 * @return true if the process has terminated
+		 */
+		public boolean checkExit(boolean read) {
+			if (!exited) {
+				try {
+					exitCode = process.exitValue();
+				} catch (IllegalThreadStateException e) {
+					return false;
+				}
+				exited = true;
+				exitTime = System.nanoTime();
+				// the output may be written between the poll and the exit,
+				// reads it in the next round
+				return false;
+			}
+
+			// drains the output written before the exit, one read per round
+			// like the other processes
+			if (read && System.nanoTime() - exitTime < EXIT_DRAIN_TIMEOUT)
+				return false;
+
+			stdout.close();
+			stderr.close();
+			if (delivery != null)
+				delivery.exit(exitCode);
+			return true;
+		}
+
+	}
+
+	private final boolean daemon;
+	private final String eol;
+	private final Charset charset;
+	private final Executor deliveryPool;
+	private final List<Monitor> monitors = new ArrayList<>(); // guarded by this
+	private Thread thread; // guarded by this
+
+	LogPump(final boolean daemon, String eol, Charset charset) {
+		this.daemon = daemon;
+		this.eol = eol;
+		this.charset = charset;
+
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(DELIVERY_THREADS, DELIVERY_THREADS, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, (daemon ? "log-delivery-daemon-" : "log-delivery-") + count.getAndIncrement());
+				t.setDaemon(daemon);
+				return t;
+			}
+		});
+		// the threads exit soon after the processes, like the pumping thread
+		pool.allowCoreThreadTimeOut(true);
+		deliveryPool = pool;
+	}
+
+	/**
+	 * Starts draining the output of the given process.
+	 * 
+	 * @param process the process
+	 * @param listener the listener to receive the logs and the exit code, null
+	 *            if the output should be discarded
+	 */
+	public void register(Process process, ProcessListener listener) {
+		Monitor monitor = new Monitor(process, listener);
+		synchronized (this) {
+			monitors.add(monitor);
+			if (thread == null) {
+				thread = new Thread(this);
+				thread.setName(daemon ? "log-pump-daemon" : "log-pump");
+				thread.setDaemon(daemon);
+				thread.start();
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		List<Monitor> snapshot = new ArrayList<>();
+		long idleInterval = MIN_IDLE_INTERVAL;
+		for (;;) {
+			synchronized (this) {
+				if (monitors.isEmpty()) {
+					thread = null;
+					return;
+				}
+				snapshot.addAll(monitors);
+			}
+
+			boolean idle = true;
+			for (Monitor monitor : snapshot) {
+				if (monitor.isBacklogged())
+					continue;
+
+				boolean read = monitor.poll();
+				if (read)
+					idle = false;
+				if (monitor.checkExit(read)) {
+					synchronized (this) {
+						monitors.remove(monitor);
+					}
+				}
+			}
+			snapshot.clear();
+
+			if (idle) {
+				try {
+					Thread.sleep(idleInterval);
+				} catch (InterruptedException e) {
+					// the processes are still running, keep pumping
+				}
+				idleInterval = Math.min(idleInterval * 2, MAX_IDLE_INTERVAL);
+			} else {
+				idleInterval = MIN_IDLE_INTERVAL;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,422 @@
+package org.to2mbn.jmccc.launch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts natives incrementally.
+ * <p>
+ * A manifest is kept in the natives directory, which records the size and the
+ * last modified time of each native jar, and the files extracted from it. A
+ * jar is skipped if neither the jar nor its extracted files have changed
+ * since the last extraction. Otherwise, each entry of the jar is compared
+ * with the existing file by the CRC in the zip, and only the changed entries
+ * are inflated. Changed jars are extracted in parallel.
+ * <p>
+ * Several launchers may share the natives directory, so the manifest and the
+ * extracted files are written to temporary files first, and then moved to
+ * their places.
+ */
+class NativesExtractor {
+
+	private static final String MANIFEST_FILE = "jmccc-natives.manifest";
+	private static final String MANIFEST_HEADER = "jmccc-natives-manifest 1";
+	private static final int BUFFER_SIZE = 8192;
+
+	private static class ExtractedFile {
+
+		final String name;
+		final long size;
+		final long lastModified;
+
+		ExtractedFile(String name, long size, long lastModified) {
+			this.name = name;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+
+	private static class JarRecord {
+
+		final long size;
+		final long lastModified;
+		final String excludes;
+		final List<ExtractedFile> files;
+
+		JarRecord(long size, long lastModified, String excludes, List<ExtractedFile> files) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.excludes = excludes;
+			this.files = files;
+		}
+	}
+
+	private final File nativesDir;
+	private final boolean fastCheck;
+	private final AtomicInteger writtenFiles = new AtomicInteger();
+	private final AtomicLong writtenBytes = new AtomicLong();
+
+	/**
+	 * Constructor of NativesExtractor.
+	 * 
+	 * @param nativesDir the directory to extract natives into
+	 * @param fastCheck true to compare the existing files only by their sizes
+	 */
+	public NativesExtractor(File nativesDir, boolean fastCheck) {
+		this.nativesDir = nativesDir;
+		this.fastCheck = fastCheck;
+	}
+
+	/**
+	 * Extracts the given native jars.
+	 * 
+	 * @param natives the native jars, and the excluded path prefixes of each
+	 *            jar
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void extract(Map<File, Set<String>> natives) throws IOException {
+		if (!nativesDir.exists())
+			nativesDir.mkdirs();
+
+		Map<String, JarRecord> oldManifest = readManifest();
+		final Map<String, JarRecord> manifest = new LinkedHashMap<>();
+		Map<File, Set<String>> changed = new LinkedHashMap<>();
+		for (Map.Entry<File, Set<String>> entry : natives.entrySet()) {
+			String key = entry.getKey().getAbsolutePath();
+			JarRecord record = oldManifest.get(key);
+			if (record != null && isUpToDate(entry.getKey(), toExcludesString(entry.getValue()), record)) {
+				manifest.put(key, record);
+			} else {
+				changed.put(entry.getKey(), entry.getValue());
+			}
+		}
+
+		if (changed.isEmpty()) {
+			if (manifest.size() != oldManifest.size()) {
+				writeManifest(manifest);
+			}
+			return;
+		}
+
+		final Map<String, File> owners = natives.size() > 1 ? assignOwners(natives) : null;
+		if (changed.size() == 1) {
+			Map.Entry<File, Set<String>> entry = changed.entrySet().iterator().next();
+			manifest.put(entry.getKey().getAbsolutePath(), extractJar(entry.getKey(), entry.getValue(), owners));
+		} else {
+			Map<String, Future<JarRecord>> futures = new LinkedHashMap<>();
+			ExecutorService pool = Executors.newFixedThreadPool(Math.min(changed.size(), Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "natives-extractor");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			try {
+				for (final Map.Entry<File, Set<String>> entry : changed.entrySet()) {
+					futures.put(entry.getKey().getAbsolutePath(), pool.submit(new Callable<JarRecord>() {
+
+						@Override
+						public JarRecord call() throws Exception {
+							return extractJar(entry.getKey(), entry.getValue(), owners);
+						}
+					}));
+				}
+				for (Map.Entry<String, Future<JarRecord>> future : futures.entrySet()) {
+					manifest.put(future.getKey(), future.getValue().get());
+				}
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException("Interrupted while extracting natives");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				} else {
+					throw new IOException(cause);
+				}
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		writeManifest(manifest);
+	}
+
+	/**
+	 * @return the number of files written by {@link #extract(Map)}
+	 */
+	public int getWrittenFiles() {
+		return writtenFiles.get();
+	}
+
+	/**
+	 * @return the number of bytes written by {@link #extract(Map)}
+	 */
+	public long getWrittenBytes() {
+		return writtenBytes.get();
+	}
+
+	/**
+	 * Several jars may contain the same file. In that case, only the last one
+	 * writes it, as if the jars were extracted one by one, so that the jars
+	 * extracted in parallel never write the same file.
+	 */
+	private Map<String, File> assignOwners(Map<File, Set<String>> jars) throws IOException {
+		Map<String, File> owners = new HashMap<>();
+		for (Map.Entry<File, Set<String>> jar : jars.entrySet()) {
+			try (ZipFile zip = new ZipFile(jar.getKey())) {
+				Enumeration<? extends ZipEntry> entries = zip.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					if (!entry.isDirectory() && !isExcluded(entry.getName(), jar.getValue())) {
+						owners.put(entry.getName(), jar.getKey());
+					}
+				}
+			} catch (IOException e) {
+				throw new IOException("Couldn't uncompress " + jar.getKey(), e);
+			}
+		}
+		return owners;
+	}
+
+	private JarRecord extractJar(File jar, Set<String> excludes, Map<String, File> owners) throws IOException {
+		long size = jar.length();
+		long lastModified = jar.lastModified();
+		List<ExtractedFile> files = new ArrayList<>();
+		try (ZipFile zip = new ZipFile(jar)) {
+			byte[] buf = new byte[BUFFER_SIZE];
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (isExcluded(entry.getName(), excludes)) {
+					continue;
+				}
+
+				File outFile = new File(nativesDir, entry.getName());
+				if (entry.isDirectory()) {
+					outFile.mkdirs();
+					continue;
+				}
+				if (owners != null && !jar.equals(owners.get(entry.getName()))) {
+					continue;
+				}
+
+				if (!matches(outFile, entry, buf)) {
+					File parent = outFile.getParentFile();
+					if (!parent.exists())
+						parent.mkdirs();
+
+					long written = 0;
+					// the existing file may be in use by a running game
+					File tempFile = Files.createTempFile(parent.toPath(), outFile.getName(), ".tmp").toFile();
+					try {
+						try (InputStream in = zip.getInputStream(entry); OutputStream out = new FileOutputStream(tempFile)) {
+							int read;
+							while ((read = in.read(buf)) != -1) {
+								out.write(buf, 0, read);
+								written += read;
+							}
+						}
+						if (entry.getSize() != -1 && written != entry.getSize()) {
+							throw new IOException("actual length and entry length mismatch: " + entry.getName());
+						}
+						replace(tempFile, outFile);
+					} finally {
+						tempFile.delete();
+					}
+					writtenFiles.incrementAndGet();
+					writtenBytes.addAndGet(written);
+				}
+				files.add(new ExtractedFile(entry.getName(), outFile.length(), outFile.lastModified()));
+			}
+		} catch (IOException e) {
+			throw new IOException("Couldn't uncompress " + jar, e);
+		}
+		return new JarRecord(size, lastModified, toExcludesString(excludes), files);
+	}
+
+	private boolean matches(File file, ZipEntry entry, byte[] buf) throws IOException {
+		if (!file.isFile() || file.length() != entry.getSize()) {
+			return false;
+		}
+		if (fastCheck) {
+			return true;
+		}
+		if (entry.getCrc() == -1) {
+			return false;
+		}
+		CRC32 crc = new CRC32();
+		try (InputStream in = new FileInputStream(file)) {
+			int read;
+			while ((read = in.read(buf)) != -1) {
+				crc.update(buf, 0, read);
+			}
+		}
+		return crc.getValue() == entry.getCrc();
+	}
+
+	private boolean isUpToDate(File jar, String excludes, JarRecord record) {
+		if (jar.length() != record.size || jar.lastModified() != record.lastModified || !excludes.equals(record.excludes)) {
+			return false;
+		}
+		for (ExtractedFile extracted : record.files) {
+			File file = new File(nativesDir, extracted.name);
+			if (file.length() != extracted.size || file.lastModified() != extracted.lastModified) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isExcluded(String name, Set<String> excludes) {
+		if (excludes != null) {
+			for (String exclude : excludes) {
+				if (name.startsWith(exclude)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private String toExcludesString(Set<String> excludes) {
+		if (excludes == null || excludes.isEmpty()) {
+			return "";
+		}
+		StringBuilder sb = new StringBuilder();
+		for (String exclude : new TreeSet<>(excludes)) {
+			if (sb.length() > 0)
+				sb.append('/');
+			sb.append(exclude.length()).append(':').append(exclude);
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Manifest format:
+	 * jmccc-natives-manifest 1
+	 * J	<jar path>	<size>	<last modified>	<excludes>
+	 * F	<entry name>	<size>	<last modified>
+	 * F	......
+	 * J	......
+	 */
+
+	private Map<String, JarRecord> readManifest() {
+		Map<String, JarRecord> manifest = new HashMap<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(new File(nativesDir, MANIFEST_FILE)), "UTF-8"))) {
+			if (!MANIFEST_HEADER.equals(reader.readLine())) {
+				return manifest;
+			}
+			List<ExtractedFile> files = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if (fields.length == 5 && "J".equals(fields[0])) {
+					files = new ArrayList<>();
+					manifest.put(fields[1], new JarRecord(Long.parseLong(fields[2]), Long.parseLong(fields[3]), fields[4], files));
+				} else if (fields.length == 4 && "F".equals(fields[0]) && files != null) {
+					files.add(new ExtractedFile(fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+				} else {
+					// broken manifest, extract all the jars again
+					return new HashMap<>();
+				}
+			}
+		} catch (FileNotFoundException e) {
+			// no manifest
+		} catch (IOException | NumberFormatException e) {
+			return new HashMap<>();
+		}
+		return manifest;
+	}
+
+	private void writeManifest(Map<String, JarRecord> manifest) throws IOException {
+		File file = new File(nativesDir, MANIFEST_FILE);
+		File tempFile = File.createTempFile(MANIFEST_FILE, ".tmp", nativesDir);
+		try {
+			writeManifest(manifest, tempFile);
+			replace(tempFile, file);
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	private void writeManifest(Map<String, JarRecord> manifest, File file) throws IOException {
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+			writer.write(MANIFEST_HEADER);
+			writer.write('\n');
+			for (Map.Entry<String, JarRecord> entry : manifest.entrySet()) {
+				JarRecord record = entry.getValue();
+				if (!canWrite(entry.getKey(), record)) {
+					// the jar will be checked by crc next time
+					continue;
+				}
+				writer.write("J\t" + entry.getKey() + "\t" + record.size + "\t" + record.lastModified + "\t" + record.excludes + "\n");
+				for (ExtractedFile extracted : record.files) {
+					writer.write("F\t" + extracted.name + "\t" + extracted.size + "\t" + extracted.lastModified + "\n");
+				}
+			}
+		}
+	}
+
+	private void replace(File src, File target) throws IOException {
+		try {
+			Files.move(src.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(src.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private boolean canWrite(String jar, JarRecord record) {
+		if (containsIllegalChar(jar) || containsIllegalChar(record.excludes)) {
+			return false;
+		}
+		for (ExtractedFile extracted : record.files) {
+			if (containsIllegalChar(extracted.name)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean containsIllegalChar(String str) {
+		return str.indexOf('\t') != -1 || str.indexOf('\n') != -1 || str.indexOf('\r') != -1;
+	}
+
+}
@@ -241,6 +241,16 @@ public class MinecraftDirectory implements Serializable {
 		return new File(getVirtualLegacyAssets(), asset.getVirtualPath());
 	}
 
+	/**
+	 * Gets the file where the checksums of verified files are recorded.
+	 * 
+	 * @return the checksum index file
+	 * @see org.to2mbn.jmccc.util.ChecksumIndex
+	 */
+	public File getChecksumIndex() {
+		return new File(rootDir, "jmccc-checksums.idx");
+	}
+
 	public String getAbsolutePath() {
 		return rootDir.getAbsolutePath();
 	}
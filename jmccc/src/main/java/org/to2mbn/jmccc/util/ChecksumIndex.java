@@ -0,0 +1,305 @@
+package org.to2mbn.jmccc.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the checksums of verified files.
+ * <p>
+ * Each record contains the size, the last modified time, the file key (the
+ * inode on most unix-like systems) and the checksum of a file. When a file is
+ * verified again and its attributes still match the record, the recorded
+ * checksum is used instead of hashing the file again.
+ * <p>
+ * This class is thread-safe.
+ */
+public class ChecksumIndex {
+
+	private static final String HEADER = "jmccc-checksum-index 1";
+
+	/**
+	 * Files modified within this period are not recorded, because a later
+	 * modification may not change their last modified time.
+	 */
+	private static final long RACY_PERIOD = 2000;
+
+	private static class Record {
+
+		final long size;
+		final long lastModified;
+		final String fileKey;
+		final String algorithm;
+		final byte[] checksum;
+
+		Record(long size, long lastModified, String fileKey, String algorithm, byte[] checksum) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.fileKey = fileKey;
+			this.algorithm = algorithm;
+			this.checksum = checksum;
+		}
+
+		boolean matches(BasicFileAttributes attributes, String algorithm) {
+			return size == attributes.size()
+					&& lastModified == attributes.lastModifiedTime().toMillis()
+					&& fileKey.equals(fileKeyOf(attributes))
+					&& this.algorithm.equalsIgnoreCase(algorithm);
+		}
+	}
+
+	private static String fileKeyOf(BasicFileAttributes attributes) {
+		Object fileKey = attributes.fileKey();
+		return fileKey == null ? "-" : fileKey.toString();
+	}
+
+	private final File indexFile;
+	private final File baseDir;
+	private final Map<String, Record> records = new ConcurrentHashMap<>();
+	private volatile boolean modified;
+
+	/**
+	 * Creates an empty ChecksumIndex which is stored in the given file.
+	 * <p>
+	 * The files under the parent directory of the index file are recorded with
+	 * their relative paths. Call {@link #load()} to read the existing records.
+	 * 
+	 * @param indexFile the file to store the index
+	 * @throws NullPointerException if <code>indexFile == null</code>
+	 */
+	public ChecksumIndex(File indexFile) {
+		this.indexFile = Objects.requireNonNull(indexFile).getAbsoluteFile();
+		this.baseDir = this.indexFile.getParentFile();
+	}
+
+	/**
+	 * Gets the file where the index is stored.
+	 * 
+	 * @return the file where the index is stored
+	 */
+	public File getIndexFile() {
+		return indexFile;
+	}
+
+	/**
+	 * Reads the records from the index file.
+	 * <p>
+	 * If the index file doesn't exist or is in an unknown format, no record
+	 * will be read.
+	 * 
+	 * @throws IOException if an i/o error occurs
+	 */
+	public void load() throws IOException {
+		if (!indexFile.isFile()) {
+			return;
+		}
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+			if (!HEADER.equals(reader.readLine())) {
+				return;
+			}
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t");
+				if (fields.length != 6) {
+					continue;
+				}
+				try {
+					records.put(fields[0], new Record(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3], fields[4], HexUtils.hexToBytes(fields[5])));
+				} catch (IllegalArgumentException e) {
+					// skip the malformed record
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the records to the index file if they have been changed since the
+	 * last time they were loaded or saved.
+	 * 
+	 * @throws IOException if an i/o error occurs
+	 */
+	public synchronized void save() throws IOException {
+		if (!modified) {
+			return;
+		}
+		modified = false;
+
+		FileUtils.prepareWrite(indexFile);
+		File tempFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+			writer.write(HEADER);
+			writer.write('\n');
+			for (Entry<String, Record> entry : records.entrySet()) {
+				Record record = entry.getValue();
+				writer.write(entry.getKey());
+				writer.write('\t');
+				writer.write(String.valueOf(record.size));
+				writer.write('\t');
+				writer.write(String.valueOf(record.lastModified));
+				writer.write('\t');
+				writer.write(record.fileKey);
+				writer.write('\t');
+				writer.write(record.algorithm);
+				writer.write('\t');
+				writer.write(HexUtils.bytesToHex(record.checksum));
+				writer.write('\n');
+			}
+		} catch (IOException e) {
+			modified = true;
+			throw e;
+		}
+
+		try {
+			Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Removes all the records.
+	 */
+	public void clear() {
+		records.clear();
+		modified = true;
+	}
+
+	/**
+	 * Verifies the given file.
+	 * <p>
+	 * This method behaves like
+	 * {@link ChecksumUtils#verify(File, byte[], String, long)}, but the file
+	 * won't be hashed if it hasn't been changed since it was recorded.
+	 * 
+	 * @param file the file to verify
+	 * @param checksum the expected checksum, null if the checksum doesn't need
+	 *            to be verified
+	 * @param algorithm the checksum algorithm
+	 * @param size the expected size, -1 if the size doesn't need to be verified
+	 * @return true if, and only if, the file is valid
+	 * @throws IOException if an i/o error occurs
+	 * @throws NoSuchAlgorithmException if the checksum algorithm doesn't exist
+	 * @throws NullPointerException if <code>file == null</code>, or
+	 *             <code>checksum != null &amp;&amp; algorithm == null</code>
+	 */
+	public boolean verify(File file, byte[] checksum, String algorithm, long size) throws IOException, NoSuchAlgorithmException {
+		Objects.requireNonNull(file);
+		if (checksum != null)
+			Objects.requireNonNull(algorithm);
+
+		String key = keyOf(file);
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			if (records.remove(key) != null) {
+				modified = true;
+			}
+			return false;
+		}
+
+		if (!attributes.isRegularFile())
+			return false;
+
+		if (size != -1 && attributes.size() != size)
+			return false;
+
+		if (checksum == null)
+			return true;
+
+		Record record = records.get(key);
+		if (record == null || !record.matches(attributes, algorithm)) {
+			byte[] actual = ChecksumUtils.compute(file, algorithm);
+			long lastModified = attributes.lastModifiedTime().toMillis();
+			if (System.currentTimeMillis() - lastModified >= RACY_PERIOD && key.indexOf('\t') == -1 && key.indexOf('\n') == -1) {
+				record = new Record(attributes.size(), lastModified, fileKeyOf(attributes), algorithm, actual);
+				records.put(key, record);
+				modified = true;
+			} else {
+				return Arrays.equals(checksum, actual);
+			}
+		}
+		return Arrays.equals(checksum, record.checksum);
+	}
+
+	/**
+	 * Verifies the given file.
+	 * 
+	 * @param file the file to verify
+	 * @param checksum the expected checksum in hex, null if the checksum
+	 *            doesn't need to be verified
+	 * @param algorithm the checksum algorithm
+	 * @param size the expected size, -1 if the size doesn't need to be verified
+	 * @return true if, and only if, the file is valid
+	 * @throws IOException if an i/o error occurs
+	 * @throws NoSuchAlgorithmException if the checksum algorithm doesn't exist
+	 * @see #verify(File, byte[], String, long)
+	 */
+	public boolean verify(File file, String checksum, String algorithm, long size) throws IOException, NoSuchAlgorithmException {
+		return verify(file, checksum == null ? null : HexUtils.hexToBytes(checksum), algorithm, size);
+	}
+
+	/**
+	 * Verifies the given files in parallel.
+	 * <p>
+	 * This method behaves like
+	 * {@link ChecksumUtils#verifyAll(Collection)}, but the files which haven't
+	 * been changed since they were recorded won't be hashed.
+	 * 
+	 * @param requests the files to verify
+	 * @return a map from each request to its result, true if, and only if, the
+	 *         file is valid
+	 * @throws NoSuchAlgorithmException if one of the checksum algorithms
+	 *             doesn't exist
+	 * @throws InterruptedException if the current thread is interrupted while
+	 *             waiting
+	 * @throws NullPointerException if <code>requests == null</code>
+	 */
+	public Map<VerifyRequest, Boolean> verifyAll(Collection<VerifyRequest> requests) throws NoSuchAlgorithmException, InterruptedException {
+		return ChecksumUtils.verifyAll(requests, ChecksumUtils.getVerifyPool(), new ChecksumUtils.Verifier() {
+
+			@Override
+			public boolean verify(VerifyRequest request) throws IOException, NoSuchAlgorithmException {
+				return ChecksumIndex.this.verify(request.getFile(), request.getChecksum(), request.getAlgorithm(), request.getSize());
+			}
+		});
+	}
+
+	private String keyOf(File file) {
+		String path = file.getAbsolutePath();
+		if (baseDir != null) {
+			String base = baseDir.getPath() + File.separator;
+			if (path.startsWith(base)) {
+				return path.substring(base.length()).replace(File.separatorChar, '/');
+			}
+		}
+		return path;
+	}
+
+	@Override
+	public String toString() {
+		return "ChecksumIndex [indexFile=" + indexFile + ", records=" + records.size() + "]";
+	}
+
+}
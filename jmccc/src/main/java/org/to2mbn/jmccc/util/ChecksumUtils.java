@@ -4,19 +4,115 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 public final class ChecksumUtils {
 
+	/**
+	 * Verifies a single request of a bulk verification.
+	 */
+	interface Verifier {
+
+		boolean verify(VerifyRequest request) throws IOException, NoSuchAlgorithmException;
+	}
+
+	private static class VerifyAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final VerifyRequest[] requests;
+		private final boolean[] results;
+		private final int from;
+		private final int to;
+		private final Verifier verifier;
+
+		VerifyAction(VerifyRequest[] requests, boolean[] results, int from, int to, Verifier verifier) {
+			this.requests = requests;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+			this.verifier = verifier;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				try {
+					results[from] = verifier.verify(requests[from]);
+				} catch (IOException e) {
+					// the file cannot be read, so it's treated as invalid
+					results[from] = false;
+				} catch (NoSuchAlgorithmException e) {
+					// algorithms have been checked before
+					throw new IllegalStateException(e);
+				}
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new VerifyAction(requests, results, from, mid, verifier), new VerifyAction(requests, results, mid, to, verifier));
+			}
+		}
+	}
+
+	private static final Verifier DEFAULT_VERIFIER = new Verifier() {
+
+		@Override
+		public boolean verify(VerifyRequest request) throws IOException, NoSuchAlgorithmException {
+			return ChecksumUtils.verify(request.getFile(), request.getChecksum(), request.getAlgorithm(), request.getSize());
+		}
+	};
+
+	private static final int BUFFER_SIZE = 65536;
+
+	/**
+	 * Files larger than this are hashed through memory mapping.
+	 */
+	private static final long MAPPING_THRESHOLD = 1024 * 1024;
+	private static final long MAX_MAPPING_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Mapped files cannot be deleted or renamed on windows until the mapping
+	 * is garbage collected, so memory mapping is not used on windows.
+	 */
+	private static final boolean MAPPING_SUPPORTED = Platform.CURRENT != Platform.WINDOWS;
+
+	private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = new ThreadLocal<Map<String, MessageDigest>>() {
+
+		@Override
+		protected Map<String, MessageDigest> initialValue() {
+			return new HashMap<>();
+		}
+	};
+
+	private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+
+		@Override
+		protected byte[] initialValue() {
+			return new byte[BUFFER_SIZE];
+		}
+	};
+
+	private static volatile ForkJoinPool verifyPool;
+
 	public static byte[] compute(InputStream in, String algorithm) throws IOException, NoSuchAlgorithmException {
 		Objects.requireNonNull(in);
 		Objects.requireNonNull(algorithm);
 
-		MessageDigest checksum = MessageDigest.getInstance(algorithm);
-		byte[] buffer = new byte[8192];
+		MessageDigest checksum = getDigest(algorithm);
+		byte[] buffer = BUFFERS.get();
 		int read;
 		while ((read = in.read(buffer)) != -1) {
 			checksum.update(buffer, 0, read);
@@ -28,8 +124,18 @@ public final class ChecksumUtils {
 		Objects.requireNonNull(file);
 		Objects.requireNonNull(algorithm);
 
-		try (InputStream in = new FileInputStream(file)) {
-			return compute(in, algorithm);
+		try (FileInputStream in = new FileInputStream(file)) {
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			if (MAPPING_SUPPORTED && size >= MAPPING_THRESHOLD) {
+				MessageDigest checksum = getDigest(algorithm);
+				for (long position = 0; position < size; position += MAX_MAPPING_SIZE) {
+					checksum.update(channel.map(MapMode.READ_ONLY, position, Math.min(MAX_MAPPING_SIZE, size - position)));
+				}
+				return checksum.digest();
+			} else {
+				return compute(in, algorithm);
+			}
 		}
 	}
 
@@ -62,6 +168,107 @@ public final class ChecksumUtils {
 		return verify(file, checksum, algorithm, -1);
 	}
 
+	/**
+	 * Verifies the given files in parallel.
+	 * <p>
+	 * The files are spread over a shared pool whose parallelism equals to the
+	 * number of available processors. If a file cannot be read, it will be
+	 * treated as invalid.
+	 *
+	 * @param requests the files to verify
+	 * @return a map from each request to its result, true if, and only if, the
+	 *         file is valid
+	 * @throws NoSuchAlgorithmException if one of the checksum algorithms
+	 *             doesn't exist
+	 * @throws InterruptedException if the current thread is interrupted while
+	 *             waiting
+	 * @throws NullPointerException if <code>requests == null</code>
+	 */
+	public static Map<VerifyRequest, Boolean> verifyAll(Collection<VerifyRequest> requests) throws NoSuchAlgorithmException, InterruptedException {
+		return verifyAll(requests, getVerifyPool());
+	}
+
+	/**
+	 * Verifies the given files in parallel, using the given pool.
+	 *
+	 * @param requests the files to verify
+	 * @param pool the pool to run the verifications
+	 * @return a map from each request to its result, true if, and only if, the
+	 *         file is valid
+	 * @throws NoSuchAlgorithmException if one of the checksum algorithms
+	 *             doesn't exist
+	 * @throws InterruptedException if the current thread is interrupted while
+	 *             waiting
+	 * @throws NullPointerException if <code>requests == null || pool == null</code>
+	 * @see #verifyAll(Collection)
+	 */
+	public static Map<VerifyRequest, Boolean> verifyAll(Collection<VerifyRequest> requests, ForkJoinPool pool) throws NoSuchAlgorithmException, InterruptedException {
+		return verifyAll(requests, pool, DEFAULT_VERIFIER);
+	}
+
+	static Map<VerifyRequest, Boolean> verifyAll(Collection<VerifyRequest> requests, ForkJoinPool pool, Verifier verifier) throws NoSuchAlgorithmException, InterruptedException {
+		Objects.requireNonNull(requests);
+		Objects.requireNonNull(pool);
+
+		VerifyRequest[] requestsArray = requests.toArray(new VerifyRequest[requests.size()]);
+		Set<String> algorithms = new HashSet<>();
+		for (VerifyRequest request : requestsArray) {
+			if (request.getAlgorithm() != null && algorithms.add(request.getAlgorithm())) {
+				// fail fast if the algorithm doesn't exist
+				getDigest(request.getAlgorithm());
+			}
+		}
+
+		boolean[] results = new boolean[requestsArray.length];
+		if (requestsArray.length != 0) {
+			ForkJoinTask<Void> task = pool.submit(new VerifyAction(requestsArray, results, 0, requestsArray.length, verifier));
+			try {
+				task.get();
+			} catch (InterruptedException e) {
+				task.cancel(true);
+				throw e;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				} else {
+					throw new IllegalStateException(cause);
+				}
+			}
+		}
+
+		Map<VerifyRequest, Boolean> resultsMap = new HashMap<>();
+		for (int i = 0; i < requestsArray.length; i++) {
+			resultsMap.put(requestsArray[i], results[i]);
+		}
+		return resultsMap;
+	}
+
+	static ForkJoinPool getVerifyPool() {
+		if (verifyPool == null) {
+			synchronized (ChecksumUtils.class) {
+				if (verifyPool == null) {
+					verifyPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+				}
+			}
+		}
+		return verifyPool;
+	}
+
+	private static MessageDigest getDigest(String algorithm) throws NoSuchAlgorithmException {
+		Map<String, MessageDigest> digests = DIGESTS.get();
+		MessageDigest digest = digests.get(algorithm);
+		if (digest == null) {
+			digest = MessageDigest.getInstance(algorithm);
+			digests.put(algorithm, digest);
+		} else {
+			digest.reset();
+		}
+		return digest;
+	}
+
 	private ChecksumUtils() {
 	}
 }
@@ -0,0 +1,94 @@
+package org.to2mbn.jmccc.util;
+
+import java.io.File;
+import java.util.Objects;
+
+/**
+ * Describes a file to verify in
+ * {@link ChecksumUtils#verifyAll(java.util.Collection)}.
+ */
+public class VerifyRequest {
+
+	private final File file;
+	private final byte[] checksum;
+	private final String algorithm;
+	private final long size;
+
+	/**
+	 * Constructor of VerifyRequest.
+	 *
+	 * @param file the file to verify
+	 * @param checksum the expected checksum, null if the checksum doesn't need
+	 *            to be verified
+	 * @param algorithm the checksum algorithm
+	 * @param size the expected size, -1 if the size doesn't need to be verified
+	 * @throws NullPointerException if <code>file == null</code>, or
+	 *             <code>checksum != null &amp;&amp; algorithm == null</code>
+	 */
+	public VerifyRequest(File file, byte[] checksum, String algorithm, long size) {
+		this.file = Objects.requireNonNull(file);
+		if (checksum != null)
+			Objects.requireNonNull(algorithm);
+		this.checksum = checksum;
+		this.algorithm = algorithm;
+		this.size = size;
+	}
+
+	/**
+	 * Constructor of VerifyRequest.
+	 *
+	 * @param file the file to verify
+	 * @param checksum the expected checksum in hex, null if the checksum
+	 *            doesn't need to be verified
+	 * @param algorithm the checksum algorithm
+	 * @param size the expected size, -1 if the size doesn't need to be verified
+	 * @throws NullPointerException if <code>file == null</code>, or
+	 *             <code>checksum != null &amp;&amp; algorithm == null</code>
+	 */
+	public VerifyRequest(File file, String checksum, String algorithm, long size) {
+		this(file, checksum == null ? null : HexUtils.hexToBytes(checksum), algorithm, size);
+	}
+
+	/**
+	 * Gets the file to verify.
+	 *
+	 * @return the file to verify
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Gets the expected checksum.
+	 *
+	 * @return the expected checksum, null if the checksum doesn't need to be
+	 *         verified
+	 */
+	public byte[] getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * Gets the checksum algorithm.
+	 *
+	 * @return the checksum algorithm
+	 */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Gets the expected size.
+	 *
+	 * @return the expected size, -1 if the size doesn't need to be verified
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("VerifyRequest [file=%s, checksum=%s, algorithm=%s, size=%d]", file, checksum == null ? null : HexUtils.bytesToHex(checksum), algorithm, size);
+	}
+
+}
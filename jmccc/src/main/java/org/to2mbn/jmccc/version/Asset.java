@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.security.NoSuchAlgorithmException;
 import java.util.Objects;
 import org.to2mbn.jmccc.option.MinecraftDirectory;
+import org.to2mbn.jmccc.util.ChecksumIndex;
 import org.to2mbn.jmccc.util.ChecksumUtils;
 
 public class Asset implements Serializable {
@@ -105,6 +106,25 @@ public class Asset implements Serializable {
 		return ChecksumUtils.verify(dir.getAsset(this), getHash(), "SHA-1", size);
 	}
 
+	/**
+	 * Validates the asset in the given mcdir, using the given checksum index.
+	 * <p>
+	 * This method behaves like {@link #isValid(MinecraftDirectory)}, but the
+	 * asset file won't be hashed again if it hasn't been changed since it was
+	 * recorded in the checksum index.
+	 * 
+	 * @param dir the mcdir where the asset is in
+	 * @param index the checksum index
+	 * @return true if, and only if, the asset is valid
+	 * @throws IOException if an i/o error occurs
+	 * @throws NoSuchAlgorithmException if the default hash algorithm SHA-1
+	 *             doesn't exist
+	 * @throws NullPointerException if <code>index == null</code>
+	 */
+	public boolean isValid(MinecraftDirectory dir, ChecksumIndex index) throws IOException, NoSuchAlgorithmException {
+		return index.verify(dir.getAsset(this), getHash(), "SHA-1", size);
+	}
+
 	@Override
 	public int hashCode() {
 		return hash.hashCode();
@@ -0,0 +1,112 @@
+package org.to2mbn.jmccc.version.parsing;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches parsed objects by the canonical path of their source file.
+ * <p>
+ * An entry remembers the last modified time and the size of every file which
+ * it is parsed from, and it becomes invalid as soon as any of these files is
+ * changed.
+ */
+class ParsedCache<T> {
+
+	/**
+	 * Files modified within this period are not cached, because a later
+	 * modification may not change the last modified time.
+	 */
+	private static final long RACY_PERIOD = 2000;
+
+	static class FileStamp {
+
+		private final File file;
+		private final long lastModified;
+		private final long size;
+
+		/**
+		 * Records the current state of the file, this should be called before
+		 * reading the file.
+		 * 
+		 * @param file the file
+		 */
+		FileStamp(File file) {
+			this.file = file;
+			this.lastModified = file.lastModified();
+			this.size = file.length();
+		}
+
+		boolean isValid() {
+			return file.lastModified() == lastModified && file.length() == size;
+		}
+
+		boolean isRacy() {
+			return lastModified == 0 || System.currentTimeMillis() - lastModified < RACY_PERIOD;
+		}
+	}
+
+	private static class CacheEntry<T> {
+
+		final T value;
+		final FileStamp[] stamps;
+
+		CacheEntry(T value, FileStamp[] stamps) {
+			this.value = value;
+			this.stamps = stamps;
+		}
+	}
+
+	private final Map<String, CacheEntry<T>> entries;
+
+	ParsedCache(final int maxEntries) {
+		entries = new LinkedHashMap<String, CacheEntry<T>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<T>> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	synchronized T get(String path) {
+		CacheEntry<T> entry = entries.get(path);
+		if (entry == null) {
+			return null;
+		}
+		for (FileStamp stamp : entry.stamps) {
+			if (!stamp.isValid()) {
+				entries.remove(path);
+				return null;
+			}
+		}
+		return entry.value;
+	}
+
+	synchronized void put(String path, T value, List<FileStamp> stamps) {
+		for (FileStamp stamp : stamps) {
+			if (stamp.isRacy()) {
+				return;
+			}
+		}
+		entries.put(path, new CacheEntry<>(value, stamps.toArray(new FileStamp[stamps.size()])));
+	}
+
+	synchronized void invalidate() {
+		entries.clear();
+	}
+
+	synchronized void invalidate(String pathPrefix) {
+		Iterator<String> it = entries.keySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().startsWith(pathPrefix)) {
+				it.remove();
+			}
+		}
+	}
+
+}
@@ -5,6 +5,7 @@ import java.util.Stack;
 import org.to2mbn.jmccc.internal.org.json.JSONArray;
 import org.to2mbn.jmccc.internal.org.json.JSONException;
 import org.to2mbn.jmccc.internal.org.json.JSONObject;
+import org.to2mbn.jmccc.internal.org.json.JSONTokener;
 import org.to2mbn.jmccc.version.Asset;
 import org.to2mbn.jmccc.version.AssetIndexInfo;
 import org.to2mbn.jmccc.version.DownloadInfo;
@@ -141,6 +142,20 @@ public interface VersionParser {
 	 */
 	Set<Asset> parseAssetIndex(JSONObject json) throws JSONException;
 
+	/**
+	 * Parses the asset index from a json stream.
+	 * <p>
+	 * The format is the same as {@link #parseAssetIndex(JSONObject)}, but the
+	 * assets are created while reading, without building a {@link JSONObject}
+	 * for the whole asset index. The returned set is the same as the one
+	 * returned by {@link #parseAssetIndex(JSONObject)}.
+	 * 
+	 * @param tokener the json stream
+	 * @return the parsed assets
+	 * @throws JSONException if the json is invalid
+	 */
+	Set<Asset> parseAssetIndex(JSONTokener tokener) throws JSONException;
+
 	/**
 	 * Parses the version hierarchy.
 	 * <p>
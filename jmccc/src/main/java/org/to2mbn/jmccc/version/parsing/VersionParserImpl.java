@@ -5,6 +5,7 @@ import java.util.*;
 import org.to2mbn.jmccc.internal.org.json.JSONArray;
 import org.to2mbn.jmccc.internal.org.json.JSONException;
 import org.to2mbn.jmccc.internal.org.json.JSONObject;
+import org.to2mbn.jmccc.internal.org.json.JSONTokener;
 import org.to2mbn.jmccc.version.Asset;
 import org.to2mbn.jmccc.version.AssetIndexInfo;
 import org.to2mbn.jmccc.version.DownloadInfo;
@@ -81,13 +82,7 @@ class VersionParserImpl implements VersionParser {
         if (json == null) return null;
 
         JSONObject objects = json.getJSONObject("objects");
-        Set<Asset> assets = new TreeSet<>(new Comparator<Asset>() {
-
-            @Override
-            public int compare(Asset o1, Asset o2) {
-                return o1.getVirtualPath().compareTo(o2.getVirtualPath());
-            }
-        });
+        Set<Asset> assets = newAssetSet();
         for (Object rawVirtualPath : objects.keySet()) {
             String virtualPath = (String) rawVirtualPath;
             JSONObject object = objects.getJSONObject(virtualPath);
@@ -98,6 +93,120 @@ class VersionParserImpl implements VersionParser {
         return Collections.unmodifiableSet(assets);
     }
 
+    @Override
+    public Set<Asset> parseAssetIndex(JSONTokener tokener) throws JSONException {
+        if (tokener == null) return null;
+
+        // reads the json and creates the assets on the fly, no JSONObject is built
+        Set<Asset> assets = null;
+        nextExpected(tokener, '{');
+        if (!nextEndOfObject(tokener)) {
+            do {
+                String key = nextKey(tokener);
+                if ("objects".equals(key)) {
+                    assets = newAssetSet();
+                    nextExpected(tokener, '{');
+                    if (!nextEndOfObject(tokener)) {
+                        do {
+                            String virtualPath = nextKey(tokener);
+                            assets.add(nextAsset(tokener, virtualPath));
+                        } while (nextHasMember(tokener));
+                    }
+                } else {
+                    tokener.nextValue();
+                }
+            } while (nextHasMember(tokener));
+        }
+        if (assets == null) {
+            throw new JSONException("JSONObject[\"objects\"] not found.");
+        }
+        return Collections.unmodifiableSet(assets);
+    }
+
+    // both parsers return the assets sorted by virtual path
+    private static Set<Asset> newAssetSet() {
+        return new TreeSet<>(new Comparator<Asset>() {
+
+            @Override
+            public int compare(Asset o1, Asset o2) {
+                return o1.getVirtualPath().compareTo(o2.getVirtualPath());
+            }
+        });
+    }
+
+    private Asset nextAsset(JSONTokener tokener, String virtualPath) throws JSONException {
+        String hash = null;
+        Integer size = null;
+        nextExpected(tokener, '{');
+        if (!nextEndOfObject(tokener)) {
+            do {
+                String key = nextKey(tokener);
+                Object value = tokener.nextValue();
+                if ("hash".equals(key)) {
+                    if (!(value instanceof String)) {
+                        throw new JSONException("JSONObject[\"hash\"] not a string.");
+                    }
+                    hash = (String) value;
+                } else if ("size".equals(key)) {
+                    if (value instanceof Number) {
+                        size = ((Number) value).intValue();
+                    } else {
+                        try {
+                            size = Integer.valueOf((String) value);
+                        } catch (ClassCastException | NumberFormatException e) {
+                            throw new JSONException("JSONObject[\"size\"] is not an int.");
+                        }
+                    }
+                }
+            } while (nextHasMember(tokener));
+        }
+        if (hash == null) {
+            throw new JSONException("JSONObject[\"hash\"] not found.");
+        }
+        if (size == null) {
+            throw new JSONException("JSONObject[\"size\"] not found.");
+        }
+        return new Asset(virtualPath, hash, size);
+    }
+
+    private void nextExpected(JSONTokener tokener, char expected) throws JSONException {
+        if (tokener.nextClean() != expected) {
+            throw tokener.syntaxError("Expected '" + expected + "'");
+        }
+    }
+
+    private boolean nextEndOfObject(JSONTokener tokener) throws JSONException {
+        if (tokener.nextClean() == '}') {
+            return true;
+        }
+        tokener.back();
+        return false;
+    }
+
+    private String nextKey(JSONTokener tokener) throws JSONException {
+        char quote = tokener.nextClean();
+        if (quote != '"' && quote != '\'') {
+            throw tokener.syntaxError("A JSONObject key must be a string");
+        }
+        String key = tokener.nextString(quote);
+        nextExpected(tokener, ':');
+        return key;
+    }
+
+    private boolean nextHasMember(JSONTokener tokener) throws JSONException {
+        switch (tokener.nextClean()) {
+            case ',':
+                if (nextEndOfObject(tokener)) {
+                    return false;
+                }
+                return true;
+            case '}':
+                return false;
+            default:
+                throw tokener.syntaxError("Expected a ',' or '}'");
+        }
+    }
+
     @Override
     public Version parseVersion(Stack<JSONObject> hierarchy, PlatformDescription platformDescription) throws JSONException {
         String version = hierarchy.get(0).getString("id");
@@ -1,18 +1,26 @@
 package org.to2mbn.jmccc.version.parsing;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeSet;
 import org.to2mbn.jmccc.internal.org.json.JSONException;
 import org.to2mbn.jmccc.internal.org.json.JSONObject;
+import org.to2mbn.jmccc.internal.org.json.JSONTokener;
 import org.to2mbn.jmccc.option.MinecraftDirectory;
 import org.to2mbn.jmccc.util.IOUtils;
 import org.to2mbn.jmccc.version.Asset;
 import org.to2mbn.jmccc.version.Version;
+import org.to2mbn.jmccc.version.parsing.ParsedCache.FileStamp;
 
 /**
  * A tool class for resolving versions.
@@ -23,6 +31,9 @@ public final class Versions {
 
 	private final static VersionParser PARSER = new VersionParserImpl();
 
+	private static volatile ParsedCache<Version> versionCache;
+	private static volatile ParsedCache<Set<Asset>> assetIndexCache;
+
 	/**
 	 * Resolves the version.
 	 * 
@@ -38,11 +49,29 @@ public final class Versions {
 		Objects.requireNonNull(version);
 
 		if (doesVersionExist(minecraftDir, version)) {
+			ParsedCache<Version> cache = versionCache;
+			String path = null;
+			List<FileStamp> stamps = null;
+			if (cache != null) {
+				path = minecraftDir.getVersionJson(version).getCanonicalPath();
+				Version cached = cache.get(path);
+				if (cached != null) {
+					return cached;
+				}
+				stamps = new ArrayList<>();
+			}
+
+			Version result;
 			try {
-				return getVersionParser().parseVersion(resolveVersionHierarchy(version, minecraftDir), PlatformDescription.current());
+				result = getVersionParser().parseVersion(resolveVersionHierarchy(version, minecraftDir, stamps), PlatformDescription.current());
 			} catch (JSONException e) {
 				throw new IOException("Couldn't parse version json: " + version, e);
 			}
+
+			if (cache != null) {
+				cache.put(path, result, stamps);
+			}
+			return result;
 		} else {
 			return null;
 		}
@@ -102,15 +131,97 @@ public final class Versions {
 	public static Set<Asset> resolveAssets(MinecraftDirectory minecraftDir, String assets) throws IOException {
 		Objects.requireNonNull(minecraftDir);
 		Objects.requireNonNull(assets);
-		if (!minecraftDir.getAssetIndex(assets).isFile()) {
+		File assetIndex = minecraftDir.getAssetIndex(assets);
+		if (!assetIndex.isFile()) {
 			return null;
 		}
 
-		try {
-			return getVersionParser().parseAssetIndex(IOUtils.toJson(minecraftDir.getAssetIndex(assets)));
+		ParsedCache<Set<Asset>> cache = assetIndexCache;
+		String path = null;
+		FileStamp stamp = null;
+		if (cache != null) {
+			path = assetIndex.getCanonicalPath();
+			Set<Asset> cached = cache.get(path);
+			if (cached != null) {
+				return cached;
+			}
+			stamp = new FileStamp(assetIndex);
+		}
+
+		Set<Asset> result;
+		try (Reader reader = new InputStreamReader(new BufferedInputStream(new FileInputStream(assetIndex)), "UTF-8")) {
+			result = getVersionParser().parseAssetIndex(new JSONTokener(reader));
 		} catch (JSONException e) {
 			throw new IOException("Couldn't parse asset index: " + assets, e);
 		}
+
+		if (cache != null) {
+			cache.put(path, result, Collections.singletonList(stamp));
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the maximum number of the parsed versions (and the parsed asset
+	 * indexes) to cache.
+	 * <p>
+	 * If the cache is enabled, {@link #resolveVersion(MinecraftDirectory, String)}
+	 * and {@link #resolveAssets(MinecraftDirectory, String)} return the cached
+	 * objects as long as the last modified time and the size of the json files
+	 * (including all the versions in the inheritance hierarchy) are unchanged.
+	 * The least recently used entries are removed if the cache is full.
+	 * <p>
+	 * The cache is disabled by default. Setting the size to 0 disables the
+	 * cache, changing the size clears the cache.
+	 * 
+	 * @param maxEntries the maximum number of entries
+	 * @throws IllegalArgumentException if <code>maxEntries &lt; 0</code>
+	 */
+	public static synchronized void setCacheSize(int maxEntries) {
+		if (maxEntries < 0)
+			throw new IllegalArgumentException("maxEntries < 0");
+
+		if (maxEntries == 0) {
+			versionCache = null;
+			assetIndexCache = null;
+		} else {
+			versionCache = new ParsedCache<>(maxEntries);
+			assetIndexCache = new ParsedCache<>(maxEntries);
+		}
+	}
+
+	/**
+	 * Clears the cache.
+	 * 
+	 * @see #setCacheSize(int)
+	 */
+	public static void invalidateCache() {
+		ParsedCache<Version> versions = versionCache;
+		ParsedCache<Set<Asset>> assetIndexes = assetIndexCache;
+		if (versions != null)
+			versions.invalidate();
+		if (assetIndexes != null)
+			assetIndexes.invalidate();
+	}
+
+	/**
+	 * Removes the cached versions and asset indexes of the given minecraft
+	 * directory.
+	 * 
+	 * @param minecraftDir the minecraft directory
+	 * @throws IOException if the canonical path of the directory cannot be
+	 *             resolved
+	 * @throws NullPointerException if <code>minecraftDir==null</code>
+	 * @see #setCacheSize(int)
+	 */
+	public static void invalidateCache(MinecraftDirectory minecraftDir) throws IOException {
+		Objects.requireNonNull(minecraftDir);
+		ParsedCache<Version> versions = versionCache;
+		ParsedCache<Set<Asset>> assetIndexes = assetIndexCache;
+		if (versions != null)
+			versions.invalidate(minecraftDir.getVersions().getCanonicalPath() + File.separator);
+		if (assetIndexes != null)
+			assetIndexes.invalidate(minecraftDir.getAssetIndexes().getCanonicalPath() + File.separator);
 	}
 
 	public static VersionParser getVersionParser() {
@@ -121,10 +232,13 @@ public final class Versions {
 		return minecraftDir.getVersionJson(version).isFile();
 	}
 
-	private static Stack<JSONObject> resolveVersionHierarchy(String version, MinecraftDirectory mcdir) throws IOException, JSONException {
+	private static Stack<JSONObject> resolveVersionHierarchy(String version, MinecraftDirectory mcdir, List<FileStamp> stamps) throws IOException, JSONException {
 		Stack<JSONObject> result = new Stack<>();
 		do {
-			JSONObject json = IOUtils.toJson(mcdir.getVersionJson(version));
+			File file = mcdir.getVersionJson(version);
+			if (stamps != null)
+				stamps.add(new FileStamp(file));
+			JSONObject json = IOUtils.toJson(file);
 			result.push(json);
 			version = json.optString("inheritsFrom", null);
 		} while (version != null);
@@ -0,0 +1,60 @@
+package org.to2mbn.jmccc.launch;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class ArgumentTemplateTest {
+
+	private static final Map<String, String> VARIABLES = new HashMap<>();
+
+	static {
+		VARIABLES.put("auth_player_name", "player");
+		VARIABLES.put("version_name", "1.8");
+		VARIABLES.put("a", "1");
+		VARIABLES.put("b", "2");
+		VARIABLES.put("nothing", null);
+	}
+
+	@Test
+	public void testLiteralOnly() {
+		assertEquals(Arrays.asList("--demo", "--width", "854"), format("--demo --width 854"));
+		assertEquals(Arrays.asList("--demo"), ArgumentTemplate.of("--demo").format(Collections.<String, String> emptyMap()));
+	}
+
+	@Test
+	public void testVariables() {
+		assertEquals(Arrays.asList("--username", "player", "--version", "1.8"), format("--username ${auth_player_name} --version ${version_name}"));
+	}
+
+	@Test
+	public void testMultipleSlotsInOneArgument() {
+		assertEquals(Arrays.asList("x1:2-y", "12", "--1"), format("x${a}:${b}-y ${a}${b} --${a}"));
+	}
+
+	@Test
+	public void testUnknownOrNullKept() {
+		assertEquals(Arrays.asList("${unknown}", "a${nothing}b", "1${unknown}2"), format("${unknown} a${nothing}b ${a}${unknown}${b}"));
+	}
+
+	@Test
+	public void testUnterminated() {
+		assertEquals(Arrays.asList("--dir", "${game_directory"), format("--dir ${game_directory"));
+		assertEquals(Arrays.asList("1${b", "$", "${"), format("${a}${b $ ${"));
+		assertEquals(Arrays.asList("${a${b}"), format("${a${b}"));
+	}
+
+	@Test
+	public void testCompiledOnce() {
+		assertSame(ArgumentTemplate.of("--username ${auth_player_name}"), ArgumentTemplate.of("--username ${auth_player_name}"));
+	}
+
+	private static List<String> format(String template) {
+		return ArgumentTemplate.of(template).format(VARIABLES);
+	}
+
+}
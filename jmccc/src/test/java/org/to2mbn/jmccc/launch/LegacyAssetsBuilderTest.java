@@ -0,0 +1,244 @@
+package org.to2mbn.jmccc.launch;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.to2mbn.jmccc.test.MinecraftEnvironmentTest;
+import org.to2mbn.jmccc.version.Asset;
+
+public class LegacyAssetsBuilderTest extends MinecraftEnvironmentTest {
+
+	private static final int ASSETS = 200;
+
+	private List<Asset> assets = new ArrayList<>();
+
+	@Override
+	protected void copyFiles() throws IOException {
+		assets.clear();
+		for (int i = 0; i < ASSETS; i++) {
+			Asset asset = new Asset("minecraft/sounds/" + (i % 5) + "/" + i + ".ogg", String.format("%040x", i + 1), i + 1);
+			File file = mcdir().getAsset(asset);
+			file.getParentFile().mkdirs();
+			Files.write(file.toPath(), content(i));
+			assets.add(asset);
+		}
+	}
+
+	@Test
+	public void testLink() throws IOException {
+		LegacyAssetsBuilder builder = new LegacyAssetsBuilder(mcdir());
+		builder.build(assets);
+		assertEquals(ASSETS, builder.getWrittenFiles());
+		assertEquals(0, builder.getWrittenBytes());
+		for (Asset asset : assets) {
+			assertTrue(Files.isSameFile(source(asset), target(asset)));
+		}
+		assertSourcesIntact();
+	}
+
+	@Test
+	public void testSkip() throws IOException {
+		new LegacyAssetsBuilder(mcdir()).build(assets);
+		LegacyAssetsBuilder builder = new LegacyAssetsBuilder(mcdir());
+		builder.build(assets);
+		assertEquals(0, builder.getWrittenFiles());
+	}
+
+	@Test
+	public void testReplaceMismatched() throws IOException {
+		Asset asset = assets.get(7);
+		Files.createDirectories(target(asset).getParent());
+		Files.write(target(asset), new byte[100]);
+
+		LegacyAssetsBuilder builder = new LegacyAssetsBuilder(mcdir());
+		builder.build(Arrays.asList(asset));
+		assertEquals(1, builder.getWrittenFiles());
+		assertTrue(Files.isSameFile(source(asset), target(asset)));
+		assertSourcesIntact();
+	}
+
+	@Test
+	public void testFallbackToCopy() throws IOException {
+		final AtomicInteger linkCalls = new AtomicInteger();
+		final AtomicInteger symlinkCalls = new AtomicInteger();
+		LegacyAssetsBuilder builder = new LegacyAssetsBuilder(mcdir()) {
+
+			@Override
+			void createLink(Path link, Path existing) throws IOException {
+				linkCalls.incrementAndGet();
+				throw new FileSystemException(link.toString(), existing.toString(), "Invalid cross-device link");
+			}
+
+			@Override
+			void createSymbolicLink(Path link, Path target) throws IOException {
+				symlinkCalls.incrementAndGet();
+				throw new UnsupportedOperationException();
+			}
+		};
+		builder.build(assets);
+
+		// the refused ways are not tried again
+		assertEquals(1, linkCalls.get());
+		assertEquals(1, symlinkCalls.get());
+		assertEquals(ASSETS, builder.getWrittenFiles());
+		long bytes = 0;
+		for (int i = 0; i < ASSETS; i++) {
+			Asset asset = assets.get(i);
+			bytes += asset.getSize();
+			assertFalse(Files.isSameFile(source(asset), target(asset)));
+			assertArrayEquals(content(i), Files.readAllBytes(target(asset)));
+		}
+		assertEquals(bytes, builder.getWrittenBytes());
+		assertSourcesIntact();
+	}
+
+	@Test
+	public void testTransientFailureOnlyAffectsOneAsset() throws IOException {
+		final AtomicInteger linkCalls = new AtomicInteger();
+		LegacyAssetsBuilder builder = new LegacyAssetsBuilder(mcdir()) {
+
+			@Override
+			void createLink(Path link, Path existing) throws IOException {
+				if (linkCalls.getAndIncrement() == 0) {
+					throw new IOException("transient failure");
+				}
+				super.createLink(link, existing);
+			}
+
+			@Override
+			void createSymbolicLink(Path link, Path target) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+		};
+		builder.build(assets);
+
+		assertEquals(ASSETS, linkCalls.get());
+		int linked = 0;
+		for (Asset asset : assets) {
+			if (Files.isSameFile(source(asset), target(asset))) {
+				linked++;
+			}
+		}
+		// the failed one is copied
+		assertEquals(ASSETS - 1, linked);
+		assertEquals(ASSETS, builder.getWrittenFiles());
+		assertEquals(assets.get(0).getSize(), builder.getWrittenBytes());
+		assertSourcesIntact();
+	}
+
+	@Test
+	public void testTargetCreatedConcurrently() throws IOException {
+		// another launcher creates the link right before this one
+		LegacyAssetsBuilder builder = new LegacyAssetsBuilder(mcdir()) {
+
+			@Override
+			void createLink(Path link, Path existing) throws IOException {
+				Files.createLink(link, existing);
+				super.createLink(link, existing);
+			}
+		};
+		builder.build(assets);
+
+		assertEquals(0, builder.getWrittenFiles());
+		for (Asset asset : assets) {
+			assertTrue(Files.isSameFile(source(asset), target(asset)));
+		}
+		assertSourcesIntact();
+	}
+
+	@Test
+	public void testConcurrentBuilders() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			for (int round = 0; round < 5; round++) {
+				List<Future<?>> futures = new ArrayList<>();
+				for (int i = 0; i < 4; i++) {
+					final boolean copy = i % 2 == 0;
+					futures.add(pool.submit(new Callable<Void>() {
+
+						@Override
+						public Void call() throws Exception {
+							LegacyAssetsBuilder builder = copy ? new CopyingBuilder() : new LegacyAssetsBuilder(mcdir());
+							builder.build(assets);
+							return null;
+						}
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+				assertSourcesIntact();
+				for (int i = 0; i < ASSETS; i++) {
+					assertArrayEquals(content(i), Files.readAllBytes(target(assets.get(i))));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testMissingAsset() throws IOException {
+		Asset asset = assets.get(3);
+		Files.delete(source(asset));
+		try {
+			new LegacyAssetsBuilder(mcdir()).build(Arrays.asList(asset));
+			fail();
+		} catch (NoSuchFileException e) {
+			// expected
+		}
+		assertFalse(Files.exists(target(asset), LinkOption.NOFOLLOW_LINKS));
+	}
+
+	private class CopyingBuilder extends LegacyAssetsBuilder {
+
+		CopyingBuilder() {
+			super(mcdir());
+		}
+
+		@Override
+		void createLink(Path link, Path existing) throws IOException {
+			throw new FileSystemException(link.toString(), existing.toString(), "Operation not permitted");
+		}
+
+		@Override
+		void createSymbolicLink(Path link, Path target) throws IOException {
+			throw new FileSystemException(link.toString(), target.toString(), "Operation not permitted");
+		}
+	}
+
+	private void assertSourcesIntact() throws IOException {
+		for (int i = 0; i < ASSETS; i++) {
+			assertArrayEquals(content(i), Files.readAllBytes(source(assets.get(i))));
+		}
+	}
+
+	private Path source(Asset asset) {
+		return mcdir().getAsset(asset).toPath();
+	}
+
+	private Path target(Asset asset) {
+		return mcdir().getVirtualAsset(asset).toPath();
+	}
+
+	private static byte[] content(int i) {
+		byte[] content = new byte[i + 1];
+		Arrays.fill(content, (byte) i);
+		return content;
+	}
+
+}
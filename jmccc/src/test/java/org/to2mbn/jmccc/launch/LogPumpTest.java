@@ -0,0 +1,294 @@
+package org.to2mbn.jmccc.launch;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class LogPumpTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * An input stream whose data arrives in the given chunks, each read returns
+	 * at most one chunk.
+	 */
+	private static class ChunkedInputStream extends InputStream {
+
+		private final Queue<byte[]> chunks = new ArrayDeque<>();
+		private byte[] endless;
+		private int offset;
+		private boolean closed;
+
+		synchronized void add(byte[] chunk) {
+			chunks.add(chunk);
+		}
+
+		synchronized void add(String chunk) {
+			add(chunk.getBytes(UTF_8));
+		}
+
+		synchronized void setEndless(byte[] chunk) {
+			endless = chunk;
+		}
+
+		@Override
+		public synchronized void close() {
+			closed = true;
+		}
+
+		@Override
+		public synchronized int available() throws IOException {
+			if (closed)
+				throw new IOException("Stream closed");
+			byte[] chunk = chunks.peek();
+			if (chunk == null)
+				return endless == null ? 0 : endless.length;
+			return chunk.length - offset;
+		}
+
+		@Override
+		public synchronized int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) throws IOException {
+			if (closed)
+				throw new IOException("Stream closed");
+			byte[] chunk = chunks.peek();
+			if (chunk == null) {
+				if (endless == null)
+					return -1;
+				len = Math.min(len, endless.length);
+				System.arraycopy(endless, 0, b, off, len);
+				return len;
+			}
+			len = Math.min(len, chunk.length - offset);
+			System.arraycopy(chunk, offset, b, off, len);
+			offset += len;
+			if (offset == chunk.length) {
+				chunks.poll();
+				offset = 0;
+			}
+			return len;
+		}
+
+	}
+
+	private static class FakeProcess extends Process {
+
+		final ChunkedInputStream out = new ChunkedInputStream();
+		final ChunkedInputStream err = new ChunkedInputStream();
+		volatile Integer exitCode;
+
+		@Override
+		public OutputStream getOutputStream() {
+			return new ByteArrayOutputStream();
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return out;
+		}
+
+		@Override
+		public InputStream getErrorStream() {
+			return err;
+		}
+
+		@Override
+		public int waitFor() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int exitValue() {
+			Integer code = exitCode;
+			if (code == null)
+				throw new IllegalThreadStateException();
+			return code;
+		}
+
+		@Override
+		public void destroy() {}
+
+	}
+
+	private static class RecordingListener implements ProcessListener {
+
+		final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch exited = new CountDownLatch(1);
+		volatile CountDownLatch release;
+
+		@Override
+		public void onLog(String log) {
+			if (release != null) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			events.add(log);
+		}
+
+		@Override
+		public void onErrorLog(String log) {
+			events.add("err:" + log);
+		}
+
+		@Override
+		public void onExit(int code) {
+			events.add("exit:" + code);
+			exited.countDown();
+		}
+
+		List<String> await() throws InterruptedException {
+			assertTrue(exited.await(10, TimeUnit.SECONDS));
+			synchronized (events) {
+				return new ArrayList<>(events);
+			}
+		}
+
+	}
+
+	@Test
+	public void testSplitLines() throws InterruptedException {
+		FakeProcess process = new FakeProcess();
+		process.out.add("a\nbb");
+		process.out.add("b\n\nc");
+		process.exitCode = 0;
+
+		RecordingListener listener = new RecordingListener();
+		new LogPump(true, "\n", UTF_8).register(process, listener);
+		// the last line without an eol is reported as well
+		assertEquals(Arrays.asList("a", "bbb", "", "c", "exit:0"), listener.await());
+	}
+
+	@Test
+	public void testCrlfAcrossReads() throws InterruptedException {
+		FakeProcess process = new FakeProcess();
+		process.out.add("a\r");
+		process.out.add("\nb\nc\r\n");
+		process.exitCode = 1;
+
+		RecordingListener listener = new RecordingListener();
+		new LogPump(true, "\r\n", UTF_8).register(process, listener);
+		assertEquals(Arrays.asList("a", "b\nc", "exit:1"), listener.await());
+	}
+
+	@Test
+	public void testMultiByteCharacterAcrossReads() throws InterruptedException {
+		byte[] bytes = "你好\n".getBytes(UTF_8);
+		FakeProcess process = new FakeProcess();
+		process.out.add(Arrays.copyOfRange(bytes, 0, 1));
+		process.out.add(Arrays.copyOfRange(bytes, 1, 4));
+		process.out.add(Arrays.copyOfRange(bytes, 4, bytes.length));
+		process.exitCode = 0;
+
+		RecordingListener listener = new RecordingListener();
+		new LogPump(true, "\n", UTF_8).register(process, listener);
+		assertEquals(Arrays.asList("你好", "exit:0"), listener.await());
+	}
+
+	@Test
+	public void testLogsBeforeExit() throws InterruptedException {
+		FakeProcess process = new FakeProcess();
+		List<String> expectedOut = new ArrayList<>();
+		List<String> expectedErr = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			process.out.add("out" + i + "\n");
+			process.err.add("err" + i + "\n");
+			expectedOut.add("out" + i);
+			expectedErr.add("err:err" + i);
+		}
+		process.exitCode = 3;
+
+		RecordingListener listener = new RecordingListener();
+		new LogPump(true, "\n", UTF_8).register(process, listener);
+		List<String> events = listener.await();
+
+		assertEquals("exit:3", events.get(events.size() - 1));
+		List<String> out = new ArrayList<>();
+		List<String> err = new ArrayList<>();
+		for (String event : events.subList(0, events.size() - 1)) {
+			(event.startsWith("err:") ? err : out).add(event);
+		}
+		assertEquals(expectedOut, out);
+		assertEquals(expectedErr, err);
+	}
+
+	@Test
+	public void testSlowListenerDoesNotBlockOthers() throws InterruptedException {
+		LogPump pump = new LogPump(true, "\n", UTF_8);
+
+		FakeProcess slowProcess = new FakeProcess();
+		slowProcess.out.add("slow\n");
+		RecordingListener slowListener = new RecordingListener();
+		slowListener.release = new CountDownLatch(1);
+		pump.register(slowProcess, slowListener);
+
+		FakeProcess process = new FakeProcess();
+		process.out.add("fast\n");
+		process.exitCode = 0;
+		RecordingListener listener = new RecordingListener();
+		pump.register(process, listener);
+
+		try {
+			assertEquals(Arrays.asList("fast", "exit:0"), listener.await());
+		} finally {
+			slowListener.release.countDown();
+			slowProcess.exitCode = 0;
+		}
+		assertEquals(Arrays.asList("slow", "exit:0"), slowListener.await());
+	}
+
+	@Test
+	public void testExitWhilePipeKeptOpen() throws InterruptedException {
+		// a forked process keeps writing to the pipe
+		FakeProcess process = new FakeProcess();
+		process.out.setEndless("x\n".getBytes(UTF_8));
+		process.exitCode = 0;
+
+		RecordingListener listener = new RecordingListener();
+		new LogPump(true, "\n", UTF_8).register(process, listener);
+		List<String> events = listener.await();
+		assertEquals("exit:0", events.get(events.size() - 1));
+	}
+
+	@Test
+	public void testClosedPipe() throws InterruptedException {
+		// Process.destroy() closes the pipes under the pump
+		FakeProcess process = new FakeProcess();
+		process.out.close();
+		process.err.close();
+		process.exitCode = 143;
+
+		PrintStream systemErr = System.err;
+		ByteArrayOutputStream printed = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(printed, true));
+		try {
+			RecordingListener listener = new RecordingListener();
+			new LogPump(true, "\n", UTF_8).register(process, listener);
+			assertEquals(Arrays.asList("exit:143"), listener.await());
+		} finally {
+			System.setErr(systemErr);
+		}
+		assertEquals("", printed.toString());
+	}
+
+}
@@ -0,0 +1,175 @@
+package org.to2mbn.jmccc.launch;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NativesExtractorTest {
+
+	private static final String MANIFEST_FILE = "jmccc-natives.manifest";
+
+	private File dir;
+	private File nativesDir;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("jmccc-natives").toFile();
+		nativesDir = new File(dir, "natives");
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+				Files.delete(d);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Test
+	public void testExtract() throws IOException {
+		File jar = jar("a.jar", "liba.so", "a", "META-INF/MANIFEST.MF", "manifest", "sub/libb.so", "bb", "x", "ccc");
+		NativesExtractor extractor = new NativesExtractor(nativesDir, false);
+		extractor.extract(natives(jar, Collections.singleton("META-INF/")));
+
+		assertEquals(3, extractor.getWrittenFiles());
+		assertEquals(6, extractor.getWrittenBytes());
+		assertEquals("a", read("liba.so"));
+		assertEquals("bb", read("sub/libb.so"));
+		// shorter than the minimal prefix of File.createTempFile
+		assertEquals("ccc", read("x"));
+		assertFalse(new File(nativesDir, "META-INF").exists());
+		assertNoTempFiles();
+	}
+
+	@Test
+	public void testManifestReuse() throws IOException {
+		File jar = jar("a.jar", "liba.so", "a", "libb.so", "bb");
+		new NativesExtractor(nativesDir, false).extract(natives(jar, null));
+		assertTrue(new File(nativesDir, MANIFEST_FILE).isFile());
+
+		NativesExtractor extractor = new NativesExtractor(nativesDir, false);
+		extractor.extract(natives(jar, null));
+		assertEquals(0, extractor.getWrittenFiles());
+
+		// only the missing file is extracted again
+		assertTrue(new File(nativesDir, "libb.so").delete());
+		extractor = new NativesExtractor(nativesDir, false);
+		extractor.extract(natives(jar, null));
+		assertEquals(1, extractor.getWrittenFiles());
+		assertEquals(2, extractor.getWrittenBytes());
+		assertEquals("bb", read("libb.so"));
+		assertNoTempFiles();
+	}
+
+	@Test
+	public void testFastCheck() throws IOException {
+		File jar = jar("a.jar", "liba.so", "aaaa");
+		new NativesExtractor(nativesDir, false).extract(natives(jar, null));
+
+		// same size, but different content
+		File file = new File(nativesDir, "liba.so");
+		Files.write(file.toPath(), "bbbb".getBytes("UTF-8"));
+		file.setLastModified(file.lastModified() - 10000);
+
+		NativesExtractor extractor = new NativesExtractor(nativesDir, true);
+		extractor.extract(natives(jar, null));
+		assertEquals(0, extractor.getWrittenFiles());
+		assertEquals("bbbb", read("liba.so"));
+
+		// the manifest has recorded the new time
+		file.setLastModified(file.lastModified() - 10000);
+		extractor = new NativesExtractor(nativesDir, false);
+		extractor.extract(natives(jar, null));
+		assertEquals(1, extractor.getWrittenFiles());
+		assertEquals("aaaa", read("liba.so"));
+	}
+
+	@Test
+	public void testSameFileInSeveralJars() throws IOException {
+		Map<File, Set<String>> natives = new LinkedHashMap<>();
+		for (int i = 0; i < 3; i++) {
+			natives.put(jar(i + ".jar", "lib" + i + ".so", String.valueOf(i), "shared.so", "shared" + i), null);
+		}
+
+		NativesExtractor extractor = new NativesExtractor(nativesDir, false);
+		extractor.extract(natives);
+		// the last jar wins, as if they were extracted one by one
+		assertEquals(4, extractor.getWrittenFiles());
+		assertEquals("shared2", read("shared.so"));
+		for (int i = 0; i < 3; i++) {
+			assertEquals(String.valueOf(i), read("lib" + i + ".so"));
+		}
+
+		extractor = new NativesExtractor(nativesDir, false);
+		extractor.extract(natives);
+		assertEquals(0, extractor.getWrittenFiles());
+
+		// a changed jar doesn't overwrite the file of a later one
+		File first = natives.keySet().iterator().next();
+		assertTrue(first.setLastModified(first.lastModified() - 10000));
+		extractor = new NativesExtractor(nativesDir, false);
+		extractor.extract(natives);
+		assertEquals(0, extractor.getWrittenFiles());
+		assertEquals("shared2", read("shared.so"));
+		assertNoTempFiles();
+	}
+
+	private File jar(String name, String... entries) throws IOException {
+		File jar = new File(dir, name);
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+			for (int i = 0; i < entries.length; i += 2) {
+				out.putNextEntry(new ZipEntry(entries[i]));
+				out.write(entries[i + 1].getBytes("UTF-8"));
+				out.closeEntry();
+			}
+		}
+		return jar;
+	}
+
+	private Map<File, Set<String>> natives(File jar, Set<String> excludes) {
+		Map<File, Set<String>> natives = new LinkedHashMap<>();
+		natives.put(jar, excludes);
+		return natives;
+	}
+
+	private String read(String name) throws IOException {
+		return new String(Files.readAllBytes(new File(nativesDir, name).toPath()), "UTF-8");
+	}
+
+	private void assertNoTempFiles() throws IOException {
+		Files.walkFileTree(nativesDir.toPath(), new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				assertFalse(file.toString(), file.toString().endsWith(".tmp"));
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+}
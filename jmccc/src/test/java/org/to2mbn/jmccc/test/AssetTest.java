@@ -3,11 +3,24 @@ package org.to2mbn.jmccc.test;
 import static org.junit.Assert.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import org.junit.Test;
+import org.to2mbn.jmccc.internal.org.json.JSONException;
+import org.to2mbn.jmccc.internal.org.json.JSONObject;
+import org.to2mbn.jmccc.internal.org.json.JSONTokener;
+import org.to2mbn.jmccc.util.ChecksumUtils;
+import org.to2mbn.jmccc.util.VerifyRequest;
 import org.to2mbn.jmccc.version.Asset;
+import org.to2mbn.jmccc.version.parsing.VersionParser;
 import org.to2mbn.jmccc.version.parsing.Versions;
 
 public class AssetTest extends MinecraftEnvironmentTest {
@@ -36,6 +49,82 @@ public class AssetTest extends MinecraftEnvironmentTest {
 		assertEquals(false, new Asset("minecraft/sounds/mob/skeleton/step3.ogg", "000c82756fd54e40cb236199f2b479629d0aca20", 8565).isValid(mcdir()));
 	}
 
+	@Test
+	public void testVerifyAll() throws IOException, GeneralSecurityException, InterruptedException {
+		VerifyRequest ok = new VerifyRequest(new File("mcdir/assets/objects/00/000c82756fd54e40cb236199f2b479629d0aca2f"), "000c82756fd54e40cb236199f2b479629d0aca2f", "SHA-1", 8565);
+		VerifyRequest badSize = new VerifyRequest(new File("mcdir/assets/objects/00/000c82756fd54e40cb236199f2b479629d0aca2f"), "000c82756fd54e40cb236199f2b479629d0aca2f", "SHA-1", 2333);
+		VerifyRequest badHash = new VerifyRequest(new File("mcdir/assets/objects/00/000c82756fd54e40cb236199f2b479629d0aca2f"), "000c82756fd54e40cb236199f2b479629d0aca20", "SHA-1", 8565);
+		VerifyRequest missing = new VerifyRequest(new File("mcdir/assets/objects/00/0000000000000000000000000000000000000000"), "0000000000000000000000000000000000000000", "SHA-1", -1);
+		Map<VerifyRequest, Boolean> results = ChecksumUtils.verifyAll(Arrays.asList(ok, badSize, badHash, missing));
+		assertEquals(4, results.size());
+		assertEquals(true, results.get(ok));
+		assertEquals(false, results.get(badSize));
+		assertEquals(false, results.get(badHash));
+		assertEquals(false, results.get(missing));
+	}
+
+	@Test
+	public void testVerifyLargeFile() throws IOException, GeneralSecurityException, InterruptedException {
+		// hashed through memory mapping
+		byte[] data = randomData(new Random(1), 1024 * 1024 + 4321);
+		File file = new File("mcdir/large");
+		Files.write(file.toPath(), data);
+		byte[] checksum = MessageDigest.getInstance("SHA-1").digest(data);
+		data[data.length / 2] ^= 1;
+		byte[] wrongChecksum = MessageDigest.getInstance("SHA-1").digest(data);
+
+		assertArrayEquals(checksum, ChecksumUtils.compute(file, "SHA-1"));
+		assertEquals(true, ChecksumUtils.verify(file, checksum, "SHA-1", data.length));
+		assertEquals(false, ChecksumUtils.verify(file, wrongChecksum, "SHA-1", data.length));
+
+		VerifyRequest ok = new VerifyRequest(file, checksum, "SHA-1", data.length);
+		VerifyRequest bad = new VerifyRequest(file, wrongChecksum, "SHA-1", data.length);
+		Map<VerifyRequest, Boolean> results = ChecksumUtils.verifyAll(Arrays.asList(ok, bad));
+		assertEquals(true, results.get(ok));
+		assertEquals(false, results.get(bad));
+	}
+
+	@Test
+	public void testVerifyAllBatch() throws IOException, GeneralSecurityException, InterruptedException {
+		Random random = new Random(2);
+		File dir = new File("mcdir/batch");
+		dir.mkdirs();
+		List<VerifyRequest> requests = new ArrayList<>();
+		for (int i = 0; i < 400; i++) {
+			File file = new File(dir, String.valueOf(i));
+			byte[] data = randomData(random, random.nextInt(8192));
+			byte[] checksum = MessageDigest.getInstance(i % 2 == 0 ? "SHA-1" : "MD5").digest(data);
+			long size = data.length;
+			switch (i % 5) {
+				case 1:
+					checksum[0] ^= 1;
+					break;
+				case 2:
+					size++;
+					break;
+				case 3:
+					// missing
+					data = null;
+					break;
+				case 4:
+					size = -1;
+					break;
+			}
+			if (data != null)
+				Files.write(file.toPath(), data);
+			requests.add(new VerifyRequest(file, checksum, i % 2 == 0 ? "SHA-1" : "MD5", size));
+		}
+
+		Map<VerifyRequest, Boolean> results = ChecksumUtils.verifyAll(requests);
+		assertEquals(requests.size(), results.size());
+		for (int i = 0; i < requests.size(); i++) {
+			VerifyRequest request = requests.get(i);
+			boolean expected = ChecksumUtils.verify(request.getFile(), request.getChecksum(), request.getAlgorithm(), request.getSize());
+			assertEquals("request " + i, expected, results.get(request));
+			assertEquals("request " + i, i % 5 == 0 || i % 5 == 4, expected);
+		}
+	}
+
     @Test
     public void testFromJson() throws IOException {
         Set<Asset> indexAc = Versions.resolveAssets(mcdir(), "test");
@@ -46,4 +135,36 @@ public class AssetTest extends MinecraftEnvironmentTest {
         assertEquals(assetsEx, indexAc);
     }
 
+	@Test
+	public void testStreamingParser() throws Exception {
+		StringBuilder sb = new StringBuilder("{\"virtual\": true, \"objects\": {");
+		for (int i = 0; i < 1000; i++) {
+			if (i > 0)
+				sb.append(',');
+			sb.append("\"dir").append(i % 7).append("/file").append(i).append(".ogg\": {\"hash\": \"")
+					.append(String.format("%040x", i)).append("\", \"size\": ").append(i % 3 == 0 ? "\"" + i + "\"" : String.valueOf(i)).append('}');
+		}
+		sb.append("}, \"map_to_resources\": false}");
+		String json = sb.toString();
+
+		VersionParser parser = Versions.getVersionParser();
+		Set<Asset> streamed = parser.parseAssetIndex(new JSONTokener(json));
+		assertEquals(parser.parseAssetIndex(new JSONObject(json)), streamed);
+		// in the same order
+		assertEquals(new ArrayList<>(parser.parseAssetIndex(new JSONObject(json))), new ArrayList<>(streamed));
+		assertEquals(1000, streamed.size());
+		assertEquals(new Asset("dir0/file0.ogg", String.format("%040x", 0), 0), streamed.iterator().next());
+	}
+
+	@Test(expected = JSONException.class)
+	public void testStreamingParserMissingHash() throws Exception {
+		Versions.getVersionParser().parseAssetIndex(new JSONTokener("{\"objects\": {\"a\": {\"size\": 1}}}"));
+	}
+
+	private static byte[] randomData(Random random, int length) {
+		byte[] data = new byte[length];
+		random.nextBytes(data);
+		return data;
+	}
+
 }
@@ -0,0 +1,106 @@
+package org.to2mbn.jmccc.test;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.to2mbn.jmccc.launch.AsyncProcessListener;
+import org.to2mbn.jmccc.launch.AsyncProcessListener.OverflowPolicy;
+import org.to2mbn.jmccc.launch.ProcessListener;
+
+public class AsyncProcessListenerTest {
+
+	private static class RecordingListener implements ProcessListener {
+
+		final List<String> logs = new ArrayList<>();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch exited = new CountDownLatch(1);
+		volatile int exitCode = -1;
+
+		@Override
+		public void onLog(String log) {
+			started.countDown();
+			try {
+				// a slow listener
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			logs.add(log);
+		}
+
+		@Override
+		public void onErrorLog(String log) {
+			logs.add("err:" + log);
+		}
+
+		@Override
+		public void onExit(int code) {
+			exitCode = code;
+			exited.countDown();
+		}
+
+	}
+
+	@Test
+	public void testDeliverInOrder() throws InterruptedException {
+		RecordingListener recorder = new RecordingListener();
+		recorder.release.countDown();
+		AsyncProcessListener listener = new AsyncProcessListener(recorder);
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			listener.onLog("log" + i);
+			listener.onErrorLog("log" + i);
+			expected.add("log" + i);
+			expected.add("err:log" + i);
+		}
+		listener.onExit(3);
+
+		assertTrue(recorder.exited.await(10, TimeUnit.SECONDS));
+		assertEquals(expected, recorder.logs);
+		assertEquals(3, recorder.exitCode);
+		assertEquals(0, listener.getDroppedLogs());
+		assertEquals(0, listener.getQueueDepth());
+	}
+
+	@Test
+	public void testDropOldest() throws InterruptedException {
+		RecordingListener recorder = new RecordingListener();
+		AsyncProcessListener listener = new AsyncProcessListener(recorder, 4, OverflowPolicy.DROP_OLDEST);
+		listener.onLog("blocked");
+		assertTrue(recorder.started.await(10, TimeUnit.SECONDS));
+
+		for (int i = 0; i < 10; i++)
+			listener.onLog("log" + i);
+		assertEquals(4, listener.getQueueDepth());
+		assertEquals(6, listener.getDroppedLogs());
+
+		listener.onExit(0);
+		recorder.release.countDown();
+		assertTrue(recorder.exited.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("blocked", "log6", "log7", "log8", "log9"), recorder.logs);
+	}
+
+	@Test
+	public void testDropNewest() throws InterruptedException {
+		RecordingListener recorder = new RecordingListener();
+		AsyncProcessListener listener = new AsyncProcessListener(recorder, 4, OverflowPolicy.DROP_NEWEST);
+		listener.onLog("blocked");
+		assertTrue(recorder.started.await(10, TimeUnit.SECONDS));
+
+		for (int i = 0; i < 10; i++)
+			listener.onLog("log" + i);
+		assertEquals(4, listener.getMaxQueueDepth());
+		assertEquals(6, listener.getDroppedLogs());
+
+		listener.onExit(0);
+		recorder.release.countDown();
+		assertTrue(recorder.exited.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("blocked", "log0", "log1", "log2", "log3"), recorder.logs);
+	}
+
+}
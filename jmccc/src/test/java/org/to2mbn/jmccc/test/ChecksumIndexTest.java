@@ -0,0 +1,73 @@
+package org.to2mbn.jmccc.test;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import org.junit.Test;
+import org.to2mbn.jmccc.util.ChecksumIndex;
+import org.to2mbn.jmccc.version.Asset;
+
+public class ChecksumIndexTest extends MinecraftEnvironmentTest {
+
+	private static final String HASH = "000c82756fd54e40cb236199f2b479629d0aca2f";
+	private static final File ASSET_FILE = new File("mcdir/assets/objects/00/" + HASH);
+
+	private Asset asset = new Asset("minecraft/sounds/mob/skeleton/step3.ogg", HASH, 8565);
+
+	@Override
+	protected void copyFiles() throws IOException {
+		new File("mcdir/assets/objects/00").mkdirs();
+		copyFromJar("/mcdir/assets/objects/00/" + HASH, ASSET_FILE);
+		// files modified just now are not recorded
+		ASSET_FILE.setLastModified(System.currentTimeMillis() - 60000);
+	}
+
+	@Test
+	public void testVerify() throws IOException, GeneralSecurityException {
+		ChecksumIndex index = new ChecksumIndex(mcdir().getChecksumIndex());
+		assertTrue(asset.isValid(mcdir(), index));
+		assertFalse(new Asset("minecraft/sounds/mob/skeleton/step3.ogg", HASH, 2333).isValid(mcdir(), index));
+		assertFalse(new Asset("minecraft/sounds/mob/skeleton/step3.ogg", "000c82756fd54e40cb236199f2b479629d0aca20", 8565).isValid(mcdir(), index));
+	}
+
+	@Test
+	public void testUnchangedFileIsTrusted() throws IOException, GeneralSecurityException {
+		ChecksumIndex index = new ChecksumIndex(mcdir().getChecksumIndex());
+		assertTrue(asset.isValid(mcdir(), index));
+		index.save();
+
+		long lastModified = ASSET_FILE.lastModified();
+		overwriteFirstByte();
+		ASSET_FILE.setLastModified(lastModified);
+
+		ChecksumIndex reloaded = new ChecksumIndex(mcdir().getChecksumIndex());
+		reloaded.load();
+		assertTrue(asset.isValid(mcdir(), reloaded));
+		assertFalse(asset.isValid(mcdir()));
+	}
+
+	@Test
+	public void testChangedFileIsRehashed() throws IOException, GeneralSecurityException {
+		ChecksumIndex index = new ChecksumIndex(mcdir().getChecksumIndex());
+		assertTrue(asset.isValid(mcdir(), index));
+		index.save();
+
+		overwriteFirstByte();
+		ASSET_FILE.setLastModified(System.currentTimeMillis() - 30000);
+
+		ChecksumIndex reloaded = new ChecksumIndex(mcdir().getChecksumIndex());
+		reloaded.load();
+		assertFalse(asset.isValid(mcdir(), reloaded));
+	}
+
+	private void overwriteFirstByte() throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(ASSET_FILE, "rw")) {
+			int b = file.read();
+			file.seek(0);
+			file.write(b ^ 0xff);
+		}
+	}
+
+}
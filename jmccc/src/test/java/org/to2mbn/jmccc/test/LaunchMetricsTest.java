@@ -0,0 +1,241 @@
+package org.to2mbn.jmccc.test;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assume;
+import org.junit.Test;
+import org.to2mbn.jmccc.auth.AuthInfo;
+import org.to2mbn.jmccc.auth.AuthenticationException;
+import org.to2mbn.jmccc.auth.Authenticator;
+import org.to2mbn.jmccc.auth.OfflineAuthenticator;
+import org.to2mbn.jmccc.launch.JfrLaunchMetrics;
+import org.to2mbn.jmccc.launch.LaunchException;
+import org.to2mbn.jmccc.launch.LaunchMetrics;
+import org.to2mbn.jmccc.launch.LaunchPhase;
+import org.to2mbn.jmccc.launch.LauncherBuilder;
+import org.to2mbn.jmccc.option.LaunchOption;
+import org.to2mbn.jmccc.version.Library;
+import org.to2mbn.jmccc.version.Version;
+import org.to2mbn.jmccc.version.parsing.Versions;
+
+public class LaunchMetricsTest extends MinecraftEnvironmentTest {
+
+	private static final String VERSION_JSON = "{\"id\":\"test\",\"type\":\"release\",\"assets\":\"legacy\","
+			+ "\"mainClass\":\"org.to2mbn.jmccc.test.NoSuchMain\","
+			+ "\"minecraftArguments\":\"--username ${auth_player_name} --version ${version_name} --assetsDir ${game_assets}\","
+			+ "\"libraries\":["
+			+ "{\"name\":\"org.to2mbn.test:lib:1.0\"},"
+			+ "{\"name\":\"org.to2mbn.test:natives:1.0\",\"natives\":{\"linux\":\"natives-test\",\"windows\":\"natives-test\",\"osx\":\"natives-test\"},\"extract\":{\"exclude\":[\"META-INF/\"]}}"
+			+ "]}";
+
+	private static final String ASSETS_JSON = "{\"objects\":{"
+			+ "\"a.ogg\":{\"hash\":\"0000000000000000000000000000000000000001\",\"size\":5},"
+			+ "\"sub/b.ogg\":{\"hash\":\"0000000000000000000000000000000000000002\",\"size\":5}"
+			+ "}}";
+
+	private static class RecordingMetrics implements LaunchMetrics {
+
+		final List<LaunchPhase> started = new ArrayList<>();
+		final List<LaunchPhase> phases = new ArrayList<>();
+		final List<Integer> files = new ArrayList<>();
+		final List<Long> bytes = new ArrayList<>();
+		boolean launchStarted;
+		long phasesDuration;
+		long launchDuration = -1;
+
+		@Override
+		public void launchStarted(LaunchOption option) {
+			assertFalse(launchStarted);
+			launchStarted = true;
+		}
+
+		@Override
+		public void phaseStarted(LaunchOption option, LaunchPhase phase) {
+			assertTrue(launchStarted);
+			assertEquals("previous phase not completed", started.size(), phases.size());
+			started.add(phase);
+		}
+
+		@Override
+		public void phaseCompleted(LaunchOption option, LaunchPhase phase, long duration, int files, long bytes) {
+			assertEquals("test", option.getVersion().getVersion());
+			assertTrue(duration >= 0);
+			assertEquals("launch already completed", -1, launchDuration);
+			assertEquals(started.get(started.size() - 1), phase);
+			phases.add(phase);
+			this.files.add(files);
+			this.bytes.add(bytes);
+			phasesDuration += duration;
+		}
+
+		@Override
+		public void launchCompleted(LaunchOption option, long duration) {
+			assertEquals(-1, launchDuration);
+			launchDuration = duration;
+		}
+
+		int files(LaunchPhase phase) {
+			return files.get(phases.indexOf(phase));
+		}
+
+		long bytes(LaunchPhase phase) {
+			return bytes.get(phases.indexOf(phase));
+		}
+
+	}
+
+	@Override
+	protected void copyFiles() throws IOException {
+		File versionDir = new File("mcdir/versions/test");
+		versionDir.mkdirs();
+		Files.write(new File(versionDir, "test.json").toPath(), VERSION_JSON.getBytes("UTF-8"));
+
+		File indexes = new File("mcdir/assets/indexes");
+		indexes.mkdirs();
+		Files.write(new File(indexes, "legacy.json").toPath(), ASSETS_JSON.getBytes("UTF-8"));
+		for (int i = 1; i <= 2; i++) {
+			File object = new File("mcdir/assets/objects/00/" + String.format("%040x", i));
+			object.getParentFile().mkdirs();
+			Files.write(object.toPath(), new byte[5]);
+		}
+
+		Version version = Versions.resolveVersion(mcdir(), "test");
+		for (Library library : version.getLibraries()) {
+			File file = mcdir().getLibrary(library);
+			file.getParentFile().mkdirs();
+			try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+				if (library.getArtifactId().equals("natives")) {
+					putEntry(out, "META-INF/MANIFEST.MF", 10);
+					putEntry(out, "a.so", 3);
+					putEntry(out, "b.so", 4);
+				} else {
+					putEntry(out, "Lib.class", 10);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPhases() throws Exception {
+		RecordingMetrics metrics = new RecordingMetrics();
+		launch(metrics, new OfflineAuthenticator("player"));
+
+		assertEquals(Arrays.asList(
+				LaunchPhase.CHECK_LIBRARIES,
+				LaunchPhase.EXTRACT_NATIVES,
+				LaunchPhase.BUILD_LEGACY_ASSETS,
+				LaunchPhase.AUTHENTICATE,
+				LaunchPhase.GENERATE_COMMANDLINE,
+				LaunchPhase.START_PROCESS), metrics.phases);
+		assertEquals(2, metrics.files(LaunchPhase.CHECK_LIBRARIES));
+		assertEquals(2, metrics.files(LaunchPhase.EXTRACT_NATIVES));
+		assertEquals(7, metrics.bytes(LaunchPhase.EXTRACT_NATIVES));
+		assertEquals(2, metrics.files(LaunchPhase.BUILD_LEGACY_ASSETS));
+		// linked, or copied if links are not supported
+		long assetBytes = metrics.bytes(LaunchPhase.BUILD_LEGACY_ASSETS);
+		assertTrue(String.valueOf(assetBytes), assetBytes == 0 || assetBytes == 10);
+		// the library and the version jar
+		assertEquals(2, metrics.files(LaunchPhase.GENERATE_COMMANDLINE));
+		assertTrue(metrics.launchDuration >= metrics.phasesDuration);
+
+		// nothing to write the second time
+		metrics = new RecordingMetrics();
+		launch(metrics, new OfflineAuthenticator("player"));
+		assertEquals(6, metrics.phases.size());
+		assertEquals(0, metrics.files(LaunchPhase.EXTRACT_NATIVES));
+		assertEquals(0, metrics.bytes(LaunchPhase.EXTRACT_NATIVES));
+		assertEquals(0, metrics.files(LaunchPhase.BUILD_LEGACY_ASSETS));
+		assertEquals(0, metrics.bytes(LaunchPhase.BUILD_LEGACY_ASSETS));
+	}
+
+	@Test
+	public void testFailedPhaseNotReported() throws Exception {
+		RecordingMetrics metrics = new RecordingMetrics();
+		try {
+			launch(metrics, new Authenticator() {
+
+				@Override
+				public AuthInfo auth() throws AuthenticationException {
+					throw new AuthenticationException("test");
+				}
+			});
+			fail();
+		} catch (AuthenticationException e) {
+			// expected
+		}
+		assertEquals(Arrays.asList(
+				LaunchPhase.CHECK_LIBRARIES,
+				LaunchPhase.EXTRACT_NATIVES,
+				LaunchPhase.BUILD_LEGACY_ASSETS), metrics.phases);
+		assertEquals(LaunchPhase.AUTHENTICATE, metrics.started.get(metrics.started.size() - 1));
+		assertEquals(-1, metrics.launchDuration);
+	}
+
+	@Test
+	public void testJfrEvents() throws Exception {
+		// jdk.jfr.EventFactory is not available on java 7 and 8
+		Assume.assumeTrue(JfrLaunchMetrics.isAvailable());
+
+		Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+		Object recording = recordingClass.getConstructor().newInstance();
+		Path dump = Files.createTempFile("jmccc-launch", ".jfr");
+		try {
+			recordingClass.getMethod("enable", String.class).invoke(recording, "org.to2mbn.jmccc.LaunchPhase");
+			recordingClass.getMethod("enable", String.class).invoke(recording, "org.to2mbn.jmccc.Launch");
+			recordingClass.getMethod("start").invoke(recording);
+			launch(new JfrLaunchMetrics(), new OfflineAuthenticator("player"));
+			recordingClass.getMethod("stop").invoke(recording);
+			recordingClass.getMethod("dump", Path.class).invoke(recording, dump);
+
+			List<String> names = new ArrayList<>();
+			long phasesDuration = 0;
+			long launchDuration = 0;
+			List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class).invoke(null, dump);
+			for (Object event : events) {
+				Object type = event.getClass().getMethod("getEventType").invoke(event);
+				String name = (String) type.getClass().getMethod("getName").invoke(type);
+				names.add(name);
+				Object duration = event.getClass().getMethod("getDuration").invoke(event);
+				long nanos = (Long) duration.getClass().getMethod("toNanos").invoke(duration);
+				if (name.equals("org.to2mbn.jmccc.LaunchPhase"))
+					phasesDuration += nanos;
+				else if (name.equals("org.to2mbn.jmccc.Launch"))
+					launchDuration = nanos;
+			}
+			assertEquals(6, Collections.frequency(names, "org.to2mbn.jmccc.LaunchPhase"));
+			assertEquals(1, Collections.frequency(names, "org.to2mbn.jmccc.Launch"));
+			// the events span their phases, instead of being committed at the end
+			assertTrue(phasesDuration > 0);
+			assertTrue(launchDuration >= phasesDuration);
+		} finally {
+			recordingClass.getMethod("close").invoke(recording);
+			Files.deleteIfExists(dump);
+		}
+	}
+
+	private void launch(LaunchMetrics metrics, Authenticator authenticator) throws LaunchException, IOException, InterruptedException {
+		Process process = LauncherBuilder.create()
+				.launchMetrics(metrics)
+				.build()
+				.launch(new LaunchOption("test", authenticator, mcdir()));
+		process.destroy();
+		process.waitFor();
+	}
+
+	private static void putEntry(ZipOutputStream out, String name, int size) throws IOException {
+		out.putNextEntry(new ZipEntry(name));
+		out.write(new byte[size]);
+		out.closeEntry();
+	}
+
+}
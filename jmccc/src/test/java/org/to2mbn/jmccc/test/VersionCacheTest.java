@@ -0,0 +1,74 @@
+package org.to2mbn.jmccc.test;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Test;
+import org.to2mbn.jmccc.version.Asset;
+import org.to2mbn.jmccc.version.Version;
+import org.to2mbn.jmccc.version.parsing.Versions;
+
+public class VersionCacheTest extends MinecraftEnvironmentTest {
+
+	private static final String PARENT = "1.7.10";
+	private static final String CHILD = "1.7.10-LiteLoader1.7.10";
+
+	@Override
+	protected void copyFiles() throws IOException {
+		for (String version : new String[] { PARENT, CHILD }) {
+			File json = new File("mcdir/versions/" + version + "/" + version + ".json");
+			json.getParentFile().mkdirs();
+			copyFromJar("/mcdir/versions/" + version + "/" + version + ".json", json);
+			setOld(json);
+		}
+		File index = new File("mcdir/assets/indexes/test.json");
+		index.getParentFile().mkdirs();
+		copyFromJar("/mcdir/assets/indexes/test.json", index);
+		setOld(index);
+		Versions.setCacheSize(16);
+	}
+
+	@After
+	public void disableCache() {
+		Versions.setCacheSize(0);
+	}
+
+	@Test
+	public void testVersionCached() throws IOException {
+		Version version = Versions.resolveVersion(mcdir(), CHILD);
+		assertSame(version, Versions.resolveVersion(mcdir(), CHILD));
+	}
+
+	@Test
+	public void testParentModified() throws IOException {
+		Version version = Versions.resolveVersion(mcdir(), CHILD);
+		File parent = mcdir().getVersionJson(PARENT);
+		parent.setLastModified(parent.lastModified() + 10000);
+		Version reloaded = Versions.resolveVersion(mcdir(), CHILD);
+		assertNotSame(version, reloaded);
+		assertEquals(version, reloaded);
+	}
+
+	@Test
+	public void testInvalidate() throws IOException {
+		Version version = Versions.resolveVersion(mcdir(), CHILD);
+		Versions.invalidateCache(mcdir());
+		assertNotSame(version, Versions.resolveVersion(mcdir(), CHILD));
+	}
+
+	@Test
+	public void testAssetIndexCached() throws IOException {
+		Set<Asset> assets = Versions.resolveAssets(mcdir(), "test");
+		assertSame(assets, Versions.resolveAssets(mcdir(), "test"));
+		File index = mcdir().getAssetIndex("test");
+		index.setLastModified(index.lastModified() + 10000);
+		assertNotSame(assets, Versions.resolveAssets(mcdir(), "test"));
+	}
+
+	private static void setOld(File file) {
+		file.setLastModified(System.currentTimeMillis() - 60000);
+	}
+
+}